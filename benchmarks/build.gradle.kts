@@ -0,0 +1,23 @@
+plugins {
+  alias(libs.plugins.robolectric.java.module)
+  alias(libs.plugins.jmh)
+}
+
+// JMH benchmarks for Robolectric's hot paths. Run with ./gradlew :benchmarks:jmh, optionally
+// passing -PjmhIncludes=<regex> to select benchmarks. Results are written as JSON to
+// build/results/jmh/results.json, so that runs on different commits can be compared.
+dependencies {
+  jmh(project(":sandbox"))
+  jmh(project(":robolectric"))
+  jmh(libs.junit4)
+
+  jmhCompileOnly(AndroidSdk.MAX_SDK.coordinates)
+  jmhRuntimeOnly(AndroidSdk.MAX_SDK.coordinates)
+}
+
+jmh {
+  jmhVersion = libs.versions.jmh.get()
+  resultFormat = "JSON"
+  resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+  providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
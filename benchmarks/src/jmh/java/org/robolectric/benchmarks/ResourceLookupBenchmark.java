@@ -0,0 +1,31 @@
+package org.robolectric.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures {@code Resources} lookups, which are served by {@code CppAssetManager2}. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceLookupBenchmark extends SandboxedWorkloadBenchmark {
+
+  @Override
+  protected String workloadClassName() {
+    return "org.robolectric.benchmarks.workloads.ResourceLookupWorkload";
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(OPERATIONS)
+  public Object run() {
+    return runWorkload();
+  }
+}
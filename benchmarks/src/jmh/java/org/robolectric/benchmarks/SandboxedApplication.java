@@ -0,0 +1,64 @@
+package org.robolectric.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import org.junit.Test;
+import org.junit.runners.model.InitializationError;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.internal.AndroidSandbox;
+
+/**
+ * Sets up a Robolectric sandbox and application the way {@link RobolectricTestRunner} does for a
+ * test, so that benchmarks can run workloads inside it.
+ *
+ * <p>Workloads are loaded by name, so that the Android classes they use are only ever loaded by
+ * the sandbox.
+ */
+final class SandboxedApplication extends RobolectricTestRunner {
+  private RobolectricFrameworkMethod method;
+  private AndroidSandbox sandbox;
+  private Method bootstrappedMethod;
+
+  SandboxedApplication() throws InitializationError {
+    super(Host.class);
+  }
+
+  void setUp() throws Throwable {
+    method = (RobolectricFrameworkMethod) getChildren().get(0);
+    sandbox = getSandbox(method);
+    configureSandbox(sandbox, method);
+    bootstrappedMethod =
+        sandbox.bootstrappedClass(Host.class).getMethod(method.getMethod().getName());
+    beforeTest(sandbox, method, bootstrappedMethod);
+  }
+
+  void tearDown() {
+    try {
+      afterTest(method, bootstrappedMethod);
+    } finally {
+      finallyAfterTest(method);
+      releaseSandbox(sandbox);
+    }
+  }
+
+  /**
+   * Loads {@code workloadClassName} in the sandbox, and creates an instance of it on the main
+   * thread by calling its constructor that takes the number of operations to run per call.
+   */
+  Callable<?> newWorkload(String workloadClassName, int operations) throws ClassNotFoundException {
+    Class<?> workloadClass = sandbox.getRobolectricClassLoader().loadClass(workloadClassName);
+    return sandbox.runOnMainThread(
+        () -> (Callable<?>) workloadClass.getConstructor(int.class).newInstance(operations));
+  }
+
+  /** Calls {@code workload} on the sandbox's main thread. */
+  <T> T call(Callable<T> workload) {
+    return sandbox.runOnMainThread(workload);
+  }
+
+  /** Stands in for a test class, whose test the sandbox and application are set up for. */
+  public static class Host {
+    @Test
+    public void benchmark() {}
+  }
+}
@@ -0,0 +1,41 @@
+package org.robolectric.benchmarks;
+
+import java.util.concurrent.Callable;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base class for benchmarks of Android framework code running in a {@link SandboxedApplication}.
+ *
+ * <p>Handing a call to the sandbox's main thread costs several microseconds, so each call runs
+ * {@link #OPERATIONS} operations of the workload, and subclasses should annotate their benchmarks
+ * with {@code @OperationsPerInvocation(OPERATIONS)}.
+ */
+@State(Scope.Benchmark)
+public abstract class SandboxedWorkloadBenchmark {
+  protected static final int OPERATIONS = 100;
+
+  private SandboxedApplication application;
+  private Callable<?> workload;
+
+  /** Returns the name of a class in the workloads package that implements {@link Callable}. */
+  protected abstract String workloadClassName();
+
+  @Setup
+  public void setUp() throws Throwable {
+    application = new SandboxedApplication();
+    application.setUp();
+    workload = application.newWorkload(workloadClassName(), OPERATIONS);
+  }
+
+  @TearDown
+  public void tearDown() {
+    application.tearDown();
+  }
+
+  protected Object runWorkload() {
+    return application.call(workload);
+  }
+}
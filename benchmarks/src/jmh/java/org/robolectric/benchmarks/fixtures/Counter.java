@@ -0,0 +1,18 @@
+package org.robolectric.benchmarks.fixtures;
+
+import java.util.function.IntUnaryOperator;
+
+/** An unshadowed class, whose instrumented methods call through to their original code. */
+public class Counter implements IntUnaryOperator {
+  private int total;
+
+  @Override
+  public int applyAsInt(int value) {
+    total += value;
+    return total;
+  }
+
+  public static int twice(int value) {
+    return value * 2;
+  }
+}
@@ -0,0 +1,22 @@
+package org.robolectric.benchmarks.fixtures;
+
+import java.util.function.IntUnaryOperator;
+
+/** A class whose methods are replaced by {@code ShadowShadowedCounter}. */
+public class ShadowedCounter implements IntUnaryOperator {
+  private int total;
+
+  @Override
+  public int applyAsInt(int value) {
+    total += value;
+    return total;
+  }
+
+  public int applyAsInt(int value, int scale) {
+    return applyAsInt(value * scale);
+  }
+
+  public static int twice(int value) {
+    return value * 2;
+  }
+}
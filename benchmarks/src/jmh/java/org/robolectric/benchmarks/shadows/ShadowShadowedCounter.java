@@ -0,0 +1,22 @@
+package org.robolectric.benchmarks.shadows;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.benchmarks.fixtures.ShadowedCounter;
+
+/** Shadow for {@link ShadowedCounter}. */
+@Implements(ShadowedCounter.class)
+public class ShadowShadowedCounter {
+  private int total;
+
+  @Implementation
+  protected int applyAsInt(int value) {
+    total -= value;
+    return total;
+  }
+
+  @Implementation
+  protected static int twice(int value) {
+    return value << 1;
+  }
+}
@@ -0,0 +1,29 @@
+package org.robolectric.benchmarks.workloads;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.concurrent.Callable;
+import org.robolectric.shadows.ShadowLooper;
+
+/** Posts a message to the main looper and idles it, one message at a time. */
+public class PausedLooperIdleWorkload implements Callable<Integer> {
+  private final int operations;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final ShadowLooper shadowLooper = shadowOf(Looper.getMainLooper());
+  private int handled;
+
+  public PausedLooperIdleWorkload(int operations) {
+    this.operations = operations;
+  }
+
+  @Override
+  public Integer call() {
+    for (int i = 0; i < operations; i++) {
+      handler.post(() -> handled++);
+      shadowLooper.idle();
+    }
+    return handled;
+  }
+}
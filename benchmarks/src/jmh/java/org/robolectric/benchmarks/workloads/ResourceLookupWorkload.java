@@ -0,0 +1,28 @@
+package org.robolectric.benchmarks.workloads;
+
+import android.content.res.Resources;
+import java.util.concurrent.Callable;
+import org.robolectric.RuntimeEnvironment;
+
+/** Looks up framework resources by id and by name. */
+public class ResourceLookupWorkload implements Callable<Integer> {
+  private final int operations;
+  private final Resources resources;
+
+  public ResourceLookupWorkload(int operations) {
+    this.operations = operations;
+    this.resources = RuntimeEnvironment.getApplication().getResources();
+  }
+
+  @Override
+  public Integer call() {
+    int total = 0;
+    for (int i = 0; i < operations; i++) {
+      total += resources.getString(android.R.string.ok).length();
+      total += resources.getColor(android.R.color.white, null);
+      total += resources.getDimensionPixelSize(android.R.dimen.app_icon_size);
+      total += resources.getIdentifier("cancel", "string", "android");
+    }
+    return total;
+  }
+}
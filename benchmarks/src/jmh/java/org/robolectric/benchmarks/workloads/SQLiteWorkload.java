@@ -0,0 +1,39 @@
+package org.robolectric.benchmarks.workloads;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import java.util.concurrent.Callable;
+
+/** Inserts rows into an in-memory database in a transaction, then queries them. */
+public class SQLiteWorkload implements Callable<Integer> {
+  private final int operations;
+  private final SQLiteDatabase database;
+
+  public SQLiteWorkload(int operations) {
+    this.operations = operations;
+    this.database = SQLiteDatabase.create(null);
+    database.execSQL("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT)");
+  }
+
+  @Override
+  public Integer call() {
+    database.delete("items", null, null);
+    database.beginTransaction();
+    try {
+      ContentValues values = new ContentValues();
+      for (int i = 0; i < operations; i++) {
+        values.put("name", "item " + i);
+        database.insert("items", null, values);
+      }
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+    }
+    try (Cursor cursor =
+        database.rawQuery("SELECT COUNT(*) FROM items WHERE name LIKE ?", new String[] {"item%"})) {
+      cursor.moveToFirst();
+      return cursor.getInt(0);
+    }
+  }
+}
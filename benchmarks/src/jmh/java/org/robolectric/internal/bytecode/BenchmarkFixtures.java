@@ -0,0 +1,32 @@
+package org.robolectric.internal.bytecode;
+
+import org.robolectric.benchmarks.fixtures.Counter;
+import org.robolectric.benchmarks.shadows.ShadowShadowedCounter;
+import org.robolectric.sandbox.ShadowMatcher;
+
+/** Shared setup for benchmarks that instrument the classes in {@link Counter}'s package. */
+final class BenchmarkFixtures {
+
+  static InstrumentationConfiguration newConfig() {
+    return InstrumentationConfiguration.newBuilder()
+        .addInstrumentedPackage(Counter.class.getPackage().getName())
+        .build();
+  }
+
+  static ShadowMap newShadowMap() {
+    return ShadowMap.EMPTY.newBuilder().addShadowClasses(ShadowShadowedCounter.class).build();
+  }
+
+  /** Returns a sandbox that instruments the fixtures and applies their shadows. */
+  static Sandbox newSandbox() {
+    Sandbox sandbox = new Sandbox(new SandboxClassLoader(newConfig()));
+    ShadowMap shadowMap = newShadowMap();
+    sandbox.replaceShadowMap(shadowMap);
+    Interceptors interceptors = new Interceptors();
+    sandbox.configure(
+        new ShadowWrangler(shadowMap, ShadowMatcher.MATCH_ALL, interceptors), interceptors);
+    return sandbox;
+  }
+
+  private BenchmarkFixtures() {}
+}
@@ -0,0 +1,69 @@
+package org.robolectric.internal.bytecode;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures {@link ClassInstrumentor#instrument} on a small and a large class. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClassInstrumentorBenchmark {
+
+  @Param({
+    "org.robolectric.benchmarks.fixtures.ShadowedCounter",
+    "com.google.common.collect.ImmutableMap",
+  })
+  public String className;
+
+  private final ClassInstrumentor classInstrumentor = new ClassInstrumentor();
+  private final InstrumentationConfiguration config = BenchmarkFixtures.newConfig();
+  private final ClassNodeProvider classNodeProvider =
+      new ClassNodeProvider() {
+        @Override
+        protected byte[] getClassBytes(String internalClassName) throws ClassNotFoundException {
+          try {
+            return readClass(internalClassName);
+          } catch (IOException e) {
+            throw new ClassNotFoundException(internalClassName, e);
+          }
+        }
+      };
+  private ClassDetails classDetails;
+
+  @Setup
+  public void setUp() throws IOException {
+    classDetails = new ClassDetails(readClass(className.replace('.', '/')));
+  }
+
+  @Benchmark
+  public byte[] instrument() {
+    return classInstrumentor.instrument(classDetails, config, classNodeProvider);
+  }
+
+  private static byte[] readClass(String internalClassName) throws IOException {
+    String resourceName = internalClassName + ".class";
+    try (InputStream in =
+        ClassInstrumentorBenchmark.class.getClassLoader().getResourceAsStream(resourceName)) {
+      if (in == null) {
+        throw new IOException("no class file " + resourceName);
+      }
+      return ByteStreams.toByteArray(in);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.robolectric.internal.bytecode;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares contended lookup throughput of {@link ClassValueMap} against the synchronized {@link
+ * WeakHashMap} it used to wrap.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ClassValueMapBenchmark {
+  private static final Class<?>[] KEYS = {
+    String.class, Integer.class, Long.class, Object.class, Thread.class, Map.class, Class.class,
+  };
+
+  private final ClassValueMap<String> classValueMap =
+      new ClassValueMap<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+          return type.getName();
+        }
+      };
+
+  private final Map<Class<?>, String> synchronizedMap =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  @Benchmark
+  public int classValueMap() {
+    int total = 0;
+    for (Class<?> key : KEYS) {
+      total += classValueMap.get(key).length();
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int synchronizedWeakHashMap() {
+    int total = 0;
+    for (Class<?> key : KEYS) {
+      total += synchronizedMap.computeIfAbsent(key, Class::getName).length();
+    }
+    return total;
+  }
+}
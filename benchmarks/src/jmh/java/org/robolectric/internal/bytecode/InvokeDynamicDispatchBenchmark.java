@@ -0,0 +1,61 @@
+package org.robolectric.internal.bytecode;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.benchmarks.fixtures.Counter;
+import org.robolectric.benchmarks.fixtures.ShadowedCounter;
+
+/**
+ * Measures calls to instrumented methods once their invokedynamic call sites, bound by {@link
+ * InvokeDynamicSupport}, are linked: both calls through to the original code and calls dispatched
+ * to a shadow.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InvokeDynamicDispatchBenchmark {
+  private Sandbox sandbox;
+  private IntUnaryOperator counter;
+  private IntUnaryOperator shadowedCounter;
+  private int value;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException {
+    sandbox = BenchmarkFixtures.newSandbox();
+    counter = newInstance(Counter.class);
+    shadowedCounter = newInstance(ShadowedCounter.class);
+  }
+
+  @TearDown
+  public void tearDown() {
+    sandbox.shutdown();
+  }
+
+  @Benchmark
+  public int callThrough() {
+    return counter.applyAsInt(++value);
+  }
+
+  @Benchmark
+  public int shadowed() {
+    return shadowedCounter.applyAsInt(++value);
+  }
+
+  private IntUnaryOperator newInstance(Class<?> clazz) throws ReflectiveOperationException {
+    return (IntUnaryOperator) sandbox.bootstrappedClass(clazz).getConstructor().newInstance();
+  }
+}
@@ -0,0 +1,95 @@
+package org.robolectric.internal.bytecode;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.robolectric.benchmarks.fixtures.Counter;
+import org.robolectric.benchmarks.fixtures.ShadowedCounter;
+
+/**
+ * Measures {@link SandboxClassLoader#loadClass(String)}, both for classes that must be read and
+ * instrumented (cold) and for classes the sandbox has already defined (warm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SandboxClassLoaderBenchmark {
+  private static final String[] CLASS_NAMES = {
+    Counter.class.getName(), ShadowedCounter.class.getName(),
+  };
+
+  /**
+   * A new class loader without instrumented class caches for every invocation, so that every class
+   * load is cold.
+   */
+  @State(Scope.Thread)
+  public static class ColdClassLoader {
+    SandboxClassLoader classLoader;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+      // Bypass the instrumented class caches, which would serve every class after the first
+      // invocation without instrumenting it.
+      classLoader =
+          new SandboxClassLoader(
+              Thread.currentThread().getContextClassLoader(),
+              BenchmarkFixtures.newConfig(),
+              new UrlResourceProvider(),
+              new ClassInstrumentor(new ShadowDecorator()),
+              /* diskCache= */ null,
+              /* memoryCache= */ null);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+      classLoader.close();
+    }
+  }
+
+  /** A class loader that has already loaded every class. */
+  @State(Scope.Thread)
+  public static class WarmClassLoader {
+    SandboxClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException {
+      classLoader = new SandboxClassLoader(BenchmarkFixtures.newConfig());
+      for (String className : CLASS_NAMES) {
+        classLoader.loadClass(className);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      classLoader.close();
+    }
+  }
+
+  @Benchmark
+  public void coldLoad(ColdClassLoader state, Blackhole blackhole) throws ClassNotFoundException {
+    for (String className : CLASS_NAMES) {
+      blackhole.consume(state.classLoader.loadClass(className));
+    }
+  }
+
+  @Benchmark
+  public void warmLoad(WarmClassLoader state, Blackhole blackhole) throws ClassNotFoundException {
+    for (String className : CLASS_NAMES) {
+      blackhole.consume(state.classLoader.loadClass(className));
+    }
+  }
+}
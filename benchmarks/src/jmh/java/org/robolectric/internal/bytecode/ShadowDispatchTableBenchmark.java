@@ -0,0 +1,68 @@
+package org.robolectric.internal.bytecode;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.robolectric.benchmarks.fixtures.ShadowedCounter;
+import org.robolectric.sandbox.ShadowMatcher;
+
+/**
+ * Measures the first-call latency of a shadowed class: linking every one of its call sites with a
+ * {@link ShadowWrangler} that hasn't linked any of them yet, as happens when a test first uses the
+ * class.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShadowDispatchTableBenchmark {
+  private final ShadowMap shadowMap = BenchmarkFixtures.newShadowMap();
+  private ShadowWrangler shadowWrangler;
+
+  @Setup(Level.Invocation)
+  public void setUp() {
+    // Tables are shared by ShadowWranglers with equal shadow maps; start from none.
+    ShadowWrangler.clearDispatchTables();
+    shadowWrangler = new ShadowWrangler(shadowMap, ShadowMatcher.MATCH_ALL, new Interceptors());
+  }
+
+  @Benchmark
+  public void linkAllCallSites(Blackhole blackhole) throws IllegalAccessException {
+    blackhole.consume(
+        findShadowMethodHandle(
+            "applyAsInt", methodType(int.class, ShadowedCounter.class, int.class), false));
+    blackhole.consume(
+        findShadowMethodHandle(
+            "applyAsInt",
+            methodType(int.class, ShadowedCounter.class, int.class, int.class),
+            false));
+    blackhole.consume(findShadowMethodHandle("twice", methodType(int.class, int.class), true));
+    blackhole.consume(
+        findShadowMethodHandle(
+            ShadowConstants.CONSTRUCTOR_METHOD_NAME,
+            methodType(void.class, ShadowedCounter.class),
+            false));
+  }
+
+  private MethodHandle findShadowMethodHandle(String name, MethodType methodType, boolean isStatic)
+      throws IllegalAccessException {
+    return shadowWrangler.findShadowMethodHandle(
+        ShadowedCounter.class, name, methodType, isStatic, /* isNative= */ false);
+  }
+}
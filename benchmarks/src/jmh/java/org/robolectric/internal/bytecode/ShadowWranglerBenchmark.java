@@ -0,0 +1,74 @@
+package org.robolectric.internal.bytecode;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.benchmarks.fixtures.Counter;
+import org.robolectric.benchmarks.fixtures.ShadowedCounter;
+import org.robolectric.sandbox.ShadowMatcher;
+
+/**
+ * Measures {@link ShadowWrangler#findShadowMethodHandle}, which runs each time an invokedynamic
+ * call site in instrumented code is linked or relinked.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShadowWranglerBenchmark {
+  private final ShadowWrangler shadowWrangler =
+      new ShadowWrangler(
+          BenchmarkFixtures.newShadowMap(), ShadowMatcher.MATCH_ALL, new Interceptors());
+
+  @Benchmark
+  public MethodHandle shadowedInstanceMethod() throws IllegalAccessException {
+    return shadowWrangler.findShadowMethodHandle(
+        ShadowedCounter.class,
+        "applyAsInt",
+        methodType(int.class, ShadowedCounter.class, int.class),
+        /* isStatic= */ false,
+        /* isNative= */ false);
+  }
+
+  @Benchmark
+  public MethodHandle shadowedStaticMethod() throws IllegalAccessException {
+    return shadowWrangler.findShadowMethodHandle(
+        ShadowedCounter.class,
+        "twice",
+        methodType(int.class, int.class),
+        /* isStatic= */ true,
+        /* isNative= */ false);
+  }
+
+  @Benchmark
+  public MethodHandle unimplementedMethodOfShadowedClass() throws IllegalAccessException {
+    return shadowWrangler.findShadowMethodHandle(
+        ShadowedCounter.class,
+        "applyAsInt",
+        methodType(int.class, ShadowedCounter.class, int.class, int.class),
+        /* isStatic= */ false,
+        /* isNative= */ false);
+  }
+
+  @Benchmark
+  public MethodHandle unshadowedClass() throws IllegalAccessException {
+    return shadowWrangler.findShadowMethodHandle(
+        Counter.class,
+        "applyAsInt",
+        methodType(int.class, Counter.class, int.class),
+        /* isStatic= */ false,
+        /* isNative= */ false);
+  }
+}
@@ -0,0 +1,83 @@
+package org.robolectric.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * A {@link RunnerScheduler} that runs the test groups of a {@link SandboxTestRunner} concurrently,
+ * one thread per pooled sandbox.
+ *
+ * <p>Each scheduled group still runs all of its tests on its own sandbox's main thread; this only
+ * lets groups on different sandboxes overlap.
+ */
+public class SandboxPoolScheduler implements RunnerScheduler {
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final int threadCount;
+  private final List<Future<?>> scheduled = new ArrayList<>();
+  private ExecutorService executorService;
+
+  public SandboxPoolScheduler(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
+  @Override
+  public synchronized void schedule(Runnable childStatement) {
+    if (executorService == null) {
+      int pool = POOL_COUNT.incrementAndGet();
+      AtomicInteger threads = new AtomicInteger();
+      executorService =
+          Executors.newFixedThreadPool(
+              threadCount,
+              r -> {
+                Thread thread =
+                    new Thread(
+                        r, "Robolectric sandbox pool " + pool + "-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    scheduled.add(executorService.submit(childStatement));
+  }
+
+  @Override
+  public void finished() {
+    List<Future<?>> futures;
+    ExecutorService executor;
+    synchronized (this) {
+      futures = new ArrayList<>(scheduled);
+      executor = executorService;
+      scheduled.clear();
+      executorService = null;
+    }
+    try {
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // Scheduled statements report their own failures; see SandboxTestRunner.
+          throw new AssertionError(e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+        try {
+          executor.awaitTermination(5, SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
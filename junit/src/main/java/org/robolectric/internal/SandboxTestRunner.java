@@ -2,6 +2,7 @@ package org.robolectric.internal;
 
 import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toList;
 
 import com.google.common.base.Splitter;
 import java.lang.reflect.Field;
@@ -9,7 +10,6 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -20,7 +20,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -34,8 +37,11 @@ import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.MultipleFailureException;
+import org.junit.runners.model.RunnerScheduler;
 import org.junit.runners.model.Statement;
 import org.junit.runners.model.TestClass;
+import org.robolectric.TestMetadata;
 import org.robolectric.internal.bytecode.ClassHandler;
 import org.robolectric.internal.bytecode.ClassHandlerBuilder;
 import org.robolectric.internal.bytecode.ClassInstrumentor;
@@ -54,6 +60,7 @@ import org.robolectric.pluginapi.perf.PerfStatsReporter;
 import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.util.PerfStatsCollector;
 import org.robolectric.util.PerfStatsCollector.Event;
+import org.robolectric.util.PerfStatsCollector.Recording;
 import org.robolectric.util.ReflectionHelpers;
 import org.robolectric.util.Util;
 import org.robolectric.util.inject.Injector;
@@ -81,12 +88,26 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
   private final HashMap<Class<?>, Sandbox> loadedTestClasses = new HashMap<>();
   private final HashSet<Class<?>> invokedBeforeClasses = new HashSet<>();
 
-  private final HashMap<Class<?>, HelperTestRunner> helperRunners = new HashMap<>();
-  private final WeakHashMap<Sandbox, LinkageError> firstLinkageErrors = new WeakHashMap<>();
+  // Accessed concurrently when sandbox groups are dispatched through a parallel scheduler.
+  private final Map<Class<?>, HelperTestRunner> helperRunners = new ConcurrentHashMap<>();
+  private final Map<Sandbox, LinkageError> firstLinkageErrors =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  // The pool index of each test that runs on a pooled sandbox other than the first.
+  private final Map<FrameworkMethod, Integer> methodPoolIndexes = new ConcurrentHashMap<>();
+  private RunnerScheduler scheduler;
 
   private static final boolean USE_LEGACY_SANDBOX_FLOW =
       Boolean.getBoolean("robolectric.useLegacySandboxFlow");
 
+  /**
+   * The number of identical sandboxes to run each group of tests on concurrently. Tests that would
+   * share a sandbox are distributed round-robin across the pool, and the pool's groups are run in
+   * parallel. Static state in sandboxed classes, including {@code RuntimeEnvironment}, is isolated
+   * per sandbox, but JVM-wide state such as the default {@link java.util.Locale} is not.
+   */
+  private static final int PARALLEL_SANDBOXES =
+      Math.max(1, Integer.getInteger("robolectric.parallelSandboxes", 1));
+
   public SandboxTestRunner(Class<?> klass) throws InitializationError {
     this(klass, DEFAULT_INJECTOR);
   }
@@ -98,7 +119,32 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
     interceptors = new Interceptors(findInterceptors());
     shadowProviders = injector.getInstance(ShadowProviders.class);
     classHandlerBuilder = injector.getInstance(ClassHandlerBuilder.class);
-    perfStatsReporters = Arrays.asList(injector.getInstance(PerfStatsReporter[].class));
+    perfStatsReporters =
+        stream(injector.getInstance(PerfStatsReporter[].class))
+            .filter(PerfStatsReporter::isEnabled)
+            .collect(toList());
+
+    // The legacy flow runs every test on a shared sandbox, so its tests can't run concurrently.
+    if (PARALLEL_SANDBOXES > 1 && !USE_LEGACY_SANDBOX_FLOW) {
+      setScheduler(new SandboxPoolScheduler(PARALLEL_SANDBOXES));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Groups of tests that run in different sandboxes are dispatched through the scheduler, so a
+   * parallel scheduler (e.g. from {@link org.junit.experimental.ParallelComputer}) runs them
+   * concurrently. Tests within a group always run sequentially on their sandbox's main thread.
+   * Only the legacy sandbox flow passes the scheduler on to {@link
+   * org.junit.runners.ParentRunner}, which uses it to run individual tests.
+   */
+  @Override
+  public void setScheduler(RunnerScheduler scheduler) {
+    if (USE_LEGACY_SANDBOX_FLOW) {
+      super.setScheduler(scheduler);
+    }
+    this.scheduler = scheduler;
   }
 
   @Nonnull
@@ -133,11 +179,23 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
         ReflectionHelpers.callInstanceMethod(this, "getFilteredChildren");
     // Use a linked hashmap as a slight improvement to run tests in the order of getChildren.
     Map<Sandbox, List<FrameworkMethod>> methodsBySandbox = new LinkedHashMap<>();
+    Map<Sandbox, Integer> methodCounts = new HashMap<>();
+    // Each group holds the sandboxes it was given here until it is done with them.
+    Map<Sandbox, Integer> acquisitions = new HashMap<>();
     for (FrameworkMethod method : children) {
       Description description = describeChild(method);
       if (!isIgnored(method)) {
         try {
           Sandbox sandbox = getSandbox(method);
+          acquisitions.merge(sandbox, 1, Integer::sum);
+          if (PARALLEL_SANDBOXES > 1) {
+            int poolIndex = (methodCounts.merge(sandbox, 1, Integer::sum) - 1) % PARALLEL_SANDBOXES;
+            if (poolIndex > 0) {
+              sandbox = getSandbox(method, poolIndex);
+              acquisitions.merge(sandbox, 1, Integer::sum);
+              methodPoolIndexes.put(method, poolIndex);
+            }
+          }
           methodsBySandbox.computeIfAbsent(sandbox, k -> new ArrayList<>()).add(method);
         } catch (IllegalArgumentException e) {
           notifier.fireTestStarted(description);
@@ -152,18 +210,49 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
     return new Statement() {
       @Override
       public void evaluate() throws Throwable {
-        // generating nested statement for all the tests in each sandboxes
+        if (scheduler == null) {
+          // generating nested statement for all the tests in each sandboxes
+          for (Map.Entry<Sandbox, List<FrameworkMethod>> entry : methodsBySandbox.entrySet()) {
+            int acquired = acquisitions.get(entry.getKey());
+            sandboxGroupStatement(entry.getKey(), acquired, entry.getValue(), notifier).evaluate();
+          }
+          return;
+        }
+
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
         for (Map.Entry<Sandbox, List<FrameworkMethod>> entry : methodsBySandbox.entrySet()) {
-          Sandbox sandbox = entry.getKey();
-          FrameworkMethod firstMethod = entry.getValue().get(0);
+          int acquired = acquisitions.get(entry.getKey());
+          scheduler.schedule(
+              () -> {
+                try {
+                  sandboxGroupStatement(entry.getKey(), acquired, entry.getValue(), notifier)
+                      .evaluate();
+                } catch (Throwable throwable) {
+                  errors.add(throwable);
+                }
+              });
+        }
+        scheduler.finished();
+        MultipleFailureException.assertEmpty(new ArrayList<>(errors));
+      }
+    };
+  }
 
-          // Recreate the sandbox if the stored sandbox is removed from the cache
-          if (sandbox.isShutdown()) {
-            sandbox = getSandbox(firstMethod);
-          }
-          Statement statement = childrenInvoker(entry.getValue(), notifier);
+  /**
+   * Runs a group of tests in {@code sandbox}, then releases it {@code acquired} times. Holding the
+   * sandbox until then keeps it from being shut down between the group's tests.
+   */
+  private Statement sandboxGroupStatement(
+      Sandbox sandbox, int acquired, List<FrameworkMethod> methods, RunNotifier notifier) {
+    FrameworkMethod firstMethod = methods.get(0);
+    return new Statement() {
+      @Override
+      public void evaluate() throws Throwable {
+        try {
+          Statement statement = childrenInvoker(methods, notifier);
 
-          Class<?> bootstrappedTestClass = sandbox.bootstrappedClass(getTestClass().getJavaClass());
+          Class<?> bootstrappedTestClass =
+              sandbox.bootstrappedClass(getTestClass().getJavaClass());
 
           HelperTestRunner helperTestRunner = getCachedHelperTestRunner(bootstrappedTestClass);
           statement = helperTestRunner.withBeforeClasses(statement);
@@ -172,8 +261,11 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
           statement = withClassRules(statement, bootstrappedTestClass);
 
           // Use the first method to setup a sandbox and invoke everything in that sandbox
-          Statement statementsOfTestGroup = inSandboxThread(sandbox, firstMethod, statement);
-          statementsOfTestGroup.evaluate();
+          inSandboxThread(sandbox, firstMethod, statement).evaluate();
+        } finally {
+          for (int i = 0; i < acquired; i++) {
+            releaseSandbox(sandbox);
+          }
         }
       }
     };
@@ -237,26 +329,45 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
   }
 
   private Statement withClassRulesInSandbox(Statement statement) {
-    for (FrameworkMethod frameworkMethod : getChildren()) {
-      Sandbox sandbox = getSandbox(frameworkMethod);
-      Class<?> bootstrappedTestClass = sandbox.bootstrappedClass(getTestClass().getJavaClass());
+    // The class rules run on the sandbox that each test gets for itself, so the sandboxes are held
+    // until the whole class has run.
+    List<Sandbox> acquired = new ArrayList<>();
+    try {
+      for (FrameworkMethod frameworkMethod : getChildren()) {
+        Sandbox sandbox = getSandbox(frameworkMethod);
+        acquired.add(sandbox);
+        Class<?> bootstrappedTestClass = sandbox.bootstrappedClass(getTestClass().getJavaClass());
 
-      if (!loadedTestClasses.containsKey(bootstrappedTestClass)) {
-        loadedTestClasses.put(bootstrappedTestClass, sandbox);
+        if (!loadedTestClasses.containsKey(bootstrappedTestClass)) {
+          loadedTestClasses.put(bootstrappedTestClass, sandbox);
 
-        // Configure sandbox *BEFORE* setting the ClassLoader. This is necessary because
-        // creating the ShadowMap loads all ShadowProviders via ServiceLoader and this is
-        // not available once we install the Robolectric class loader.
-        configureSandbox(sandbox, frameworkMethod);
+          // Configure sandbox *BEFORE* setting the ClassLoader. This is necessary because
+          // creating the ShadowMap loads all ShadowProviders via ServiceLoader and this is
+          // not available once we install the Robolectric class loader.
+          configureSandbox(sandbox, frameworkMethod);
 
-        HelperTestRunner helperTestRunner = getCachedHelperTestRunner(bootstrappedTestClass);
-        List<TestRule> classRules = helperTestRunner.classRules();
-        for (TestRule classRule : classRules) {
-          statement = applyRuleInSandbox(classRule, sandbox, statement, getDescription());
+          HelperTestRunner helperTestRunner = getCachedHelperTestRunner(bootstrappedTestClass);
+          List<TestRule> classRules = helperTestRunner.classRules();
+          for (TestRule classRule : classRules) {
+            statement = applyRuleInSandbox(classRule, sandbox, statement, getDescription());
+          }
         }
       }
+    } catch (RuntimeException | Error e) {
+      acquired.forEach(this::releaseSandbox);
+      throw e;
     }
-    return statement;
+    Statement withClassRules = statement;
+    return new Statement() {
+      @Override
+      public void evaluate() throws Throwable {
+        try {
+          withClassRules.evaluate();
+        } finally {
+          acquired.forEach(SandboxTestRunner.this::releaseSandbox);
+        }
+      }
+    };
   }
 
   private Statement applyRuleInSandbox(
@@ -344,6 +455,25 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
     return new Sandbox(instrumentationConfiguration, new UrlResourceProvider(), classInstrumentor);
   }
 
+  /**
+   * Returns a sandbox configured identically to {@link #getSandbox(FrameworkMethod)}, but distinct
+   * from the sandboxes returned for other pool indexes. Used when {@code
+   * robolectric.parallelSandboxes} is set to run tests that would share a sandbox concurrently.
+   *
+   * @param poolIndex a number between 1 and the pool size, exclusive.
+   */
+  @Nonnull
+  protected Sandbox getSandbox(FrameworkMethod method, int poolIndex) {
+    return getSandbox(method);
+  }
+
+  /**
+   * Called once the runner is done with a sandbox returned by {@link #getSandbox(FrameworkMethod)}
+   * or {@link #getSandbox(FrameworkMethod, int)}, so that runners that cache sandboxes know when it
+   * may be shut down.
+   */
+  protected void releaseSandbox(Sandbox sandbox) {}
+
   /**
    * Create an {@link InstrumentationConfiguration} suitable for the provided {@link
    * FrameworkMethod}.
@@ -422,29 +552,57 @@ public class SandboxTestRunner extends BlockJUnit4ClassRunner {
       public void evaluate() throws Throwable {
         PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
         perfStatsCollector.setEnabled(!perfStatsReporters.isEmpty());
+        // Tests in other sandbox groups may be running at the same time, so keep this test's
+        // metrics and metadata apart from theirs.
+        Recording recording = scheduler == null ? null : perfStatsCollector.newRecording();
+        Recording previousRecording = perfStatsCollector.setCurrentRecording(recording);
+        try {
+          perfStatsCollector.putMetadata(
+              TestMetadata.class, new TestMetadata(getTestClass().getName(), method.getName()));
 
-        Event initialization = perfStatsCollector.startEvent("initialization");
-
-        final Sandbox sandbox = getSandbox(method);
+          Event initialization = perfStatsCollector.startEvent("initialization");
 
-        // Configure sandbox *BEFORE* setting the ClassLoader. This is necessary because
-        // creating the ShadowMap loads all ShadowProviders via ServiceLoader and this is
-        // not available once we install the Robolectric class loader.
-        configureSandbox(sandbox, method);
-
-        if (USE_LEGACY_SANDBOX_FLOW) {
-          final PerfStatsCollector finalPerfStatsCollector = perfStatsCollector;
-          final Event finalInitialization = initialization;
-          sandbox.runOnMainThread(
-              () ->
-                  executeInSandbox(sandbox, method, finalPerfStatsCollector, finalInitialization));
-        } else {
-          executeInSandbox(sandbox, method, perfStatsCollector, initialization);
+          int poolIndex = methodPoolIndexes.getOrDefault(method, 0);
+          Sandbox sandbox = poolIndex == 0 ? getSandbox(method) : getSandbox(method, poolIndex);
+          try {
+            // Configure sandbox *BEFORE* setting the ClassLoader. This is necessary because
+            // creating the ShadowMap loads all ShadowProviders via ServiceLoader and this is
+            // not available once we install the Robolectric class loader.
+            configureSandbox(sandbox, method);
+
+            runInSandbox(sandbox, method, perfStatsCollector, recording, initialization);
+          } finally {
+            releaseSandbox(sandbox);
+          }
+        } finally {
+          perfStatsCollector.setCurrentRecording(previousRecording);
         }
       }
     };
   }
 
+  private void runInSandbox(
+      Sandbox sandbox,
+      FrameworkMethod method,
+      PerfStatsCollector perfStatsCollector,
+      @Nullable Recording recording,
+      Event initialization) {
+    if (USE_LEGACY_SANDBOX_FLOW) {
+      sandbox.runOnMainThread(
+          () -> {
+            // The sandbox's main thread runs the test, so it needs the recording too.
+            Recording previousRecording = perfStatsCollector.setCurrentRecording(recording);
+            try {
+              executeInSandbox(sandbox, method, perfStatsCollector, initialization);
+            } finally {
+              perfStatsCollector.setCurrentRecording(previousRecording);
+            }
+          });
+    } else {
+      executeInSandbox(sandbox, method, perfStatsCollector, initialization);
+    }
+  }
+
   private void executeInSandbox(
       final Sandbox sandbox,
       final FrameworkMethod method,
@@ -0,0 +1,49 @@
+package org.robolectric.pluginapi;
+
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Decides which cached sandboxes should be shut down. Robolectric keeps sandboxes alive between
+ * tests so that later tests with the same configuration don't pay for sandbox creation again;
+ * implement this interface to trade that speed against heap usage differently.
+ *
+ * <p>This is an extension point for Robolectric; see {@link org.robolectric.pluginapi} for details.
+ */
+@ExtensionPoint
+public interface SandboxCachePolicy {
+
+  /**
+   * Selects the sandboxes to evict from the cache.
+   *
+   * <p>Called each time a test requests a sandbox or is done with one. Sandboxes that are in use by
+   * a test are never evicted, even if they are selected; they are listed as the most recently used.
+   *
+   * @param cachedSandboxes the cached sandboxes, least recently used first.
+   * @return the sandboxes to shut down.
+   */
+  @Nonnull
+  List<CachedSandbox> selectEvictions(List<CachedSandbox> cachedSandboxes);
+
+  /** Information about a cached sandbox. */
+  interface CachedSandbox {
+
+    /** Returns the SDK the sandbox simulates. */
+    Sdk getSdk();
+
+    /** Returns the time it took to create the sandbox, in nanoseconds. */
+    long getCreationTimeNs();
+
+    /**
+     * Returns the time since a test was last done with the sandbox, in nanoseconds, or 0 while a
+     * test is using it.
+     */
+    long getIdleTimeNs();
+
+    /**
+     * Returns a rough estimate of the memory retained by the sandbox, in bytes: the growth in used
+     * heap while it was created, plus the size of the classes it has defined since.
+     */
+    long getEstimatedRetainedBytes();
+  }
+}
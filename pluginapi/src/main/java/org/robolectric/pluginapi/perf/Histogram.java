@@ -0,0 +1,137 @@
+package org.robolectric.pluginapi.perf;
+
+import java.util.Arrays;
+
+/**
+ * A latency distribution for perf stats collection.
+ *
+ * <p>Values are counted in logarithmic buckets: values below 8ns are exact, and every larger bucket
+ * spans at most 12.5% of its lower bound, so percentiles are accurate to within that error no
+ * matter the scale.
+ */
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  /** The number of buckets needed to cover every non-negative {@code long} value. */
+  public static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  // Allocated on the first recorded value, so that empty histograms are cheap.
+  private long[] bucketCounts;
+  private long totalCount;
+
+  public Histogram() {}
+
+  /**
+   * Creates a histogram from bucket counts, indexed as by {@link #bucketIndex(long)}.
+   *
+   * @throws IllegalArgumentException if {@code bucketCounts} doesn't have {@link #BUCKET_COUNT}
+   *     entries.
+   */
+  public Histogram(long[] bucketCounts) {
+    if (bucketCounts.length != BUCKET_COUNT) {
+      throw new IllegalArgumentException(
+          "expected " + BUCKET_COUNT + " buckets but got " + bucketCounts.length);
+    }
+    this.bucketCounts = bucketCounts.clone();
+    for (long bucketCount : bucketCounts) {
+      totalCount += bucketCount;
+    }
+  }
+
+  /** Returns the index of the bucket counting {@code valueNs}. Negative values count as zero. */
+  public static int bucketIndex(long valueNs) {
+    if (valueNs < SUB_BUCKET_COUNT) {
+      return (int) Math.max(0, valueNs);
+    }
+    int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(valueNs) - SUB_BUCKET_BITS;
+    int subBucket = (int) (valueNs >>> shift) - SUB_BUCKET_COUNT;
+    return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /** Returns the smallest value counted by bucket {@code index}. */
+  public static long bucketLowerBoundNs(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    return (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+  }
+
+  /** Returns the largest value counted by bucket {@code index}. */
+  public static long bucketUpperBoundNs(int index) {
+    return index == BUCKET_COUNT - 1 ? Long.MAX_VALUE : bucketLowerBoundNs(index + 1) - 1;
+  }
+
+  public void record(long valueNs) {
+    buckets()[bucketIndex(valueNs)]++;
+    totalCount++;
+  }
+
+  /** Adds all values counted by {@code other} to this histogram. */
+  public void add(Histogram other) {
+    if (other.totalCount == 0) {
+      return;
+    }
+    long[] buckets = buckets();
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] += other.bucketCounts[i];
+    }
+    totalCount += other.totalCount;
+  }
+
+  private long[] buckets() {
+    if (bucketCounts == null) {
+      bucketCounts = new long[BUCKET_COUNT];
+    }
+    return bucketCounts;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getBucketCount(int index) {
+    return bucketCounts == null ? 0 : bucketCounts[index];
+  }
+
+  /**
+   * Returns an upper bound for the value at {@code percentile}, which must be between 0 and 100, or
+   * 0 if the histogram is empty.
+   */
+  public long getValueAtPercentileNs(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile / 100.0 * totalCount);
+    rank = Math.max(1, Math.min(rank, totalCount));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += bucketCounts[i];
+      if (seen >= rank) {
+        return bucketUpperBoundNs(i);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Histogram)) {
+      return false;
+    }
+    Histogram that = (Histogram) o;
+    if (totalCount == 0 || that.totalCount == 0) {
+      return totalCount == that.totalCount;
+    }
+    return Arrays.equals(bucketCounts, that.bucketCounts);
+  }
+
+  @Override
+  public int hashCode() {
+    return totalCount == 0 ? 0 : Arrays.hashCode(bucketCounts);
+  }
+}
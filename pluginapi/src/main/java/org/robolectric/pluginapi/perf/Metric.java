@@ -9,6 +9,7 @@ public class Metric {
   private long elapsedNs;
   private long minNs;
   private long maxNs;
+  private Histogram histogram;
   private final boolean success;
 
   public Metric(String name, int count, int elapsedNs, boolean success) {
@@ -18,6 +19,28 @@ public class Metric {
     this.success = success;
   }
 
+  /**
+   * Creates a metric from already aggregated values.
+   *
+   * @param histogram the distribution of recorded durations, or null if none were recorded.
+   */
+  public Metric(
+      String name,
+      int count,
+      long elapsedNs,
+      long minNs,
+      long maxNs,
+      Histogram histogram,
+      boolean success) {
+    this.name = name;
+    this.count = count;
+    this.elapsedNs = elapsedNs;
+    this.minNs = minNs;
+    this.maxNs = maxNs;
+    this.histogram = histogram;
+    this.success = success;
+  }
+
   public Metric(String name, boolean success) {
     this(name, 0, 0, success);
   }
@@ -46,6 +69,34 @@ public class Metric {
     return success;
   }
 
+  /**
+   * Returns the distribution of recorded durations. Occurrences counted with {@link
+   * #incrementCount()} have no duration and aren't included.
+   */
+  public Histogram getHistogram() {
+    return histogram == null ? new Histogram() : histogram;
+  }
+
+  /**
+   * Returns an estimate of the duration at {@code percentile} (between 0 and 100), or 0 if no
+   * durations were recorded.
+   */
+  public long getPercentileNs(double percentile) {
+    if (histogram == null || histogram.getTotalCount() == 0) {
+      return 0;
+    }
+    long valueNs = histogram.getValueAtPercentileNs(percentile);
+    return Math.max(minNs, Math.min(maxNs, valueNs));
+  }
+
+  public long getP50Ns() {
+    return getPercentileNs(50);
+  }
+
+  public long getP99Ns() {
+    return getPercentileNs(99);
+  }
+
   public void record(long elapsedNs) {
     if (count == 0 || elapsedNs < minNs) {
       minNs = elapsedNs;
@@ -57,6 +108,11 @@ public class Metric {
 
     this.elapsedNs += elapsedNs;
 
+    if (histogram == null) {
+      histogram = new Histogram();
+    }
+    histogram.record(elapsedNs);
+
     count++;
   }
 
@@ -100,6 +156,10 @@ public class Metric {
         + minNs
         + ", maxNs="
         + maxNs
+        + ", p50Ns="
+        + getP50Ns()
+        + ", p99Ns="
+        + getP99Ns()
         + ", elapsedNs="
         + elapsedNs
         + ", success="
@@ -7,8 +7,21 @@ public interface PerfStatsReporter {
   /**
    * Report performance stats.
    *
+   * <p>Besides totals, each metric carries the distribution of its durations; see {@link
+   * Metric#getHistogram()} and {@link Metric#getPercentileNs(double)}. Histograms from several
+   * reports can be combined with {@link Histogram#add(Histogram)}.
+   *
    * @param metadata metadata about this set of metrics.
    * @param metrics the metrics.
    */
   void report(Metadata metadata, Collection<Metric> metrics);
+
+  /**
+   * Returns whether this reporter is active. Perf stats are only collected if at least one
+   * reporter is enabled, so reporters that are always installed but need to be switched on (e.g.
+   * by a system property) should return false until they are.
+   */
+  default boolean isEnabled() {
+    return true;
+  }
 }
@@ -50,6 +50,18 @@ val instrumentAll by
     }
   }
 
+// Usage: ./gradlew :preinstrumented:benchmarkInstrumentation -PbenchmarkJar=<android-all jar>
+val benchmarkInstrumentation by
+  tasks.registering(JavaExec::class) {
+    classpath = sourceSets.getByName("test").runtimeClasspath
+    mainClass.set("org.robolectric.preinstrumented.JarInstrumentorBenchmark")
+    args =
+      listOfNotNull(
+        findProperty("benchmarkJar")?.toString(),
+        findProperty("benchmarkMaxThreads")?.toString(),
+      )
+  }
+
 val emptySourcesJar by tasks.registering(Jar::class) { archiveClassifier.set("sources") }
 
 val emptyJavadocJar by tasks.registering(Jar::class) { archiveClassifier.set("javadoc") }
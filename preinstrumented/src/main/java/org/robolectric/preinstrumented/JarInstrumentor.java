@@ -5,18 +5,26 @@ import static java.nio.file.Files.newOutputStream;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
@@ -37,6 +45,8 @@ public class JarInstrumentor {
 
   private static final int ONE_MB = 1024 * 1024;
 
+  private static final int PENDING_ENTRIES_PER_THREAD = 64;
+
   private static final Injector INJECTOR = new Injector.Builder().build();
 
   private final ClassInstrumentor classInstrumentor;
@@ -49,6 +59,8 @@ public class JarInstrumentor {
   private ImmutableSet<String> resourceFilesToKeep = ImmutableSet.of();
   private ImmutableSet<String> resourceDirsToKeep = ImmutableSet.of();
 
+  private int threadCount = Runtime.getRuntime().availableProcessors();
+
   public static void main(String[] args) throws IOException, ClassNotFoundException {
     new JarInstrumentor().processCommandLine(args);
   }
@@ -70,6 +82,7 @@ public class JarInstrumentor {
           "Usage: JarInstrumentor"
               + " [--packages_to_keep=file path containing package list]"
               + " [--resources_to_keep=file path containing resource list]"
+              + " [--threads=number of instrumentation threads]"
               + " <source jar> <dest jar> ");
       exit(1);
     }
@@ -103,6 +116,9 @@ public class JarInstrumentor {
             !resourceFilesToKeep.isEmpty() && !resourceDirsToKeep.isEmpty(),
             "Resource files and directories must be specified.");
         hasResourcesToKeepFile = true;
+      } else if (arg.startsWith("--threads=")) {
+        threadCount = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+        Preconditions.checkState(threadCount > 0, "Thread count must be positive.");
       } else if (arg.startsWith("--")) {
         System.err.println("Unknown flag: " + arg);
         exit(1);
@@ -131,8 +147,23 @@ public class JarInstrumentor {
   @VisibleForTesting
   protected void instrumentJar(File sourceJarFile, File destJarFile)
       throws IOException, ClassNotFoundException {
+    instrumentJar(sourceJarFile, destJarFile, threadCount);
+  }
+
+  /**
+   * Performs the JAR instrumentation using {@code threads} worker threads.
+   *
+   * <p>Classes are instrumented concurrently, but entries are always written in the order they
+   * appear in the source JAR, so the output is identical regardless of the thread count.
+   *
+   * @return The number of classes written to the destination JAR.
+   */
+  int instrumentJar(File sourceJarFile, File destJarFile, int threads)
+      throws IOException, ClassNotFoundException {
     long startNs = System.nanoTime();
     JarFile jarFile = new JarFile(sourceJarFile);
+    // ClassNodeProvider caches in a ConcurrentHashMap and JarFile reads are synchronized, so a
+    // single provider can be shared by all worker threads.
     ClassNodeProvider classNodeProvider =
         new ClassNodeProvider() {
           @Override
@@ -151,6 +182,17 @@ public class JarInstrumentor {
       throw new AssertionError("Unable to get Android SDK version from Jar file", e);
     }
 
+    ExecutorService executorService =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("jar-instrumentor-%d")
+                .setDaemon(true)
+                .build());
+    // Bounds the number of instrumented classes held in memory while waiting to be written.
+    int maxPendingEntries = threads * PENDING_ENTRIES_PER_THREAD;
+    Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+
     try (JarOutputStream jarOut =
         new JarOutputStream(
             new BufferedOutputStream(newOutputStream(destJarFile.toPath()), ONE_MB))) {
@@ -165,7 +207,7 @@ public class JarInstrumentor {
         }
         if (name.endsWith("/")) {
           // Copy directories
-          jarOut.putNextEntry(createJarEntry(jarEntry));
+          pendingEntries.add(new PendingEntry(jarEntry, EntryKind.DIRECTORY, null));
         } else if (name.endsWith(".class")) {
           String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
 
@@ -177,49 +219,105 @@ public class JarInstrumentor {
             }
           }
 
-          try {
-            byte[] classBytes = getClassBytes(className, jarFile);
-            ClassDetails classDetails = new ClassDetails(classBytes);
-            byte[] outBytes = classBytes;
-            if (instrumentationConfiguration.shouldInstrument(classDetails)) {
-              outBytes =
-                  classInstrumentor.instrument(
-                      classDetails, instrumentationConfiguration, classNodeProvider);
-            }
-            jarOut.putNextEntry(createJarEntry(jarEntry));
-            jarOut.write(outBytes);
-            classCount++;
-          } catch (NegativeArraySizeException e) {
-            System.err.println(
-                "Skipping instrumenting due to NegativeArraySizeException for class: " + className);
-          }
-        } else {
-          boolean shouldKeep = true;
-          if (hasResourcesToKeepFile) {
-            shouldKeep = resourceFilesToKeep.contains(name);
-            for (String dir : resourceDirsToKeep) {
-              if (name.startsWith(dir)) {
-                shouldKeep = true;
-                break;
-              }
-            }
-          }
-          if (shouldKeep) {
-            jarOut.putNextEntry(createJarEntry(jarEntry));
-            ByteStreams.copy(jarFile.getInputStream(jarEntry), jarOut);
-            nonClassCount++;
-          }
+          Future<byte[]> outBytes =
+              executorService.submit(() -> instrumentClass(className, jarFile, classNodeProvider));
+          pendingEntries.add(new PendingEntry(jarEntry, EntryKind.CLASS, outBytes));
+        } else if (shouldKeepResource(name)) {
+          pendingEntries.add(new PendingEntry(jarEntry, EntryKind.RESOURCE, null));
+        }
+
+        while (pendingEntries.size() > maxPendingEntries) {
+          EntryKind written = writeEntry(pendingEntries.removeFirst(), jarFile, jarOut);
+          classCount += written == EntryKind.CLASS ? 1 : 0;
+          nonClassCount += written == EntryKind.RESOURCE ? 1 : 0;
         }
       }
+      while (!pendingEntries.isEmpty()) {
+        EntryKind written = writeEntry(pendingEntries.removeFirst(), jarFile, jarOut);
+        classCount += written == EntryKind.CLASS ? 1 : 0;
+        nonClassCount += written == EntryKind.RESOURCE ? 1 : 0;
+      }
+    } finally {
+      executorService.shutdownNow();
     }
 
     long elapsedNs = System.nanoTime() - startNs;
     System.out.printf(
         Locale.getDefault(),
-        "Wrote %d classes and %d resources in %1.2f seconds%n",
+        "Wrote %d classes and %d resources in %1.2f seconds using %d threads%n",
         classCount,
         nonClassCount,
-        elapsedNs / 1000000000.0);
+        elapsedNs / 1000000000.0,
+        threads);
+    return classCount;
+  }
+
+  private byte[] instrumentClass(
+      String className, JarFile jarFile, ClassNodeProvider classNodeProvider)
+      throws ClassNotFoundException {
+    byte[] classBytes = getClassBytes(className, jarFile);
+    ClassDetails classDetails = new ClassDetails(classBytes);
+    if (instrumentationConfiguration.shouldInstrument(classDetails)) {
+      return classInstrumentor.instrument(
+          classDetails, instrumentationConfiguration, classNodeProvider);
+    }
+    return classBytes;
+  }
+
+  private boolean shouldKeepResource(String name) {
+    if (!hasResourcesToKeepFile) {
+      return true;
+    }
+    if (resourceFilesToKeep.contains(name)) {
+      return true;
+    }
+    for (String dir : resourceDirsToKeep) {
+      if (name.startsWith(dir)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes a pending entry to {@code jarOut}, waiting for its instrumentation to finish if needed.
+   *
+   * @return The kind of entry written, or null if the entry was skipped.
+   */
+  private static EntryKind writeEntry(PendingEntry pending, JarFile jarFile, JarOutputStream jarOut)
+      throws IOException, ClassNotFoundException {
+    switch (pending.kind) {
+      case DIRECTORY:
+        jarOut.putNextEntry(createJarEntry(pending.jarEntry));
+        return EntryKind.DIRECTORY;
+      case RESOURCE:
+        jarOut.putNextEntry(createJarEntry(pending.jarEntry));
+        ByteStreams.copy(jarFile.getInputStream(pending.jarEntry), jarOut);
+        return EntryKind.RESOURCE;
+      case CLASS:
+        byte[] outBytes;
+        try {
+          outBytes = pending.classBytes.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while instrumenting " + pending.jarEntry, e);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof NegativeArraySizeException) {
+            System.err.println(
+                "Skipping instrumenting due to NegativeArraySizeException for class: "
+                    + pending.jarEntry.getName());
+            return null;
+          }
+          Throwables.throwIfInstanceOf(cause, ClassNotFoundException.class);
+          Throwables.throwIfUnchecked(cause);
+          throw new AssertionError(cause);
+        }
+        jarOut.putNextEntry(createJarEntry(pending.jarEntry));
+        jarOut.write(outBytes);
+        return EntryKind.CLASS;
+    }
+    throw new AssertionError(pending.kind);
   }
 
   private static byte[] getClassBytes(String className, JarFile jarFile)
@@ -253,4 +351,23 @@ public class JarInstrumentor {
     AndroidRelease release = AndroidVersionInitTools.computeReleaseVersion(jarFile);
     return release.getSdkInt();
   }
+
+  private enum EntryKind {
+    DIRECTORY,
+    CLASS,
+    RESOURCE
+  }
+
+  /** A source JAR entry waiting to be written, in source order, to the destination JAR. */
+  private static class PendingEntry {
+    private final JarEntry jarEntry;
+    private final EntryKind kind;
+    private final Future<byte[]> classBytes; // Only set for CLASS entries.
+
+    PendingEntry(JarEntry jarEntry, EntryKind kind, Future<byte[]> classBytes) {
+      this.jarEntry = jarEntry;
+      this.kind = kind;
+      this.classBytes = classBytes;
+    }
+  }
 }
@@ -0,0 +1,58 @@
+package org.robolectric.preinstrumented;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures {@link JarInstrumentor} throughput, in classes per second, for increasing thread counts.
+ *
+ * <p>Usage: {@code JarInstrumentorBenchmark <source jar> [max threads]}. Thread counts are doubled
+ * from one up to the maximum, which defaults to the number of available processors and is always
+ * measured last.
+ *
+ * <p>Run it with {@code ./gradlew :preinstrumented:benchmarkInstrumentation -PbenchmarkJar=<jar>}.
+ */
+public class JarInstrumentorBenchmark {
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    if (args.length < 1) {
+      System.err.println("Usage: JarInstrumentorBenchmark <source jar> [max threads]");
+      System.exit(1);
+    }
+    File sourceJar = new File(args[0]);
+    int maxThreads =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    if (maxThreads < 1) {
+      System.err.println("max threads must be positive");
+      System.exit(1);
+    }
+
+    File destJar = File.createTempFile("instrumented-benchmark", ".jar");
+    destJar.deleteOnExit();
+    JarInstrumentor jarInstrumentor = new JarInstrumentor();
+
+    // Warm up the JIT so the single-threaded run is not penalized.
+    jarInstrumentor.instrumentJar(sourceJar, destJar, maxThreads);
+
+    System.out.println("threads\tclasses/sec");
+    for (int threads : threadCounts(maxThreads)) {
+      long startNs = System.nanoTime();
+      int classCount = jarInstrumentor.instrumentJar(sourceJar, destJar, threads);
+      double elapsedSeconds = (System.nanoTime() - startNs) / 1000000000.0;
+      System.out.printf(Locale.getDefault(), "%d\t%.1f%n", threads, classCount / elapsedSeconds);
+    }
+  }
+
+  /** Returns the powers of two below {@code maxThreads}, followed by {@code maxThreads}. */
+  static List<Integer> threadCounts(int maxThreads) {
+    List<Integer> threadCounts = new ArrayList<>();
+    for (long threads = 1; threads < maxThreads; threads *= 2) {
+      threadCounts.add((int) threads);
+    }
+    threadCounts.add(maxThreads);
+    return threadCounts;
+  }
+}
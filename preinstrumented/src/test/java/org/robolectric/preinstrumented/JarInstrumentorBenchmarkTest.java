@@ -0,0 +1,29 @@
+package org.robolectric.preinstrumented;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test for {@link JarInstrumentorBenchmark}. */
+@RunWith(JUnit4.class)
+public class JarInstrumentorBenchmarkTest {
+
+  @Test
+  public void threadCounts_powerOfTwo() {
+    assertEquals(asList(1, 2, 4, 8), JarInstrumentorBenchmark.threadCounts(8));
+  }
+
+  @Test
+  public void threadCounts_endsWithMaxThreads() {
+    assertEquals(asList(1, 2, 4, 6), JarInstrumentorBenchmark.threadCounts(6));
+    assertEquals(asList(1, 2, 3), JarInstrumentorBenchmark.threadCounts(3));
+  }
+
+  @Test
+  public void threadCounts_singleThread() {
+    assertEquals(asList(1), JarInstrumentorBenchmark.threadCounts(1));
+  }
+}
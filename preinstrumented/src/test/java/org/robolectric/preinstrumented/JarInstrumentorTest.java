@@ -1,20 +1,35 @@
 package org.robolectric.preinstrumented;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 /** Test for {@link JarInstrumentor}. */
 @RunWith(JUnit4.class)
 public class JarInstrumentorTest {
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private JarInstrumentor spyDummyInstrumentor;
 
   @Before
@@ -47,4 +62,71 @@ public class JarInstrumentorTest {
     verify(spyDummyInstrumentor, never()).instrumentJar(any(File.class), any(File.class));
     verify(spyDummyInstrumentor).exit(1);
   }
+
+  @Test
+  public void processCommandLine_threads() throws Exception {
+    spyDummyInstrumentor.processCommandLine(new String[] {"--threads=4", "source.jar", "dest.jar"});
+    verify(spyDummyInstrumentor).instrumentJar(new File("source.jar"), new File("dest.jar"));
+    verify(spyDummyInstrumentor, never()).exit(1);
+  }
+
+  @Test
+  public void instrumentJar_writesSameJarForAnyThreadCount() throws Exception {
+    File sourceJar = temporaryFolder.newFile("source.jar");
+    writeSourceJar(sourceJar, 200);
+    File singleThreadedJar = temporaryFolder.newFile("single-threaded.jar");
+    File multiThreadedJar = temporaryFolder.newFile("multi-threaded.jar");
+    JarInstrumentor jarInstrumentor = new JarInstrumentor();
+
+    assertEquals(200, jarInstrumentor.instrumentJar(sourceJar, singleThreadedJar, 1));
+    assertEquals(200, jarInstrumentor.instrumentJar(sourceJar, multiThreadedJar, 8));
+
+    assertArrayEquals(
+        Files.readAllBytes(singleThreadedJar.toPath()),
+        Files.readAllBytes(multiThreadedJar.toPath()));
+  }
+
+  /** Writes a jar of {@code classCount} instrumentable classes, with a build.prop for SDK 33. */
+  private static void writeSourceJar(File jar, int classCount) throws IOException {
+    try (JarOutputStream jarOut = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+      jarOut.putNextEntry(new JarEntry("build.prop"));
+      jarOut.write(
+          ("ro.build.version.sdk=33\n"
+                  + "ro.build.version.release=13\n"
+                  + "ro.build.version.codename=REL\n"
+                  + "ro.build.version.all_codenames=REL\n")
+              .getBytes(UTF_8));
+      jarOut.putNextEntry(new JarEntry("android/"));
+      jarOut.putNextEntry(new JarEntry("android/generated/"));
+      for (int i = 0; i < classCount; i++) {
+        String className = "android/generated/Generated" + i;
+        jarOut.putNextEntry(new JarEntry(className + ".class"));
+        writeClass(jarOut, className);
+      }
+    }
+  }
+
+  private static void writeClass(OutputStream out, String className) throws IOException {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(
+        Opcodes.V11, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+    MethodVisitor constructor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(Opcodes.ALOAD, 0);
+    constructor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", /* isInterface= */ false);
+    constructor.visitInsn(Opcodes.RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+    MethodVisitor method =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "value", "()I", null, null);
+    method.visitCode();
+    method.visitLdcInsn(className.hashCode());
+    method.visitInsn(Opcodes.IRETURN);
+    method.visitMaxs(0, 0);
+    method.visitEnd();
+    classWriter.visitEnd();
+    out.write(classWriter.toByteArray());
+  }
 }
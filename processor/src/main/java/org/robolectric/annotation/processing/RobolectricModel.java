@@ -258,7 +258,7 @@ public class RobolectricModel {
             }
           };
       shadowTypes.values().forEach(shadowInfo -> shadowInfo.prepare(referentResolver, helpers));
-      resetterMap.values().forEach(resetterInfo -> resetterInfo.prepare(referentResolver));
+      resetterMap.values().forEach(resetterInfo -> resetterInfo.prepare(referentResolver, helpers));
     }
 
     private void registerType(TypeElement type) {
@@ -470,6 +470,10 @@ public class RobolectricModel {
       return actualTypeReferent + paramUseStr;
     }
 
+    public TypeElement getShadowType() {
+      return shadowType;
+    }
+
     public String getShadowName() {
       return shadowType.getQualifiedName().toString();
     }
@@ -504,14 +508,20 @@ public class RobolectricModel {
     private final TypeElement shadowType;
     private final ExecutableElement executableElement;
     private String shadowTypeReferent;
+    private String shadowBinaryName;
 
     ResetterInfo(TypeElement shadowType, ExecutableElement executableElement) {
       this.shadowType = shadowType;
       this.executableElement = executableElement;
     }
 
-    void prepare(ReferentResolver referentResolver) {
+    void prepare(ReferentResolver referentResolver, Helpers helpers) {
       shadowTypeReferent = referentResolver.getReferentFor(shadowType);
+      shadowBinaryName = helpers.getBinaryName(shadowType);
+    }
+
+    public String getShadowBinaryName() {
+      return shadowBinaryName;
     }
 
     private Implements getImplementsAnnotation() {
@@ -519,7 +529,12 @@ public class RobolectricModel {
     }
 
     public String getMethodCall() {
-      return shadowTypeReferent + "." + executableElement.getSimpleName() + "();";
+      return getMethodInvocation() + ";";
+    }
+
+    /** Returns the resetter call as an expression, without a trailing semicolon. */
+    public String getMethodInvocation() {
+      return shadowTypeReferent + "." + executableElement.getSimpleName() + "()";
     }
 
     public int getMinSdk() {
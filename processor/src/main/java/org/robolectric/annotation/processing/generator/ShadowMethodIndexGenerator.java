@@ -0,0 +1,177 @@
+package org.robolectric.annotation.processing.generator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import org.robolectric.annotation.ClassName;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.processing.RobolectricModel;
+import org.robolectric.annotation.processing.RobolectricModel.ShadowInfo;
+import org.robolectric.internal.ShadowMethodIndex;
+import org.robolectric.internal.ShadowMethodIndex.IndexedMethod;
+
+/**
+ * Generator that creates the {@link ShadowMethodIndex} resource for a shadow package, so that
+ * shadow methods can be looked up at runtime without scanning shadow classes reflectively.
+ */
+public class ShadowMethodIndexGenerator extends Generator {
+  private final Filer filer;
+  private final Messager messager;
+  private final Elements elements;
+  private final Types types;
+  private final RobolectricModel model;
+  private final String shadowPackage;
+
+  public ShadowMethodIndexGenerator(
+      RobolectricModel model, ProcessingEnvironment environment, String shadowPackage) {
+    this.filer = environment.getFiler();
+    this.messager = environment.getMessager();
+    this.elements = environment.getElementUtils();
+    this.types = environment.getTypeUtils();
+    this.model = model;
+    this.shadowPackage = shadowPackage;
+  }
+
+  @Override
+  public void generate() {
+    if (shadowPackage == null) {
+      return;
+    }
+
+    ShadowMethodIndex.Builder builder = new ShadowMethodIndex.Builder();
+    for (ShadowInfo shadowInfo : model.getAllShadowTypes()) {
+      addShadowType(builder, shadowInfo.getShadowType());
+    }
+
+    try {
+      FileObject file =
+          filer.createResource(
+              StandardLocation.CLASS_OUTPUT, shadowPackage, ShadowMethodIndex.RESOURCE_NAME);
+      try (OutputStream out = file.openOutputStream()) {
+        builder.write(out);
+      }
+    } catch (IOException e) {
+      messager.printMessage(
+          Diagnostic.Kind.ERROR, "Failed to write shadow method index file: " + e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void addShadowType(ShadowMethodIndex.Builder builder, TypeElement shadowType) {
+    List<IndexedMethod> indexedMethods = new ArrayList<>();
+    for (ExecutableElement method : ElementFilter.methodsIn(shadowType.getEnclosedElements())) {
+      Set<Modifier> modifiers = method.getModifiers();
+      if (!modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.PROTECTED)) {
+        continue;
+      }
+
+      List<? extends VariableElement> parameters = method.getParameters();
+      String[] parameterTypeNames = new String[parameters.size()];
+      String[] parameterClassNames = new String[parameters.size()];
+      for (int i = 0; i < parameters.size(); i++) {
+        VariableElement parameter = parameters.get(i);
+        parameterTypeNames[i] = runtimeName(parameter.asType());
+        if (parameterTypeNames[i] == null) {
+          // Leave the shadow out of the index, so its methods are found by scanning at runtime.
+          return;
+        }
+        ClassName className = parameter.getAnnotation(ClassName.class);
+        parameterClassNames[i] = className == null ? null : className.value();
+      }
+
+      Implementation implementation = method.getAnnotation(Implementation.class);
+      String implementationMethodName =
+          implementation == null ? "" : implementation.methodName().trim();
+      indexedMethods.add(
+          new IndexedMethod(
+              method.getSimpleName().toString(),
+              implementationMethodName.isEmpty() ? null : implementationMethodName,
+              parameterTypeNames,
+              parameterClassNames));
+    }
+
+    String shadowClassName = elements.getBinaryName(shadowType).toString();
+    builder.addClass(shadowClassName);
+    for (IndexedMethod indexedMethod : indexedMethods) {
+      builder.addMethod(shadowClassName, indexedMethod);
+    }
+  }
+
+  /**
+   * Returns the name of the erasure of {@code type}, as returned by {@link Class#getName()}, or
+   * null if the type can't be resolved.
+   */
+  private String runtimeName(TypeMirror type) {
+    TypeMirror erased = types.erasure(type);
+    if (erased.getKind().isPrimitive()) {
+      // Primitive type names are their kinds, e.g. "int".
+      return erased.getKind().name().toLowerCase(Locale.ROOT);
+    }
+    switch (erased.getKind()) {
+      case ARRAY:
+        String componentDescriptor = descriptor(((ArrayType) erased).getComponentType());
+        return componentDescriptor == null ? null : "[" + componentDescriptor;
+      case DECLARED:
+        return binaryName(erased);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the JVM field descriptor of the erasure of {@code type}, as used for array names, or
+   * null if the type can't be resolved.
+   */
+  private String descriptor(TypeMirror type) {
+    TypeMirror erased = types.erasure(type);
+    switch (erased.getKind()) {
+      case ARRAY:
+        String componentDescriptor = descriptor(((ArrayType) erased).getComponentType());
+        return componentDescriptor == null ? null : "[" + componentDescriptor;
+      case DECLARED:
+        return "L" + binaryName(erased) + ";";
+      case BOOLEAN:
+        return "Z";
+      case BYTE:
+        return "B";
+      case CHAR:
+        return "C";
+      case SHORT:
+        return "S";
+      case INT:
+        return "I";
+      case LONG:
+        return "J";
+      case FLOAT:
+        return "F";
+      case DOUBLE:
+        return "D";
+      default:
+        return null;
+    }
+  }
+
+  private String binaryName(TypeMirror declaredType) {
+    TypeElement typeElement = (TypeElement) ((DeclaredType) declaredType).asElement();
+    return elements.getBinaryName(typeElement).toString();
+  }
+}
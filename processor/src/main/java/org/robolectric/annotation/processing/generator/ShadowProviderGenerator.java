@@ -162,30 +162,35 @@ public class ShadowProviderGenerator extends Generator {
     writer.println("  @Override");
     writer.println("  public void reset() {");
     for (RobolectricModel.ResetterInfo resetterInfo : model.getResetters()) {
-      int minSdk = resetterInfo.getMinSdk();
-      int maxSdk = resetterInfo.getMaxSdk();
-      String ifClause;
-      // The fully-qualiied name 'org.robolectric.RuntimeEnvironment' is required because shadow
-      // packages may not be in the 'org.robolectric' package.
-      if (minSdk != -1 && maxSdk != -1) {
-        ifClause =
-            "if (org.robolectric.RuntimeEnvironment.getApiLevel() >= "
-                + minSdk
-                + " && org.robolectric.RuntimeEnvironment.getApiLevel() <= "
-                + maxSdk
-                + ") ";
-      } else if (maxSdk != -1) {
-        ifClause = "if (org.robolectric.RuntimeEnvironment.getApiLevel() <= " + maxSdk + ") ";
-      } else if (minSdk != -1) {
-        ifClause = "if (org.robolectric.RuntimeEnvironment.getApiLevel() >= " + minSdk + ") ";
-      } else {
-        ifClause = "";
-      }
+      String sdkCondition = sdkCondition(resetterInfo);
+      String ifClause = sdkCondition.isEmpty() ? "" : "if (" + sdkCondition + ") ";
       writer.println("    " + ifClause + resetterInfo.getMethodCall());
     }
     writer.println("  }");
     writer.println();
 
+    writer.println("  @Override");
+    writer.println("  public void reset(ShadowProvider.Resetter resetter) {");
+    for (RobolectricModel.ResetterInfo resetterInfo : model.getResetters()) {
+      String sdkCondition = sdkCondition(resetterInfo);
+      String shadowName = "\"" + resetterInfo.getShadowBinaryName() + "\"";
+      writer.println(
+          "    if ("
+              + (sdkCondition.isEmpty() ? "" : sdkCondition + " && ")
+              + "resetter.shouldReset("
+              + shadowName
+              + ")) {");
+      writer.println(
+          "      resetter.reset("
+              + shadowName
+              + ", () -> "
+              + resetterInfo.getMethodInvocation()
+              + ");");
+      writer.println("    }");
+    }
+    writer.println("  }");
+    writer.println();
+
     writer.println("  @Override");
     writer.println("  public Collection<Map.Entry<String, String>> getShadows() {");
     writer.println("    return SHADOWS;");
@@ -251,4 +256,23 @@ public class ShadowProviderGenerator extends Generator {
 
     writer.println('}');
   }
+
+  private static String sdkCondition(RobolectricModel.ResetterInfo resetterInfo) {
+    int minSdk = resetterInfo.getMinSdk();
+    int maxSdk = resetterInfo.getMaxSdk();
+    // The fully-qualiied name 'org.robolectric.RuntimeEnvironment' is required because shadow
+    // packages may not be in the 'org.robolectric' package.
+    if (minSdk != -1 && maxSdk != -1) {
+      return "org.robolectric.RuntimeEnvironment.getApiLevel() >= "
+          + minSdk
+          + " && org.robolectric.RuntimeEnvironment.getApiLevel() <= "
+          + maxSdk;
+    } else if (maxSdk != -1) {
+      return "org.robolectric.RuntimeEnvironment.getApiLevel() <= " + maxSdk;
+    } else if (minSdk != -1) {
+      return "org.robolectric.RuntimeEnvironment.getApiLevel() >= " + minSdk;
+    } else {
+      return "";
+    }
+  }
 }
@@ -22,9 +22,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
+import javax.tools.StandardLocation;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.robolectric.internal.ShadowMethodIndex;
 
 @RunWith(JUnit4.class)
 public class RobolectricProcessorTest {
@@ -53,6 +55,21 @@ public class RobolectricProcessorTest {
     // it becomes available in compile-testing
   }
 
+  @Test
+  public void shouldGenerateShadowMethodIndex() {
+    assertAbout(javaSources())
+        .that(
+            ImmutableList.of(
+                SHADOW_PROVIDER_SOURCE,
+                SHADOW_EXTRACTOR_SOURCE,
+                forResource("org/robolectric/annotation/processing/shadows/ShadowDummy.java")))
+        .processedWith(new RobolectricProcessor(DEFAULT_OPTS))
+        .compilesWithoutError()
+        .and()
+        .generatesFileNamed(
+            StandardLocation.CLASS_OUTPUT, "org.robolectric", ShadowMethodIndex.RESOURCE_NAME);
+  }
+
   @Test
   public void generatedFile_shouldHandleInnerClassCollisions() {
     // Because the Generated annotation has a retention of "source", it can't
@@ -61,11 +61,36 @@ public class ShadowProviderGeneratorTest {
                 + " ShadowThing.resetMax18();");
   }
 
+  @Test
+  public void resettersAreOnlyCalledIfResetterAllows() {
+    when(model.getVisibleShadowTypes()).thenReturn(Collections.emptyList());
+
+    List<ResetterInfo> resetterInfos = new ArrayList<>();
+    resetterInfos.add(resetterInfo("ShadowThing", -1, -1, "reset"));
+    resetterInfos.add(resetterInfo("ShadowOther", 21, -1, "resetMin21"));
+    when(model.getResetters()).thenReturn(resetterInfos);
+
+    generator.generate(new PrintWriter(writer));
+
+    assertThat(writer.toString())
+        .contains(
+            "  public void reset(ShadowProvider.Resetter resetter) {\n"
+                + "    if (resetter.shouldReset(\"the.package.ShadowThing\")) {\n"
+                + "      resetter.reset(\"the.package.ShadowThing\", () -> ShadowThing.reset());\n"
+                + "    }\n");
+    assertThat(writer.toString())
+        .contains(
+            "    if (org.robolectric.RuntimeEnvironment.getApiLevel() >= 21"
+                + " && resetter.shouldReset(\"the.package.ShadowOther\")) {");
+  }
+
   private ResetterInfo resetterInfo(String shadowName, int minSdk, int maxSdk, String methodName) {
     ResetterInfo resetterInfo = mock(ResetterInfo.class);
     when(resetterInfo.getMinSdk()).thenReturn(minSdk);
     when(resetterInfo.getMaxSdk()).thenReturn(maxSdk);
     when(resetterInfo.getMethodCall()).thenReturn(shadowName + "." + methodName + "();");
+    when(resetterInfo.getMethodInvocation()).thenReturn(shadowName + "." + methodName + "()");
+    when(resetterInfo.getShadowBinaryName()).thenReturn("the.package." + shadowName);
     return resetterInfo;
   }
 }
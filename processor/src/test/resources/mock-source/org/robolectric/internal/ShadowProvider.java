@@ -8,6 +8,10 @@ public interface ShadowProvider {
 
   void reset();
 
+  default void reset(Resetter resetter) {
+    reset();
+  }
+
   String[] getProvidedPackageNames();
 
   Collection<Map.Entry<String, String>> getShadows();
@@ -15,4 +19,10 @@ public interface ShadowProvider {
   default Map<String, String> getShadowPickerMap() {
     return Collections.emptyMap();
   }
+
+  interface Resetter {
+    boolean shouldReset(String shadowClassName);
+
+    void reset(String shadowClassName, Runnable resetter);
+  }
 }
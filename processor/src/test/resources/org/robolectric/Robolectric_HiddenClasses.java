@@ -46,6 +46,16 @@ public class Shadows implements ShadowProvider {
     ShadowPrivate.resetMethod();
   }
 
+  @Override
+  public void reset(ShadowProvider.Resetter resetter) {
+    if (resetter.shouldReset("org.robolectric.annotation.processing.shadows.ShadowDummy")) {
+      resetter.reset("org.robolectric.annotation.processing.shadows.ShadowDummy", () -> ShadowDummy.resetter_method());
+    }
+    if (resetter.shouldReset("org.robolectric.annotation.processing.shadows.ShadowPrivate")) {
+      resetter.reset("org.robolectric.annotation.processing.shadows.ShadowPrivate", () -> ShadowPrivate.resetMethod());
+    }
+  }
+
   @Override
   public Collection<Map.Entry<String, String>> getShadows() {
     return SHADOWS;
@@ -64,6 +64,13 @@ public class Shadows implements ShadowProvider {
     ShadowDummy.resetter_method();
   }
 
+  @Override
+  public void reset(ShadowProvider.Resetter resetter) {
+    if (resetter.shouldReset("org.robolectric.annotation.processing.shadows.ShadowDummy")) {
+      resetter.reset("org.robolectric.annotation.processing.shadows.ShadowDummy", () -> ShadowDummy.resetter_method());
+    }
+  }
+
   @Override
   public Collection<Map.Entry<String, String>> getShadows() {
     return SHADOWS;
@@ -53,6 +53,16 @@ public class Shadows implements ShadowProvider {
     ShadowDummy.resetter_method();
   }
 
+  @Override
+  public void reset(ShadowProvider.Resetter resetter) {
+    if (resetter.shouldReset("org.robolectric.annotation.processing.shadows.ShadowClassNameOnly")) {
+      resetter.reset("org.robolectric.annotation.processing.shadows.ShadowClassNameOnly", () -> ShadowClassNameOnly.anotherResetter());
+    }
+    if (resetter.shouldReset("org.robolectric.annotation.processing.shadows.ShadowDummy")) {
+      resetter.reset("org.robolectric.annotation.processing.shadows.ShadowDummy", () -> ShadowDummy.resetter_method());
+    }
+  }
+
   @Override
   public Collection<Map.Entry<String, String>> getShadows() {
     return SHADOWS;
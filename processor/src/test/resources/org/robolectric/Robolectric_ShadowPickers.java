@@ -36,6 +36,10 @@ public class Shadows implements ShadowProvider {
   @Override
   public void reset() {}
 
+  @Override
+  public void reset(ShadowProvider.Resetter resetter) {
+  }
+
   @Override
   public Collection<Map.Entry<String, String>> getShadows() {
     return SHADOWS;
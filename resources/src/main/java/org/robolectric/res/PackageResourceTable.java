@@ -5,7 +5,9 @@ import com.google.common.collect.HashBiMap;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.List;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.robolectric.res.android.ResTable_config;
 import org.robolectric.res.builder.XmlBlock;
 
@@ -18,6 +20,8 @@ public class PackageResourceTable implements ResourceTable {
   private final ResourceIdGenerator androidResourceIdGenerator = new ResourceIdGenerator(0x01);
   private final String packageName;
   private int packageIdentifier;
+  // While set, the values added by parsing are also recorded here, see ResourceTableSnapshot.
+  @Nullable private List<ResourceTableSnapshot.Value> recordedValues;
 
   public PackageResourceTable(String packageName) {
     this.packageName = packageName;
@@ -159,6 +163,13 @@ public class PackageResourceTable implements ResourceTable {
       }
     }
     resources.put(resName, value);
+    if (recordedValues != null) {
+      recordedValues.add(new ResourceTableSnapshot.Value(type, name, value));
+    }
+  }
+
+  void setRecordedValues(@Nullable List<ResourceTableSnapshot.Value> recordedValues) {
+    this.recordedValues = recordedValues;
   }
 
   private boolean isAndroidPackage(ResName resName) {
@@ -3,6 +3,8 @@ package org.robolectric.res;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
 import org.robolectric.util.Logger;
 import org.robolectric.util.PerfStatsCollector;
 
@@ -126,6 +128,27 @@ public class ResourceTableFactory {
         "Loading resources for %s from %s...",
         resourceTable.getPackageName(), resourcePath.getResourceBase());
 
+    ResourceTableSnapshot snapshot =
+        ResourceTableSnapshot.forResourcePath(resourcePath, resourceTable.getPackageName());
+    if (snapshot == null) {
+      loadResourceFiles(resourcePath, resourceTable);
+      return;
+    }
+    if (snapshot.restoreTo(resourceTable)) {
+      return;
+    }
+
+    List<ResourceTableSnapshot.Value> values = new ArrayList<>();
+    resourceTable.setRecordedValues(values);
+    try {
+      loadResourceFiles(resourcePath, resourceTable);
+    } finally {
+      resourceTable.setRecordedValues(null);
+    }
+    snapshot.save(values);
+  }
+
+  private void loadResourceFiles(ResourcePath resourcePath, PackageResourceTable resourceTable) {
     try {
       new StaxDocumentLoader(
               resourceTable.getPackageName(),
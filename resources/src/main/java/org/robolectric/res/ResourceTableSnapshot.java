@@ -0,0 +1,545 @@
+package org.robolectric.res;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
+import org.robolectric.util.Util;
+
+/**
+ * An on-disk snapshot of the values that parsing the files of a {@link ResourcePath} adds to a
+ * {@link PackageResourceTable}, shared by all JVMs pointing at the same directory.
+ *
+ * <p>Snapshots are keyed by a hash of the package name, the names of all resource files, the
+ * content of the {@code values} files, which are the only ones that are parsed, and the bytes of
+ * the classes that parse them. Restoring a snapshot memory-maps it and adds its values to the
+ * table in their original order, so resource IDs are generated exactly as they would be by parsing.
+ * Paths are stored relative to the resource base, and resolved against it again when restoring.
+ *
+ * <p>Snapshots are enabled by setting the {@code robolectric.resourceTableSnapshotDirectory} system
+ * property. They are written to a temporary file and atomically moved into place, so concurrent
+ * JVMs never observe partially written snapshots; failures are logged and ignored.
+ */
+@SuppressWarnings("NewApi")
+final class ResourceTableSnapshot {
+  static final String DIRECTORY_PROPERTY = "robolectric.resourceTableSnapshotDirectory";
+
+  // Change whenever the format changes.
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAGIC = 0x52545342;
+  private static final String ENTRY_SUFFIX = ".snapshot";
+
+  private static final byte TAG_VALUE = 0;
+  private static final byte TAG_ARRAY = 1;
+  private static final byte TAG_ATTR = 2;
+  private static final byte TAG_STYLE = 3;
+  private static final byte TAG_PLURALS = 4;
+  private static final byte TAG_FILE = 5;
+  private static final byte TAG_IMAGE = 6;
+
+  private static final ResType[] RES_TYPES = ResType.values();
+
+  /** Classes whose implementation determines the values produced by parsing resources. */
+  private static final Class<?>[] LOADER_CLASSES = {
+    ResourceTableSnapshot.class,
+    ResourceTableFactory.class,
+    DocumentLoader.class,
+    StaxDocumentLoader.class,
+    StaxLoader.class,
+    StaxValueLoader.class,
+    StaxArrayLoader.class,
+    StaxAttrLoader.class,
+    StaxPluralsLoader.class,
+    StaxStyleLoader.class,
+    DrawableResourceLoader.class,
+    RawResourceLoader.class,
+    ResType.class,
+  };
+
+  private static final String LOADER_FINGERPRINT = computeLoaderFingerprint();
+
+  private static final MetricHandle HIT =
+      PerfStatsCollector.getInstance().getHandle("resource table snapshot hit");
+  private static final MetricHandle MISS =
+      PerfStatsCollector.getInstance().getHandle("resource table snapshot miss");
+  private static final MetricHandle WRITE =
+      PerfStatsCollector.getInstance().getHandle("write resource table snapshot");
+
+  private final Path file;
+  private final Path resourceBase;
+
+  @VisibleForTesting
+  ResourceTableSnapshot(Path file, Path resourceBase) {
+    this.file = file;
+    this.resourceBase = resourceBase;
+  }
+
+  /**
+   * Returns the snapshot of the resources of {@code resourcePath} for {@code packageName}, or null
+   * if no snapshot directory has been set.
+   */
+  @Nullable
+  static ResourceTableSnapshot forResourcePath(ResourcePath resourcePath, String packageName) {
+    String directory = System.getProperty(DIRECTORY_PROPERTY, "");
+    if (Strings.isNullOrEmpty(directory)) {
+      return null;
+    }
+    return forResourcePath(Paths.get(directory), resourcePath, packageName);
+  }
+
+  /**
+   * Returns the snapshot of the resources of {@code resourcePath} for {@code packageName} in {@code
+   * directory}, or null if the resources can't be hashed.
+   */
+  @Nullable
+  @VisibleForTesting
+  static ResourceTableSnapshot forResourcePath(
+      Path directory, ResourcePath resourcePath, String packageName) {
+    Path resourceBase = resourcePath.getResourceBase();
+    try {
+      String key = computeKey(resourceBase, packageName);
+      return new ResourceTableSnapshot(directory.resolve(key + ENTRY_SUFFIX), resourceBase);
+    } catch (IOException | UncheckedIOException e) {
+      Logger.warn("Unable to hash resources in %s: %s", resourceBase, e);
+      return null;
+    }
+  }
+
+  /** Computes the snapshot key for the resources in {@code resourceBase}. */
+  static String computeKey(Path resourceBase, String packageName) throws IOException {
+    List<Path> files;
+    // Resource files are always in a directory directly below the resource base.
+    try (Stream<Path> paths = Files.walk(resourceBase, 2)) {
+      files =
+          paths
+              .filter(Files::isRegularFile)
+              .sorted((a, b) -> relativize(resourceBase, a).compareTo(relativize(resourceBase, b)))
+              .collect(Collectors.toList());
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FORMAT_VERSION);
+    hasher.putString(LOADER_FINGERPRINT, UTF_8);
+    hasher.putString(packageName, UTF_8);
+    for (Path resourceFile : files) {
+      hasher.putString(relativize(resourceBase, resourceFile), UTF_8);
+      hasher.putByte((byte) 0);
+      // Other files are only referenced by their paths, so only their names matter.
+      if (resourceFile.getParent().getFileName().toString().startsWith("values")) {
+        hasher.putBytes(Files.readAllBytes(resourceFile));
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Hashes the bytes of the classes that parse resources, so snapshots written by a different
+   * implementation are never restored.
+   */
+  private static String computeLoaderFingerprint() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Class<?> clazz : LOADER_CLASSES) {
+      String resourceName = "/" + clazz.getName().replace('.', '/') + ".class";
+      try (InputStream in = clazz.getResourceAsStream(resourceName)) {
+        if (in != null) {
+          hasher.putBytes(Util.readBytes(in));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  @VisibleForTesting
+  Path getFile() {
+    return file;
+  }
+
+  /**
+   * Adds the values of this snapshot to {@code resourceTable}. Returns false, and leaves the table
+   * unchanged, if there is no usable snapshot.
+   */
+  boolean restoreTo(PackageResourceTable resourceTable) {
+    List<Value> values;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      values = new Reader(channel.map(MapMode.READ_ONLY, 0, channel.size())).read();
+    } catch (NoSuchFileException e) {
+      MISS.incrementCount();
+      return false;
+    } catch (IOException | RuntimeException e) {
+      Logger.warn("Unable to read resource table snapshot %s: %s", file, e);
+      MISS.incrementCount();
+      return false;
+    }
+
+    for (Value value : values) {
+      resourceTable.addResource(value.type, value.name, value.resource);
+    }
+    HIT.incrementCount();
+    return true;
+  }
+
+  /** Stores {@code values} in this snapshot. Failures are logged and ignored. */
+  void save(List<Value> values) {
+    byte[] bytes;
+    try {
+      bytes = WRITE.measure(() -> new Writer().write(values));
+    } catch (IllegalArgumentException e) {
+      Logger.debug("Not writing resource table snapshot for %s: %s", resourceBase, e.getMessage());
+      return;
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+
+    Path tempFile = null;
+    try {
+      Files.createDirectories(file.getParent());
+      tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      Files.write(tempFile, bytes);
+      try {
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      tempFile = null;
+    } catch (IOException e) {
+      Logger.warn("Unable to write resource table snapshot %s: %s", file, e);
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+          // Best effort.
+        }
+      }
+    }
+  }
+
+  private static String relativize(Path resourceBase, Path path) {
+    return resourceBase.relativize(path).toString();
+  }
+
+  /**
+   * A value that parsing added to a table through {@link PackageResourceTable#addResource(String,
+   * String, TypedResource)}.
+   */
+  static final class Value {
+    final String type;
+    final String name;
+    final TypedResource<?> resource;
+
+    Value(String type, String name, TypedResource<?> resource) {
+      this.type = type;
+      this.name = name;
+      this.resource = resource;
+    }
+  }
+
+  /** Serializes values, with a table of the distinct strings they use. */
+  private final class Writer {
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(body);
+
+    /**
+     * @throws IllegalArgumentException if a value can't be stored in a snapshot
+     */
+    byte[] write(List<Value> values) throws IOException {
+      out.writeInt(values.size());
+      for (Value value : values) {
+        writeString(value.type);
+        writeString(value.name);
+        writeResource(value.resource);
+      }
+
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      DataOutputStream header = new DataOutputStream(result);
+      header.writeInt(MAGIC);
+      header.writeInt(FORMAT_VERSION);
+      header.writeInt(strings.size());
+      for (String string : strings.keySet()) {
+        byte[] bytes = string.getBytes(UTF_8);
+        header.writeInt(bytes.length);
+        header.write(bytes);
+      }
+      body.writeTo(result);
+      return result.toByteArray();
+    }
+
+    private void writeResource(TypedResource<?> resource) throws IOException {
+      Object data = resource.getData();
+      if (resource.getClass() == FileTypedResource.Image.class) {
+        out.writeByte(TAG_IMAGE);
+        writeFile((FileTypedResource) resource);
+        out.writeBoolean(((FileTypedResource.Image) resource).isNinePatch());
+      } else if (resource.getClass() == FileTypedResource.class) {
+        out.writeByte(TAG_FILE);
+        writeResType(resource.getResType());
+        writeFile((FileTypedResource) resource);
+      } else if (resource.getClass() == PluralRules.class) {
+        out.writeByte(TAG_PLURALS);
+        writeResType(resource.getResType());
+        writeXmlContext(resource.getXmlContext());
+        List<Plural> plurals = ((PluralRules) resource).getData();
+        out.writeInt(plurals.size());
+        for (Plural plural : plurals) {
+          writeString(plural.quantity);
+          writeString(plural.string);
+        }
+      } else if (resource.getClass() != TypedResource.class) {
+        throw new IllegalArgumentException("unsupported resource " + resource);
+      } else if (data == null || data instanceof String) {
+        out.writeByte(TAG_VALUE);
+        writeResType(resource.getResType());
+        writeXmlContext(resource.getXmlContext());
+        writeString((String) data);
+      } else if (data instanceof List) {
+        out.writeByte(TAG_ARRAY);
+        writeResType(resource.getResType());
+        writeXmlContext(resource.getXmlContext());
+        List<?> items = (List<?>) data;
+        out.writeInt(items.size());
+        for (Object item : items) {
+          if (!(item instanceof TypedResource)) {
+            throw new IllegalArgumentException("unsupported array item " + item);
+          }
+          writeResource((TypedResource<?>) item);
+        }
+      } else if (data.getClass() == AttrData.class) {
+        out.writeByte(TAG_ATTR);
+        writeResType(resource.getResType());
+        writeXmlContext(resource.getXmlContext());
+        AttrData attrData = (AttrData) data;
+        writeString(attrData.getName());
+        writeString(attrData.getFormat());
+        List<AttrData.Pair> pairs = attrData.getPairs();
+        out.writeInt(pairs == null ? -1 : pairs.size());
+        if (pairs != null) {
+          for (AttrData.Pair pair : pairs) {
+            writeString(pair.getName());
+            writeString(pair.getValue());
+          }
+        }
+      } else if (data.getClass() == StyleData.class) {
+        out.writeByte(TAG_STYLE);
+        writeResType(resource.getResType());
+        writeXmlContext(resource.getXmlContext());
+        StyleData styleData = (StyleData) data;
+        writeString(styleData.getPackageName());
+        writeString(styleData.getName());
+        writeString(styleData.getParent());
+        List<AttributeResource> attributeResources = new ArrayList<>();
+        styleData.visit(attributeResources::add);
+        out.writeInt(attributeResources.size());
+        for (AttributeResource attributeResource : attributeResources) {
+          writeString(attributeResource.resName.packageName);
+          writeString(attributeResource.resName.name);
+          writeString(attributeResource.value);
+          writeString(attributeResource.contextPackageName);
+        }
+      } else {
+        throw new IllegalArgumentException("unsupported resource " + resource);
+      }
+    }
+
+    private void writeFile(FileTypedResource resource) throws IOException {
+      if (!resource.getPath().equals(resource.getXmlContext().getXmlFile())) {
+        throw new IllegalArgumentException("unexpected context for " + resource);
+      }
+      writeXmlContext(resource.getXmlContext());
+    }
+
+    private void writeXmlContext(XmlContext xmlContext) throws IOException {
+      Path xmlFile = xmlContext.getXmlFile();
+      if (xmlFile == null || !xmlFile.startsWith(resourceBase)) {
+        throw new IllegalArgumentException(xmlFile + " isn't in " + resourceBase);
+      }
+      writeString(relativize(resourceBase, xmlFile));
+      writeString(xmlContext.getPackageName());
+      writeString(xmlContext.getQualifiers().toString());
+    }
+
+    private void writeResType(@Nullable ResType resType) throws IOException {
+      out.writeByte(resType == null ? -1 : resType.ordinal());
+    }
+
+    private void writeString(@Nullable String string) throws IOException {
+      if (string == null) {
+        out.writeInt(-1);
+        return;
+      }
+      Integer index = strings.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.put(string, index);
+      }
+      out.writeInt(index);
+    }
+  }
+
+  /** Deserializes the values written by {@link Writer}. */
+  private final class Reader {
+    private final ByteBuffer buffer;
+    private String[] strings;
+    // Indexed by the string index of the path, as all values of a file share its context.
+    private XmlContext[] xmlContexts;
+    private final Map<String, Qualifiers> qualifiers = new HashMap<>();
+
+    Reader(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    List<Value> read() throws IOException {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        throw new IOException("not a resource table snapshot");
+      }
+      strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, UTF_8);
+      }
+      xmlContexts = new XmlContext[strings.length];
+
+      int count = buffer.getInt();
+      List<Value> values = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String type = readString();
+        String name = readString();
+        values.add(new Value(type, name, readResource()));
+      }
+      return values;
+    }
+
+    private TypedResource<?> readResource() throws IOException {
+      byte tag = buffer.get();
+      switch (tag) {
+        case TAG_IMAGE:
+          {
+            XmlContext xmlContext = readXmlContext();
+            return new FileTypedResource.Image(
+                xmlContext.getXmlFile(), buffer.get() != 0, xmlContext);
+          }
+        case TAG_FILE:
+          {
+            ResType resType = readResType();
+            XmlContext xmlContext = readXmlContext();
+            return new FileTypedResource(xmlContext.getXmlFile(), resType, xmlContext);
+          }
+        case TAG_PLURALS:
+          {
+            ResType resType = readResType();
+            XmlContext xmlContext = readXmlContext();
+            List<Plural> plurals = new ArrayList<>();
+            for (int i = buffer.getInt(); i > 0; i--) {
+              plurals.add(new Plural(readString(), readString()));
+            }
+            return new PluralRules(plurals, resType, xmlContext);
+          }
+        case TAG_VALUE:
+          {
+            ResType resType = readResType();
+            XmlContext xmlContext = readXmlContext();
+            return new TypedResource<>(readString(), resType, xmlContext);
+          }
+        case TAG_ARRAY:
+          {
+            ResType resType = readResType();
+            XmlContext xmlContext = readXmlContext();
+            List<TypedResource> items = new ArrayList<>();
+            for (int i = buffer.getInt(); i > 0; i--) {
+              items.add(readResource());
+            }
+            return new TypedResource<>(items, resType, xmlContext);
+          }
+        case TAG_ATTR:
+          {
+            ResType resType = readResType();
+            XmlContext xmlContext = readXmlContext();
+            String name = readString();
+            String format = readString();
+            int pairCount = buffer.getInt();
+            List<AttrData.Pair> pairs = pairCount < 0 ? null : new ArrayList<>(pairCount);
+            for (int i = 0; i < pairCount; i++) {
+              pairs.add(new AttrData.Pair(readString(), readString()));
+            }
+            return new TypedResource<>(new AttrData(name, format, pairs), resType, xmlContext);
+          }
+        case TAG_STYLE:
+          {
+            ResType resType = readResType();
+            XmlContext xmlContext = readXmlContext();
+            String packageName = readString();
+            String name = readString();
+            String parent = readString();
+            List<AttributeResource> attributeResources = new ArrayList<>();
+            for (int i = buffer.getInt(); i > 0; i--) {
+              ResName resName = new ResName(readString(), "attr", readString());
+              attributeResources.add(new AttributeResource(resName, readString(), readString()));
+            }
+            return new TypedResource<>(
+                new StyleData(packageName, name, parent, attributeResources), resType, xmlContext);
+          }
+        default:
+          throw new IOException("unknown tag " + tag);
+      }
+    }
+
+    private XmlContext readXmlContext() {
+      int pathIndex = buffer.getInt();
+      String packageName = readString();
+      String qualifiersString = readString();
+      XmlContext xmlContext = xmlContexts[pathIndex];
+      if (xmlContext == null) {
+        xmlContext =
+            new XmlContext(
+                packageName,
+                resourceBase.resolve(strings[pathIndex]),
+                qualifiers.computeIfAbsent(qualifiersString, Qualifiers::parse));
+        xmlContexts[pathIndex] = xmlContext;
+      }
+      return xmlContext;
+    }
+
+    @Nullable
+    private ResType readResType() {
+      byte ordinal = buffer.get();
+      return ordinal < 0 ? null : RES_TYPES[ordinal];
+    }
+
+    @Nullable
+    private String readString() {
+      int index = buffer.getInt();
+      return index < 0 ? null : strings[index];
+    }
+  }
+}
@@ -1,7 +1,12 @@
 package org.robolectric.res.android;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
 
 /**
  * A global cache for ApkAssets (framework and app resources). This cache is shared between
@@ -12,22 +17,150 @@ import java.util.HashMap;
  * growing in size, and an increasing number of sandbox parameters, the memory usage did not scale
  * well as test suites increased in size.
  *
- * <p>Currently the items in this cache are not made available for GC. However, it would definitely
- * be possible to have a per-sdk-level reference counting mechanism where an item could be freed if
- * all sandboxes referencing that item are collected.
+ * <p>Entries are reference counted by the sandboxes that may use them: {@link #acquire(int)} and
+ * {@link #release(int)} are called when a sandbox for an SDK level is created and shut down. Once
+ * no live sandbox for an SDK level is left, the system resources of that SDK level are evicted, so
+ * that they can be garbage collected. App resources are shared by all SDK levels, and are evicted
+ * once there is no live sandbox at all. Set the {@code robolectric.apkAssetsCache.evict} system
+ * property to {@code false} to keep every entry for the lifetime of the JVM instead.
  */
 @SuppressWarnings("AndroidJdkLibsChecker")
 public final class ApkAssetsCache {
+  static final String EVICT_PROPERTY = "robolectric.apkAssetsCache.evict";
+  private static final boolean EVICTION_ENABLED =
+      Boolean.parseBoolean(System.getProperty(EVICT_PROPERTY, "true"));
 
-  private static final HashMap<Key, Long> cachedApkAssetsPtrs = new HashMap<>();
+  private static final MetricHandle HIT =
+      PerfStatsCollector.getInstance().getHandle("apk assets cache hit");
+  private static final MetricHandle MISS =
+      PerfStatsCollector.getInstance().getHandle("apk assets cache miss");
+  private static final MetricHandle EVICT =
+      PerfStatsCollector.getInstance().getHandle("evict apk assets");
+
+  private static final Map<Key, CachedApkAssets> cachedApkAssets = new ConcurrentHashMap<>();
+
+  private static final Object referenceLock = new Object();
+  // Keyed by SDK level; guarded by referenceLock.
+  private static final Map<Integer, Integer> referenceCounts = new HashMap<>();
+  private static int totalReferenceCount;
+  // Only changed by tests; guarded by referenceLock.
+  private static boolean evictionEnabled = EVICTION_ENABLED;
 
   public static void put(String path, boolean system, int apiLevel, long ptr) {
-    cachedApkAssetsPtrs.put(Key.newInstance(path, system, system ? apiLevel : 0), ptr);
+    cachedApkAssets.put(
+        Key.newInstance(path, system, system ? apiLevel : 0),
+        new CachedApkAssets(ptr, estimateRetainedBytes(ptr)));
   }
 
   public static long get(String path, boolean system, int apiLevel) {
-    return cachedApkAssetsPtrs.getOrDefault(
-        Key.newInstance(path, system, system ? apiLevel : 0), -1L);
+    CachedApkAssets cached =
+        cachedApkAssets.get(Key.newInstance(path, system, system ? apiLevel : 0));
+    if (cached == null) {
+      MISS.incrementCount();
+      return -1L;
+    }
+    HIT.incrementCount();
+    return cached.ptr;
+  }
+
+  /** Records that a sandbox for {@code apiLevel} is being created. */
+  public static void acquire(int apiLevel) {
+    synchronized (referenceLock) {
+      referenceCounts.merge(apiLevel, 1, Integer::sum);
+      totalReferenceCount++;
+    }
+  }
+
+  /**
+   * Records that a sandbox for {@code apiLevel} was shut down, and evicts the entries that no live
+   * sandbox can use anymore.
+   *
+   * @throws IllegalStateException if no sandbox for {@code apiLevel} was acquired
+   */
+  public static void release(int apiLevel) {
+    synchronized (referenceLock) {
+      Integer count = referenceCounts.get(apiLevel);
+      if (count == null) {
+        throw new IllegalStateException("No sandbox for SDK " + apiLevel + " was acquired");
+      }
+      if (count == 1) {
+        referenceCounts.remove(apiLevel);
+      } else {
+        referenceCounts.put(apiLevel, count - 1);
+      }
+      totalReferenceCount--;
+
+      if (!evictionEnabled) {
+        return;
+      }
+      for (Key key : cachedApkAssets.keySet()) {
+        // Only evict entries of the SDK level that was released, so that entries loaded by
+        // sandboxes that aren't reference counted are only affected by sandboxes of the same SDK.
+        boolean unreferenced =
+            key.system()
+                ? key.apiLevel() == apiLevel && !referenceCounts.containsKey(apiLevel)
+                : totalReferenceCount == 0;
+        if (unreferenced) {
+          CachedApkAssets evicted = cachedApkAssets.remove(key);
+          if (evicted != null) {
+            Registries.NATIVE_APK_ASSETS_REGISTRY.unregister(evicted.ptr);
+            EVICT.incrementCount();
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns the number of cached ApkAssets. */
+  public static int size() {
+    return cachedApkAssets.size();
+  }
+
+  /**
+   * Returns a rough estimate of the memory retained by the cached ApkAssets, in bytes. This is the
+   * size of their resource tables, which they keep in memory.
+   */
+  public static long getEstimatedRetainedBytes() {
+    long total = 0;
+    for (CachedApkAssets cached : cachedApkAssets.values()) {
+      total += cached.estimatedRetainedBytes;
+    }
+    return total;
+  }
+
+  private static long estimateRetainedBytes(long ptr) {
+    CppApkAssets apkAssets = Registries.NATIVE_APK_ASSETS_REGISTRY.peekNativeObject(ptr);
+    if (apkAssets == null || apkAssets.resources_asset_ == null) {
+      return 0;
+    }
+    return apkAssets.resources_asset_.getLength();
+  }
+
+  @VisibleForTesting
+  static void setEvictionEnabled(boolean enabled) {
+    synchronized (referenceLock) {
+      evictionEnabled = enabled;
+    }
+  }
+
+  @VisibleForTesting
+  static void clear() {
+    synchronized (referenceLock) {
+      cachedApkAssets.clear();
+      referenceCounts.clear();
+      totalReferenceCount = 0;
+      evictionEnabled = EVICTION_ENABLED;
+    }
+  }
+
+  private static final class CachedApkAssets {
+    final long ptr;
+    final long estimatedRetainedBytes;
+
+    CachedApkAssets(long ptr, long estimatedRetainedBytes) {
+      this.ptr = ptr;
+      this.estimatedRetainedBytes = estimatedRetainedBytes;
+    }
   }
 
   /** The cache key for this cache. */
@@ -12,6 +12,7 @@ import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Locale;
@@ -118,6 +119,17 @@ public abstract class Asset {
    */
   public abstract byte[] getBuffer(boolean wordAligned);
 
+  /**
+   * Returns the entire contents of the asset as a buffer. Unlike {@link #getBuffer(boolean)},
+   * assets backed by a memory-mapped file return a view of the mapping instead of a heap copy.
+   *
+   * <p>Non-Android framework method.
+   */
+  public ByteBuffer getByteBuffer(boolean wordAligned) {
+    byte[] buffer = getBuffer(wordAligned);
+    return buffer == null ? null : ByteBuffer.wrap(buffer);
+  }
+
   /*
    * Get the total amount of data that can be read.
    */
@@ -729,7 +741,10 @@ public abstract class Asset {
       mLength = dataMap.getDataLength();
       assert (mOffset == 0);
 
-      mBuf = dataMap.getDataPtr();
+      // Mapped data is read in place, and only copied to the heap if getBuffer() is called.
+      if (!dataMap.isMapped()) {
+        mBuf = dataMap.getDataPtr();
+      }
 
       return NO_ERROR;
     }
@@ -750,8 +765,10 @@ public abstract class Asset {
          * requested buffer access, either because they're going to be
          * using the buffer or because what they're doing has appropriate
          * performance needs and access patterns.
+         *
+         * Mapped data is read from the mapping instead, without copying all of it to the heap.
          */
-        if (mBuf == null) getBuffer(false);
+        if (mBuf == null && (mMap == null || !mMap.isMapped())) getBuffer(false);
       }
 
       /* adjust count if we're near EOF */
@@ -766,7 +783,7 @@ public abstract class Asset {
         /* copy from mapped area */
         // printf("map read\n");
         // memcpy(buf, (String)mMap.getDataPtr() + mOffset, count);
-        System.arraycopy(mMap.getDataPtr(), Math.toIntExact(mOffset), buf, bufOffset, count);
+        mMap.read(Math.toIntExact(mOffset), buf, bufOffset, count);
         actual = count;
       } else if (mBuf != null) {
         /* copy from buffer */
@@ -939,6 +956,14 @@ public abstract class Asset {
       }
     }
 
+    @Override
+    public ByteBuffer getByteBuffer(boolean wordAligned) {
+      if (mBuf == null && mMap != null && mMap.isMapped()) {
+        return mMap.getDataBuffer();
+      }
+      return super.getByteBuffer(wordAligned);
+    }
+
     /**
      * Return the file on disk representing this asset.
      *
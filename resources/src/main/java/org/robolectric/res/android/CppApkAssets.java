@@ -279,7 +279,9 @@ public class CppApkAssets {
     //       loaded_apk.resources_asset_.getLength());
     StringPiece data =
         new StringPiece(
-            ByteBuffer.wrap(loaded_apk.resources_asset_.getBuffer(true /*wordAligned*/))
+            loaded_apk
+                .resources_asset_
+                .getByteBuffer(true /*wordAligned*/)
                 .order(ByteOrder.LITTLE_ENDIAN),
             0 /*(int) loaded_apk.resources_asset_.getLength()*/);
     loaded_apk.loaded_arsc_ = LoadedArsc.Load(data, loaded_idmap, system, load_as_shared_library);
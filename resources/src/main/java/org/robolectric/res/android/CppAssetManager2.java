@@ -19,10 +19,8 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import org.robolectric.res.Fs;
@@ -206,7 +204,27 @@ public class CppAssetManager2 {
   // Cached set of bags. These are cached because they can inherit keys from parent bags,
   // which involves some calculation.
   //  private std.unordered_map<int, util.unique_cptr<ResolvedBag>> cached_bags_;
-  private final Map<Integer, ResolvedBag> cached_bags_ = new HashMap<>();
+  private final IntMap<ResolvedBag> cached_bags_ = new IntMap<>();
+
+  // Cached results of FindEntry(), keyed by the density override in the high 32 bits and the
+  // resource ID in the low ones. Like bags, they are purged by InvalidateCaches() when the
+  // ApkAssets change, or when the configuration changes along an axis the entry varies with.
+  private final LongMap<CachedEntry> cached_entries_ = new LongMap<>();
+
+  private static final PerfStatsCollector.MetricHandle ENTRY_CACHE_HIT =
+      PerfStatsCollector.getInstance().getHandle("resolved entry cache hit");
+  private static final PerfStatsCollector.MetricHandle ENTRY_CACHE_MISS =
+      PerfStatsCollector.getInstance().getHandle("resolved entry cache miss");
+
+  private static final class CachedEntry {
+    final ApkAssetsCookie cookie;
+    final FindEntryResult entry;
+
+    CachedEntry(ApkAssetsCookie cookie, FindEntryResult entry) {
+      this.cookie = cookie;
+      this.entry = entry;
+    }
+  }
 
   //  };
 
@@ -278,6 +296,9 @@ public class CppAssetManager2 {
     if (invalidate_caches) {
       //      InvalidateCaches(static_cast<int>(-1));
       InvalidateCaches(-1);
+    } else {
+      // Cached entries point into the package groups that were just rebuilt.
+      cached_entries_.clear();
     }
     return true;
   }
@@ -348,9 +369,9 @@ public class CppAssetManager2 {
         // library), the compile-time package id of the framework is the same across all packages
         // that compile against the framework.
         for (ConfiguredPackage pkg : iter.packages_) {
-          for (Map.Entry<Integer, Integer> entry :
-              pkg.loaded_package_.getAliasResourceIdMap().entrySet()) {
-            iter2.dynamic_ref_table.addAlias(entry.getKey(), entry.getValue());
+          IntMap<Integer> alias_id_map = pkg.loaded_package_.getAliasResourceIdMap();
+          for (int staged_id : alias_id_map.keys()) {
+            iter2.dynamic_ref_table.addAlias(staged_id, alias_id_map.get(staged_id));
           }
         }
       }
@@ -628,11 +649,24 @@ public class CppAssetManager2 {
 
     // Select our configuration or generate a density override configuration.
     ResTable_config desired_config = configuration_;
+    short cached_density = 0;
     if (density_override != 0 && density_override != configuration_.density) {
-      density_override_config = configuration_;
+      // Copy the configuration, like the C++ struct assignment does, so that configuration_ keeps
+      // its own density.
+      density_override_config = new ResTable_config(configuration_);
       density_override_config.density = density_override;
       desired_config = density_override_config;
+      cached_density = density_override;
+    }
+
+    final long cache_key = ((long) cached_density << 32) | (resid & 0xffffffffL);
+    CachedEntry cached_entry = cached_entries_.get(cache_key);
+    if (cached_entry != null) {
+      ENTRY_CACHE_HIT.incrementCount();
+      out_entry.set(cached_entry.entry);
+      return cached_entry.cookie;
     }
+    ENTRY_CACHE_MISS.incrementCount();
 
     if (!is_valid_resid(resid)) {
       System.err.printf("Invalid ID 0x%08x.%n", resid);
@@ -769,6 +803,7 @@ public class CppAssetManager2 {
     out_entry_.entry_string_ref =
         new StringPoolRef(best_package.GetKeyStringPool(), best_entry.getKeyIndex());
     out_entry_.dynamic_ref_table = package_group.dynamic_ref_table;
+    cached_entries_.put(cache_key, new CachedEntry(best_cookie, out_entry_));
     out_entry.set(out_entry_);
     return best_cookie;
   }
@@ -1345,19 +1380,26 @@ public class CppAssetManager2 {
     if (diff == 0xffffffff) {
       // Everything must go.
       cached_bags_.clear();
+      cached_entries_.clear();
       return;
     }
 
     // Be more conservative with what gets purged. Only if the bag has other possible
     // variations with respect to what changed (diff) should we remove it.
     // for (auto iter = cached_bags_.cbegin(); iter != cached_bags_.cend();) {
-    for (Integer key : new ArrayList<>(cached_bags_.keySet())) {
+    for (int key : cached_bags_.keys()) {
       // if (diff & iter.second.type_spec_flags) {
       if (isTruthy(diff & cached_bags_.get(key).type_spec_flags)) {
         // iter = cached_bags_.erase(iter);
         cached_bags_.remove(key);
       }
     }
+
+    for (long key : cached_entries_.keys()) {
+      if (isTruthy(diff & cached_entries_.get(key).entry.type_flags)) {
+        cached_entries_.remove(key);
+      }
+    }
   }
 
   // Creates a new Theme from this AssetManager.
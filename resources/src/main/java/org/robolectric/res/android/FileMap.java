@@ -5,15 +5,16 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.robolectric.res.android.Util.ALOGV;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.primitives.Ints;
-import com.google.common.primitives.Longs;
-import com.google.common.primitives.Shorts;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -41,6 +42,9 @@ public class FileMap {
 
   private ZipFile zipFile;
   private ZipEntry zipEntry;
+  // A slice of the memory-mapped zip file holding a stored entry's data, or null if the data must
+  // be read through zipFile.
+  private ByteBuffer mappedData;
 
   @SuppressWarnings("unused")
   private boolean readOnly;
@@ -152,10 +156,18 @@ public class FileMap {
   //     return true;
   //   }
 
+  /**
+   * Creates a map of a zip entry.
+   *
+   * <p>Transliteration note: if {@code mappedZipFile} is non-null and the entry is stored without
+   * compression, the data is served directly from the memory-mapped zip file, otherwise it is read
+   * through {@code zipFile} on first access.
+   */
   boolean createFromZip(
       String origFileName,
       ZipFile zipFile,
       ZipEntry entry,
+      ByteBuffer mappedZipFile,
       long offset,
       int length,
       boolean readOnly) {
@@ -199,6 +211,15 @@ public class FileMap {
     // mDataPtr = mBasePtr + adjust;
     mDataLength = Math.toIntExact(entry.getSize());
 
+    if (mappedZipFile != null
+        && entry.getMethod() == ZipEntry.STORED
+        && offset + mDataLength <= mappedZipFile.capacity()) {
+      ByteBuffer slice = mappedZipFile.duplicate();
+      slice.position(Math.toIntExact(offset));
+      slice.limit(Math.toIntExact(offset) + mDataLength);
+      mappedData = slice.slice();
+    }
+
     // assert(mBasePtr != 0);
 
     ALOGV("MAP: base %s/0x%x data %s/0x%x\n", mBasePtr, mBaseLength, mDataPtr, mDataLength);
@@ -206,68 +227,72 @@ public class FileMap {
     return true;
   }
 
-  static ImmutableMap<String, Long> guessDataOffsets(File zipFile, int length) {
+  /**
+   * Maps {@code file} into memory, read-only.
+   *
+   * @throws IOException if the file cannot be read, or is too large to be mapped into a single
+   *     buffer
+   */
+  static MappedByteBuffer mapReadOnly(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(file + " is too large to map: " + channel.size() + " bytes");
+      }
+      // The mapping stays valid after the channel is closed.
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Parses the zip file entry data offsets from the central directory of the zip file in {@code
+   * zipBuffer}, without copying the central directory out of it.
+   */
+  static ImmutableMap<String, Long> guessDataOffsets(ByteBuffer zipBuffer) {
     HashMap<String, Long> result = new HashMap<>();
+    ByteBuffer buffer = zipBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int length = buffer.capacity();
 
     // Parse the zip file entry offsets from the central directory section.
     // See https://en.wikipedia.org/wiki/Zip_(file_format)
 
-    try (RandomAccessFile randomAccessFile = new RandomAccessFile(zipFile, "r")) {
-
-      // First read the 'end of central directory record' in order to find the start of the central
+    try {
+      // First find the 'end of central directory record' in order to find the start of the central
       // directory
       int endOfCdSize = Math.min(MAXIMUM_ZIP_EOCD_SIZE, length);
       int endofCdOffset = length - endOfCdSize;
-      randomAccessFile.seek(endofCdOffset);
-      byte[] buffer = new byte[endOfCdSize];
-      randomAccessFile.readFully(buffer);
 
-      int centralDirOffset = findCentralDir(buffer);
+      int centralDirOffset = findCentralDir(buffer, endofCdOffset);
       if (centralDirOffset == -1) {
         // If the zip file contains > 2^16 entries, a Zip64 EOCD is written, and the central
         // dir offset in the regular EOCD may be -1.
-        centralDirOffset = findCentralDir64(buffer);
-      }
-      int offset = centralDirOffset - endofCdOffset;
-      if (offset < 0) {
-        // read the entire central directory record into memory
-        // for the framework jars this max of 5MB for Q
-        // TODO: consider using a smaller buffer size and re-reading as necessary
-        offset = 0;
-        randomAccessFile.seek(centralDirOffset);
-        final int cdSize = length - centralDirOffset;
-        buffer = new byte[cdSize];
-        randomAccessFile.readFully(buffer);
-      } else {
-        // the central directory is already in the buffer, no need to reread
+        centralDirOffset = findCentralDir64(buffer, endofCdOffset);
       }
+      int offset = centralDirOffset;
 
       // now read the entries
       while (true) {
         // Instead of trusting numRecords, read until we find the
         // end-of-central-directory signature.  numRecords may wrap
         // around with >64K entries.
-        int sig = readInt(buffer, offset);
+        int sig = buffer.getInt(offset);
         if (sig == ENDSIG || sig == ENDSIG64) {
           break;
         }
 
-        int bitFlag = readShort(buffer, offset + 8);
-        int fileNameLength = readShort(buffer, offset + 28);
-        int extraLength = readShort(buffer, offset + 30);
-        int fieldCommentLength = readShort(buffer, offset + 32);
-        int relativeOffsetOfLocalFileHeader = readInt(buffer, offset + 42);
+        int bitFlag = readUnsignedShort(buffer, offset + 8);
+        int fileNameLength = readUnsignedShort(buffer, offset + 28);
+        int extraLength = readUnsignedShort(buffer, offset + 30);
+        int fieldCommentLength = readUnsignedShort(buffer, offset + 32);
+        int relativeOffsetOfLocalFileHeader = buffer.getInt(offset + 42);
 
         byte[] nameBytes = copyBytes(buffer, offset + 46, fileNameLength);
         Charset encoding = getEncoding(bitFlag);
         String fileName = new String(nameBytes, encoding);
-        byte[] localHeaderBuffer = new byte[30];
-        randomAccessFile.seek(relativeOffsetOfLocalFileHeader);
-        randomAccessFile.readFully(localHeaderBuffer);
         // There are two extra field lengths stored in the zip - one in the central directory,
         // one in the local header. And we should use one in local header to calculate the
         // correct file content offset, because they are different some times.
-        int localHeaderExtraLength = readShort(localHeaderBuffer, 28);
+        int localHeaderExtraLength =
+            readUnsignedShort(buffer, relativeOffsetOfLocalFileHeader + 28);
         int fileOffset =
             relativeOffsetOfLocalFileHeader + 30 + fileNameLength + localHeaderExtraLength;
         result.put(fileName, (long) fileOffset);
@@ -280,9 +305,11 @@ public class FileMap {
     }
   }
 
-  private static byte[] copyBytes(byte[] buffer, int offset, int length) {
+  private static byte[] copyBytes(ByteBuffer buffer, int offset, int length) {
     byte[] result = new byte[length];
-    System.arraycopy(buffer, offset, result, 0, length);
+    for (int i = 0; i < length; i++) {
+      result[i] = buffer.get(offset + i);
+    }
     return result;
   }
 
@@ -292,12 +319,12 @@ public class FileMap {
     return (0 != ((bitFlags >>> 11) & 1)) ? UTF_8 : ISO_8859_1;
   }
 
-  private static int findCentralDir(byte[] buffer) throws IOException {
+  private static int findCentralDir(ByteBuffer buffer, int endOfCdOffset) throws IOException {
     // find start of central directory by scanning backwards
-    int scanOffset = buffer.length - EOCD_SIZE;
+    int scanOffset = buffer.capacity() - EOCD_SIZE;
 
     while (true) {
-      int val = readInt(buffer, scanOffset);
+      int val = buffer.getInt(scanOffset);
       if (val == ENDSIG) {
         break;
       }
@@ -305,21 +332,21 @@ public class FileMap {
       // Ok, keep backing up looking for the ZIP end central directory
       // signature.
       --scanOffset;
-      if (scanOffset < 0) {
+      if (scanOffset < endOfCdOffset) {
         throw new ZipException("ZIP directory not found, not a ZIP archive.");
       }
     }
     // scanOffset is now start of end of central directory record
     // the 'offset to central dir' data is at position 16 in the record
-    return readInt(buffer, scanOffset + 16);
+    return buffer.getInt(scanOffset + 16);
   }
 
-  private static int findCentralDir64(byte[] buffer) throws IOException {
+  private static int findCentralDir64(ByteBuffer buffer, int endOfCdOffset) throws IOException {
     // find start of central directory by scanning backwards
-    int scanOffset = buffer.length - EOCD_SIZE - ZIP64_EOCD_LOCATOR_SIZE - ZIP64_EOCD_SIZE;
+    int scanOffset = buffer.capacity() - EOCD_SIZE - ZIP64_EOCD_LOCATOR_SIZE - ZIP64_EOCD_SIZE;
 
     while (true) {
-      int val = readInt(buffer, scanOffset);
+      int val = buffer.getInt(scanOffset);
       if (val == ENDSIG64) {
         break;
       }
@@ -327,38 +354,19 @@ public class FileMap {
       // Ok, keep backing up looking for the ZIP end central directory
       // signature.
       --scanOffset;
-      if (scanOffset < 0) {
+      if (scanOffset < endOfCdOffset) {
         throw new ZipException("ZIP directory not found, not a ZIP archive.");
       }
     }
     // scanOffset is now start of end of central directory record
     // the 'offset to central dir' data is at position 16 in the record
-    long offsetToCentralDir = readLong(buffer, scanOffset + 48);
+    long offsetToCentralDir = buffer.getLong(scanOffset + 48);
     return (int) offsetToCentralDir;
   }
 
-  /** Read a 32-bit integer from a bytebuffer in little-endian order. */
-  private static int readInt(byte[] buffer, int offset) {
-    return Ints.fromBytes(
-        buffer[offset + 3], buffer[offset + 2], buffer[offset + 1], buffer[offset]);
-  }
-
-  /** Read a 64-bit integer from a bytebuffer in little-endian order. */
-  private static long readLong(byte[] buffer, int offset) {
-    return Longs.fromBytes(
-        buffer[offset + 7],
-        buffer[offset + 6],
-        buffer[offset + 5],
-        buffer[offset + 4],
-        buffer[offset + 3],
-        buffer[offset + 2],
-        buffer[offset + 1],
-        buffer[offset]);
-  }
-
-  /** Read a 16-bit short from a bytebuffer in little-endian order. */
-  private static short readShort(byte[] buffer, int offset) {
-    return Shorts.fromBytes(buffer[offset + 1], buffer[offset]);
+  /** Read an unsigned 16-bit value from a little-endian bytebuffer. */
+  private static int readUnsignedShort(ByteBuffer buffer, int offset) {
+    return buffer.getShort(offset) & 0xffff;
   }
 
   /*
@@ -407,7 +415,11 @@ public class FileMap {
    * Get a pointer to the piece of the file we requested.
    */
   synchronized byte[] getDataPtr() {
-    if (mDataPtr == null) {
+    if (mDataPtr == null && mappedData != null) {
+      byte[] data = new byte[mDataLength];
+      mappedData.duplicate().get(data);
+      mDataPtr = data;
+    } else if (mDataPtr == null) {
       mDataPtr = new byte[mDataLength];
 
       InputStream is;
@@ -429,6 +441,46 @@ public class FileMap {
     return mDataPtr;
   }
 
+  /**
+   * Returns true if the data is served from a memory-mapped file, so that {@link #getDataBuffer()}
+   * and {@link #read} don't copy it to the heap.
+   *
+   * <p>Non-Android framework method.
+   */
+  boolean isMapped() {
+    return mappedData != null;
+  }
+
+  /**
+   * Returns the data as a buffer, for callers that don't need a {@code byte[]}. Mapped data is
+   * returned as a read-only view of the mapping rather than copied. The returned buffer has its own
+   * position, limit and byte order.
+   *
+   * <p>Non-Android framework method.
+   */
+  ByteBuffer getDataBuffer() {
+    if (mappedData != null) {
+      return mappedData.duplicate();
+    }
+    return ByteBuffer.wrap(getDataPtr());
+  }
+
+  /**
+   * Copies {@code count} bytes of data starting at {@code offset} into {@code buf}. Unlike {@code
+   * memcpy(buf, getDataPtr() + offset, count)}, this doesn't copy all of the mapped data.
+   *
+   * <p>Non-Android framework method.
+   */
+  void read(int offset, byte[] buf, int bufOffset, int count) {
+    if (mappedData != null && mDataPtr == null) {
+      ByteBuffer data = mappedData.duplicate();
+      data.position(offset);
+      data.get(buf, bufOffset, count);
+    } else {
+      System.arraycopy(getDataPtr(), offset, buf, bufOffset, count);
+    }
+  }
+
   public static void readFully(InputStream is, byte[] bytes) throws IOException {
     int size = bytes.length;
     int remaining = size;
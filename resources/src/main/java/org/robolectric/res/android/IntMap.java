@@ -0,0 +1,158 @@
+package org.robolectric.res.android;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+
+/**
+ * A map from {@code int} keys to non-null values, for resource IDs and the other int keys of the
+ * binary resource engine. Unlike a {@code HashMap<Integer, V>}, it doesn't box its keys, so
+ * lookups don't allocate.
+ *
+ * <p>The map uses open addressing with linear probing, and removes entries by shifting the ones
+ * after them back, so it never needs tombstones. It isn't thread-safe, and it doesn't define an
+ * iteration order.
+ *
+ * @param <V> the type of the values
+ */
+final class IntMap<V> {
+  private static final int INITIAL_CAPACITY = 8;
+
+  private int[] keys;
+  // A null value marks an empty slot.
+  private Object[] values;
+  private int size;
+
+  IntMap() {
+    keys = new int[INITIAL_CAPACITY];
+    values = new Object[INITIAL_CAPACITY];
+  }
+
+  /** Returns the value for {@code key}, or null if there is none. */
+  @SuppressWarnings("unchecked")
+  V get(int key) {
+    int mask = keys.length - 1;
+    for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return (V) values[i];
+      }
+    }
+    return null;
+  }
+
+  boolean containsKey(int key) {
+    return get(key) != null;
+  }
+
+  /** Maps {@code key} to {@code value}, and returns the previous value, or null if none. */
+  @SuppressWarnings("unchecked")
+  V put(int key, V value) {
+    requireNonNull(value);
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    for (; values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        V previous = (V) values[i];
+        values[i] = value;
+        return previous;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    // Keep the load factor at or below 3/4, so that there is always an empty slot to end a probe.
+    if (++size > keys.length - (keys.length >> 2)) {
+      resize(keys.length << 1);
+    }
+    return null;
+  }
+
+  /** Removes the value for {@code key}, and returns it, or null if there was none. */
+  @SuppressWarnings("unchecked")
+  V remove(int key) {
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    while (values[i] != null && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    if (values[i] == null) {
+      return null;
+    }
+    V removed = (V) values[i];
+    // Shift back the following entries of the probe sequence that would no longer be reachable.
+    for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+      int home = slot(keys[j], mask);
+      boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+      if (!reachable) {
+        keys[i] = keys[j];
+        values[i] = values[j];
+        i = j;
+      }
+    }
+    values[i] = null;
+    size--;
+    return removed;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  /** Returns a snapshot of the keys, in no particular order. */
+  int[] keys() {
+    int[] result = new int[size];
+    int n = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        result[n++] = keys[i];
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        if (builder.length() > 1) {
+          builder.append(", ");
+        }
+        builder.append(keys[i]).append('=').append(values[i]);
+      }
+    }
+    return builder.append('}').toString();
+  }
+
+  private void resize(int capacity) {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new int[capacity];
+    values = new Object[capacity];
+    int mask = capacity - 1;
+    for (int j = 0; j < oldValues.length; j++) {
+      if (oldValues[j] != null) {
+        int i = slot(oldKeys[j], mask);
+        while (values[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  private static int slot(int key, int mask) {
+    // Resource IDs differ mostly in their low bits, so spread all bits before masking.
+    int h = key * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
@@ -19,6 +19,7 @@ import static org.robolectric.res.android.Util.logError;
 import static org.robolectric.res.android.Util.logWarning;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -377,9 +378,9 @@ public class LoadedArsc {
     //     return new TypeSpec();
     //   }
     // };
-    final Map<Integer, TypeSpec> type_specs_ = new HashMap<>();
+    final IntMap<TypeSpec> type_specs_ = new IntMap<>();
     final List<DynamicPackageEntry> dynamic_package_map_ = new ArrayList<>();
-    final Map<Integer, Integer> aliasIdMap = new HashMap<>();
+    final IntMap<Integer> aliasIdMap = new IntMap<>();
 
     ResTable_entry GetEntry(ResTable_type type_chunk, short entry_index) {
       int entry_offset = GetEntryOffset(type_chunk, entry_index);
@@ -977,7 +978,10 @@ public class LoadedArsc {
     }
 
     void ForEachTypeSpec(TypeSpecFunc f) {
-      for (Integer i : type_specs_.keySet()) {
+      // Visit the types in order of their index, like the ByteBucketArray of the C++ original.
+      int[] type_indices = type_specs_.keys();
+      Arrays.sort(type_indices);
+      for (int i : type_indices) {
         TypeSpec ptr = type_specs_.get(i);
         if (ptr != null) {
           byte type_id = ptr.type_spec.id;
@@ -989,7 +993,7 @@ public class LoadedArsc {
       }
     }
 
-    Map<Integer, Integer> getAliasResourceIdMap() {
+    IntMap<Integer> getAliasResourceIdMap() {
       return aliasIdMap;
     }
 
@@ -2,9 +2,8 @@ package org.robolectric.res.android;
 
 import static java.util.Objects.requireNonNull;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,7 +18,10 @@ public class NativeObjRegistry<T> {
 
   private final String name;
   private final boolean debug;
-  private final BiMap<Long, T> nativeObjToIdMap = HashBiMap.create();
+  // Objects are looked up by id far more often than they are registered, so ids are kept in a
+  // LongMap, which doesn't box them.
+  private final LongMap<T> idToNativeObjMap = new LongMap<>();
+  private final Map<T, Long> nativeObjToIdMap = new HashMap<>();
   private final Map<Long, DebugInfo> idToDebugInfoMap;
 
   private long nextId = INITIAL_ID;
@@ -51,13 +53,13 @@ public class NativeObjRegistry<T> {
   @Deprecated
   public synchronized long getNativeObjectId(T o) {
     requireNonNull(o);
-    Long nativeId = nativeObjToIdMap.inverse().get(o);
+    Long nativeId = nativeObjToIdMap.get(o);
     if (nativeId == null) {
       nativeId = nextId;
       if (debug) {
         System.out.printf("NativeObjRegistry %s: register %d -> %s%n", name, nativeId, o);
       }
-      nativeObjToIdMap.put(nativeId, o);
+      put(nativeId, o);
       nextId++;
     }
     return nativeId;
@@ -70,7 +72,7 @@ public class NativeObjRegistry<T> {
    */
   public synchronized long register(T o) {
     requireNonNull(o);
-    Long nativeId = nativeObjToIdMap.inverse().get(o);
+    Long nativeId = nativeObjToIdMap.get(o);
     if (nativeId != null) {
       if (debug) {
         DebugInfo debugInfo = idToDebugInfoMap.get(nativeId);
@@ -88,7 +90,7 @@ public class NativeObjRegistry<T> {
       System.out.printf("NativeObjRegistry %s: register %d -> %s%n", name, nativeId, o);
       idToDebugInfoMap.put(nativeId, new DebugInfo(new Trace()));
     }
-    nativeObjToIdMap.put(nativeId, o);
+    put(nativeId, o);
     nextId++;
     return nativeId;
   }
@@ -101,7 +103,10 @@ public class NativeObjRegistry<T> {
    *     unregistered.
    */
   public synchronized T unregister(long nativeId) {
-    T o = nativeObjToIdMap.remove(nativeId);
+    T o = idToNativeObjMap.remove(nativeId);
+    if (o != null) {
+      nativeObjToIdMap.remove(o);
+    }
     if (debug) {
       System.out.printf("NativeObjRegistry %s: unregister %d -> %s%n", name, nativeId, o);
       new RuntimeException("unregister debug").printStackTrace(System.out);
@@ -128,19 +133,24 @@ public class NativeObjRegistry<T> {
    */
   @Deprecated
   public synchronized void unregister(T removed) {
-    nativeObjToIdMap.inverse().remove(removed);
+    Long nativeId = nativeObjToIdMap.remove(removed);
+    if (nativeId != null) {
+      idToNativeObjMap.remove(nativeId);
+    }
   }
 
   /** Retrieve the native object for given id. Throws if object with that id cannot be found */
   public synchronized T getNativeObject(long nativeId) {
-    T object = nativeObjToIdMap.get(nativeId);
+    T object = idToNativeObjMap.get(nativeId);
     if (object != null) {
       return object;
     } else {
+      long[] registeredIds = idToNativeObjMap.keys();
+      Arrays.sort(registeredIds);
       throw new NullPointerException(
           String.format(
               "Could not find object with nativeId: %d. Currently registered ids: %s",
-              nativeId, nativeObjToIdMap.keySet()));
+              nativeId, Arrays.toString(registeredIds)));
     }
   }
 
@@ -150,15 +160,20 @@ public class NativeObjRegistry<T> {
    * @throws IllegalStateException if no object was registered with the given id before
    */
   public synchronized void update(long nativeId, T o) {
-    T previous = nativeObjToIdMap.get(nativeId);
+    T previous = idToNativeObjMap.get(nativeId);
     if (previous == null) {
       throw new IllegalStateException("Native id " + nativeId + " was never registered");
     }
+    Long existingId = nativeObjToIdMap.get(o);
+    if (existingId != null && existingId != nativeId) {
+      throw new IllegalArgumentException("value already present: " + o);
+    }
     if (debug) {
       System.out.printf("NativeObjRegistry %s: update %d -> %s%n", name, nativeId, o);
       idToDebugInfoMap.put(nativeId, new DebugInfo(new Trace()));
     }
-    nativeObjToIdMap.put(nativeId, o);
+    nativeObjToIdMap.remove(previous);
+    put(nativeId, o);
   }
 
   /**
@@ -166,15 +181,21 @@ public class NativeObjRegistry<T> {
    * found.
    */
   public synchronized T peekNativeObject(long nativeId) {
-    return nativeObjToIdMap.get(nativeId);
+    return idToNativeObjMap.get(nativeId);
   }
 
   /** WARNING -- dangerous! Call {@link #unregister(long)} instead! */
   public synchronized void clear() {
     nextId = INITIAL_ID;
+    idToNativeObjMap.clear();
     nativeObjToIdMap.clear();
   }
 
+  private void put(long nativeId, T o) {
+    idToNativeObjMap.put(nativeId, o);
+    nativeObjToIdMap.put(o, nativeId);
+  }
+
   private static class DebugInfo {
     final Trace registrationTrace;
     final List<Trace> unregistrationTraces = new ArrayList<>();
@@ -50,8 +50,12 @@ public class ResStringPool {
   //    const void*                 mStrings;
   private int mStrings;
   // private List<String> mStrings;
-  // private String[] mCache;
   // private char16_t mutable**          mCache;
+  // Decoded strings, indexed like mEntries and allocated on first use. Unlike the C++ mCache, this
+  // caches UTF-16 strings too. The pools of system ApkAssets are shared by all sandboxes, so this
+  // may be used from several threads; strings are immutable, so a race at worst decodes a string
+  // twice, and no lock is needed.
+  private String[] mCache;
   private int mStringPoolSize; // number of uint16_t
   //    const uint32_t*             mStyles;
   private int mStyles;
@@ -330,122 +334,139 @@ public class ResStringPool {
   void uninit() {
     setError(NO_INIT);
     mHeader = null;
+    mCache = null;
   }
 
   public String stringAt(int idx) {
     if (mError == NO_ERROR && idx < mHeader.stringCount) {
-      final boolean isUTF8 = (mHeader.flags & ResStringPool_header.UTF8_FLAG) != 0;
-      //        const uint32_t off = mEntries[idx]/(isUTF8?sizeof(uint8_t):sizeof(uint16_t));
-      ByteBuffer buf = mHeader.myBuf();
-      int bufOffset = mHeader.myOffset();
-      // const uint32_t off = mEntries[idx]/(isUTF8?sizeof(uint8_t):sizeof(uint16_t));
-      final int off = mEntries.get(idx) / (isUTF8 ? 1 /*sizeof(uint8_t)*/ : 2 /*sizeof(uint16_t)*/);
-      if (off < (mStringPoolSize - 1)) {
-        if (!isUTF8) {
-          final int strings = mStrings;
-          final int str = strings + off * 2;
-          return decodeString(buf, bufOffset + str, ResourceString.Type.UTF16);
-          //          int u16len = decodeLengthUTF16(buf, bufOffset + str);
-          //          if ((str+u16len*2-strings) < mStringPoolSize) {
-          //            // Reject malformed (non null-terminated) strings
-          //            if (buf.getShort(bufOffset + str + u16len*2) != 0x0000) {
-          //              ALOGW("Bad string block: string #%d is not null-terminated",
-          //                  (int)idx);
-          //              return null;
-          //            }
-          //            byte[] bytes = new byte[u16len * 2];
-          //            buf.position(bufOffset + str);
-          //            buf.get(bytes);
-          //               // Reject malformed (non null-terminated) strings
-          //               if (str[encLen] != 0x00) {
-          //                   ALOGW("Bad string block: string #%d is not null-terminated",
-          //                         (int)idx);
-          //                   return NULL;
-          //               }
-          //            return new String(bytes, StandardCharsets.UTF_16);
-          //          } else {
-          //            ALOGW("Bad string block: string #%d extends to %d, past end at %d\n",
-          //                (int)idx, (int)(str+u16len-strings), (int)mStringPoolSize);
-          //          }
-        } else {
-          final int strings = mStrings;
-          final int u8str = strings + off;
-          return decodeString(buf, bufOffset + u8str, ResourceString.Type.UTF8);
-
-          //                *u16len = decodeLength(&u8str);
-          //          size_t u8len = decodeLength(&u8str);
-          //
-          //          // encLen must be less than 0x7FFF due to encoding.
-          //          if ((uint32_t)(u8str+u8len-strings) < mStringPoolSize) {
-          //            AutoMutex lock(mDecodeLock);
-          //
-          //            if (mCache != NULL && mCache[idx] != NULL) {
-          //              return mCache[idx];
-          //            }
-          //
-          //            // Retrieve the actual length of the utf8 string if the
-          //            // encoded length was truncated
-          //            if (stringDecodeAt(idx, u8str, u8len, &u8len) == NULL) {
-          //                return NULL;
-          //            }
-          //
-          //            // Since AAPT truncated lengths longer than 0x7FFF, check
-          //            // that the bits that remain after truncation at least match
-          //            // the bits of the actual length
-          //            ssize_t actualLen = utf8_to_utf16_length(u8str, u8len);
-          //            if (actualLen < 0 || ((size_t)actualLen & 0x7FFF) != *u16len) {
-          //              ALOGW("Bad string block: string #%lld decoded length is not correct "
-          //                  "%lld vs %llu\n",
-          //                  (long long)idx, (long long)actualLen, (long long)*u16len);
-          //              return NULL;
-          //            }
-          //
-          //            utf8_to_utf16(u8str, u8len, u16str, *u16len + 1);
-          //
-          //            if (mCache == NULL) {
-          // #ifndef __ANDROID__
-          //                if (kDebugStringPoolNoisy) {
-          //                    ALOGI("CREATING STRING CACHE OF %zu bytes",
-          //                          mHeader->stringCount*sizeof(char16_t**));
-          //                }
-          // #else
-          //                // We do not want to be in this case when actually running Android.
-          //                ALOGW("CREATING STRING CACHE OF %zu bytes",
-          //                        static_cast<size_t>(mHeader->stringCount*sizeof(char16_t**)));
-          // #endif
-          //                mCache = (char16_t**)calloc(mHeader->stringCount, sizeof(char16_t*));
-          //                if (mCache == NULL) {
-          //                    ALOGW("No memory trying to allocate decode cache table of %d
-          // bytes\n",
-          //                          (int)(mHeader->stringCount*sizeof(char16_t**)));
-          //                    return NULL;
-          //                }
-          //            }
-          //            *u16len = (size_t) actualLen;
-          //            char16_t *u16str = (char16_t *)calloc(*u16len+1, sizeof(char16_t));
-          //            if (!u16str) {
-          //              ALOGW("No memory when trying to allocate decode cache for string #%d\n",
-          //                  (int)idx);
-          //              return NULL;
-          //            }
-          //
-          //            if (kDebugStringPoolNoisy) {
-          //              ALOGI("Caching UTF8 string: %s", u8str);
-          //            }
-          //
-          //            mCache[idx] = u16str;
-          //            return u16str;
-          //          } else {
-          //            ALOGW("Bad string block: string #%lld extends to %lld, past end at %lld\n",
-          //                (long long)idx, (long long)(u8str+u8len-strings),
-          //                (long long)mStringPoolSize);
-          //          }
-        }
+      String[] cache = mCache;
+      if (cache == null) {
+        cache = new String[mHeader.stringCount];
+        mCache = cache;
+      }
+      String cached = cache[idx];
+      if (cached != null) {
+        return cached;
+      }
+      String decoded = decodeStringAt(idx);
+      cache[idx] = decoded;
+      return decoded;
+    }
+    return null;
+  }
+
+  private String decodeStringAt(int idx) {
+    final boolean isUTF8 = (mHeader.flags & ResStringPool_header.UTF8_FLAG) != 0;
+    //        const uint32_t off = mEntries[idx]/(isUTF8?sizeof(uint8_t):sizeof(uint16_t));
+    ByteBuffer buf = mHeader.myBuf();
+    int bufOffset = mHeader.myOffset();
+    // const uint32_t off = mEntries[idx]/(isUTF8?sizeof(uint8_t):sizeof(uint16_t));
+    final int off = mEntries.get(idx) / (isUTF8 ? 1 /*sizeof(uint8_t)*/ : 2 /*sizeof(uint16_t)*/);
+    if (off < (mStringPoolSize - 1)) {
+      if (!isUTF8) {
+        final int strings = mStrings;
+        final int str = strings + off * 2;
+        return decodeString(buf, bufOffset + str, ResourceString.Type.UTF16);
+        //          int u16len = decodeLengthUTF16(buf, bufOffset + str);
+        //          if ((str+u16len*2-strings) < mStringPoolSize) {
+        //            // Reject malformed (non null-terminated) strings
+        //            if (buf.getShort(bufOffset + str + u16len*2) != 0x0000) {
+        //              ALOGW("Bad string block: string #%d is not null-terminated",
+        //                  (int)idx);
+        //              return null;
+        //            }
+        //            byte[] bytes = new byte[u16len * 2];
+        //            buf.position(bufOffset + str);
+        //            buf.get(bytes);
+        //               // Reject malformed (non null-terminated) strings
+        //               if (str[encLen] != 0x00) {
+        //                   ALOGW("Bad string block: string #%d is not null-terminated",
+        //                         (int)idx);
+        //                   return NULL;
+        //               }
+        //            return new String(bytes, StandardCharsets.UTF_16);
+        //          } else {
+        //            ALOGW("Bad string block: string #%d extends to %d, past end at %d\n",
+        //                (int)idx, (int)(str+u16len-strings), (int)mStringPoolSize);
+        //          }
       } else {
-        ALOGW(
-            "Bad string block: string #%d entry is at %d, past end at %d\n",
-            idx, (off * 2 /*sizeof(uint16_t)*/), (mStringPoolSize * 2 /*sizeof(uint16_t)*/));
+        final int strings = mStrings;
+        final int u8str = strings + off;
+        return decodeString(buf, bufOffset + u8str, ResourceString.Type.UTF8);
+
+        //                *u16len = decodeLength(&u8str);
+        //          size_t u8len = decodeLength(&u8str);
+        //
+        //          // encLen must be less than 0x7FFF due to encoding.
+        //          if ((uint32_t)(u8str+u8len-strings) < mStringPoolSize) {
+        //            AutoMutex lock(mDecodeLock);
+        //
+        //            if (mCache != NULL && mCache[idx] != NULL) {
+        //              return mCache[idx];
+        //            }
+        //
+        //            // Retrieve the actual length of the utf8 string if the
+        //            // encoded length was truncated
+        //            if (stringDecodeAt(idx, u8str, u8len, &u8len) == NULL) {
+        //                return NULL;
+        //            }
+        //
+        //            // Since AAPT truncated lengths longer than 0x7FFF, check
+        //            // that the bits that remain after truncation at least match
+        //            // the bits of the actual length
+        //            ssize_t actualLen = utf8_to_utf16_length(u8str, u8len);
+        //            if (actualLen < 0 || ((size_t)actualLen & 0x7FFF) != *u16len) {
+        //              ALOGW("Bad string block: string #%lld decoded length is not correct "
+        //                  "%lld vs %llu\n",
+        //                  (long long)idx, (long long)actualLen, (long long)*u16len);
+        //              return NULL;
+        //            }
+        //
+        //            utf8_to_utf16(u8str, u8len, u16str, *u16len + 1);
+        //
+        //            if (mCache == NULL) {
+        // #ifndef __ANDROID__
+        //                if (kDebugStringPoolNoisy) {
+        //                    ALOGI("CREATING STRING CACHE OF %zu bytes",
+        //                          mHeader->stringCount*sizeof(char16_t**));
+        //                }
+        // #else
+        //                // We do not want to be in this case when actually running Android.
+        //                ALOGW("CREATING STRING CACHE OF %zu bytes",
+        //                        static_cast<size_t>(mHeader->stringCount*sizeof(char16_t**)));
+        // #endif
+        //                mCache = (char16_t**)calloc(mHeader->stringCount, sizeof(char16_t*));
+        //                if (mCache == NULL) {
+        //                    ALOGW("No memory trying to allocate decode cache table of %d
+        // bytes\n",
+        //                          (int)(mHeader->stringCount*sizeof(char16_t**)));
+        //                    return NULL;
+        //                }
+        //            }
+        //            *u16len = (size_t) actualLen;
+        //            char16_t *u16str = (char16_t *)calloc(*u16len+1, sizeof(char16_t));
+        //            if (!u16str) {
+        //              ALOGW("No memory when trying to allocate decode cache for string #%d\n",
+        //                  (int)idx);
+        //              return NULL;
+        //            }
+        //
+        //            if (kDebugStringPoolNoisy) {
+        //              ALOGI("Caching UTF8 string: %s", u8str);
+        //            }
+        //
+        //            mCache[idx] = u16str;
+        //            return u16str;
+        //          } else {
+        //            ALOGW("Bad string block: string #%lld extends to %lld, past end at %lld\n",
+        //                (long long)idx, (long long)(u8str+u8len-strings),
+        //                (long long)mStringPoolSize);
+        //          }
       }
+    } else {
+      ALOGW(
+          "Bad string block: string #%d entry is at %d, past end at %d\n",
+          idx, (off * 2 /*sizeof(uint16_t)*/), (mStringPoolSize * 2 /*sizeof(uint16_t)*/));
     }
     return null;
   }
@@ -16,6 +16,7 @@
 
 package org.robolectric.res.android;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_16LE;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -71,7 +72,6 @@ public final class ResourceString {
    * @param type The encoding type that the {@link ResourceString} is encoded in.
    * @return The decoded string.
    */
-  @SuppressWarnings("ByteBufferBackingArray")
   public static String decodeString(ByteBuffer buffer, int offset, Type type) {
     int length;
     int characterCount = decodeLength(buffer, offset, type);
@@ -84,7 +84,14 @@ public final class ResourceString {
     } else {
       length = characterCount * 2;
     }
-    ByteBuffer stringBuffer = ByteBuffer.wrap(buffer.array(), offset, length);
+    // Most resource strings are ASCII, in which case the character count equals the byte count.
+    if (type == Type.UTF8 && length == characterCount) {
+      String ascii = decodeAscii(buffer, offset, length);
+      if (ascii != null) {
+        return ascii;
+      }
+    }
+    ByteBuffer stringBuffer = slice(buffer, offset, length);
     // Use normal UTF-8 and UTF-16 decoder to decode string
     try {
       return type.decoder().decode(stringBuffer).toString();
@@ -93,7 +100,7 @@ public final class ResourceString {
         return null;
       }
     }
-    stringBuffer = ByteBuffer.wrap(buffer.array(), offset, length);
+    stringBuffer = slice(buffer, offset, length);
     // Use CESU8 decoder to try decode failed UTF-8 string, especially modified UTF-8.
     // See
     // https://source.android.com/devices/tech/dalvik/dex-format?hl=hr-HR&skip_cache=true#mutf-8.
@@ -104,6 +111,42 @@ public final class ResourceString {
     }
   }
 
+  /**
+   * Returns the {@code length} bytes of {@code buffer} starting at {@code offset} as a string, or
+   * null if they aren't all ASCII. Unlike a {@link CharsetDecoder}, this copies heap buffers
+   * straight into the string, without an intermediate {@link java.nio.CharBuffer}.
+   */
+  private static String decodeAscii(ByteBuffer buffer, int offset, int length) {
+    byte[] bytes;
+    int start;
+    if (buffer.hasArray()) {
+      bytes = buffer.array();
+      start = buffer.arrayOffset() + offset;
+    } else {
+      bytes = new byte[length];
+      start = 0;
+      slice(buffer, offset, length).get(bytes);
+    }
+    for (int i = start; i < start + length; i++) {
+      if (bytes[i] < 0) {
+        return null;
+      }
+    }
+    return new String(bytes, start, length, US_ASCII);
+  }
+
+  /**
+   * Returns a view of {@code length} bytes of {@code buffer} starting at {@code offset}. Unlike
+   * wrapping {@code buffer.array()}, this also works for direct and memory-mapped buffers.
+   */
+  private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.clear();
+    slice.position(offset);
+    slice.limit(offset + length);
+    return slice;
+  }
+
   /**
    * Encodes a string in either UTF-8 or UTF-16 and returns the bytes of the encoded string. Strings
    * are prefixed by 2 values. The first is the number of characters in the string. The second is
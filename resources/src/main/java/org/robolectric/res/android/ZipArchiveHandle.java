@@ -1,14 +1,23 @@
 package org.robolectric.res.android;
 
 import com.google.common.collect.ImmutableMap;
+import java.nio.ByteBuffer;
 import java.util.zip.ZipFile;
 
 public class ZipArchiveHandle {
   final ZipFile zipFile;
   final ImmutableMap<String, Long> dataOffsets;
+  // The whole zip file mapped into memory, or null if it isn't mapped.
+  final ByteBuffer mappedFile;
 
   public ZipArchiveHandle(ZipFile zipFile, ImmutableMap<String, Long> dataOffsets) {
+    this(zipFile, dataOffsets, null);
+  }
+
+  public ZipArchiveHandle(
+      ZipFile zipFile, ImmutableMap<String, Long> dataOffsets, ByteBuffer mappedFile) {
     this.zipFile = zipFile;
     this.dataOffsets = dataOffsets;
+    this.mappedFile = mappedFile;
   }
 }
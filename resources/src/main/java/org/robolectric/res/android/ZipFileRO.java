@@ -7,6 +7,7 @@ import static org.robolectric.res.android.Util.isTruthy;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -56,8 +57,12 @@ public class ZipFileRO {
       // TODO: consider moving away from ZipFile. By using ZipFile and guessDataOffsets, the zip
       // central directory is being read twice
       ZipFile zipFile = new ZipFile(file);
+      // The whole archive is mapped once, so that the central directory is parsed in place and
+      // stored entries are served without copying. Mapped pages are shared by the OS page cache
+      // across every sandbox that opens the same file.
+      MappedByteBuffer mappedFile = FileMap.mapReadOnly(file);
       mHandle.set(
-          new ZipArchiveHandle(zipFile, FileMap.guessDataOffsets(file, (int) file.length())));
+          new ZipArchiveHandle(zipFile, FileMap.guessDataOffsets(mappedFile), mappedFile));
       return NO_ERROR;
     } catch (IOException e) {
       return NAME_NOT_FOUND;
@@ -283,6 +288,7 @@ public class ZipFileRO {
         mFileName,
         mHandle.zipFile,
         entry.entry,
+        mHandle.mappedFile,
         entry.dataOffset,
         Math.toIntExact(entry.entry.getCompressedSize()),
         true)) {
@@ -0,0 +1,152 @@
+package org.robolectric.res;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.android.ResTable_config;
+
+/** Tests for {@link ResourceTableSnapshot} */
+@RunWith(JUnit4.class)
+@SuppressWarnings("NewApi")
+public final class ResourceTableSnapshotTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path snapshotDirectory;
+  private Path resourceBase;
+  private ResourcePath resourcePath;
+
+  @Before
+  public void setUp() throws IOException {
+    snapshotDirectory = temporaryFolder.newFolder("snapshots").toPath();
+    resourceBase = temporaryFolder.newFolder("res").toPath();
+    resourcePath = new ResourcePath(null, resourceBase, null);
+
+    write(
+        "values/values.xml",
+        "<resources>\n"
+            + "  <string name=\"hello\">Hello</string>\n"
+            + "  <string-array name=\"greetings\"><item>Hi</item><item>Hey</item></string-array>\n"
+            + "  <plurals name=\"apples\">\n"
+            + "    <item quantity=\"one\">one apple</item>\n"
+            + "    <item quantity=\"other\">%d apples</item>\n"
+            + "  </plurals>\n"
+            + "  <attr name=\"mode\" format=\"enum\">\n"
+            + "    <enum name=\"light\" value=\"0\"/>\n"
+            + "    <enum name=\"dark\" value=\"1\"/>\n"
+            + "  </attr>\n"
+            + "  <style name=\"Theme.Small\" parent=\"Theme\">\n"
+            + "    <item name=\"mode\">dark</item>\n"
+            + "  </style>\n"
+            + "</resources>\n");
+    write("values-fr/values.xml", "<resources><string name=\"hello\">Bonjour</string></resources>");
+    write("layout/main.xml", "<LinearLayout/>");
+    write("drawable/frame.9.png", "");
+    write("raw/data.txt", "data");
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(ResourceTableSnapshot.DIRECTORY_PROPERTY);
+  }
+
+  @Test
+  public void newResourceTable_restoresSnapshotOfParsedValues() {
+    System.setProperty(ResourceTableSnapshot.DIRECTORY_PROPERTY, snapshotDirectory.toString());
+    PackageResourceTable parsed = new ResourceTableFactory().newResourceTable("pkg", resourcePath);
+    ResourceTableSnapshot snapshot = snapshot("pkg");
+    assertThat(Files.exists(snapshot.getFile())).isTrue();
+
+    PackageResourceTable restored = new PackageResourceTable("pkg");
+    assertThat(snapshot.restoreTo(restored)).isTrue();
+
+    String[] names = {
+      "string/hello", "array/greetings", "plurals/apples", "attr/mode", "layout/main", "raw/data"
+    };
+    for (String name : names) {
+      ResName resName = new ResName("pkg:" + name);
+      assertThat(restored.getValue(resName, new ResTable_config()).toString())
+          .isEqualTo(parsed.getValue(resName, new ResTable_config()).toString());
+    }
+    ResTable_config fr = Qualifiers.parse("fr").getConfig();
+    assertThat(restored.getValue(new ResName("pkg:string/hello"), fr).getData())
+        .isEqualTo("Bonjour");
+
+    ResName styleName = new ResName("pkg:style/Theme.Small");
+    StyleData style = (StyleData) restored.getValue(styleName, new ResTable_config()).getData();
+    assertThat(style.getParent()).isEqualTo("Theme");
+    assertThat(style.getAttrValue(new ResName("pkg:attr/mode")).value).isEqualTo("dark");
+
+    FileTypedResource.Image image =
+        (FileTypedResource.Image)
+            restored.getValue(new ResName("pkg:drawable/frame"), new ResTable_config());
+    assertThat(image.isNinePatch()).isTrue();
+    assertThat(image.getPath()).isEqualTo(resourceBase.resolve("drawable/frame.9.png"));
+  }
+
+  @Test
+  public void newFrameworkResourceTable_generatesSameIdsFromSnapshot() {
+    System.setProperty(ResourceTableSnapshot.DIRECTORY_PROPERTY, snapshotDirectory.toString());
+    ResourceTableFactory factory = new ResourceTableFactory();
+    PackageResourceTable parsed = factory.newFrameworkResourceTable(resourcePath);
+    PackageResourceTable restored = factory.newFrameworkResourceTable(resourcePath);
+
+    for (String name : new String[] {"string/hello", "style/Theme.Small", "raw/data"}) {
+      ResName resName = new ResName("android:" + name);
+      assertThat(restored.getResourceId(resName)).isNotEqualTo(0);
+      assertThat(restored.getResourceId(resName)).isEqualTo(parsed.getResourceId(resName));
+    }
+  }
+
+  @Test
+  public void changedValues_useNewSnapshot() throws IOException {
+    ResourceTableSnapshot before = snapshot("pkg");
+    write("values/values.xml", "<resources><string name=\"hello\">Hi</string></resources>");
+
+    assertThat(snapshot("pkg").getFile()).isNotEqualTo(before.getFile());
+  }
+
+  @Test
+  public void changedOpaqueFileContent_usesSameSnapshot() throws IOException {
+    ResourceTableSnapshot before = snapshot("pkg");
+    write("layout/main.xml", "<FrameLayout/>");
+
+    assertThat(snapshot("pkg").getFile()).isEqualTo(before.getFile());
+    assertThat(snapshot("other").getFile()).isNotEqualTo(before.getFile());
+  }
+
+  @Test
+  public void restoreTo_withoutSnapshot_returnsFalse() {
+    PackageResourceTable resourceTable = new PackageResourceTable("pkg");
+
+    assertThat(snapshot("pkg").restoreTo(resourceTable)).isFalse();
+    assertThat(resourceTable.getResourceId(new ResName("pkg:string/hello"))).isEqualTo(0);
+  }
+
+  @Test
+  public void restoreTo_withCorruptSnapshot_returnsFalse() throws IOException {
+    ResourceTableSnapshot snapshot = snapshot("pkg");
+    Files.write(snapshot.getFile(), new byte[] {1, 2, 3});
+
+    assertThat(snapshot.restoreTo(new PackageResourceTable("pkg"))).isFalse();
+  }
+
+  private ResourceTableSnapshot snapshot(String packageName) {
+    return ResourceTableSnapshot.forResourcePath(snapshotDirectory, resourcePath, packageName);
+  }
+
+  private void write(String relativePath, String content) throws IOException {
+    Path file = resourceBase.resolve(relativePath);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,100 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ApkAssetsCache} */
+@RunWith(JUnit4.class)
+public final class ApkAssetsCacheTest {
+  private static final String FRAMEWORK_PATH = "/android-all.jar";
+  private static final String APP_PATH = "/app.apk";
+
+  private final List<CppApkAssets> registeredApkAssets = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    ApkAssetsCache.clear();
+  }
+
+  @After
+  public void tearDown() {
+    ApkAssetsCache.clear();
+    for (CppApkAssets apkAssets : registeredApkAssets) {
+      Registries.NATIVE_APK_ASSETS_REGISTRY.unregister(apkAssets);
+    }
+  }
+
+  @Test
+  public void get_returnsPutPtrForSameSdkOnly() {
+    long ptr = register();
+    ApkAssetsCache.put(FRAMEWORK_PATH, true, 30, ptr);
+
+    assertThat(ApkAssetsCache.get(FRAMEWORK_PATH, true, 30)).isEqualTo(ptr);
+    assertThat(ApkAssetsCache.get(FRAMEWORK_PATH, true, 31)).isEqualTo(-1L);
+  }
+
+  @Test
+  public void release_evictsSystemAssetsOfUnreferencedSdk() {
+    ApkAssetsCache.acquire(30);
+    ApkAssetsCache.acquire(30);
+    ApkAssetsCache.acquire(31);
+    long ptr30 = register();
+    long ptr31 = register();
+    ApkAssetsCache.put(FRAMEWORK_PATH, true, 30, ptr30);
+    ApkAssetsCache.put(FRAMEWORK_PATH, true, 31, ptr31);
+
+    ApkAssetsCache.release(30);
+    assertThat(ApkAssetsCache.get(FRAMEWORK_PATH, true, 30)).isEqualTo(ptr30);
+
+    ApkAssetsCache.release(30);
+    assertThat(ApkAssetsCache.get(FRAMEWORK_PATH, true, 30)).isEqualTo(-1L);
+    assertThat(Registries.NATIVE_APK_ASSETS_REGISTRY.peekNativeObject(ptr30)).isNull();
+    assertThat(ApkAssetsCache.get(FRAMEWORK_PATH, true, 31)).isEqualTo(ptr31);
+  }
+
+  @Test
+  public void release_evictsAppAssetsOnceNoSandboxIsLeft() {
+    ApkAssetsCache.acquire(30);
+    ApkAssetsCache.acquire(31);
+    long ptr = register();
+    ApkAssetsCache.put(APP_PATH, false, 30, ptr);
+
+    ApkAssetsCache.release(30);
+    assertThat(ApkAssetsCache.get(APP_PATH, false, 31)).isEqualTo(ptr);
+
+    ApkAssetsCache.release(31);
+    assertThat(ApkAssetsCache.get(APP_PATH, false, 31)).isEqualTo(-1L);
+  }
+
+  @Test
+  public void release_keepsEntriesWhenEvictionIsDisabled() {
+    ApkAssetsCache.setEvictionEnabled(false);
+    ApkAssetsCache.acquire(30);
+    long ptr = register();
+    ApkAssetsCache.put(FRAMEWORK_PATH, true, 30, ptr);
+
+    ApkAssetsCache.release(30);
+
+    assertThat(ApkAssetsCache.get(FRAMEWORK_PATH, true, 30)).isEqualTo(ptr);
+    assertThat(ApkAssetsCache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void release_withoutAcquire_throws() {
+    assertThrows(IllegalStateException.class, () -> ApkAssetsCache.release(30));
+  }
+
+  private long register() {
+    CppApkAssets apkAssets = new CppApkAssets();
+    registeredApkAssets.add(apkAssets);
+    return Registries.NATIVE_APK_ASSETS_REGISTRY.register(apkAssets);
+  }
+}
@@ -0,0 +1,106 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Paths;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.pluginapi.perf.Metric;
+import org.robolectric.res.android.ResourceTypes.Res_value;
+import org.robolectric.util.PerfStatsCollector;
+
+/** Tests for {@link CppAssetManager2} */
+@RunWith(JUnit4.class)
+public final class CppAssetManager2Test {
+  private static final String PACKAGE = "org.robolectric.resources";
+  private static final int DENSITY_MEDIUM = 160;
+  private static final int DENSITY_HIGH = 240;
+
+  private final PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
+  private PerfStatsCollector.Recording previousRecording;
+  private CppAssetManager2 assetManager;
+  // Has values for several locales.
+  private int firstString;
+  // Has a value for the default locale only.
+  private int secondString;
+
+  @Before
+  public void setUp() throws Exception {
+    previousRecording = perfStatsCollector.setCurrentRecording(perfStatsCollector.newRecording());
+    String apkPath =
+        Paths.get(getClass().getResource("/binaryresources/resources.ap_").toURI()).toString();
+    assetManager = new CppAssetManager2();
+    assetManager.SetApkAssets(ImmutableList.of(CppApkAssets.Load(apkPath, false)), true);
+    assetManager.SetConfiguration(newConfig(DENSITY_MEDIUM));
+    firstString = assetManager.GetResourceId(PACKAGE + ":string/first_string", "", "");
+    secondString = assetManager.GetResourceId(PACKAGE + ":string/second_string", "", "");
+  }
+
+  @After
+  public void tearDown() {
+    perfStatsCollector.setCurrentRecording(previousRecording);
+  }
+
+  @Test
+  public void getResource_afterLocaleChange_resolvesValueForNewLocale() {
+    assertThat(getString(firstString, 0)).isEqualTo("sheep");
+
+    assetManager.SetConfiguration(newConfig("fr", DENSITY_MEDIUM));
+
+    assertThat(getString(firstString, 0)).isEqualTo("mouton");
+  }
+
+  @Test
+  public void getResource_afterLocaleChange_keepsResourcesWithoutLocaleVariantsCached() {
+    assertThat(getString(secondString, 0)).isEqualTo("goat");
+    assertThat(getString(firstString, 0)).isEqualTo("sheep");
+    int misses = getEntryCacheMisses();
+
+    assetManager.SetConfiguration(newConfig("fr", DENSITY_MEDIUM));
+
+    assertThat(getString(secondString, 0)).isEqualTo("goat");
+    assertThat(getEntryCacheMisses()).isEqualTo(misses);
+    assertThat(getString(firstString, 0)).isEqualTo("mouton");
+    assertThat(getEntryCacheMisses()).isEqualTo(misses + 1);
+  }
+
+  @Test
+  public void getResource_withDensityOverride_keepsConfiguredDensity() {
+    assertThat(getString(firstString, DENSITY_HIGH)).isEqualTo("sheep");
+
+    assertThat(assetManager.GetConfiguration().density).isEqualTo(DENSITY_MEDIUM);
+  }
+
+  private String getString(int resId, int densityOverride) {
+    Ref<Res_value> value = new Ref<>(null);
+    ApkAssetsCookie cookie =
+        assetManager.GetResource(
+            resId, false, (short) densityOverride, value, new Ref<>(null), new Ref<>(0));
+    return assetManager.GetStringPoolForCookie(cookie).stringAt(value.get().data);
+  }
+
+  private int getEntryCacheMisses() {
+    for (Metric metric : perfStatsCollector.getMetrics()) {
+      if (metric.getName().equals("resolved entry cache miss")) {
+        return metric.getCount();
+      }
+    }
+    return 0;
+  }
+
+  private static ResTable_config newConfig(int density) {
+    ResTable_config config = new ResTable_config();
+    config.density = density;
+    return config;
+  }
+
+  private static ResTable_config newConfig(String language, int density) {
+    ResTable_config config = newConfig(density);
+    config.packLanguage(language);
+    return config;
+  }
+}
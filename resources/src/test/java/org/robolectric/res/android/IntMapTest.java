@@ -0,0 +1,89 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link IntMap} */
+@RunWith(JUnit4.class)
+public final class IntMapTest {
+
+  @Test
+  public void get_returnsPutValue() {
+    IntMap<String> map = new IntMap<>();
+
+    assertThat(map.put(0x7f010001, "a")).isNull();
+    assertThat(map.put(0x7f010002, "b")).isNull();
+
+    assertThat(map.get(0x7f010001)).isEqualTo("a");
+    assertThat(map.get(0x7f010002)).isEqualTo("b");
+    assertThat(map.get(0x7f010003)).isNull();
+    assertThat(map.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void put_replacesValue() {
+    IntMap<String> map = new IntMap<>();
+    map.put(-1, "a");
+
+    assertThat(map.put(-1, "b")).isEqualTo("a");
+    assertThat(map.get(-1)).isEqualTo("b");
+    assertThat(map.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void remove_keepsOtherKeysReachable() {
+    IntMap<Integer> map = new IntMap<>();
+    for (int i = 0; i < 1000; i++) {
+      map.put(i * 0x10000, i);
+    }
+
+    for (int i = 0; i < 1000; i += 2) {
+      assertThat(map.remove(i * 0x10000)).isEqualTo(i);
+    }
+
+    assertThat(map.size()).isEqualTo(500);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(map.get(i * 0x10000)).isEqualTo(i % 2 == 0 ? null : i);
+    }
+  }
+
+  @Test
+  public void behavesLikeHashMap() {
+    IntMap<Integer> map = new IntMap<>();
+    Map<Integer, Integer> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      int key = random.nextInt(256);
+      if (random.nextBoolean()) {
+        assertThat(map.put(key, i)).isEqualTo(expected.put(key, i));
+      } else {
+        assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+      }
+      assertThat(map.size()).isEqualTo(expected.size());
+    }
+
+    for (int key = 0; key < 256; key++) {
+      assertThat(map.get(key)).isEqualTo(expected.get(key));
+    }
+    assertThat(map.keys()).asList().containsExactlyElementsIn(expected.keySet());
+  }
+
+  @Test
+  public void clear_removesAllKeys() {
+    IntMap<String> map = new IntMap<>();
+    map.put(1, "a");
+    map.put(2, "b");
+
+    map.clear();
+
+    assertThat(map.isEmpty()).isTrue();
+    assertThat(map.get(1)).isNull();
+    assertThat(map.keys()).isEmpty();
+  }
+}
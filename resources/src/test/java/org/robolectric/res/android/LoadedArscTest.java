@@ -5,7 +5,6 @@ import static org.robolectric.res.android.ResourceTypes.RES_TABLE_PACKAGE_TYPE;
 import static org.robolectric.res.android.ResourceTypes.RES_TABLE_STAGED_ALIAS_TYPE;
 
 import java.nio.ByteBuffer;
-import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -57,7 +56,7 @@ public class LoadedArscTest {
         LoadedArsc.LoadedPackage.Load(
             chunk, null /* loaded_idmap */, true /* system */, false /* load_as_shared_library */);
 
-    final Map<Integer, Integer> aliasIdMap = loadedPackage.getAliasResourceIdMap();
+    final IntMap<Integer> aliasIdMap = loadedPackage.getAliasResourceIdMap();
     assertEquals(finalizedResId, (int) aliasIdMap.get(stagedResId));
   }
 }
@@ -0,0 +1,48 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LongMap} */
+@RunWith(JUnit4.class)
+public final class LongMapTest {
+
+  @Test
+  public void get_returnsPutValue() {
+    LongMap<String> map = new LongMap<>();
+
+    assertThat(map.put(1L, "a")).isNull();
+    assertThat(map.put(1L << 40, "b")).isNull();
+
+    assertThat(map.get(1L)).isEqualTo("a");
+    assertThat(map.get(1L << 40)).isEqualTo("b");
+    assertThat(map.get(2L)).isNull();
+  }
+
+  @Test
+  public void behavesLikeHashMap() {
+    LongMap<Integer> map = new LongMap<>();
+    Map<Long, Integer> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      long key = random.nextInt(256);
+      if (random.nextBoolean()) {
+        assertThat(map.put(key, i)).isEqualTo(expected.put(key, i));
+      } else {
+        assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+      }
+      assertThat(map.size()).isEqualTo(expected.size());
+    }
+
+    for (long key = 0; key < 256; key++) {
+      assertThat(map.get(key)).isEqualTo(expected.get(key));
+    }
+    assertThat(map.keys()).asList().containsExactlyElementsIn(expected.keySet());
+  }
+}
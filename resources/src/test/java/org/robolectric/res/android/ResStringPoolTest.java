@@ -0,0 +1,52 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.res.android.Errors.NO_ERROR;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.android.ResourceTypes.ResStringPool_header.Writer;
+
+/** Tests for {@link ResStringPool} */
+@RunWith(JUnit4.class)
+public final class ResStringPoolTest {
+
+  @Test
+  public void stringAt_returnsSameInstanceForRepeatedLookups() {
+    ResStringPool pool = new ResStringPool();
+    assertThat(setTo(pool, "hello", "wörld")).isEqualTo(NO_ERROR);
+
+    String first = pool.stringAt(1);
+
+    assertThat(first).isEqualTo("wörld");
+    assertThat(pool.stringAt(1)).isSameInstanceAs(first);
+    assertThat(pool.stringAt(0)).isEqualTo("hello");
+  }
+
+  @Test
+  public void uninit_dropsCachedStrings() {
+    ResStringPool pool = new ResStringPool();
+    setTo(pool, "hello", "wörld");
+    String first = pool.stringAt(1);
+
+    pool.uninit();
+
+    assertThat(pool.stringAt(1)).isNull();
+    assertThat(setTo(pool, "hello", "wörld")).isEqualTo(NO_ERROR);
+    assertThat(pool.stringAt(1)).isEqualTo("wörld");
+    assertThat(pool.stringAt(1)).isNotSameInstanceAs(first);
+  }
+
+  private static int setTo(ResStringPool pool, String... strings) {
+    Writer writer = new Writer();
+    for (String string : strings) {
+      writer.string(string);
+    }
+    ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    writer.write(buf);
+    return pool.setTo(buf, 0, buf.position(), false);
+  }
+}
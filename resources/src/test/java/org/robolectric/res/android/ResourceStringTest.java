@@ -0,0 +1,50 @@
+package org.robolectric.res.android;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.android.ResourceString.Type;
+
+/** Tests for {@link ResourceString} */
+@RunWith(JUnit4.class)
+public final class ResourceStringTest {
+
+  @Test
+  public void decodeString_asciiUtf8() {
+    byte[] encoded = ResourceString.encodeString("Hello world", Type.UTF8);
+
+    assertThat(ResourceString.decodeString(ByteBuffer.wrap(encoded), 0, Type.UTF8))
+        .isEqualTo("Hello world");
+  }
+
+  @Test
+  public void decodeString_nonAsciiUtf8() {
+    byte[] encoded = ResourceString.encodeString("ab©", Type.UTF8);
+
+    assertThat(ResourceString.decodeString(ByteBuffer.wrap(encoded), 0, Type.UTF8))
+        .isEqualTo("ab©");
+  }
+
+  @Test
+  public void decodeString_asciiUtf8AtOffsetInDirectBuffer() {
+    byte[] encoded = ResourceString.encodeString("Hello world", Type.UTF8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 3);
+    buffer.position(3);
+    buffer.put(encoded);
+
+    assertThat(ResourceString.decodeString(buffer, 3, Type.UTF8)).isEqualTo("Hello world");
+  }
+
+  @Test
+  public void decodeString_asciiUtf8InSlicedHeapBuffer() {
+    byte[] encoded = ResourceString.encodeString("Hello world", Type.UTF8);
+    byte[] padded = new byte[encoded.length + 5];
+    System.arraycopy(encoded, 0, padded, 5, encoded.length);
+    ByteBuffer buffer = ByteBuffer.wrap(padded, 2, padded.length - 2).slice();
+
+    assertThat(ResourceString.decodeString(buffer, 3, Type.UTF8)).isEqualTo("Hello world");
+  }
+}
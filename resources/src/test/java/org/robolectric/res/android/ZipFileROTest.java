@@ -1,14 +1,19 @@
 package org.robolectric.res.android;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.newOutputStream;
+import static org.junit.Assert.assertThrows;
 
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import org.junit.Test;
@@ -58,6 +63,49 @@ public final class ZipFileROTest {
     assertThat(fileMap.getDataOffset()).isEqualTo(0x64);
   }
 
+  @Test
+  public void createEntryFileMap_mapsStoredEntries() throws Exception {
+    File blob = File.createTempFile("prefix", "zip");
+    try (ZipOutputStream zip = new ZipOutputStream(newOutputStream(blob.toPath()))) {
+      putStoredEntry(zip, "stored");
+      zip.putNextEntry(new ZipEntry("deflated"));
+      zip.write("deflated".getBytes(UTF_8));
+      zip.closeEntry();
+    }
+
+    ZipFileRO zipFile = ZipFileRO.open(blob.toString());
+    FileMap storedMap = zipFile.createEntryFileMap(zipFile.findEntryByName("stored"));
+    FileMap deflatedMap = zipFile.createEntryFileMap(zipFile.findEntryByName("deflated"));
+
+    assertThat(storedMap.isMapped()).isTrue();
+    assertThat(storedMap.getDataBuffer().isDirect()).isTrue();
+    assertThat(UTF_8.decode(storedMap.getDataBuffer()).toString()).isEqualTo("stored");
+    byte[] partial = new byte[3];
+    storedMap.read(3, partial, 0, 3);
+    assertThat(new String(partial, UTF_8)).isEqualTo("red");
+    assertThat(new String(storedMap.getDataPtr(), UTF_8)).isEqualTo("stored");
+
+    assertThat(deflatedMap.isMapped()).isFalse();
+    assertThat(new String(deflatedMap.getDataPtr(), UTF_8)).isEqualTo("deflated");
+  }
+
+  @Test
+  public void bufferedAssetRead_readsMappedEntryInPlace() throws Exception {
+    File blob = File.createTempFile("prefix", "zip");
+    try (ZipOutputStream zip = new ZipOutputStream(newOutputStream(blob.toPath()))) {
+      putStoredEntry(zip, "stored");
+    }
+    ZipFileRO zipFile = ZipFileRO.open(blob.toString());
+    FileMap storedMap = zipFile.createEntryFileMap(zipFile.findEntryByName("stored"));
+    Asset asset = Asset.createFromUncompressedMap(storedMap, Asset.AccessMode.ACCESS_BUFFER);
+
+    byte[] partial = new byte[3];
+    assertThat(asset.read(partial, 0, 3)).isEqualTo(3);
+
+    assertThat(new String(partial, UTF_8)).isEqualTo("sto");
+    assertThat(asset.isAllocated()).isFalse();
+  }
+
   @Test
   public void open_emptyZip() throws Exception {
     // ensure ZipFileRO cam handle an empty zip file with no central directory
@@ -68,6 +116,22 @@ public final class ZipFileROTest {
     assertThat(zipFile).isNotNull();
   }
 
+  @Test
+  public void mapReadOnly_fileTooLargeToMap_throwsIOException() throws Exception {
+    File blob = File.createTempFile("prefix", "zip");
+    blob.deleteOnExit();
+    try (RandomAccessFile file = new RandomAccessFile(blob, "rw")) {
+      // Sparse, so no disk space is used.
+      file.setLength(Integer.MAX_VALUE + 1L);
+    }
+
+    try {
+      assertThrows(IOException.class, () -> FileMap.mapReadOnly(blob));
+    } finally {
+      blob.delete();
+    }
+  }
+
   @Test
   public void testCreateJar() throws Exception {
     ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
@@ -96,4 +160,17 @@ public final class ZipFileROTest {
     assertThat(zro.findEntryByName("65536")).isNotNull();
     assertThat(zro.findEntryByName("65537")).isNull();
   }
+
+  private static void putStoredEntry(ZipOutputStream zip, String content) throws IOException {
+    byte[] bytes = content.getBytes(UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    ZipEntry entry = new ZipEntry(content);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(bytes.length);
+    entry.setCrc(crc.getValue());
+    zip.putNextEntry(entry);
+    zip.write(bytes);
+    zip.closeEntry();
+  }
 }
@@ -250,6 +250,12 @@ public class RobolectricTestRunner extends SandboxTestRunner {
   @Override
   @Nonnull
   protected AndroidSandbox getSandbox(FrameworkMethod method) {
+    return getSandbox(method, 0);
+  }
+
+  @Override
+  @Nonnull
+  protected AndroidSandbox getSandbox(FrameworkMethod method, int poolIndex) {
     RobolectricFrameworkMethod roboMethod = (RobolectricFrameworkMethod) method;
     Sdk sdk = roboMethod.getSdk();
 
@@ -261,7 +267,12 @@ public class RobolectricTestRunner extends SandboxTestRunner {
 
     sdk.verifySupportedSdk(method.getDeclaringClass().getName());
     return sandboxManager.getAndroidSandbox(
-        classLoaderConfig, sdk, resourcesMode, looperMode, sqliteMode, graphicsMode);
+        classLoaderConfig, sdk, resourcesMode, looperMode, sqliteMode, graphicsMode, poolIndex);
+  }
+
+  @Override
+  protected void releaseSandbox(Sandbox sandbox) {
+    sandboxManager.releaseAndroidSandbox((AndroidSandbox) sandbox);
   }
 
   @Override
@@ -289,6 +300,8 @@ public class RobolectricTestRunner extends SandboxTestRunner {
     perfStatsCollector.putMetadata(
         AndroidMetadata.class,
         new AndroidMetadata(ImmutableMap.of("ro.build.version.sdk", "" + sdk.getApiLevel())));
+    perfStatsCollector.putMetadata(
+        SandboxMetadata.class, sandboxManager.getSandboxMetadata(androidSandbox));
 
     Logger.lifecycle(
         roboMethod.getDeclaringClass().getName()
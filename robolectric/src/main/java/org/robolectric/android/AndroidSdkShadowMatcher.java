@@ -30,6 +30,17 @@ public class AndroidSdkShadowMatcher implements ShadowMatcher {
         && (implementation.maxSdk() == -1 || implementation.maxSdk() >= sdkLevel);
   }
 
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof AndroidSdkShadowMatcher
+        && ((AndroidSdkShadowMatcher) o).sdkLevel == sdkLevel;
+  }
+
+  @Override
+  public int hashCode() {
+    return sdkLevel;
+  }
+
   private static Implementation getImplementationAnnotation(Method method) {
     if (method == null) {
       return null;
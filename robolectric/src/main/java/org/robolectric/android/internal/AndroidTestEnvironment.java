@@ -85,7 +85,6 @@ import org.robolectric.shadows.ShadowLoadedApk.LoadedApkReflector;
 import org.robolectric.shadows.ShadowLog;
 import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.shadows.ShadowPackageManager;
-import org.robolectric.shadows.ShadowPackageParser;
 import org.robolectric.shadows.ShadowPausedLooper;
 import org.robolectric.shadows.ShadowView;
 import org.robolectric.util.Logger;
@@ -113,6 +112,11 @@ public class AndroidTestEnvironment implements TestEnvironment {
   private final ShadowProvider[] shadowProviders;
   private final TestEnvironmentLifecyclePlugin[] testEnvironmentLifecyclePlugins;
   private final Locale initialLocale = Locale.getDefault();
+  // The sandbox creates a single test environment, so this is shared by all of its tests.
+  private final ShadowProvider.Resetter shadowResetter =
+      LoadedShadowsResetter.forClassLoader(getClass().getClassLoader());
+  private final ParsedPackageSnapshots parsedPackageSnapshots =
+      ParsedPackageSnapshots.fromSystemProperties();
 
   public AndroidTestEnvironment(
       @Named("runtimeSdk") Sdk runtimeSdk,
@@ -424,7 +428,7 @@ public class AndroidTestEnvironment implements TestEnvironment {
 
     Path packageFile = appManifest.getApkFile();
     if (packageFile != null) {
-      parsedPackage = ShadowPackageParser.callParsePackage(packageFile);
+      parsedPackage = parsedPackageSnapshots.parsePackage(packageFile);
     } else {
       parsedPackage = new Package("org.robolectric.default");
     }
@@ -602,7 +606,7 @@ public class AndroidTestEnvironment implements TestEnvironment {
     List<Throwable> exceptions = new ArrayList<>();
     for (ShadowProvider provider : shadowProviders) {
       try {
-        provider.reset();
+        provider.reset(shadowResetter);
       } catch (Throwable e) {
         exceptions.add(e);
       }
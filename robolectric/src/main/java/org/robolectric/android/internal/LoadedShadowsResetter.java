@@ -0,0 +1,65 @@
+package org.robolectric.android.internal;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.robolectric.internal.ShadowProvider;
+import org.robolectric.internal.bytecode.SandboxClassLoader;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
+
+/**
+ * A {@link ShadowProvider.Resetter} that only runs the resetters of shadow classes which have been
+ * loaded by the sandbox.
+ *
+ * <p>A shadow class that was never loaded can't hold any static state, and running its resetter
+ * would load and instrument it for nothing. The resetters that do run are measured together as the
+ * {@code "reset shadow"} metric.
+ *
+ * <p>Which shadow classes have been loaded is remembered across tests, so each sandbox should keep
+ * a single instance.
+ *
+ * <p>Set the {@code robolectric.resetAllShadows} system property to {@code true} to run every
+ * resetter, as before.
+ */
+final class LoadedShadowsResetter implements ShadowProvider.Resetter {
+
+  private static final MetricHandle SKIPPED =
+      PerfStatsCollector.getInstance().getHandle("skip shadow reset");
+  private static final MetricHandle RESET =
+      PerfStatsCollector.getInstance().getHandle("reset shadow");
+
+  private final SandboxClassLoader sandboxClassLoader;
+  private final Set<String> loadedShadowClassNames = new HashSet<>();
+
+  /** @param sandboxClassLoader the sandbox's class loader, or null to run every resetter */
+  LoadedShadowsResetter(SandboxClassLoader sandboxClassLoader) {
+    this.sandboxClassLoader = sandboxClassLoader;
+  }
+
+  static LoadedShadowsResetter forClassLoader(ClassLoader classLoader) {
+    if (Boolean.getBoolean("robolectric.resetAllShadows")
+        || !(classLoader instanceof SandboxClassLoader)) {
+      return new LoadedShadowsResetter(null);
+    }
+    return new LoadedShadowsResetter((SandboxClassLoader) classLoader);
+  }
+
+  @Override
+  public boolean shouldReset(String shadowClassName) {
+    if (sandboxClassLoader == null || loadedShadowClassNames.contains(shadowClassName)) {
+      return true;
+    }
+    // Once loaded, a class stays loaded for the life of the sandbox.
+    if (sandboxClassLoader.mayHaveLoadedClass(shadowClassName)) {
+      loadedShadowClassNames.add(shadowClassName);
+      return true;
+    }
+    SKIPPED.incrementCount();
+    return false;
+  }
+
+  @Override
+  public void reset(String shadowClassName, Runnable resetter) {
+    RESET.measure(resetter::run);
+  }
+}
@@ -0,0 +1,76 @@
+package org.robolectric.android.internal;
+
+import static android.os.Build.VERSION_CODES.P;
+import static org.robolectric.util.reflector.Reflector.reflector;
+
+import android.content.pm.PackageParser;
+import android.content.pm.PackageParser.Package;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowPackageParser;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
+import org.robolectric.util.reflector.ForType;
+import org.robolectric.util.reflector.Static;
+
+/**
+ * Keeps a snapshot of each app package parsed in a sandbox, so that later tests in the sandbox
+ * restore the package from the snapshot instead of parsing the APK again.
+ *
+ * <p>Snapshots use the framework's own package cache format, a parcelled {@link Package}, so
+ * restoring one skips reading the APK and resolving the manifest's attributes. Every restore
+ * returns a new {@link Package}, which tests are free to modify.
+ *
+ * <p>This is opt-in, with {@code -Drobolectric.snapshotParsedPackages=true}, and only applies on
+ * P and above, where the package cache format is available.
+ */
+final class ParsedPackageSnapshots {
+  private static final MetricHandle RESTORE_PACKAGE =
+      PerfStatsCollector.getInstance().getHandle("restore package snapshot");
+
+  private final boolean enabled;
+  private final Map<Path, byte[]> snapshots = new HashMap<>();
+
+  ParsedPackageSnapshots(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  static ParsedPackageSnapshots fromSystemProperties() {
+    return new ParsedPackageSnapshots(Boolean.getBoolean("robolectric.snapshotParsedPackages"));
+  }
+
+  /** Returns the package in {@code packageFile}, restoring it from a snapshot if there is one. */
+  Package parsePackage(Path packageFile) {
+    if (!enabled || RuntimeEnvironment.getApiLevel() < P) {
+      return ShadowPackageParser.callParsePackage(packageFile);
+    }
+    byte[] snapshot = snapshots.get(packageFile);
+    if (snapshot != null) {
+      return RESTORE_PACKAGE.measure(() -> restore(snapshot));
+    }
+    Package parsedPackage = ShadowPackageParser.callParsePackage(packageFile);
+    snapshots.put(packageFile, snapshot(parsedPackage));
+    return parsedPackage;
+  }
+
+  static byte[] snapshot(Package parsedPackage) {
+    return reflector(PackageParserCacheReflector.class).toCacheEntryStatic(parsedPackage);
+  }
+
+  static Package restore(byte[] snapshot) {
+    return reflector(PackageParserCacheReflector.class).fromCacheEntryStatic(snapshot);
+  }
+
+  /** Accessor interface for {@link PackageParser}'s package cache. */
+  @ForType(PackageParser.class)
+  interface PackageParserCacheReflector {
+
+    @Static
+    byte[] toCacheEntryStatic(Package pkg);
+
+    @Static
+    Package fromCacheEntryStatic(byte[] bytes);
+  }
+}
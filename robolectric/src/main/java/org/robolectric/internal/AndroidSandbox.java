@@ -120,6 +120,9 @@ public class AndroidSandbox extends Sandbox {
 
   /** Adapter from Sdk to ResourceLoader. */
   public static class SdkSandboxClassLoader extends SandboxClassLoader {
+    static {
+      registerAsParallelCapable();
+    }
 
     public SdkSandboxClassLoader(
         InstrumentationConfiguration config,
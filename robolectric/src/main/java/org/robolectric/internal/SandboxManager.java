@@ -1,74 +1,188 @@
 package org.robolectric.internal;
 
 import android.annotation.SuppressLint;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.robolectric.SandboxMetadata;
 import org.robolectric.annotation.GraphicsMode;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.annotation.ResourcesMode;
 import org.robolectric.annotation.SQLiteMode;
 import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.pluginapi.SandboxCachePolicy;
+import org.robolectric.pluginapi.SandboxCachePolicy.CachedSandbox;
 import org.robolectric.pluginapi.Sdk;
+import org.robolectric.plugins.DefaultSandboxCachePolicy;
 import org.robolectric.plugins.SdkCollection;
+import org.robolectric.res.android.ApkAssetsCache;
 import org.robolectric.util.PerfStatsCollector;
 import org.robolectric.util.inject.AutoFactory;
 
-/** Manager of sandboxes. */
+/**
+ * Manager of sandboxes.
+ *
+ * <p>Sandboxes are cached and reused by later tests with the same configuration; a {@link
+ * SandboxCachePolicy} decides when to shut them down. Sandboxes for different configurations may
+ * be created concurrently.
+ *
+ * <p>Every sandbox returned by {@code getAndroidSandbox} must be given back with {@link
+ * #releaseAndroidSandbox(AndroidSandbox)} once the caller is done with it. A sandbox is never shut
+ * down while it is in use.
+ */
 @SuppressLint("NewApi")
 public class SandboxManager {
 
-  /** The factor for cache size. See {@link #sandboxesByKey} for details. */
-  private static final int CACHE_SIZE_FACTOR = 3;
-
   private final SandboxBuilder sandboxBuilder;
   private final SdkCollection sdkCollection;
+  private final SandboxCachePolicy cachePolicy;
 
-  // Simple LRU Cache. AndroidSandboxes are unique across InstrumentationConfiguration and Sdk
-  private final LinkedHashMap<SandboxKey, AndroidSandbox> sandboxesByKey;
+  // AndroidSandboxes are unique across InstrumentationConfiguration, Sdk, modes and pool index.
+  private final ConcurrentHashMap<SandboxKey, CacheEntry> sandboxesByKey =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<AndroidSandbox, CacheEntry> entriesBySandbox =
+      new ConcurrentHashMap<>();
+  private final Object evictionLock = new Object();
 
-  @Inject
+  /** Creates a manager that evicts sandboxes according to {@link DefaultSandboxCachePolicy}. */
   public SandboxManager(SandboxBuilder sandboxBuilder, SdkCollection sdkCollection) {
+    this(
+        sandboxBuilder,
+        sdkCollection,
+        new DefaultSandboxCachePolicy(sdkCollection, System.getProperties()));
+  }
+
+  @Inject
+  public SandboxManager(
+      SandboxBuilder sandboxBuilder, SdkCollection sdkCollection, SandboxCachePolicy cachePolicy) {
     this.sandboxBuilder = sandboxBuilder;
     this.sdkCollection = sdkCollection;
-
-    // We need to set the cache size of class loaders more than the number of supported APIs as
-    // different tests may have different configurations.
-    final int cacheSize = sdkCollection.getSupportedSdks().size() * CACHE_SIZE_FACTOR;
-    sandboxesByKey =
-        new LinkedHashMap<SandboxKey, AndroidSandbox>() {
-          @Override
-          protected boolean removeEldestEntry(Map.Entry<SandboxKey, AndroidSandbox> eldest) {
-            boolean toRemove = size() > cacheSize;
-            if (toRemove) {
-              PerfStatsCollector.getInstance().incrementCount("evictSandbox");
-              eldest.getValue().shutdown();
-            }
-            return toRemove;
-          }
-        };
+    this.cachePolicy = cachePolicy;
   }
 
-  public synchronized AndroidSandbox getAndroidSandbox(
+  /**
+   * Returns the cached sandbox for the given configuration, creating it if needed.
+   *
+   * <p>The caller must call {@link #releaseAndroidSandbox(AndroidSandbox)} once for every call to
+   * this method when it is done with the sandbox. Sandboxes that are never released are never
+   * evicted.
+   */
+  public AndroidSandbox getAndroidSandbox(
       InstrumentationConfiguration instrumentationConfig,
       Sdk sdk,
       ResourcesMode.Mode resourcesMode,
       LooperMode.Mode looperMode,
       SQLiteMode.Mode sqliteMode,
       GraphicsMode.Mode graphicsMode) {
+    return getAndroidSandbox(
+        instrumentationConfig, sdk, resourcesMode, looperMode, sqliteMode, graphicsMode, 0);
+  }
+
+  /**
+   * Returns a sandbox like {@link #getAndroidSandbox(InstrumentationConfiguration, Sdk,
+   * ResourcesMode.Mode, LooperMode.Mode, SQLiteMode.Mode, GraphicsMode.Mode)}, but distinct for
+   * each {@code poolIndex}, so that identically configured tests can run concurrently. It must be
+   * released the same way.
+   */
+  public AndroidSandbox getAndroidSandbox(
+      InstrumentationConfiguration instrumentationConfig,
+      Sdk sdk,
+      ResourcesMode.Mode resourcesMode,
+      LooperMode.Mode looperMode,
+      SQLiteMode.Mode sqliteMode,
+      GraphicsMode.Mode graphicsMode,
+      int poolIndex) {
     SandboxKey key =
-        new SandboxKey(instrumentationConfig, sdk, resourcesMode, looperMode, graphicsMode);
+        new SandboxKey(
+            instrumentationConfig, sdk, resourcesMode, looperMode, graphicsMode, poolIndex);
+
+    while (true) {
+      CacheEntry entry = sandboxesByKey.computeIfAbsent(key, k -> new CacheEntry(k, sdk));
+      AndroidSandbox androidSandbox =
+          entry.getOrCreate(
+              () -> {
+                Sdk compileSdk = sdkCollection.getMaxSupportedSdk();
+                return sandboxBuilder.build(
+                    instrumentationConfig, sdk, compileSdk, resourcesMode, sqliteMode);
+              });
+      if (androidSandbox == null) {
+        // The entry was evicted concurrently; try again with a fresh one.
+        sandboxesByKey.remove(key, entry);
+        continue;
+      }
+      entriesBySandbox.putIfAbsent(androidSandbox, entry);
+      evictIfNeeded();
+      return androidSandbox;
+    }
+  }
+
+  /**
+   * Records that the caller is done with a sandbox from {@code getAndroidSandbox}. The sandbox may
+   * be evicted once no other caller is using it.
+   */
+  public void releaseAndroidSandbox(AndroidSandbox androidSandbox) {
+    CacheEntry entry = entriesBySandbox.get(androidSandbox);
+    if (entry != null) {
+      entry.release();
+      evictIfNeeded();
+    }
+  }
+
+  /** Returns metadata about {@code androidSandbox} and the cache, for perf stats reporting. */
+  public SandboxMetadata getSandboxMetadata(AndroidSandbox androidSandbox) {
+    long creationTimeNs = 0;
+    long estimatedRetainedBytes = 0;
+    int cachedSandboxCount = 0;
+    long cachedRetainedBytes = 0;
+    for (CacheEntry entry : sandboxesByKey.values()) {
+      if (!entry.isCreated()) {
+        continue;
+      }
+      cachedSandboxCount++;
+      cachedRetainedBytes += entry.getEstimatedRetainedBytes();
+      if (entry.sandbox == androidSandbox) {
+        creationTimeNs = entry.getCreationTimeNs();
+        estimatedRetainedBytes = entry.getEstimatedRetainedBytes();
+      }
+    }
+    return new SandboxMetadata(
+        creationTimeNs,
+        estimatedRetainedBytes,
+        cachedSandboxCount,
+        cachedRetainedBytes,
+        ApkAssetsCache.size(),
+        ApkAssetsCache.getEstimatedRetainedBytes());
+  }
+
+  private void evictIfNeeded() {
+    synchronized (evictionLock) {
+      List<CacheEntry> entries = new ArrayList<>();
+      Map<CacheEntry, Long> lastUsed = new HashMap<>();
+      for (CacheEntry entry : sandboxesByKey.values()) {
+        if (entry.isCreated()) {
+          entries.add(entry);
+          // Sandboxes in use count as the most recently used.
+          lastUsed.put(entry, entry.isInUse() ? Long.MAX_VALUE : entry.lastUsedNanos);
+        }
+      }
+      entries.sort(Comparator.comparing(lastUsed::get));
 
-    AndroidSandbox androidSandbox = sandboxesByKey.get(key);
-    if (androidSandbox == null) {
-      Sdk compileSdk = sdkCollection.getMaxSupportedSdk();
-      androidSandbox =
-          sandboxBuilder.build(instrumentationConfig, sdk, compileSdk, resourcesMode, sqliteMode);
-      sandboxesByKey.put(key, androidSandbox);
+      for (CachedSandbox selected : cachePolicy.selectEvictions(new ArrayList<>(entries))) {
+        CacheEntry entry = (CacheEntry) selected;
+        if (entry.evict()) {
+          sandboxesByKey.remove(entry.key, entry);
+          entriesBySandbox.remove(entry.sandbox, entry);
+          PerfStatsCollector.getInstance().incrementCount("evictSandbox");
+        }
+      }
     }
-    return androidSandbox;
   }
 
   /** Factory interface for AndroidSandbox. */
@@ -82,24 +196,133 @@ public class SandboxManager {
         SQLiteMode.Mode sqLiteMode);
   }
 
+  /** A cached sandbox, created at most once by the first thread that requests it. */
+  private static final class CacheEntry implements CachedSandbox {
+    private final SandboxKey key;
+    private final Sdk sdk;
+    private volatile AndroidSandbox sandbox;
+    private volatile boolean evicted;
+    private volatile long lastUsedNanos;
+    // The number of callers that got the sandbox and haven't released it yet; guarded by this.
+    private int users;
+    private long creationTimeNs;
+    private long heapGrowthBytes;
+
+    CacheEntry(SandboxKey key, Sdk sdk) {
+      this.key = key;
+      this.sdk = sdk;
+    }
+
+    /** Returns the cached sandbox, creating it if needed, or null if the entry was evicted. */
+    synchronized AndroidSandbox getOrCreate(Supplier<AndroidSandbox> builder) {
+      if (evicted) {
+        return null;
+      }
+      if (sandbox == null) {
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long startNs = System.nanoTime();
+        // Keep the ApkAssets of this SDK level cached for as long as the sandbox lives.
+        ApkAssetsCache.acquire(sdk.getApiLevel());
+        try {
+          sandbox = PerfStatsCollector.getInstance().measure("create sandbox", builder::get);
+        } catch (RuntimeException | Error e) {
+          ApkAssetsCache.release(sdk.getApiLevel());
+          throw e;
+        }
+        creationTimeNs = System.nanoTime() - startNs;
+        long usedHeapAfter = runtime.totalMemory() - runtime.freeMemory();
+        heapGrowthBytes = Math.max(0, usedHeapAfter - usedHeapBefore);
+        lastUsedNanos = System.nanoTime();
+      }
+      users++;
+      return sandbox;
+    }
+
+    /** Records that a caller is done with the sandbox, which is now idle if it was the last. */
+    synchronized void release() {
+      if (users == 0) {
+        throw new IllegalStateException("Sandbox released more often than it was requested");
+      }
+      users--;
+      lastUsedNanos = System.nanoTime();
+    }
+
+    synchronized boolean isInUse() {
+      return users > 0;
+    }
+
+    boolean isCreated() {
+      return sandbox != null && !evicted;
+    }
+
+    /**
+     * Shuts down the sandbox and releases its ApkAssets. Returns false if it was already evicted,
+     * or if a caller is using it, e.g. one that requested it after it was selected for eviction.
+     */
+    synchronized boolean evict() {
+      if (evicted || users > 0) {
+        return false;
+      }
+      evicted = true;
+      if (sandbox != null) {
+        try {
+          sandbox.shutdown();
+        } finally {
+          ApkAssetsCache.release(sdk.getApiLevel());
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public Sdk getSdk() {
+      return sdk;
+    }
+
+    @Override
+    public synchronized long getCreationTimeNs() {
+      return creationTimeNs;
+    }
+
+    @Override
+    public long getIdleTimeNs() {
+      return isInUse() ? 0 : System.nanoTime() - lastUsedNanos;
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+      AndroidSandbox androidSandbox = sandbox;
+      if (androidSandbox == null) {
+        return 0;
+      }
+      synchronized (this) {
+        return heapGrowthBytes + androidSandbox.getDefinedClassBytes();
+      }
+    }
+  }
+
   static class SandboxKey {
     private final Sdk sdk;
     private final InstrumentationConfiguration instrumentationConfiguration;
     private final ResourcesMode.Mode resourcesMode;
     private final LooperMode.Mode looperMode;
     private final GraphicsMode.Mode graphicsMode;
+    private final int poolIndex;
 
     public SandboxKey(
         InstrumentationConfiguration instrumentationConfiguration,
         Sdk sdk,
         ResourcesMode.Mode resourcesMode,
         LooperMode.Mode looperMode,
-        GraphicsMode.Mode graphicsMode) {
+        GraphicsMode.Mode graphicsMode,
+        int poolIndex) {
       this.sdk = sdk;
       this.instrumentationConfiguration = instrumentationConfiguration;
       this.resourcesMode = resourcesMode;
       this.looperMode = looperMode;
       this.graphicsMode = graphicsMode;
+      this.poolIndex = poolIndex;
     }
 
     @Override
@@ -115,13 +338,14 @@ public class SandboxManager {
           && Objects.equals(sdk, that.sdk)
           && Objects.equals(instrumentationConfiguration, that.instrumentationConfiguration)
           && looperMode == that.looperMode
-          && graphicsMode == that.graphicsMode;
+          && graphicsMode == that.graphicsMode
+          && poolIndex == that.poolIndex;
     }
 
     @Override
     public int hashCode() {
       return Objects.hash(
-          sdk, instrumentationConfiguration, resourcesMode, looperMode, graphicsMode);
+          sdk, instrumentationConfiguration, resourcesMode, looperMode, graphicsMode, poolIndex);
     }
   }
 }
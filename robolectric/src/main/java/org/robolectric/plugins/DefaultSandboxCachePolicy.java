@@ -0,0 +1,87 @@
+package org.robolectric.plugins;
+
+import com.google.auto.service.AutoService;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import org.robolectric.pluginapi.SandboxCachePolicy;
+
+/**
+ * Robolectric's default {@link SandboxCachePolicy}.
+ *
+ * <p>Evicts least recently used sandboxes once there are more than {@code
+ * robolectric.sandboxCache.maxSandboxes} of them (by default, three per supported SDK for each
+ * of the {@code robolectric.parallelSandboxes} pooled sandboxes) or once their estimated retained
+ * memory exceeds {@code robolectric.sandboxCache.maxRetainedBytes} (unbounded by default).
+ * Sandboxes that have not been used for {@code robolectric.sandboxCache.idleTimeoutSeconds} are
+ * evicted too, if that property is set.
+ */
+@AutoService(SandboxCachePolicy.class)
+@Priority(Integer.MIN_VALUE)
+public class DefaultSandboxCachePolicy implements SandboxCachePolicy {
+
+  /** The default number of cached sandboxes per supported SDK. */
+  private static final int CACHE_SIZE_FACTOR = 3;
+
+  private final int maxSandboxes;
+  private final long maxRetainedBytes;
+  private final long idleTimeoutNs;
+
+  @Inject
+  public DefaultSandboxCachePolicy(SdkCollection sdkCollection, Properties systemProperties) {
+    // We need to set the cache size of class loaders more than the number of supported APIs as
+    // different tests may have different configurations.
+    this(
+        Integer.parseInt(
+            systemProperties.getProperty(
+                "robolectric.sandboxCache.maxSandboxes",
+                String.valueOf(
+                    sdkCollection.getSupportedSdks().size()
+                        * CACHE_SIZE_FACTOR
+                        * parallelSandboxes(systemProperties)))),
+        Long.parseLong(
+            systemProperties.getProperty(
+                "robolectric.sandboxCache.maxRetainedBytes", String.valueOf(Long.MAX_VALUE))),
+        TimeUnit.SECONDS.toNanos(
+            Long.parseLong(
+                systemProperties.getProperty("robolectric.sandboxCache.idleTimeoutSeconds", "0"))));
+  }
+
+  private static int parallelSandboxes(Properties systemProperties) {
+    return Math.max(
+        1, Integer.parseInt(systemProperties.getProperty("robolectric.parallelSandboxes", "1")));
+  }
+
+  @VisibleForTesting
+  DefaultSandboxCachePolicy(int maxSandboxes, long maxRetainedBytes, long idleTimeoutNs) {
+    this.maxSandboxes = maxSandboxes;
+    this.maxRetainedBytes = maxRetainedBytes;
+    this.idleTimeoutNs = idleTimeoutNs;
+  }
+
+  @Nonnull
+  @Override
+  public List<CachedSandbox> selectEvictions(List<CachedSandbox> cachedSandboxes) {
+    int remainingCount = cachedSandboxes.size();
+    long remainingBytes = 0;
+    for (CachedSandbox cachedSandbox : cachedSandboxes) {
+      remainingBytes += cachedSandbox.getEstimatedRetainedBytes();
+    }
+
+    List<CachedSandbox> evictions = new ArrayList<>();
+    for (CachedSandbox cachedSandbox : cachedSandboxes) {
+      boolean idle = idleTimeoutNs > 0 && cachedSandbox.getIdleTimeNs() > idleTimeoutNs;
+      if (remainingCount > maxSandboxes || remainingBytes > maxRetainedBytes || idle) {
+        evictions.add(cachedSandbox);
+        remainingCount--;
+        remainingBytes -= cachedSandbox.getEstimatedRetainedBytes();
+      }
+    }
+    return evictions;
+  }
+}
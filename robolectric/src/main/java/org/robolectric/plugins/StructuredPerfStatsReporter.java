@@ -0,0 +1,419 @@
+package org.robolectric.plugins;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.service.AutoService;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.robolectric.AndroidMetadata;
+import org.robolectric.TestMetadata;
+import org.robolectric.pluginapi.perf.Histogram;
+import org.robolectric.pluginapi.perf.Metadata;
+import org.robolectric.pluginapi.perf.Metric;
+import org.robolectric.pluginapi.perf.PerfStatsReporter;
+import org.robolectric.util.Logger;
+
+/**
+ * A {@link PerfStatsReporter} that exports perf stats in machine-readable form, so Robolectric's
+ * overhead can be tracked across runs and regressions found across many test classes.
+ *
+ * <p>If {@code robolectric.perfStats.outputDirectory} is set, a summary of each test class's
+ * metrics is written to {@code <outputDirectory>/<test class name>.json} when the JVM exits, or
+ * to {@code .csv} files if {@code robolectric.perfStats.format} is {@code csv}.
+ *
+ * <p>If {@code robolectric.perfStats.jfr} is {@code true}, a JDK Flight Recorder event is committed
+ * for each metric after each test; start a recording (e.g. with {@code -XX:StartFlightRecording})
+ * to capture them.
+ *
+ * <p>Both outputs tag each metric with the phase of the test's lifecycle it belongs to: sandbox
+ * creation, class instrumentation, application setup, resource table load, looper idle, shadow
+ * reset, or other. If neither output is configured, this reporter is disabled and doesn't cause
+ * perf stats to be collected.
+ */
+@AutoService(PerfStatsReporter.class)
+public class StructuredPerfStatsReporter implements PerfStatsReporter {
+
+  private final Path outputDirectory;
+  private final boolean csv;
+  private final boolean jfr;
+
+  private final Map<String, ClassSummary> summariesByTestClass = new TreeMap<>();
+  private boolean shutdownHookRegistered;
+
+  @Inject
+  public StructuredPerfStatsReporter(Properties systemProperties) {
+    this(
+        systemProperties.getProperty("robolectric.perfStats.outputDirectory") == null
+            ? null
+            : Paths.get(systemProperties.getProperty("robolectric.perfStats.outputDirectory")),
+        "csv".equals(systemProperties.getProperty("robolectric.perfStats.format")),
+        Boolean.parseBoolean(systemProperties.getProperty("robolectric.perfStats.jfr")));
+  }
+
+  @VisibleForTesting
+  StructuredPerfStatsReporter(Path outputDirectory, boolean csv, boolean jfr) {
+    this.outputDirectory = outputDirectory;
+    this.csv = csv;
+    this.jfr = jfr;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return outputDirectory != null || jfr;
+  }
+
+  @Override
+  public void report(Metadata metadata, Collection<Metric> metrics) {
+    TestMetadata testMetadata = metadata.get(TestMetadata.class);
+    String testClassName = testMetadata == null ? "unknown" : testMetadata.getTestClassName();
+    int sdk = sdkOf(metadata);
+
+    if (jfr) {
+      String testMethodName = testMetadata == null ? "unknown" : testMetadata.getTestMethodName();
+      JfrEvents.commit(testClassName, testMethodName, sdk, metrics);
+    }
+
+    if (outputDirectory != null) {
+      synchronized (this) {
+        if (!shutdownHookRegistered) {
+          Runtime.getRuntime()
+              .addShutdownHook(new Thread(this::writeSummaries, "perf stats summary writer"));
+          shutdownHookRegistered = true;
+        }
+        summariesByTestClass
+            .computeIfAbsent(testClassName, k -> new ClassSummary())
+            .add(sdk, metrics);
+      }
+    }
+  }
+
+  /** Writes the summary file of every test class reported so far. */
+  public synchronized void writeSummaries() {
+    if (outputDirectory == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(outputDirectory);
+      for (Map.Entry<String, ClassSummary> entry : summariesByTestClass.entrySet()) {
+        Path file = outputDirectory.resolve(entry.getKey() + (csv ? ".csv" : ".json"));
+        Path tempFile = Files.createTempFile(outputDirectory, entry.getKey(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, UTF_8)) {
+          if (csv) {
+            entry.getValue().writeCsv(writer);
+          } else {
+            entry.getValue().writeJson(entry.getKey(), writer);
+          }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      Logger.error("Failed to write perf stats summaries to " + outputDirectory, e);
+    }
+  }
+
+  /** Returns the test lifecycle phase that the metric named {@code metricName} belongs to. */
+  static String phaseOf(String metricName) {
+    switch (metricName) {
+      case "create sandbox":
+        return "sandbox creation";
+      case "load sandboxed class":
+      case "analyze class":
+      case "instrument class":
+        return "class instrumentation";
+      case "installAndCreateApplication":
+      case "application onCreate()":
+        return "application setup";
+      case "looper idle":
+        return "looper idle";
+      case "reset shadow":
+      case "skip shadow reset":
+        return "shadow reset";
+      default:
+        if (metricName.startsWith("load binary") || metricName.startsWith("load legacy")) {
+          return "resource table load";
+        }
+        return "other";
+    }
+  }
+
+  private static int sdkOf(Metadata metadata) {
+    AndroidMetadata androidMetadata = metadata.get(AndroidMetadata.class);
+    if (androidMetadata == null) {
+      return 0;
+    }
+    String sdk = androidMetadata.getDeviceBootProperties().get("ro.build.version.sdk");
+    return sdk == null ? 0 : Integer.parseInt(sdk);
+  }
+
+  /** Accumulated metrics of all tests in a test class. */
+  private static class ClassSummary {
+    private int testCount;
+    private final Map<MetricKey, MetricSummary> metrics = new TreeMap<>();
+
+    void add(int sdk, Collection<Metric> testMetrics) {
+      testCount++;
+      for (Metric metric : testMetrics) {
+        metrics
+            .computeIfAbsent(
+                new MetricKey(metric.getName(), metric.isSuccess(), sdk), k -> new MetricSummary())
+            .add(metric);
+      }
+    }
+
+    void writeJson(String testClassName, Writer writer) throws IOException {
+      writer.write("{\n");
+      writer.write("  \"testClass\": " + jsonString(testClassName) + ",\n");
+      writer.write("  \"tests\": " + testCount + ",\n");
+      writer.write("  \"metrics\": [");
+      String separator = "\n";
+      for (Map.Entry<MetricKey, MetricSummary> entry : metrics.entrySet()) {
+        MetricKey key = entry.getKey();
+        MetricSummary value = entry.getValue();
+        writer.write(separator);
+        writer.write(
+            "    {\"name\": "
+                + jsonString(key.name)
+                + ", \"phase\": "
+                + jsonString(phaseOf(key.name))
+                + ", \"sdk\": "
+                + key.sdk
+                + ", \"success\": "
+                + key.success
+                + ", \"count\": "
+                + value.count
+                + ", \"totalNs\": "
+                + value.elapsedNs
+                + ", \"minNs\": "
+                + value.minNs
+                + ", \"maxNs\": "
+                + value.maxNs
+                + ", \"p50Ns\": "
+                + value.getPercentileNs(50)
+                + ", \"p99Ns\": "
+                + value.getPercentileNs(99)
+                + "}");
+        separator = ",\n";
+      }
+      writer.write("\n  ]\n}\n");
+    }
+
+    void writeCsv(Writer writer) throws IOException {
+      writer.write("name,phase,sdk,success,count,totalNs,minNs,maxNs,p50Ns,p99Ns\n");
+      for (Map.Entry<MetricKey, MetricSummary> entry : metrics.entrySet()) {
+        MetricKey key = entry.getKey();
+        MetricSummary value = entry.getValue();
+        writer.write(
+            String.join(
+                    ",",
+                    csvString(key.name),
+                    phaseOf(key.name),
+                    String.valueOf(key.sdk),
+                    String.valueOf(key.success),
+                    String.valueOf(value.count),
+                    String.valueOf(value.elapsedNs),
+                    String.valueOf(value.minNs),
+                    String.valueOf(value.maxNs),
+                    String.valueOf(value.getPercentileNs(50)),
+                    String.valueOf(value.getPercentileNs(99)))
+                + "\n");
+      }
+    }
+
+    private static String jsonString(String value) {
+      StringBuilder builder = new StringBuilder("\"");
+      for (char c : value.toCharArray()) {
+        if (c == '"' || c == '\\') {
+          builder.append('\\').append(c);
+        } else if (c < 0x20) {
+          builder.append(String.format("\\u%04x", (int) c));
+        } else {
+          builder.append(c);
+        }
+      }
+      return builder.append('"').toString();
+    }
+
+    private static String csvString(String value) {
+      if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+        return value;
+      }
+      return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+  }
+
+  private static class MetricKey implements Comparable<MetricKey> {
+    private final String name;
+    private final boolean success;
+    private final int sdk;
+
+    MetricKey(String name, boolean success, int sdk) {
+      this.name = name;
+      this.success = success;
+      this.sdk = sdk;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof MetricKey)) {
+        return false;
+      }
+      MetricKey that = (MetricKey) o;
+      return success == that.success && sdk == that.sdk && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, success, sdk);
+    }
+
+    @Override
+    public int compareTo(@Nonnull MetricKey o) {
+      int i = name.compareTo(o.name);
+      if (i != 0) {
+        return i;
+      }
+      i = Integer.compare(sdk, o.sdk);
+      if (i != 0) {
+        return i;
+      }
+      return Boolean.compare(success, o.success);
+    }
+  }
+
+  /**
+   * Accumulated values of one metric. Histogram buckets are kept sparsely, as a test class rarely
+   * hits more than a few dozen of them and many test classes may be summarized in one JVM.
+   */
+  private static class MetricSummary {
+    private long count;
+    private long elapsedNs;
+    private long minNs;
+    private long maxNs;
+    private final Map<Integer, Long> bucketCounts = new TreeMap<>();
+
+    void add(Metric metric) {
+      if (count == 0) {
+        minNs = metric.getMinNs();
+        maxNs = metric.getMaxNs();
+      } else {
+        minNs = Math.min(minNs, metric.getMinNs());
+        maxNs = Math.max(maxNs, metric.getMaxNs());
+      }
+      count += metric.getCount();
+      elapsedNs += metric.getElapsedNs();
+
+      Histogram histogram = metric.getHistogram();
+      if (histogram.getTotalCount() > 0) {
+        for (int i = 0; i < Histogram.BUCKET_COUNT; i++) {
+          long bucketCount = histogram.getBucketCount(i);
+          if (bucketCount != 0) {
+            bucketCounts.merge(i, bucketCount, Long::sum);
+          }
+        }
+      }
+    }
+
+    long getPercentileNs(double percentile) {
+      if (bucketCounts.isEmpty()) {
+        return 0;
+      }
+      long[] counts = new long[Histogram.BUCKET_COUNT];
+      bucketCounts.forEach((index, bucketCount) -> counts[index] = bucketCount);
+      long valueNs = new Histogram(counts).getValueAtPercentileNs(percentile);
+      return Math.max(minNs, Math.min(maxNs, valueNs));
+    }
+  }
+
+  /** Kept separate so {@code jdk.jfr} is only loaded if JFR export is enabled. */
+  private static class JfrEvents {
+    static void commit(
+        String testClassName, String testMethodName, int sdk, Collection<Metric> metrics) {
+      for (Metric metric : metrics) {
+        PerfStatsEvent event = new PerfStatsEvent();
+        if (!event.isEnabled()) {
+          // No recording is capturing these events.
+          return;
+        }
+        event.testClass = testClassName;
+        event.testMethod = testMethodName;
+        event.metric = metric.getName();
+        event.phase = phaseOf(metric.getName());
+        event.sdk = sdk;
+        event.success = metric.isSuccess();
+        event.count = metric.getCount();
+        event.totalNs = metric.getElapsedNs();
+        event.maxNs = metric.getMaxNs();
+        event.p50Ns = metric.getP50Ns();
+        event.p99Ns = metric.getP99Ns();
+        event.commit();
+      }
+    }
+  }
+
+  /** A JFR event for one metric of one test. */
+  @Name("org.robolectric.PerfStats")
+  @Label("Robolectric Perf Stats")
+  @Category("Robolectric")
+  @Description("Time Robolectric spent in one phase of a test")
+  @StackTrace(false)
+  static class PerfStatsEvent extends Event {
+    @Label("Test Class")
+    String testClass;
+
+    @Label("Test Method")
+    String testMethod;
+
+    @Label("Metric")
+    String metric;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("SDK")
+    int sdk;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Count")
+    int count;
+
+    @Label("Total Time")
+    @Timespan
+    long totalNs;
+
+    @Label("Max Time")
+    @Timespan
+    long maxNs;
+
+    @Label("Median Time")
+    @Timespan
+    long p50Ns;
+
+    @Label("99th Percentile Time")
+    @Timespan
+    long p99Ns;
+  }
+}
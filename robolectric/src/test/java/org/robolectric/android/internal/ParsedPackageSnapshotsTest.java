@@ -0,0 +1,32 @@
+package org.robolectric.android.internal;
+
+import static android.os.Build.VERSION_CODES.P;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.pm.PackageParser.Package;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+/** Tests for {@link ParsedPackageSnapshots} */
+@RunWith(AndroidJUnit4.class)
+@Config(minSdk = P)
+public final class ParsedPackageSnapshotsTest {
+
+  @Test
+  public void restore_returnsNewCopyOfSnapshottedPackage() {
+    Package parsedPackage = new Package("org.robolectric.snapshot");
+    parsedPackage.applicationInfo.targetSdkVersion = P;
+
+    byte[] snapshot = ParsedPackageSnapshots.snapshot(parsedPackage);
+    Package first = ParsedPackageSnapshots.restore(snapshot);
+    first.applicationInfo.targetSdkVersion = 1;
+    Package second = ParsedPackageSnapshots.restore(snapshot);
+
+    assertThat(second).isNotSameInstanceAs(first);
+    assertThat(second.packageName).isEqualTo("org.robolectric.snapshot");
+    assertThat(second.applicationInfo.targetSdkVersion).isEqualTo(P);
+    assertThat(second.applicationInfo.packageName).isEqualTo("org.robolectric.snapshot");
+  }
+}
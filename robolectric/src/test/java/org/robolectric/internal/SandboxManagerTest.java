@@ -0,0 +1,152 @@
+package org.robolectric.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.annotation.ResourcesMode;
+import org.robolectric.annotation.SQLiteMode;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.pluginapi.SandboxCachePolicy;
+import org.robolectric.pluginapi.SandboxCachePolicy.CachedSandbox;
+import org.robolectric.pluginapi.Sdk;
+import org.robolectric.plugins.SdkCollection;
+import org.robolectric.plugins.StubSdk;
+
+/** Tests for {@link SandboxManager}. */
+@RunWith(JUnit4.class)
+public class SandboxManagerTest {
+  private static final SandboxCachePolicy EVICT_ALL = ArrayList::new;
+  private static final SandboxCachePolicy EVICT_NONE = cachedSandboxes -> ImmutableList.of();
+
+  private final Sdk sdk = new StubSdk(1234, true);
+  private final Sdk otherSdk = new StubSdk(1235, true);
+  private final InstrumentationConfiguration instrumentationConfig =
+      InstrumentationConfiguration.newBuilder().build();
+
+  @Test
+  public void sandboxInUse_isNotEvicted() {
+    SandboxManager sandboxManager = newSandboxManager(EVICT_ALL);
+
+    AndroidSandbox first = getAndroidSandbox(sandboxManager, LooperMode.Mode.PAUSED);
+    AndroidSandbox second = getAndroidSandbox(sandboxManager, LooperMode.Mode.INSTRUMENTATION_TEST);
+
+    verify(first, never()).shutdown();
+    verify(second, never()).shutdown();
+
+    sandboxManager.releaseAndroidSandbox(first);
+
+    verify(first).shutdown();
+    verify(second, never()).shutdown();
+  }
+
+  @Test
+  public void sandboxInUseByAnotherCaller_isNotEvicted() {
+    SandboxManager sandboxManager = newSandboxManager(EVICT_ALL);
+
+    AndroidSandbox sandbox = getAndroidSandbox(sandboxManager, LooperMode.Mode.PAUSED);
+    assertThat(getAndroidSandbox(sandboxManager, LooperMode.Mode.PAUSED)).isSameInstanceAs(sandbox);
+    sandboxManager.releaseAndroidSandbox(sandbox);
+
+    verify(sandbox, never()).shutdown();
+
+    sandboxManager.releaseAndroidSandbox(sandbox);
+
+    verify(sandbox).shutdown();
+  }
+
+  @Test
+  public void sandboxRequestedWhileEvictionsAreSelected_isNotEvicted() {
+    AtomicBoolean requestDuringSelection = new AtomicBoolean();
+    AtomicReference<AndroidSandbox> requested = new AtomicReference<>();
+    SandboxManager[] sandboxManager = new SandboxManager[1];
+    sandboxManager[0] =
+        newSandboxManager(
+            cachedSandboxes -> {
+              if (requestDuringSelection.getAndSet(false)) {
+                // Another test requests the sandbox after it was listed as idle.
+                requested.set(getAndroidSandbox(sandboxManager[0], LooperMode.Mode.PAUSED));
+              }
+              return new ArrayList<>(cachedSandboxes);
+            });
+    AndroidSandbox sandbox = getAndroidSandbox(sandboxManager[0], LooperMode.Mode.PAUSED);
+
+    requestDuringSelection.set(true);
+    sandboxManager[0].releaseAndroidSandbox(sandbox);
+
+    assertThat(requested.get()).isSameInstanceAs(sandbox);
+    verify(sandbox, never()).shutdown();
+
+    sandboxManager[0].releaseAndroidSandbox(sandbox);
+
+    verify(sandbox).shutdown();
+  }
+
+  @Test
+  public void releasedSandbox_isReused() {
+    SandboxManager sandboxManager = newSandboxManager(EVICT_NONE);
+
+    AndroidSandbox sandbox = getAndroidSandbox(sandboxManager, LooperMode.Mode.PAUSED);
+    sandboxManager.releaseAndroidSandbox(sandbox);
+
+    assertThat(getAndroidSandbox(sandboxManager, LooperMode.Mode.PAUSED)).isSameInstanceAs(sandbox);
+  }
+
+  @Test
+  public void idleTime_isCountedFromRelease() throws Exception {
+    Map<Integer, Long> idleTimesByApiLevel = new HashMap<>();
+    SandboxManager sandboxManager =
+        newSandboxManager(
+            cachedSandboxes -> {
+              for (CachedSandbox cachedSandbox : cachedSandboxes) {
+                idleTimesByApiLevel.put(
+                    cachedSandbox.getSdk().getApiLevel(), cachedSandbox.getIdleTimeNs());
+              }
+              return ImmutableList.of();
+            });
+    AndroidSandbox sandbox = getAndroidSandbox(sandboxManager, sdk, LooperMode.Mode.PAUSED);
+
+    Thread.sleep(20);
+    getAndroidSandbox(sandboxManager, otherSdk, LooperMode.Mode.PAUSED);
+    assertThat(idleTimesByApiLevel.get(sdk.getApiLevel())).isEqualTo(0);
+
+    sandboxManager.releaseAndroidSandbox(sandbox);
+    assertThat(idleTimesByApiLevel.get(sdk.getApiLevel())).isLessThan(20_000_000L);
+  }
+
+  private SandboxManager newSandboxManager(SandboxCachePolicy cachePolicy) {
+    return new SandboxManager(
+        (instrumentationConfig, runtimeSdk, compileSdk, resourcesMode, sqLiteMode) ->
+            mock(AndroidSandbox.class),
+        new SdkCollection(() -> ImmutableList.of(sdk, otherSdk)),
+        cachePolicy);
+  }
+
+  private AndroidSandbox getAndroidSandbox(
+      SandboxManager sandboxManager, LooperMode.Mode looperMode) {
+    return getAndroidSandbox(sandboxManager, sdk, looperMode);
+  }
+
+  private AndroidSandbox getAndroidSandbox(
+      SandboxManager sandboxManager, Sdk sdk, LooperMode.Mode looperMode) {
+    return sandboxManager.getAndroidSandbox(
+        instrumentationConfig,
+        sdk,
+        ResourcesMode.Mode.BINARY,
+        looperMode,
+        SQLiteMode.Mode.NATIVE,
+        GraphicsMode.Mode.LEGACY);
+  }
+}
@@ -16,6 +16,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.robolectric.android.AndroidSdkShadowMatcher;
+import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.sandbox.ShadowMatcher;
@@ -195,6 +196,73 @@ public class ShadowMapTest {
     assertThat(shadowMap.getShadowInfo(Activity.class, ShadowMatcher.MATCH_ALL)).isNull();
   }
 
+  @Test
+  public void getShadowedMethodNames_includesPublicProtectedAndMappedMethods() {
+    ShadowMap shadowMap =
+        baseShadowMap.newBuilder().addShadowClass(ShadowActivityWithMethods.class).build();
+    assertThat(
+            shadowMap.getShadowedMethodNames(
+                Activity.class.getName(), ShadowMapTest.class.getClassLoader()))
+        .containsExactly("onCreate", "finishImpl", "finish");
+  }
+
+  @Test
+  public void getShadowedMethodNames_isNullForShadowThatDoesNotCallThrough() {
+    ShadowMap shadowMap =
+        baseShadowMap.newBuilder().addShadowClass(ShadowActivityWithoutCallThrough.class).build();
+    assertThat(
+            shadowMap.getShadowedMethodNames(
+                Activity.class.getName(), ShadowMapTest.class.getClassLoader()))
+        .isNull();
+  }
+
+  @Test
+  public void getShadowedMethodNames_isNullForShadowPicker() {
+    ShadowMap shadowMap =
+        baseShadowMap
+            .newBuilder()
+            .addShadowClass(ShadowActivityWithNullReturningPicker.class)
+            .build();
+    assertThat(
+            shadowMap.getShadowedMethodNames(
+                Activity.class.getName(), ShadowMapTest.class.getClassLoader()))
+        .isNull();
+  }
+
+  @Test
+  public void getChangedMethodNames_includesMethodsOfBothShadows() {
+    ShadowMap previous =
+        baseShadowMap.newBuilder().addShadowClass(ShadowActivityWithMethods.class).build();
+    ShadowMap shadowMap =
+        baseShadowMap.newBuilder().addShadowClass(ShadowActivityWithOtherMethods.class).build();
+    assertThat(
+            shadowMap.getChangedMethodNames(
+                previous, Activity.class.getName(), ShadowMapTest.class.getClassLoader()))
+        .containsExactly("onCreate", "finishImpl", "finish", "onResume");
+  }
+
+  @Test
+  public void getChangedMethodNames_isNullWhenNativeMethodBindingChanges() {
+    ShadowMap previous =
+        baseShadowMap.newBuilder().addShadowClass(ShadowActivityWithMethods.class).build();
+    ShadowMap shadowMap =
+        baseShadowMap.newBuilder().addShadowClass(ShadowActivityCallingNatives.class).build();
+    assertThat(
+            shadowMap.getChangedMethodNames(
+                previous, Activity.class.getName(), ShadowMapTest.class.getClassLoader()))
+        .isNull();
+  }
+
+  @Test
+  public void getChangedMethodNames_isNullWhenShadowIsAdded() {
+    ShadowMap shadowMap =
+        baseShadowMap.newBuilder().addShadowClass(ShadowActivityWithMethods.class).build();
+    assertThat(
+            shadowMap.getChangedMethodNames(
+                baseShadowMap, Activity.class.getName(), ShadowMapTest.class.getClassLoader()))
+        .isNull();
+  }
+
   static class Activity {}
 
   static class A {}
@@ -226,6 +294,33 @@ public class ShadowMapTest {
   @Implements(value = Activity.class, shadowPicker = NullReturningPicker.class)
   static class ShadowActivityWithNullReturningPicker {}
 
+  @Implements(Activity.class)
+  public static class ShadowActivityWithMethods {
+    @Implementation
+    protected void onCreate() {}
+
+    @Implementation(methodName = "finish")
+    protected void finishImpl() {}
+
+    @SuppressWarnings("unused")
+    private void helper() {}
+  }
+
+  @Implements(Activity.class)
+  public static class ShadowActivityWithOtherMethods {
+    @Implementation
+    protected void onResume() {}
+  }
+
+  @Implements(value = Activity.class, callNativeMethodsByDefault = true)
+  public static class ShadowActivityCallingNatives {
+    @Implementation
+    protected void onCreate() {}
+  }
+
+  @Implements(value = Activity.class, callThroughByDefault = false)
+  static class ShadowActivityWithoutCallThrough {}
+
   public static class NullReturningPicker implements ShadowPicker<Object> {
     @Override
     public @Nullable Class<?> pickShadowClass() {
@@ -4,14 +4,19 @@ import static com.google.common.truth.Truth.assertThat;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.robolectric.android.AndroidSdkShadowMatcher;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
 import org.robolectric.interceptors.AndroidInterceptors;
+import org.robolectric.pluginapi.perf.Metric;
 import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.util.Function;
+import org.robolectric.util.PerfStatsCollector;
 
 @SuppressWarnings("unchecked")
 @RunWith(JUnit4.class)
@@ -20,10 +25,60 @@ public class ShadowWranglerUnitTest {
   private Interceptors interceptors;
   private final ShadowMatcher sdk23 = new AndroidSdkShadowMatcher(23);
 
+  private final PerfStatsCollector perfStatsCollector = PerfStatsCollector.getInstance();
+  private PerfStatsCollector.Recording previousRecording;
+
   @Before
   public void setup() throws Exception {
     interceptors = new Interceptors(AndroidInterceptors.all());
     shadowWrangler = new ShadowWrangler(ShadowMap.EMPTY, sdk23, interceptors);
+    previousRecording = perfStatsCollector.setCurrentRecording(perfStatsCollector.newRecording());
+    ShadowWrangler.clearDispatchTables();
+  }
+
+  @After
+  public void tearDown() {
+    perfStatsCollector.setCurrentRecording(previousRecording);
+  }
+
+  @Test
+  public void pickShadowMethod_reusesDispatchTablesOfWranglersWithEqualShadowMaps() {
+    ShadowWrangler first = new ShadowWrangler(newShadowMap(), sdk23, interceptors);
+    ShadowWrangler second =
+        new ShadowWrangler(newShadowMap(), new AndroidSdkShadowMatcher(23), interceptors);
+
+    assertThat(first.pickShadowMethod(Shadowed.class, "method", new Class<?>[0]).getName())
+        .isEqualTo("method");
+    assertThat(second.pickShadowMethod(Shadowed.class, "method", new Class<?>[0]).getName())
+        .isEqualTo("method");
+
+    assertThat(getDispatchTableBuilds()).isEqualTo(1);
+  }
+
+  @Test
+  public void pickShadowMethod_rebuildsDispatchTablesForDifferentShadowMaps() {
+    ShadowWrangler shadowed = new ShadowWrangler(newShadowMap(), sdk23, interceptors);
+    ShadowWrangler unshadowed = new ShadowWrangler(ShadowMap.EMPTY, sdk23, interceptors);
+
+    assertThat(shadowed.pickShadowMethod(Shadowed.class, "method", new Class<?>[0]).getName())
+        .isEqualTo("method");
+    // Not shadowed, so the real code is called.
+    assertThat(unshadowed.pickShadowMethod(Shadowed.class, "method", new Class<?>[0])).isNull();
+
+    assertThat(getDispatchTableBuilds()).isEqualTo(2);
+  }
+
+  private static ShadowMap newShadowMap() {
+    return ShadowMap.EMPTY.newBuilder().addShadowClass(ShadowShadowed.class).build();
+  }
+
+  private int getDispatchTableBuilds() {
+    for (Metric metric : perfStatsCollector.getMetrics()) {
+      if (metric.getName().equals("build shadow dispatch table")) {
+        return metric.getCount();
+      }
+    }
+    return 0;
   }
 
   @Test
@@ -73,4 +128,14 @@ public class ShadowWranglerUnitTest {
 
     assertThat(result).isNull();
   }
+
+  static class Shadowed {
+    void method() {}
+  }
+
+  @Implements(Shadowed.class)
+  public static class ShadowShadowed {
+    @Implementation
+    protected void method() {}
+  }
 }
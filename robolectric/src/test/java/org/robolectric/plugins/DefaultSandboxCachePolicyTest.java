@@ -0,0 +1,83 @@
+package org.robolectric.plugins;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.pluginapi.SandboxCachePolicy.CachedSandbox;
+import org.robolectric.pluginapi.Sdk;
+
+/** Tests for {@link DefaultSandboxCachePolicy}. */
+@RunWith(JUnit4.class)
+public class DefaultSandboxCachePolicyTest {
+
+  private final FakeCachedSandbox oldest = new FakeCachedSandbox(100, 0);
+  private final FakeCachedSandbox middle = new FakeCachedSandbox(100, 0);
+  private final FakeCachedSandbox newest = new FakeCachedSandbox(100, 0);
+
+  @Test
+  public void withinLimits_evictsNothing() {
+    DefaultSandboxCachePolicy policy = new DefaultSandboxCachePolicy(3, Long.MAX_VALUE, 0);
+
+    assertThat(policy.selectEvictions(ImmutableList.of(oldest, middle, newest))).isEmpty();
+  }
+
+  @Test
+  public void overMaxSandboxes_evictsLeastRecentlyUsed() {
+    DefaultSandboxCachePolicy policy = new DefaultSandboxCachePolicy(2, Long.MAX_VALUE, 0);
+
+    assertThat(policy.selectEvictions(ImmutableList.of(oldest, middle, newest)))
+        .containsExactly(oldest);
+  }
+
+  @Test
+  public void overMaxRetainedBytes_evictsLeastRecentlyUsedUntilUnderLimit() {
+    DefaultSandboxCachePolicy policy = new DefaultSandboxCachePolicy(10, 150, 0);
+
+    assertThat(policy.selectEvictions(ImmutableList.of(oldest, middle, newest)))
+        .containsExactly(oldest, middle)
+        .inOrder();
+  }
+
+  @Test
+  public void idleSandboxes_areEvicted() {
+    FakeCachedSandbox idle = new FakeCachedSandbox(100, TimeUnit.MINUTES.toNanos(10));
+    DefaultSandboxCachePolicy policy =
+        new DefaultSandboxCachePolicy(10, Long.MAX_VALUE, TimeUnit.MINUTES.toNanos(1));
+
+    assertThat(policy.selectEvictions(ImmutableList.of(idle, newest))).containsExactly(idle);
+  }
+
+  private static class FakeCachedSandbox implements CachedSandbox {
+    private final long estimatedRetainedBytes;
+    private final long idleTimeNs;
+
+    FakeCachedSandbox(long estimatedRetainedBytes, long idleTimeNs) {
+      this.estimatedRetainedBytes = estimatedRetainedBytes;
+      this.idleTimeNs = idleTimeNs;
+    }
+
+    @Override
+    public Sdk getSdk() {
+      return new StubSdk(33, true);
+    }
+
+    @Override
+    public long getCreationTimeNs() {
+      return 0;
+    }
+
+    @Override
+    public long getIdleTimeNs() {
+      return idleTimeNs;
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+      return estimatedRetainedBytes;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.robolectric.plugins;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.AndroidMetadata;
+import org.robolectric.TestMetadata;
+import org.robolectric.pluginapi.perf.Metadata;
+import org.robolectric.pluginapi.perf.Metric;
+
+/** Tests for {@link StructuredPerfStatsReporter}. */
+@RunWith(JUnit4.class)
+public class StructuredPerfStatsReporterTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void isDisabledByDefault() {
+    assertThat(new StructuredPerfStatsReporter(new Properties()).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void writeSummaries_writesJsonPerTestClass() throws Exception {
+    Path outputDirectory = temporaryFolder.getRoot().toPath();
+    StructuredPerfStatsReporter reporter =
+        new StructuredPerfStatsReporter(outputDirectory, /* csv= */ false, /* jfr= */ false);
+
+    reporter.report(metadata("com.example.FooTest", "first"), metrics(1000));
+    reporter.report(metadata("com.example.FooTest", "second"), metrics(3000));
+    reporter.report(metadata("com.example.BarTest", "only"), metrics(2000));
+    reporter.writeSummaries();
+
+    String json = readString(outputDirectory.resolve("com.example.FooTest.json"));
+    assertThat(json).contains("\"testClass\": \"com.example.FooTest\"");
+    assertThat(json).contains("\"tests\": 2");
+    assertThat(json)
+        .contains(
+            "{\"name\": \"create sandbox\", \"phase\": \"sandbox creation\", \"sdk\": 33,"
+                + " \"success\": true, \"count\": 2, \"totalNs\": 4000, \"minNs\": 1000,"
+                + " \"maxNs\": 3000,");
+    assertThat(Files.exists(outputDirectory.resolve("com.example.BarTest.json"))).isTrue();
+  }
+
+  @Test
+  public void writeSummaries_writesCsvPerTestClass() throws Exception {
+    Path outputDirectory = temporaryFolder.getRoot().toPath();
+    StructuredPerfStatsReporter reporter =
+        new StructuredPerfStatsReporter(outputDirectory, /* csv= */ true, /* jfr= */ false);
+
+    reporter.report(metadata("com.example.FooTest", "first"), metrics(1000));
+    reporter.writeSummaries();
+
+    List<String> lines =
+        Files.readAllLines(outputDirectory.resolve("com.example.FooTest.csv"), UTF_8);
+    assertThat(lines)
+        .containsExactly(
+            "name,phase,sdk,success,count,totalNs,minNs,maxNs,p50Ns,p99Ns",
+            "create sandbox,sandbox creation,33,true,1,1000,1000,1000,1000,1000",
+            "instrument package com,other,33,true,5,0,0,0,0,0")
+        .inOrder();
+  }
+
+  @Test
+  public void phaseOf_categorizesKnownMetrics() {
+    assertThat(StructuredPerfStatsReporter.phaseOf("create sandbox")).isEqualTo("sandbox creation");
+    assertThat(StructuredPerfStatsReporter.phaseOf("instrument class"))
+        .isEqualTo("class instrumentation");
+    assertThat(StructuredPerfStatsReporter.phaseOf("application onCreate()"))
+        .isEqualTo("application setup");
+    assertThat(StructuredPerfStatsReporter.phaseOf("load binary framework resources"))
+        .isEqualTo("resource table load");
+    assertThat(StructuredPerfStatsReporter.phaseOf("looper idle")).isEqualTo("looper idle");
+    assertThat(StructuredPerfStatsReporter.phaseOf("reset shadow")).isEqualTo("shadow reset");
+    assertThat(StructuredPerfStatsReporter.phaseOf("something else")).isEqualTo("other");
+  }
+
+  private static Metadata metadata(String testClassName, String testMethodName) {
+    Map<Class<?>, Object> metadata = new HashMap<>();
+    metadata.put(TestMetadata.class, new TestMetadata(testClassName, testMethodName));
+    metadata.put(
+        AndroidMetadata.class, new AndroidMetadata(ImmutableMap.of("ro.build.version.sdk", "33")));
+    return new Metadata(metadata);
+  }
+
+  private static List<Metric> metrics(long createSandboxNs) {
+    Metric createSandbox = new Metric("create sandbox", true);
+    createSandbox.record(createSandboxNs);
+    Metric instrumentPackage = new Metric("instrument package com", 5, 0, true);
+    return ImmutableList.of(createSandbox, instrumentPackage);
+  }
+
+  private static String readString(Path path) throws Exception {
+    return new String(Files.readAllBytes(path), UTF_8);
+  }
+}
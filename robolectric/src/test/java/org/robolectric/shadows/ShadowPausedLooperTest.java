@@ -238,6 +238,37 @@ public class ShadowPausedLooperTest {
     verify(mockIdleHandler, times(1)).queueIdle(); // It was not kept, does not run again.
   }
 
+  @Test
+  public void getLastIdleStats_countsMessagesAndIdleHandlers() {
+    ShadowPausedLooper shadowLooper = Shadow.extract(getMainLooper());
+    getMainLooper().getQueue().addIdleHandler(() -> false);
+    Handler mainHandler = new Handler();
+    for (int i = 0; i < 3; i++) {
+      mainHandler.post(() -> {});
+    }
+
+    shadowLooper.idle();
+
+    ShadowPausedLooper.IdleStats idleStats = shadowLooper.getLastIdleStats();
+    assertThat(idleStats.getMessagesRun()).isEqualTo(3);
+    assertThat(idleStats.getIdleHandlersRun()).isEqualTo(1);
+    assertThat(idleStats.getClockAdvances()).isEqualTo(0);
+  }
+
+  @Test
+  public void getLastIdleStats_countsClockAdvances() {
+    ShadowPausedLooper shadowLooper = Shadow.extract(getMainLooper());
+    Handler mainHandler = new Handler();
+    mainHandler.postDelayed(() -> {}, 100);
+    mainHandler.postDelayed(() -> {}, 200);
+
+    shadowLooper.runUntilEmpty();
+
+    ShadowPausedLooper.IdleStats idleStats = shadowLooper.getLastIdleStats();
+    assertThat(idleStats.getMessagesRun()).isEqualTo(2);
+    assertThat(idleStats.getClockAdvances()).isEqualTo(2);
+  }
+
   @Test
   public void idle_executesTask_andIdleHandler_keepsIdleHandler() {
     ShadowPausedLooper shadowLooper = Shadow.extract(getMainLooper());
@@ -3,6 +3,7 @@ package org.robolectric.shadows;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static com.google.common.truth.TruthJUnit.assume;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
 import static org.robolectric.annotation.SQLiteMode.Mode.LEGACY;
@@ -22,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -214,6 +216,75 @@ public class ShadowSQLiteConnectionTest {
     statement2.execute();
   }
 
+  @Test
+  public void nativeClose_leavesOtherConnectionsOpen() {
+    long otherPtr = ptr;
+    SQLiteConnection otherConn = conn;
+    SQLiteConnection newConn = getSQLiteConnection();
+
+    ShadowLegacySQLiteConnection.nativeClose(otherPtr, false);
+
+    assertWithMessage("closed").that(otherConn.isOpen()).isFalse();
+    assertWithMessage("open").that(newConn.isOpen()).isTrue();
+  }
+
+  @Test
+  public void connections_canBeUsedFromSeveralThreads() throws Exception {
+    database.execSQL("insert into routine(name) values ('Hand press 1')");
+    SQLiteDatabase otherDatabase = createDatabase("other.db");
+    otherDatabase.execSQL("CREATE TABLE other (name VARCHAR)");
+    otherDatabase.execSQL("insert into other(name) values ('Hand press 2')");
+
+    List<String> otherResult = new ArrayList<>();
+    Thread thread =
+        new Thread(
+            () -> otherResult.addAll(simpleQueryForList(otherDatabase, "SELECT * FROM other")));
+    thread.start();
+    List<String> result = simpleQueryForList(database, "SELECT `name` FROM `routine`");
+    thread.join();
+    otherDatabase.close();
+
+    assertThat(result).containsExactly("Hand press 1");
+    assertThat(otherResult).containsExactly("Hand press 2");
+  }
+
+  @Test
+  public void connectionsToSameFile_waitForEachOthersLocks() throws Exception {
+    SQLiteDatabase otherDatabase =
+        SQLiteDatabase.openOrCreateDatabase(databasePath.getPath(), null);
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch otherWriting = new CountDownLatch(1);
+    Thread writer =
+        new Thread(
+            () -> {
+              database.beginTransaction();
+              try {
+                // Takes the write lock, which is held until the transaction ends.
+                database.execSQL("insert into routine(name) values ('Hand press 1')");
+                locked.countDown();
+                assertThat(otherWriting.await(10, SECONDS)).isTrue();
+                database.execSQL("insert into routine(name) values ('Hand press 2')");
+                database.setTransactionSuccessful();
+              } catch (InterruptedException e) {
+                throw new AssertionError(e);
+              } finally {
+                database.endTransaction();
+              }
+            });
+    writer.start();
+    assertThat(locked.await(10, SECONDS)).isTrue();
+
+    otherWriting.countDown();
+    otherDatabase.execSQL("insert into routine(name) values ('Hand press 3')");
+    List<String> otherResult = simpleQueryForList(otherDatabase, "SELECT `name` FROM `routine`");
+    writer.join();
+    otherDatabase.close();
+
+    assertThat(otherResult).containsExactly("Hand press 1", "Hand press 2", "Hand press 3");
+    assertThat(simpleQueryForList(database, "SELECT `name` FROM `routine`"))
+        .containsExactly("Hand press 1", "Hand press 2", "Hand press 3");
+  }
+
   private SQLiteDatabase createDatabase(String filename) {
     databasePath = ApplicationProvider.getApplicationContext().getDatabasePath(filename);
     databasePath.getParentFile().mkdirs();
@@ -52,6 +52,10 @@ public class ClassInstrumentor {
   private static final String ROBO_INIT_METHOD_NAME = "$$robo$init";
   protected static final Type OBJECT_TYPE = Type.getType(Object.class);
   private static final ShadowImpl SHADOW_IMPL = new ShadowImpl();
+  private static final PerfStatsCollector.MetricHandle ANALYZE_CLASS =
+      PerfStatsCollector.getInstance().getHandle("analyze class");
+  private static final PerfStatsCollector.MetricHandle INSTRUMENT_CLASS =
+      PerfStatsCollector.getInstance().getHandle("instrument class");
   final Decorator decorator;
 
   static {
@@ -140,11 +144,9 @@ public class ClassInstrumentor {
       ClassNodeProvider classNodeProvider) {
     PerfStatsCollector perfStats = PerfStatsCollector.getInstance();
     MutableClass mutableClass =
-        perfStats.measure(
-            "analyze class",
+        ANALYZE_CLASS.measure(
             () -> analyzeClass(classDetails.getClassBytes(), config, classNodeProvider));
-    byte[] instrumentedBytes =
-        perfStats.measure("instrument class", () -> instrumentToBytes(mutableClass));
+    byte[] instrumentedBytes = INSTRUMENT_CLASS.measure(() -> instrumentToBytes(mutableClass));
     recordPackageStats(perfStats, mutableClass);
     return instrumentedBytes;
   }
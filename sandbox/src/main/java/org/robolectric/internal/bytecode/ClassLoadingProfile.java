@@ -0,0 +1,242 @@
+package org.robolectric.internal.bytecode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
+
+/**
+ * Records which classes sandboxes load during a run, and speculatively preloads them on background
+ * threads in later runs.
+ *
+ * <p>Enabled by setting the {@code robolectric.classLoadingProfile} system property to the path of
+ * a profile file. If the file exists when a {@link SandboxClassLoader} is created, the classes it
+ * lists are read and instrumented, if needed, on a pool of {@code
+ * robolectric.classLoadingProfile.preloadThreads} daemon threads while the first test is being set
+ * up. Preloading doesn't define the classes; a class is only defined once a test loads it, so
+ * preloading doesn't cause shadow resetters to run or shadow changes to relink classes that tests
+ * never use.
+ *
+ * <p>The classes requested by tests during this run are merged into the file when the JVM exits,
+ * so test processes sharing a profile don't discard each other's classes. Delete the file to start
+ * over.
+ */
+public class ClassLoadingProfile {
+  static final String PROFILE_PROPERTY = "robolectric.classLoadingProfile";
+  static final String PRELOAD_THREADS_PROPERTY = "robolectric.classLoadingProfile.preloadThreads";
+  private static final long PRELOAD_THREAD_KEEP_ALIVE_SECONDS = 5;
+
+  private static volatile ClassLoadingProfile systemDefault;
+  private static volatile boolean systemDefaultInitialized;
+
+  private final Path profileFile;
+  private final int preloadThreads;
+  private final List<String> previousRunClasses;
+  private final Set<String> recordedClassNames = ConcurrentHashMap.newKeySet();
+  // Preserves first-load order, so the next run preloads classes roughly in the order they are
+  // needed.
+  private final Queue<String> recordedClasses = new ConcurrentLinkedQueue<>();
+  private ExecutorService preloadExecutor;
+
+  @VisibleForTesting
+  ClassLoadingProfile(Path profileFile, int preloadThreads) {
+    this.profileFile = profileFile;
+    this.preloadThreads = preloadThreads;
+    this.previousRunClasses = readProfile(profileFile);
+  }
+
+  /**
+   * Returns the profile configured through system properties, or null if profiling is disabled.
+   * The returned profile is saved when the JVM shuts down.
+   */
+  @Nullable
+  static ClassLoadingProfile getSystemDefault() {
+    if (!systemDefaultInitialized) {
+      synchronized (ClassLoadingProfile.class) {
+        if (!systemDefaultInitialized) {
+          String profileFile = System.getProperty(PROFILE_PROPERTY, "");
+          if (!Strings.isNullOrEmpty(profileFile)) {
+            int threads =
+                Integer.getInteger(
+                    PRELOAD_THREADS_PROPERTY,
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+            ClassLoadingProfile profile = new ClassLoadingProfile(Paths.get(profileFile), threads);
+            Runtime.getRuntime().addShutdownHook(new Thread(profile::save));
+            systemDefault = profile;
+          }
+          systemDefaultInitialized = true;
+        }
+      }
+    }
+    return systemDefault;
+  }
+
+  private static List<String> readProfile(Path profileFile) {
+    try {
+      List<String> classNames = new ArrayList<>();
+      for (String line : Files.readAllLines(profileFile, UTF_8)) {
+        if (!line.isEmpty()) {
+          classNames.add(line);
+        }
+      }
+      return classNames;
+    } catch (NoSuchFileException e) {
+      return new ArrayList<>();
+    } catch (IOException e) {
+      Logger.warn("Unable to read class loading profile %s: %s", profileFile, e);
+      return new ArrayList<>();
+    }
+  }
+
+  /** Returns true if the current thread is preloading classes on behalf of this profile. */
+  static boolean isPreloadThread() {
+    return Thread.currentThread() instanceof PreloadThread;
+  }
+
+  /** Records that a test needed {@code className}. Loads made by preload threads are ignored. */
+  void recordClassLoad(String className) {
+    if (!isPreloadThread() && recordedClassNames.add(className)) {
+      recordedClasses.add(className);
+    }
+  }
+
+  @VisibleForTesting
+  List<String> getPreviousRunClasses() {
+    return previousRunClasses;
+  }
+
+  @VisibleForTesting
+  List<String> getRecordedClasses() {
+    return new ArrayList<>(recordedClasses);
+  }
+
+  /**
+   * Starts preparing the classes recorded in previous runs in {@code classLoader} on background
+   * threads. Each thread prepares an interleaved slice of the profile in recorded order.
+   */
+  void preload(SandboxClassLoader classLoader) {
+    if (previousRunClasses.isEmpty()) {
+      return;
+    }
+    ExecutorService executor = getPreloadExecutor();
+    for (int slice = 0; slice < preloadThreads; slice++) {
+      int firstIndex = slice;
+      executor.execute(() -> preloadSlice(classLoader, firstIndex));
+    }
+  }
+
+  private void preloadSlice(SandboxClassLoader classLoader, int firstIndex) {
+    int preloaded = 0;
+    for (int i = firstIndex; i < previousRunClasses.size(); i += preloadThreads) {
+      try {
+        classLoader.prepareClass(previousRunClasses.get(i));
+        preloaded++;
+      } catch (ClassNotFoundException e) {
+        if (classLoader.isClosed()) {
+          break;
+        }
+        // The class may not exist in this sandbox's SDK; the profile is shared by all sandboxes.
+      } catch (LinkageError | RuntimeException e) {
+        // The test will hit the same error when it loads the class, and report it there.
+      }
+    }
+    PerfStatsCollector.getInstance().incrementCount("class loading profile preload slice");
+    Logger.debug("Preloaded %d classes from class loading profile", preloaded);
+  }
+
+  private synchronized ExecutorService getPreloadExecutor() {
+    if (preloadExecutor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              preloadThreads,
+              preloadThreads,
+              PRELOAD_THREAD_KEEP_ALIVE_SECONDS,
+              SECONDS,
+              new LinkedBlockingQueue<>(),
+              r -> new PreloadThread(r, "Robolectric preload " + threadCount.incrementAndGet()));
+      // Preloading only happens while sandboxes are created, so let idle threads exit rather than
+      // keeping the pool alive for the rest of the run.
+      executor.allowCoreThreadTimeOut(true);
+      preloadExecutor = executor;
+    }
+    return preloadExecutor;
+  }
+
+  /**
+   * Merges the classes recorded during this run into the profile file, replacing it atomically.
+   * Classes recorded during this run come first, in first-load order, followed by the classes only
+   * other processes recorded. Processes saving at the same time take turns through a lock file.
+   */
+  void save() {
+    if (recordedClasses.isEmpty()) {
+      return;
+    }
+    Path tempFile = null;
+    Path parent = profileFile.toAbsolutePath().getParent();
+    Path lockFile = parent.resolve(profileFile.getFileName() + ".lock");
+    try {
+      Files.createDirectories(parent);
+      try (FileChannel lockChannel =
+              FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock ignored = lockChannel.lock()) {
+        List<String> classNames = new ArrayList<>(recordedClasses);
+        for (String className : readProfile(profileFile)) {
+          if (!recordedClassNames.contains(className)) {
+            classNames.add(className);
+          }
+        }
+        tempFile = Files.createTempFile(parent, profileFile.getFileName().toString(), ".tmp");
+        Files.write(tempFile, classNames, UTF_8);
+        try {
+          Files.move(tempFile, profileFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(tempFile, profileFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        tempFile = null;
+      }
+    } catch (IOException e) {
+      Logger.warn("Unable to write class loading profile %s: %s", profileFile, e);
+    } finally {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+          // Best effort.
+        }
+      }
+    }
+  }
+
+  private static class PreloadThread extends Thread {
+    PreloadThread(Runnable runnable, String name) {
+      super(runnable, name);
+      setDaemon(true);
+      setPriority(Thread.NORM_PRIORITY - 1);
+    }
+  }
+}
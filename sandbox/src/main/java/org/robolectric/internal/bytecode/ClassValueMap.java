@@ -6,21 +6,84 @@ import java.util.Map;
 import java.util.WeakHashMap;
 
 /**
- * {@link java.lang.ClassValue} doesn't exist in Android, so provide a trivial impl.
+ * A lock-free per-class cache backed by {@link java.lang.ClassValue}.
  *
- * <p>Note that if T contains references to Class, this won't really be weak. That's okay.
+ * <p>{@link java.lang.ClassValue} doesn't exist in older Android runtimes, so where it's missing
+ * this falls back to a synchronized {@link WeakHashMap}. Note that in that case, if T contains
+ * references to Class, this won't really be weak. That's okay.
+ *
+ * <p>{@link java.lang.ClassValue} stores each value with the class it was computed for, so a value
+ * stays reachable for as long as that class is loaded, even once the map itself is unused. {@link
+ * #computeValue} and the values it returns must therefore not reference this map, the object that
+ * owns it, or anything else that should be collected before the class; in particular not classes
+ * of another sandbox, or objects that only live for one test. A value that references this map
+ * also keeps every other value of the map reachable. Caches whose values need such references
+ * should use a {@link WeakHashMap} owned by that object instead.
  */
 abstract class ClassValueMap<T> {
-  private final Map<Class<?>, T> map = Collections.synchronizedMap(new WeakHashMap<>());
+  private static final boolean CLASS_VALUE_AVAILABLE = isClassValueAvailable();
+
+  private volatile Store<T> store = newStore();
 
   protected abstract T computeValue(Class<?> type);
 
   public T get(Class<?> type) {
-    return map.computeIfAbsent(type, this::computeValue);
+    return store.get(type);
   }
 
   @VisibleForTesting
   void clear() {
-    map.clear();
+    store = newStore();
+  }
+
+  @VisibleForTesting
+  boolean isClassValueBacked() {
+    return store instanceof ClassValueStore;
+  }
+
+  private Store<T> newStore() {
+    return CLASS_VALUE_AVAILABLE ? new ClassValueStore<>(this) : new MapStore<>(this);
+  }
+
+  private static boolean isClassValueAvailable() {
+    try {
+      Class.forName("java.lang.ClassValue");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private interface Store<T> {
+    T get(Class<?> type);
+  }
+
+  /** Only loaded when {@link java.lang.ClassValue} is available. */
+  @SuppressWarnings("AndroidJdkLibsChecker")
+  private static class ClassValueStore<T> extends ClassValue<T> implements Store<T> {
+    private final ClassValueMap<T> owner;
+
+    ClassValueStore(ClassValueMap<T> owner) {
+      this.owner = owner;
+    }
+
+    @Override
+    protected T computeValue(Class<?> type) {
+      return owner.computeValue(type);
+    }
+  }
+
+  private static class MapStore<T> implements Store<T> {
+    private final ClassValueMap<T> owner;
+    private final Map<Class<?>, T> map = Collections.synchronizedMap(new WeakHashMap<>());
+
+    MapStore(ClassValueMap<T> owner) {
+      this.owner = owner;
+    }
+
+    @Override
+    public T get(Class<?> type) {
+      return map.computeIfAbsent(type, owner::computeValue);
+    }
   }
 }
@@ -12,6 +12,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.robolectric.annotation.internal.DoNotInstrument;
@@ -230,6 +231,22 @@ public class InstrumentationConfiguration {
     return result;
   }
 
+  /**
+   * Returns a stable description of the parts of this configuration that affect the bytes produced
+   * by {@link ClassInstrumentor}. Unlike {@link #hashCode()}, this is suitable for use in keys that
+   * outlive the current JVM.
+   */
+  String instrumentationFingerprint() {
+    StringBuilder fingerprint = new StringBuilder();
+    new TreeMap<>(classNameTranslations)
+        .forEach((from, to) -> fingerprint.append(from).append("->").append(to).append('\n'));
+    interceptedMethods.stream()
+        .map(MethodRef::toString)
+        .sorted()
+        .forEach(methodRef -> fingerprint.append(methodRef).append('\n'));
+    return fingerprint.toString();
+  }
+
   public String remapParamType(String desc) {
     return typeMapper.remapParamType(desc);
   }
@@ -0,0 +1,309 @@
+package org.robolectric.internal.bytecode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.robolectric.util.Logger;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.Util;
+
+/**
+ * Content-addressed on-disk cache of instrumented class bytes, shared by all JVMs pointing at the
+ * same directory.
+ *
+ * <p>Entries are keyed by a hash of the original class bytes, the parts of the {@link
+ * InstrumentationConfiguration} that affect instrumentation, a fingerprint of the {@link
+ * ClassInstrumentor} implementation, and the identity of the jars the instrumented class was read
+ * from, so stale entries are never returned after any of them change. Entries are written
+ * to a temporary file and atomically moved into place, so concurrent JVMs never observe partially
+ * written classes. Once the cache grows beyond its size limit, the least recently used entries are
+ * deleted.
+ *
+ * <p>The cache is enabled by setting the {@code robolectric.instrumentedClassCacheDirectory} system
+ * property; {@code robolectric.instrumentedClassCacheMaxBytes} bounds its size.
+ */
+public class InstrumentedClassDiskCache {
+  static final String CACHE_DIRECTORY_PROPERTY = "robolectric.instrumentedClassCacheDirectory";
+  static final String CACHE_MAX_BYTES_PROPERTY = "robolectric.instrumentedClassCacheMaxBytes";
+  static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+  private static final String ENTRY_SUFFIX = ".class";
+
+  /** Classes whose implementation determines the output of {@link ClassInstrumentor}. */
+  private static final Class<?>[] INSTRUMENTATION_CLASSES = {
+    ClassInstrumentor.class,
+    MutableClass.class,
+    InstrumentingClassWriter.class,
+    RobolectricGeneratorAdapter.class,
+    TypeMapper.class,
+  };
+
+  private static volatile InstrumentedClassDiskCache systemDefault;
+  private static volatile boolean systemDefaultInitialized;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final AtomicLong approximateSize = new AtomicLong(-1);
+
+  @VisibleForTesting
+  InstrumentedClassDiskCache(Path directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the cache configured through system properties, or null if no cache directory has been
+   * set.
+   */
+  @Nullable
+  static InstrumentedClassDiskCache getSystemDefault() {
+    if (!systemDefaultInitialized) {
+      synchronized (InstrumentedClassDiskCache.class) {
+        if (!systemDefaultInitialized) {
+          String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY, "");
+          if (!Strings.isNullOrEmpty(directory)) {
+            long maxBytes = Long.getLong(CACHE_MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES);
+            systemDefault = new InstrumentedClassDiskCache(Paths.get(directory), maxBytes);
+          }
+          systemDefaultInitialized = true;
+        }
+      }
+    }
+    return systemDefault;
+  }
+
+  /**
+   * Computes a fingerprint of everything other than the original class bytes that influences
+   * instrumentation. It is the same for every class loaded by a given {@link SandboxClassLoader},
+   * so callers should compute it once.
+   *
+   * <p>Instrumenting a class also reads the classes it refers to, e.g. to compute stack map frames,
+   * so the fingerprint covers the jars on {@code classPath}, such as the android-all jar, by their
+   * path, size and modification time. Directories only contribute their path, so recompiling the
+   * code under test does not invalidate the cache.
+   */
+  static String computeContextFingerprint(
+      InstrumentationConfiguration config,
+      ClassInstrumentor classInstrumentor,
+      List<URL> classPath) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(config.instrumentationFingerprint(), UTF_8);
+    hasher.putString(classInstrumentor.getClass().getName(), UTF_8);
+    hasher.putString(classInstrumentor.decorator.getClass().getName(), UTF_8);
+    hasher.putInt(classInstrumentor.getAndroidJarSDKVersion());
+    putClassBytes(hasher, classInstrumentor.getClass());
+    putClassBytes(hasher, classInstrumentor.decorator.getClass());
+    for (Class<?> clazz : INSTRUMENTATION_CLASSES) {
+      putClassBytes(hasher, clazz);
+    }
+    for (URL url : classPath) {
+      putClassPathEntry(hasher, url);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putClassPathEntry(Hasher hasher, URL url) {
+    hasher.putString(url.toString(), UTF_8);
+    if (!"file".equals(url.getProtocol())) {
+      return;
+    }
+    Path path;
+    try {
+      path = Paths.get(url.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return;
+    }
+    // Directories hold the classes under test, which are recompiled all the time and are not
+    // instrumented; only jars are identified by their contents.
+    if (Files.isRegularFile(path)) {
+      hasher.putLong(sizeOf(path));
+      hasher.putLong(lastModified(path).toMillis());
+    }
+  }
+
+  private static void putClassBytes(Hasher hasher, Class<?> clazz) {
+    String resourceName = "/" + clazz.getName().replace('.', '/') + ".class";
+    try (InputStream in = clazz.getResourceAsStream(resourceName)) {
+      if (in != null) {
+        hasher.putBytes(Util.readBytes(in));
+      }
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Computes the cache key for a class given its original bytes and context fingerprint. */
+  static String computeKey(byte[] originalClassBytes, String contextFingerprint) {
+    return Hashing.sha256()
+        .newHasher()
+        .putBytes(originalClassBytes)
+        .putString(contextFingerprint, UTF_8)
+        .hash()
+        .toString();
+  }
+
+  /** Returns the cached instrumented bytes for {@code key}, or null if there are none. */
+  @Nullable
+  byte[] get(String key) {
+    Path entry = entryPath(key);
+    try {
+      byte[] bytes = Files.readAllBytes(entry);
+      touch(entry);
+      PerfStatsCollector.getInstance().incrementCount("instrumented class cache hit");
+      return bytes;
+    } catch (NoSuchFileException e) {
+      PerfStatsCollector.getInstance().incrementCount("instrumented class cache miss");
+      return null;
+    } catch (IOException e) {
+      Logger.warn("Unable to read instrumented class cache entry %s: %s", entry, e);
+      PerfStatsCollector.getInstance().incrementCount("instrumented class cache miss");
+      return null;
+    }
+  }
+
+  /** Stores {@code instrumentedBytes} under {@code key}. Failures are logged and ignored. */
+  void put(String key, byte[] instrumentedBytes) {
+    Path entry = entryPath(key);
+    Path tempFile = null;
+    try {
+      Files.createDirectories(entry.getParent());
+      tempFile = Files.createTempFile(entry.getParent(), key, ".tmp");
+      Files.write(tempFile, instrumentedBytes);
+      try {
+        Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+      tempFile = null;
+    } catch (FileAlreadyExistsException e) {
+      // Another JVM stored the same entry first; its content is identical.
+      return;
+    } catch (IOException e) {
+      Logger.warn("Unable to write instrumented class cache entry %s: %s", entry, e);
+      return;
+    } finally {
+      deleteQuietly(tempFile);
+    }
+
+    if (addToApproximateSize(instrumentedBytes.length) > maxBytes) {
+      evict();
+    }
+  }
+
+  private long addToApproximateSize(long delta) {
+    if (approximateSize.get() < 0) {
+      synchronized (this) {
+        if (approximateSize.get() < 0) {
+          approximateSize.set(
+              listEntries().stream().mapToLong(InstrumentedClassDiskCache::sizeOf).sum());
+          return approximateSize.get();
+        }
+      }
+    }
+    return approximateSize.addAndGet(delta);
+  }
+
+  /** Deletes the least recently used entries until the cache is at three quarters of its limit. */
+  @VisibleForTesting
+  synchronized void evict() {
+    // Snapshot timestamps up front; other JVMs may touch entries while we sort.
+    Map<Path, FileTime> lastUse = new HashMap<>();
+    long total = 0;
+    for (Path entry : listEntries()) {
+      lastUse.put(entry, lastModified(entry));
+      total += sizeOf(entry);
+    }
+    List<Path> byLastUse = new ArrayList<>(lastUse.keySet());
+    byLastUse.sort(Comparator.comparing(lastUse::get));
+    long target = maxBytes / 4 * 3;
+    for (Path entry : byLastUse) {
+      if (total <= target) {
+        break;
+      }
+      long size = sizeOf(entry);
+      deleteQuietly(entry);
+      total -= size;
+    }
+    approximateSize.set(total);
+    PerfStatsCollector.getInstance().incrementCount("instrumented class cache eviction");
+  }
+
+  private List<Path> listEntries() {
+    if (!Files.isDirectory(directory)) {
+      return new ArrayList<>();
+    }
+    try (Stream<Path> files = Files.walk(directory, 2)) {
+      return files
+          .filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX))
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      Logger.warn("Unable to list instrumented class cache %s: %s", directory, e);
+      return new ArrayList<>();
+    }
+  }
+
+  @VisibleForTesting
+  Path entryPath(String key) {
+    // Shard entries by the first two hex digits to keep directories small.
+    return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+  }
+
+  private static void touch(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // The entry may have been evicted by another JVM; recency is only a hint.
+    }
+  }
+
+  private static long sizeOf(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static FileTime lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private static void deleteQuietly(@Nullable Path path) {
+    if (path == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // Best effort; a later eviction will retry.
+    }
+  }
+}
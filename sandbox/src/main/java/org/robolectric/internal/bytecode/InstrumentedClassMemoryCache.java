@@ -0,0 +1,122 @@
+package org.robolectric.internal.bytecode;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.robolectric.util.PerfStatsCollector;
+
+/**
+ * JVM-wide in-memory cache of instrumented class bytes, shared by all {@link SandboxClassLoader}s.
+ *
+ * <p>Sandboxes that differ only in modes that don't affect instrumentation, such as their looper,
+ * graphics or SQLite mode, instrument the same classes in the same way. With this cache, only the
+ * first of them runs {@link ClassInstrumentor}; the others define the classes from its output.
+ *
+ * <p>Entries are grouped by scope, which covers the instrumentation configuration and the class
+ * path the class loader reads classes from, e.g. an SDK jar, so class loaders for different class
+ * paths never share entries. Within a scope, entries are keyed by class name, and only returned
+ * for identical original class bytes. Entries are softly referenced, so the cache never causes an
+ * {@link OutOfMemoryError}; entries whose bytes were collected are removed on the next access.
+ *
+ * <p>The cache is enabled by default; set the {@code robolectric.instrumentedClassMemoryCache}
+ * system property to {@code false} to disable it.
+ */
+public class InstrumentedClassMemoryCache {
+  static final String ENABLED_PROPERTY = "robolectric.instrumentedClassMemoryCache";
+
+  private static final InstrumentedClassMemoryCache INSTANCE = new InstrumentedClassMemoryCache();
+
+  private static final PerfStatsCollector.MetricHandle HIT =
+      PerfStatsCollector.getInstance().getHandle("instrumented class memory cache hit");
+  private static final PerfStatsCollector.MetricHandle MISS =
+      PerfStatsCollector.getInstance().getHandle("instrumented class memory cache miss");
+
+  private final Map<String, Map<String, EntryReference>> scopes = new ConcurrentHashMap<>();
+  private final ReferenceQueue<Entry> clearedEntries = new ReferenceQueue<>();
+
+  @VisibleForTesting
+  InstrumentedClassMemoryCache() {}
+
+  /** Returns the JVM-wide cache, or null if it has been disabled. */
+  @Nullable
+  static InstrumentedClassMemoryCache getSystemDefault() {
+    return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true")) ? INSTANCE : null;
+  }
+
+  /**
+   * Returns the instrumented bytes of {@code className} in {@code scope}, or null if there are none
+   * for {@code originalClassBytes}.
+   */
+  @Nullable
+  byte[] get(String scope, String className, byte[] originalClassBytes) {
+    removeClearedEntries();
+    Map<String, EntryReference> entries = scopes.get(scope);
+    EntryReference reference = entries == null ? null : entries.get(className);
+    Entry entry = reference == null ? null : reference.get();
+    if (entry == null || !Arrays.equals(entry.originalClassBytes, originalClassBytes)) {
+      MISS.incrementCount();
+      return null;
+    }
+    HIT.incrementCount();
+    return entry.instrumentedClassBytes;
+  }
+
+  /** Stores the instrumented bytes of {@code className} in {@code scope}. */
+  void put(
+      String scope, String className, byte[] originalClassBytes, byte[] instrumentedClassBytes) {
+    removeClearedEntries();
+    scopes
+        .computeIfAbsent(scope, k -> new ConcurrentHashMap<>())
+        .put(
+            className,
+            new EntryReference(
+                scope,
+                className,
+                new Entry(originalClassBytes, instrumentedClassBytes),
+                clearedEntries));
+  }
+
+  /** Returns the number of entries, including those whose bytes have not been removed yet. */
+  @VisibleForTesting
+  int size() {
+    return scopes.values().stream().mapToInt(Map::size).sum();
+  }
+
+  /** Removes the entries whose bytes were collected. */
+  private void removeClearedEntries() {
+    Reference<? extends Entry> cleared;
+    while ((cleared = clearedEntries.poll()) != null) {
+      EntryReference reference = (EntryReference) cleared;
+      Map<String, EntryReference> entries = scopes.get(reference.scope);
+      if (entries != null) {
+        entries.remove(reference.className, reference);
+      }
+    }
+  }
+
+  private static class EntryReference extends SoftReference<Entry> {
+    final String scope;
+    final String className;
+
+    EntryReference(String scope, String className, Entry entry, ReferenceQueue<Entry> queue) {
+      super(entry, queue);
+      this.scope = scope;
+      this.className = className;
+    }
+  }
+
+  private static class Entry {
+    final byte[] originalClassBytes;
+    final byte[] instrumentedClassBytes;
+
+    Entry(byte[] originalClassBytes, byte[] instrumentedClassBytes) {
+      this.originalClassBytes = originalClassBytes;
+      this.instrumentedClassBytes = instrumentedClassBytes;
+    }
+  }
+}
@@ -26,8 +26,8 @@ public class InvokeDynamicSupport {
   @SuppressWarnings("unused")
   private static Interceptors INTERCEPTORS;
 
-  private static final MethodHandle BIND_CALL_SITE;
-  private static final MethodHandle BIND_INIT_CALL_SITE;
+  private static final MethodHandle REBIND_CALL_SITE;
+  private static final MethodHandle REBIND_INIT_CALL_SITE;
   private static final MethodHandle EXCEPTION_HANDLER;
   private static final MethodHandle GET_SHADOW;
 
@@ -40,19 +40,32 @@ public class InvokeDynamicSupport {
    */
   private static final int BOOLEAN_TRUE = 1;
 
+  private static final PerfStatsCollector.MetricHandle BOOTSTRAP_INIT =
+      PerfStatsCollector.getInstance().getHandle("invokedynamic bootstrap init");
+  private static final PerfStatsCollector.MetricHandle BOOTSTRAP =
+      PerfStatsCollector.getInstance().getHandle("invokedynamic bootstrap");
+  private static final PerfStatsCollector.MetricHandle BOOTSTRAP_STATIC =
+      PerfStatsCollector.getInstance().getHandle("invokedynamic bootstrap static");
+  private static final PerfStatsCollector.MetricHandle BOOTSTRAP_INTRINSIC =
+      PerfStatsCollector.getInstance().getHandle("invokedynamic bootstrap intrinsic");
+  private static final PerfStatsCollector.MetricHandle RELINK =
+      PerfStatsCollector.getInstance().getHandle("invokedynamic relink");
+  private static final PerfStatsCollector.MetricHandle RELINK_INIT =
+      PerfStatsCollector.getInstance().getHandle("invokedynamic relink init");
+
   static {
     try {
       MethodHandles.Lookup lookup = MethodHandles.lookup();
 
-      BIND_CALL_SITE =
+      REBIND_CALL_SITE =
           lookup.findStatic(
               InvokeDynamicSupport.class,
-              "bindCallSite",
+              "rebindCallSite",
               methodType(MethodHandle.class, MethodCallSite.class));
-      BIND_INIT_CALL_SITE =
+      REBIND_INIT_CALL_SITE =
           lookup.findStatic(
               InvokeDynamicSupport.class,
-              "bindInitCallSite",
+              "rebindInitCallSite",
               methodType(MethodHandle.class, RoboCallSite.class));
       MethodHandle cleanStackTrace =
           lookup.findStatic(
@@ -70,16 +83,14 @@ public class InvokeDynamicSupport {
 
   @SuppressWarnings("UnusedDeclaration")
   public static CallSite bootstrapInit(MethodHandles.Lookup caller, String name, MethodType type) {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap init",
-            () -> {
-              RoboCallSite site = new RoboCallSite(type, caller.lookupClass());
+    return BOOTSTRAP_INIT.measure(
+        () -> {
+          RoboCallSite site = new RoboCallSite(type, caller.lookupClass());
 
-              bindInitCallSite(site);
+          bindInitCallSite(site);
 
-              return site;
-            });
+          return site;
+        });
   }
 
   @SuppressWarnings("UnusedDeclaration")
@@ -90,23 +101,16 @@ public class InvokeDynamicSupport {
       MethodHandle original,
       int isNative /* 1 == originally native, 0 == not originally native */)
       throws IllegalAccessException {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap",
-            () -> {
-              MethodCallSite site =
-                  new MethodCallSite(
-                      caller.lookupClass(),
-                      type,
-                      name,
-                      original,
-                      REGULAR,
-                      isNative == BOOLEAN_TRUE);
-
-              bindCallSite(site);
-
-              return site;
-            });
+    return BOOTSTRAP.measure(
+        () -> {
+          MethodCallSite site =
+              new MethodCallSite(
+                  caller.lookupClass(), type, name, original, REGULAR, isNative == BOOLEAN_TRUE);
+
+          bindCallSite(site);
+
+          return site;
+        });
   }
 
   @SuppressWarnings("UnusedDeclaration")
@@ -117,34 +121,30 @@ public class InvokeDynamicSupport {
       MethodHandle original,
       int isNative /* 1 == originally native, 0 == not originally native */)
       throws IllegalAccessException {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap static",
-            () -> {
-              MethodCallSite site =
-                  new MethodCallSite(
-                      caller.lookupClass(), type, name, original, STATIC, isNative == BOOLEAN_TRUE);
-
-              bindCallSite(site);
-
-              return site;
-            });
+    return BOOTSTRAP_STATIC.measure(
+        () -> {
+          MethodCallSite site =
+              new MethodCallSite(
+                  caller.lookupClass(), type, name, original, STATIC, isNative == BOOLEAN_TRUE);
+
+          bindCallSite(site);
+
+          return site;
+        });
   }
 
   @SuppressWarnings("UnusedDeclaration")
   public static CallSite bootstrapIntrinsic(
       MethodHandles.Lookup caller, String name, MethodType type, String callee) {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "invokedynamic bootstrap intrinsic",
-            () -> {
-              MethodHandle mh = getMethodHandle(callee, name, type);
-              if (mh == null) {
-                throw new IllegalArgumentException(
-                    "Could not find intrinsic for " + callee + ":" + name);
-              }
-              return new ConstantCallSite(mh.asType(type));
-            });
+    return BOOTSTRAP_INTRINSIC.measure(
+        () -> {
+          MethodHandle mh = getMethodHandle(callee, name, type);
+          if (mh == null) {
+            throw new IllegalArgumentException(
+                "Could not find intrinsic for " + callee + ":" + name);
+          }
+          return new ConstantCallSite(mh.asType(type));
+        });
   }
 
   private static final MethodHandle NOTHING =
@@ -176,7 +176,19 @@ public class InvokeDynamicSupport {
 
   private static MethodHandle bindInitCallSite(RoboCallSite site) {
     MethodHandle mh = RobolectricInternals.getShadowCreator(site.getTheClass());
-    return bindWithFallback(site, mh, BIND_INIT_CALL_SITE);
+    return bindWithFallback(site, ShadowInvalidator.SHADOW_CREATOR, mh, REBIND_INIT_CALL_SITE);
+  }
+
+  /** Called once the switch point guarding {@code site} has been invalidated. */
+  private static MethodHandle rebindInitCallSite(RoboCallSite site) {
+    RELINK_INIT.incrementCount();
+    return bindInitCallSite(site);
+  }
+
+  /** Called once the switch point guarding {@code site} has been invalidated. */
+  private static MethodHandle rebindCallSite(MethodCallSite site) throws IllegalAccessException {
+    RELINK.incrementCount();
+    return bindCallSite(site);
   }
 
   private static MethodHandle bindCallSite(MethodCallSite site) throws IllegalAccessException {
@@ -202,7 +214,7 @@ public class InvokeDynamicSupport {
     }
 
     try {
-      return bindWithFallback(site, cleanStackTraces(mh), BIND_CALL_SITE);
+      return bindWithFallback(site, site.getName(), cleanStackTraces(mh), REBIND_CALL_SITE);
     } catch (Throwable t) {
       // The error that bubbles up is currently not very helpful so we print any error messages
       // here
@@ -213,8 +225,8 @@ public class InvokeDynamicSupport {
   }
 
   private static MethodHandle bindWithFallback(
-      RoboCallSite site, MethodHandle mh, MethodHandle fallback) {
-    SwitchPoint switchPoint = getInvalidator(site.getTheClass());
+      RoboCallSite site, String methodName, MethodHandle mh, MethodHandle fallback) {
+    SwitchPoint switchPoint = getInvalidator(site.getTheClass(), methodName);
     MethodType type = site.type();
 
     MethodHandle boundFallback = foldArguments(exactInvoker(type), fallback.bindTo(site));
@@ -234,8 +246,8 @@ public class InvokeDynamicSupport {
     return mh;
   }
 
-  private static SwitchPoint getInvalidator(Class<?> cl) {
-    return RobolectricInternals.getShadowInvalidator().getSwitchPoint(cl);
+  private static SwitchPoint getInvalidator(Class<?> cl, String methodName) {
+    return RobolectricInternals.getShadowInvalidator().getSwitchPoint(cl, methodName);
   }
 
   private static MethodHandle cleanStackTraces(MethodHandle mh) {
@@ -35,6 +35,7 @@ public class Sandbox {
   public Sandbox(SandboxClassLoader sandboxClassLoader) {
     this.sandboxClassLoader = sandboxClassLoader;
     executorService = Executors.newSingleThreadExecutor(mainThreadFactory());
+    sandboxClassLoader.preloadProfiledClasses();
   }
 
   protected ThreadFactory mainThreadFactory() {
@@ -53,6 +54,11 @@ public class Sandbox {
     return sandboxClassLoader;
   }
 
+  /** Returns the total size of the classes defined in this sandbox so far. */
+  public long getDefinedClassBytes() {
+    return sandboxClassLoader.getDefinedClassBytes();
+  }
+
   private ShadowInvalidator getShadowInvalidator() {
     if (shadowInvalidator == null) {
       this.shadowInvalidator = new ShadowInvalidator();
@@ -63,13 +69,40 @@ public class Sandbox {
   public void replaceShadowMap(ShadowMap shadowMap) {
     ShadowMap oldShadowMap = this.shadowMap;
     this.shadowMap = shadowMap;
+    ShadowInvalidator invalidator = getShadowInvalidator();
     Set<String> invalidatedClasses = new HashSet<>();
-    invalidatedClasses.addAll(shadowMap.getInvalidatedClasses(oldShadowMap));
+    for (String className : shadowMap.getInvalidatedClasses(oldShadowMap)) {
+      Set<String> methodNames = getChangedMethodNames(className, oldShadowMap, shadowMap);
+      if (methodNames == null) {
+        invalidatedClasses.add(className);
+      } else {
+        invalidator.invalidateMethods(className, methodNames);
+      }
+    }
     invalidatedClasses.addAll(getModeInvalidatedClasses());
-    getShadowInvalidator().invalidateClasses(invalidatedClasses);
+    invalidator.invalidateClasses(invalidatedClasses);
     clearModeInvalidatedClasses();
   }
 
+  /**
+   * Returns the names of the methods of {@code className} whose call sites must be relinked after
+   * its shadow changed, or null if all of them must be.
+   */
+  private Set<String> getChangedMethodNames(
+      String className, ShadowMap oldShadowMap, ShadowMap newShadowMap) {
+    if (!sandboxClassLoader.mayHaveLoadedClass(className)) {
+      // None of the class's call sites have been linked yet.
+      return null;
+    }
+    Set<String> methodNames =
+        newShadowMap.getChangedMethodNames(oldShadowMap, className, sandboxClassLoader);
+    if (methodNames == null) {
+      return null;
+    }
+    methodNames.add(ShadowInvalidator.SHADOW_CREATOR);
+    return methodNames;
+  }
+
   protected Set<String> getModeInvalidatedClasses() {
     return Collections.emptySet();
   }
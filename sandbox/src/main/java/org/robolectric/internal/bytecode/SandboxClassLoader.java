@@ -3,6 +3,7 @@ package org.robolectric.internal.bytecode;
 import static com.google.common.base.StandardSystemProperty.JAVA_CLASS_PATH;
 import static com.google.common.base.StandardSystemProperty.PATH_SEPARATOR;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
@@ -17,7 +18,14 @@ import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.robolectric.util.Logger;
 import org.robolectric.util.PerfStatsCollector;
@@ -28,6 +36,11 @@ import org.robolectric.util.Util;
  * shadow classes.
  */
 public class SandboxClassLoader extends URLClassLoader {
+  static {
+    // Classes may be loaded concurrently, e.g. while preparing them for a ClassLoadingProfile.
+    registerAsParallelCapable();
+  }
+
   // The directory where instrumented class files will be dumped
   private static final String DUMP_CLASSES_PROPERTY = "robolectric.dumpClassesDirectory";
 
@@ -36,12 +49,22 @@ public class SandboxClassLoader extends URLClassLoader {
 
   private static final AtomicInteger DUMP_CLASSES_COUNTER = new AtomicInteger();
 
+  private static final PerfStatsCollector.MetricHandle LOAD_SANDBOXED_CLASS =
+      PerfStatsCollector.getInstance().getHandle("load sandboxed class");
+
   private final InstrumentationConfiguration config;
   private final ResourceProvider resourceProvider;
   private final ClassInstrumentor classInstrumentor;
   private final ClassNodeProvider classNodeProvider;
   private final String dumpClassesDirectory;
-  private boolean isClosed;
+  @Nullable private final InstrumentedClassDiskCache diskCache;
+  @Nullable private final InstrumentedClassMemoryCache memoryCache;
+  private volatile String contextFingerprint;
+  private volatile String memoryCacheScope;
+  @Nullable private final ClassLoadingProfile classLoadingProfile;
+  private final Map<String, byte[]> preparedClasses = new ConcurrentHashMap<>();
+  private final AtomicLong definedClassBytes = new AtomicLong();
+  private volatile boolean isClosed;
 
   /** Constructor for use by tests. */
   SandboxClassLoader(InstrumentationConfiguration config) {
@@ -65,6 +88,23 @@ public class SandboxClassLoader extends URLClassLoader {
       InstrumentationConfiguration config,
       ResourceProvider resourceProvider,
       ClassInstrumentor classInstrumentor) {
+    this(
+        erstwhileClassLoader,
+        config,
+        resourceProvider,
+        classInstrumentor,
+        InstrumentedClassDiskCache.getSystemDefault(),
+        InstrumentedClassMemoryCache.getSystemDefault());
+  }
+
+  @VisibleForTesting
+  SandboxClassLoader(
+      ClassLoader erstwhileClassLoader,
+      InstrumentationConfiguration config,
+      ResourceProvider resourceProvider,
+      ClassInstrumentor classInstrumentor,
+      @Nullable InstrumentedClassDiskCache diskCache,
+      @Nullable InstrumentedClassMemoryCache memoryCache) {
     super(getClassPathUrls(erstwhileClassLoader), erstwhileClassLoader);
 
     this.config = config;
@@ -80,6 +120,19 @@ public class SandboxClassLoader extends URLClassLoader {
           }
         };
     this.dumpClassesDirectory = System.getProperty(DUMP_CLASSES_PROPERTY, "");
+    this.diskCache = diskCache;
+    this.memoryCache = memoryCache;
+    this.classLoadingProfile = ClassLoadingProfile.getSystemDefault();
+  }
+
+  /**
+   * Starts preparing the classes recorded in the {@link ClassLoadingProfile} on background threads,
+   * if profiling is enabled.
+   */
+  void preloadProfiledClasses() {
+    if (classLoadingProfile != null) {
+      classLoadingProfile.preload(this);
+    }
   }
 
   private static URL[] getClassPathUrls(ClassLoader classloader) {
@@ -141,6 +194,9 @@ public class SandboxClassLoader extends URLClassLoader {
 
   @Override
   public Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+    if (classLoadingProfile != null && config.shouldAcquire(name)) {
+      classLoadingProfile.recordClassLoad(name);
+    }
     synchronized (getClassLoadingLock(name)) {
       Class<?> loadedClass = findLoadedClass(name);
       if (loadedClass != null) {
@@ -150,9 +206,7 @@ public class SandboxClassLoader extends URLClassLoader {
         throw new ClassNotFoundException("This ClassLoader is closed");
       }
       if (config.shouldAcquire(name)) {
-        loadedClass =
-            PerfStatsCollector.getInstance()
-                .measure("load sandboxed class", () -> maybeInstrumentClass(name));
+        loadedClass = LOAD_SANDBOXED_CLASS.measure(() -> maybeInstrumentClass(name));
       } else {
         loadedClass = getParent().loadClass(name);
       }
@@ -166,14 +220,114 @@ public class SandboxClassLoader extends URLClassLoader {
   }
 
   protected Class<?> maybeInstrumentClass(String className) throws ClassNotFoundException {
+    byte[] classBytes = preparedClasses.remove(className);
+    if (classBytes == null) {
+      classBytes = readAndMaybeInstrument(className);
+    }
+    ensurePackage(className);
+    definedClassBytes.addAndGet(classBytes.length);
+    return defineClass(className, classBytes, 0, classBytes.length);
+  }
+
+  /**
+   * Reads and, if needed, instruments the acquired class {@code className} ahead of time, without
+   * defining it. The class is defined from the prepared bytes once it is loaded, so a class that
+   * has only been prepared is not reported by {@link #mayHaveLoadedClass}.
+   */
+  void prepareClass(String className) throws ClassNotFoundException {
+    if (!config.shouldAcquire(className)) {
+      return;
+    }
+    synchronized (getClassLoadingLock(className)) {
+      if (isClosed) {
+        throw new ClassNotFoundException("This ClassLoader is closed");
+      }
+      if (findLoadedClass(className) == null && !preparedClasses.containsKey(className)) {
+        preparedClasses.put(className, readAndMaybeInstrument(className));
+      }
+    }
+  }
+
+  private byte[] readAndMaybeInstrument(String className) throws ClassNotFoundException {
     byte[] classBytes = getByteCode(className);
     ClassDetails classDetails = new ClassDetails(classBytes);
     if (config.shouldInstrument(classDetails)) {
-      classBytes = classInstrumentor.instrument(classDetails, config, classNodeProvider);
+      classBytes = instrument(className, classDetails);
       maybeDumpClassBytes(classDetails, classBytes);
     }
-    ensurePackage(className);
-    return defineClass(className, classBytes, 0, classBytes.length);
+    return classBytes;
+  }
+
+  private byte[] instrument(String className, ClassDetails classDetails) {
+    if (memoryCache == null) {
+      return instrumentOrReadFromDisk(classDetails);
+    }
+    String scope = getMemoryCacheScope();
+    byte[] classBytes = memoryCache.get(scope, className, classDetails.getClassBytes());
+    if (classBytes == null) {
+      classBytes = instrumentOrReadFromDisk(classDetails);
+      memoryCache.put(scope, className, classDetails.getClassBytes(), classBytes);
+    }
+    return classBytes;
+  }
+
+  private byte[] instrumentOrReadFromDisk(ClassDetails classDetails) {
+    if (diskCache == null) {
+      return classInstrumentor.instrument(classDetails, config, classNodeProvider);
+    }
+    String key =
+        InstrumentedClassDiskCache.computeKey(
+            classDetails.getClassBytes(), getContextFingerprint());
+    byte[] classBytes = diskCache.get(key);
+    if (classBytes == null) {
+      classBytes = classInstrumentor.instrument(classDetails, config, classNodeProvider);
+      diskCache.put(key, classBytes);
+    }
+    return classBytes;
+  }
+
+  @VisibleForTesting
+  String getContextFingerprint() {
+    if (contextFingerprint == null) {
+      contextFingerprint =
+          InstrumentedClassDiskCache.computeContextFingerprint(
+              config, classInstrumentor, getClassPath());
+    }
+    return contextFingerprint;
+  }
+
+  /**
+   * Returns the scope of this class loader's entries in the memory cache. Unlike the context
+   * fingerprint, which must detect changes between JVMs, it only distinguishes class loaders
+   * within one JVM, whose class path can't change, so it is cheap to compute.
+   */
+  @VisibleForTesting
+  String getMemoryCacheScope() {
+    if (memoryCacheScope == null) {
+      memoryCacheScope =
+          String.join(
+              "\n",
+              config.instrumentationFingerprint(),
+              classInstrumentor.getClass().getName(),
+              classInstrumentor.decorator.getClass().getName(),
+              Integer.toString(classInstrumentor.getAndroidJarSDKVersion()),
+              getClassPath().toString());
+    }
+    return memoryCacheScope;
+  }
+
+  /**
+   * Returns the URLs acquired classes, and the classes they refer to, are read from. Instrumented
+   * classes are only shared with class loaders that have the same class path, so subclasses that
+   * read classes from elsewhere must add those sources.
+   */
+  protected List<URL> getClassPath() {
+    List<URL> classPath = new ArrayList<>();
+    if (resourceProvider instanceof URLClassLoader) {
+      classPath.addAll(Arrays.asList(((URLClassLoader) resourceProvider).getURLs()));
+    }
+    classPath.addAll(Arrays.asList(getURLs()));
+    return classPath;
   }
 
   private void maybeDumpClassBytes(ClassDetails classDetails, byte[] classBytes) {
@@ -207,15 +361,38 @@ public class SandboxClassLoader extends URLClassLoader {
       String pckgName = className.substring(0, lastDotIndex);
       Package pckg = getPackage(pckgName);
       if (pckg == null) {
-        definePackage(pckgName, null, null, null, null, null, null, null);
+        try {
+          definePackage(pckgName, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException e) {
+          // Another thread defined the package concurrently.
+        }
       }
     }
   }
 
+  /** Returns the total size of the class files this class loader has defined. */
+  public long getDefinedClassBytes() {
+    return definedClassBytes.get();
+  }
+
+  /**
+   * Returns true if this class loader has loaded the class named {@code name}, or if the class
+   * isn't acquired by the sandbox, in which case this class loader can't tell whether it was
+   * loaded.
+   */
+  public boolean mayHaveLoadedClass(String name) {
+    return findLoadedClass(name) != null || !config.shouldAcquire(name);
+  }
+
+  boolean isClosed() {
+    return isClosed;
+  }
+
   @Override
   public void close() throws IOException {
     super.close();
     resourceProvider.close();
     isClosed = true;
+    preparedClasses.clear();
   }
 }
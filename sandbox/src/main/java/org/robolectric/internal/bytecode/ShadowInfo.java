@@ -66,6 +66,20 @@ public class ShadowInfo {
     return shadowPickerClass;
   }
 
+  /**
+   * Returns whether {@code that} shadows the same class in the same way as this, other than with a
+   * different shadow class.
+   */
+  boolean equalsIgnoringShadowClass(ShadowInfo that) {
+    return callThroughByDefault == that.callThroughByDefault
+        && callNativeMethodsByDefault == that.callNativeMethodsByDefault
+        && looseSignatures == that.looseSignatures
+        && minSdk == that.minSdk
+        && maxSdk == that.maxSdk
+        && Objects.equals(shadowedClassName, that.shadowedClassName)
+        && Objects.equals(shadowPickerClass, that.shadowPickerClass);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
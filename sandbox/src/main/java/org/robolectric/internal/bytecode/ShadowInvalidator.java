@@ -1,43 +1,85 @@
 package org.robolectric.internal.bytecode;
 
 import java.lang.invoke.SwitchPoint;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.robolectric.util.PerfStatsCollector;
 
+/**
+ * Holds the {@link SwitchPoint}s that guard the call sites bound in a sandbox.
+ *
+ * <p>There is one {@link SwitchPoint} per method name of each instrumented class, so that when only
+ * some of a class's shadow methods change, only the call sites of those methods are relinked. The
+ * call sites that create shadows are registered under {@link #SHADOW_CREATOR}.
+ *
+ * <p>Each invalidated {@link SwitchPoint} is counted as an {@code "invalidate call site switch
+ * point"} metric.
+ */
 public class ShadowInvalidator {
-  private static final SwitchPoint DUMMY = new SwitchPoint();
+  /** The method name under which call sites that create a class's shadows are registered. */
+  public static final String SHADOW_CREATOR = "<shadow>";
 
-  static {
-    SwitchPoint.invalidateAll(new SwitchPoint[] {DUMMY});
-  }
+  private static final PerfStatsCollector.MetricHandle INVALIDATE_SWITCH_POINT =
+      PerfStatsCollector.getInstance().getHandle("invalidate call site switch point");
 
-  private final Map<String, SwitchPoint> switchPoints;
+  /** key is instrumented class name, then method name */
+  private final Map<String, Map<String, SwitchPoint>> switchPoints = new ConcurrentHashMap<>();
 
-  public ShadowInvalidator() {
-    this.switchPoints = new HashMap<>();
+  public SwitchPoint getSwitchPoint(Class<?> caller, String methodName) {
+    return getSwitchPoint(caller.getName(), methodName);
   }
 
-  public SwitchPoint getSwitchPoint(Class<?> caller) {
-    return getSwitchPoint(caller.getName());
+  public SwitchPoint getSwitchPoint(String className, String methodName) {
+    return switchPoints
+        .computeIfAbsent(className, k -> new ConcurrentHashMap<>())
+        .computeIfAbsent(methodName, k -> new SwitchPoint());
   }
 
-  public synchronized SwitchPoint getSwitchPoint(String className) {
-    SwitchPoint switchPoint = switchPoints.get(className);
-    if (switchPoint == null) switchPoints.put(className, switchPoint = new SwitchPoint());
-    return switchPoint;
+  /** Invalidates the call sites of every method of {@code classNames}. */
+  public void invalidateClasses(Collection<String> classNames) {
+    List<SwitchPoint> points = new ArrayList<>();
+    for (String className : classNames) {
+      Map<String, SwitchPoint> methodSwitchPoints = switchPoints.get(className);
+      if (methodSwitchPoints != null) {
+        // Remove entries one by one, so that a call site bound concurrently still registers its
+        // switch point in the map.
+        for (String methodName : methodSwitchPoints.keySet()) {
+          SwitchPoint switchPoint = methodSwitchPoints.remove(methodName);
+          if (switchPoint != null) {
+            points.add(switchPoint);
+          }
+        }
+      }
+    }
+    invalidateAll(points);
   }
 
-  public synchronized void invalidateClasses(Collection<String> classNames) {
-    if (classNames.isEmpty()) return;
-    SwitchPoint[] points = new SwitchPoint[classNames.size()];
-    int i = 0;
-    for (String className : classNames) {
-      SwitchPoint switchPoint = switchPoints.put(className, null);
-      if (switchPoint == null) switchPoint = DUMMY;
-      points[i++] = switchPoint;
+  /** Invalidates the call sites of the methods of {@code className} named {@code methodNames}. */
+  public void invalidateMethods(String className, Collection<String> methodNames) {
+    Map<String, SwitchPoint> methodSwitchPoints = switchPoints.get(className);
+    if (methodSwitchPoints == null) {
+      return;
     }
+    List<SwitchPoint> points = new ArrayList<>();
+    for (String methodName : methodNames) {
+      SwitchPoint switchPoint = methodSwitchPoints.remove(methodName);
+      if (switchPoint != null) {
+        points.add(switchPoint);
+      }
+    }
+    invalidateAll(points);
+  }
 
-    SwitchPoint.invalidateAll(points);
+  private static void invalidateAll(List<SwitchPoint> points) {
+    if (points.isEmpty()) {
+      return;
+    }
+    SwitchPoint.invalidateAll(points.toArray(new SwitchPoint[0]));
+    for (int i = 0; i < points.size(); i++) {
+      INVALIDATE_SWITCH_POINT.incrementCount();
+    }
   }
 }
@@ -5,12 +5,19 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
+import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.internal.ShadowMethodIndex;
 import org.robolectric.internal.ShadowProvider;
 import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.shadow.api.ShadowPicker;
@@ -33,10 +40,12 @@ public class ShadowMap {
   private final ImmutableListMultimap<String, String> defaultShadows;
   private final ImmutableMap<String, ShadowInfo> overriddenShadows;
   private final ImmutableMap<String, String> shadowPickers;
+  private final ShadowMethodIndex methodIndex;
 
   public static ShadowMap createFromShadowProviders(List<ShadowProvider> sortedProviders) {
     final ArrayListMultimap<String, String> shadowMap = ArrayListMultimap.create();
     final Map<String, String> shadowPickerMap = new HashMap<>();
+    final List<ShadowMethodIndex> methodIndexes = new ArrayList<>();
 
     // These are sorted in descending order (higher priority providers are first).
     for (ShadowProvider provider : sortedProviders) {
@@ -45,26 +54,38 @@ public class ShadowMap {
         shadowMap.put(entry.getKey(), entry.getValue());
       }
       provider.getShadowPickerMap().forEach(shadowPickerMap::putIfAbsent);
+      methodIndexes.add(ShadowMethodIndex.forProvider(provider));
     }
     return new ShadowMap(
         ImmutableListMultimap.copyOf(shadowMap),
         Collections.emptyMap(),
-        ImmutableMap.copyOf(shadowPickerMap));
+        ImmutableMap.copyOf(shadowPickerMap),
+        ShadowMethodIndex.merge(methodIndexes));
   }
 
   ShadowMap(
       ImmutableListMultimap<String, String> defaultShadows,
       Map<String, ShadowInfo> overriddenShadows) {
-    this(defaultShadows, overriddenShadows, Collections.emptyMap());
+    this(defaultShadows, overriddenShadows, Collections.emptyMap(), ShadowMethodIndex.EMPTY);
   }
 
   private ShadowMap(
       ImmutableListMultimap<String, String> defaultShadows,
       Map<String, ShadowInfo> overriddenShadows,
-      Map<String, String> shadowPickers) {
+      Map<String, String> shadowPickers,
+      ShadowMethodIndex methodIndex) {
     this.defaultShadows = ImmutableListMultimap.copyOf(defaultShadows);
     this.overriddenShadows = ImmutableMap.copyOf(overriddenShadows);
     this.shadowPickers = ImmutableMap.copyOf(shadowPickers);
+    this.methodIndex = methodIndex;
+  }
+
+  /**
+   * Returns the build-time index of shadow methods, which is empty for shadows that weren't
+   * processed by the Robolectric annotation processor.
+   */
+  public ShadowMethodIndex getMethodIndex() {
+    return methodIndex;
   }
 
   public boolean hasShadowPicker(MutableClass mutableClass) {
@@ -183,6 +204,131 @@ public class ShadowMap {
     return invalidated.keySet();
   }
 
+  /**
+   * Returns the names of the methods of {@code className} whose call sites may be linked
+   * differently with this map than with {@code previous}, or null if any of them may be.
+   *
+   * <p>Only the methods declared by either map's shadows are affected, as long as both maps shadow
+   * the class with shadows that differ in nothing but their shadow class. Otherwise, e.g. if a
+   * shadow was added or removed or {@link Implements#callNativeMethodsByDefault()} changed, call
+   * sites of methods without a shadow implementation may be affected too.
+   */
+  @Nullable
+  Set<String> getChangedMethodNames(ShadowMap previous, String className, ClassLoader classLoader) {
+    List<ShadowInfo> previousShadows = previous.getDeclaredShadowInfos(className, classLoader);
+    List<ShadowInfo> shadows = getDeclaredShadowInfos(className, classLoader);
+    if (previousShadows == null
+        || shadows == null
+        || previousShadows.isEmpty()
+        || previousShadows.size() != shadows.size()) {
+      return null;
+    }
+    for (int i = 0; i < shadows.size(); i++) {
+      if (!shadows.get(i).equalsIgnoringShadowClass(previousShadows.get(i))) {
+        return null;
+      }
+    }
+    Set<String> previousMethodNames = previous.getShadowedMethodNames(className, classLoader);
+    Set<String> methodNames = getShadowedMethodNames(className, classLoader);
+    if (previousMethodNames == null || methodNames == null) {
+      return null;
+    }
+    Set<String> changedMethodNames = new HashSet<>(previousMethodNames);
+    changedMethodNames.addAll(methodNames);
+    return changedMethodNames;
+  }
+
+  /**
+   * Returns the {@link ShadowInfo}s of the shadows this map declares for {@code className},
+   * whatever the SDK level, or null if they are chosen by a {@link ShadowPicker} or can't be
+   * loaded.
+   */
+  @Nullable
+  private List<ShadowInfo> getDeclaredShadowInfos(String className, ClassLoader classLoader) {
+    ShadowInfo overriddenShadow = overriddenShadows.get(className);
+    if (overriddenShadow != null) {
+      return overriddenShadow.hasShadowPicker() ? null : ImmutableList.of(overriddenShadow);
+    }
+    List<String> shadowClassNames = getDeclaredShadowClassNames(className);
+    if (shadowClassNames == null) {
+      return null;
+    }
+    List<ShadowInfo> shadowInfos = new ArrayList<>();
+    try {
+      for (String shadowClassName : shadowClassNames) {
+        ShadowInfo shadowInfo = obtainShadowInfo(classLoader.loadClass(shadowClassName), true);
+        if (shadowInfo == null) {
+          return null;
+        }
+        shadowInfos.add(shadowInfo);
+      }
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+    return shadowInfos;
+  }
+
+  @Nullable
+  private List<String> getDeclaredShadowClassNames(String className) {
+    ShadowInfo overriddenShadow = overriddenShadows.get(className);
+    if (overriddenShadow != null) {
+      return overriddenShadow.hasShadowPicker()
+          ? null
+          : ImmutableList.of(overriddenShadow.shadowClassName);
+    } else if (shadowPickers.containsKey(className)) {
+      return null;
+    } else {
+      // Default shadows are keyed by canonical name.
+      return defaultShadows.get(className.replace('$', '.'));
+    }
+  }
+
+  /**
+   * Returns the names of the methods of {@code className} that this map's shadows may replace, or
+   * null if every call site of the class may be affected, e.g. because its shadow doesn't call
+   * through by default or is chosen by a {@link ShadowPicker}.
+   *
+   * <p>The names are an over-approximation: they include every public and protected method
+   * declared by the shadow classes, whatever the SDK level, along with the names their
+   * {@link Implementation#methodName()}s map to. Shadow classes are loaded, but not initialized,
+   * through {@code classLoader}.
+   */
+  @Nullable
+  Set<String> getShadowedMethodNames(String className, ClassLoader classLoader) {
+    List<String> shadowClassNames = getDeclaredShadowClassNames(className);
+    if (shadowClassNames == null) {
+      return null;
+    }
+
+    Set<String> methodNames = new HashSet<>();
+    try {
+      for (String shadowClassName : shadowClassNames) {
+        Class<?> shadowClass = classLoader.loadClass(shadowClassName);
+        ShadowInfo shadowInfo = obtainShadowInfo(shadowClass, true);
+        while (shadowInfo != null && shadowInfo.shadowedClassName.equals(className)) {
+          if (!shadowInfo.callThroughByDefault) {
+            return null;
+          }
+          for (Method method : shadowClass.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers())
+                || Modifier.isProtected(method.getModifiers())) {
+              methodNames.add(method.getName());
+            }
+            Implementation implementation = method.getAnnotation(Implementation.class);
+            if (implementation != null && !implementation.methodName().trim().isEmpty()) {
+              methodNames.add(implementation.methodName().trim());
+            }
+          }
+          shadowClass = shadowClass.getSuperclass();
+          shadowInfo = shadowClass == null ? null : obtainShadowInfo(shadowClass, true);
+        }
+      }
+    } catch (ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+    return methodNames;
+  }
+
   public Builder newBuilder() {
     return new Builder(this);
   }
@@ -206,17 +352,20 @@ public class ShadowMap {
     private final ImmutableListMultimap<String, String> defaultShadows;
     private final Map<String, ShadowInfo> overriddenShadows;
     private final Map<String, String> shadowPickers;
+    private final ShadowMethodIndex methodIndex;
 
     public Builder() {
       defaultShadows = ImmutableListMultimap.of();
       overriddenShadows = new HashMap<>();
       shadowPickers = new HashMap<>();
+      methodIndex = ShadowMethodIndex.EMPTY;
     }
 
     public Builder(ShadowMap shadowMap) {
       this.defaultShadows = shadowMap.defaultShadows;
       this.overriddenShadows = new HashMap<>(shadowMap.overriddenShadows);
       this.shadowPickers = new HashMap<>(shadowMap.shadowPickers);
+      this.methodIndex = shadowMap.methodIndex;
     }
 
     public Builder addShadowClasses(Class<?>... shadowClasses) {
@@ -259,7 +408,7 @@ public class ShadowMap {
     }
 
     public ShadowMap build() {
-      return new ShadowMap(defaultShadows, overriddenShadows, shadowPickers);
+      return new ShadowMap(defaultShadows, overriddenShadows, shadowPickers, methodIndex);
     }
   }
 }
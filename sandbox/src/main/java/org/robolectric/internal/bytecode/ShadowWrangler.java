@@ -8,6 +8,7 @@ import static java.lang.invoke.MethodType.methodType;
 import static org.robolectric.util.reflector.Reflector.reflector;
 
 import com.google.auto.service.AutoService;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.errorprone.annotations.Keep;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
@@ -20,13 +21,19 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nonnull;
 import javax.annotation.Priority;
 import org.robolectric.annotation.ClassName;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.annotation.ReflectorObject;
+import org.robolectric.internal.ShadowMethodIndex;
+import org.robolectric.internal.ShadowMethodIndex.IndexedMethod;
 import org.robolectric.sandbox.ShadowMatcher;
 import org.robolectric.util.Function;
 import org.robolectric.util.PerfStatsCollector;
@@ -65,6 +72,10 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final PerfStatsCollector.MetricHandle FIND_SHADOW_METHOD_HANDLE =
+      PerfStatsCollector.getInstance().getHandle("find shadow method handle");
+  private static final PerfStatsCollector.MetricHandle BUILD_DISPATCH_TABLE =
+      PerfStatsCollector.getInstance().getHandle("build shadow dispatch table");
 
   private static final Class<?>[] NO_ARGS = new Class<?>[0];
   static final Object NO_SHADOW = new Object();
@@ -83,6 +94,29 @@ public class ShadowWrangler implements ClassHandler {
         }
       };
 
+  /**
+   * key is instrumented class. Instrumented classes belong to a single sandbox, so the tables are
+   * shared by all of its ShadowWranglers, one for each test, that have equal shadow maps.
+   */
+  private static final ClassValueMap<AtomicReference<DispatchTable>> DISPATCH_TABLES =
+      new ClassValueMap<AtomicReference<DispatchTable>>() {
+        @Nonnull
+        @Override
+        protected AtomicReference<DispatchTable> computeValue(Class<?> type) {
+          return new AtomicReference<>();
+        }
+      };
+
+  /** key is shadow class */
+  private final ClassValueMap<ShadowMethods> cachedShadowMethods =
+      new ClassValueMap<ShadowMethods>() {
+        @Nonnull
+        @Override
+        protected ShadowMethods computeValue(Class<?> type) {
+          return new ShadowMethods(type);
+        }
+      };
+
   /** key is shadow class */
   private final ClassValueMap<ShadowMetadata> cachedShadowMetadata =
       new ClassValueMap<ShadowMetadata>() {
@@ -116,6 +150,8 @@ public class ShadowWrangler implements ClassHandler {
   @Override
   public void classInitializing(Class<?> clazz) {
     try {
+      // Picking the static initializer builds the class's dispatch table, which then serves the
+      // call sites of all of its other methods.
       Method method =
           pickShadowMethod(clazz, ShadowConstants.STATIC_INITIALIZER_METHOD_NAME, NO_ARGS);
 
@@ -150,59 +186,57 @@ public class ShadowWrangler implements ClassHandler {
       boolean isStatic,
       boolean isNative)
       throws IllegalAccessException {
-    return PerfStatsCollector.getInstance()
-        .measure(
-            "find shadow method handle",
-            () -> {
-              MethodType actualType = isStatic ? methodType : methodType.dropParameterTypes(0, 1);
-              Class<?>[] paramTypes = actualType.parameterArray();
-
-              Method shadowMethod = pickShadowMethod(definingClass, name, paramTypes);
-
-              if (shadowMethod == CALL_REAL_CODE) {
-                ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
-                if (isNative && shadowInfo != null && shadowInfo.callNativeMethodsByDefault) {
-                  try {
-                    Method method =
-                        definingClass.getDeclaredMethod(
-                            ShadowConstants.ROBO_PREFIX + name + "$nativeBinding", paramTypes);
-                    method.setAccessible(true);
-                    return LOOKUP.unreflect(method);
-                  } catch (NoSuchMethodException e) {
-                    throw new LinkageError("Missing native binding method", e);
-                  }
-                }
-                return null;
-              } else if (shadowMethod == DO_NOTHING_METHOD) {
-                return DO_NOTHING;
+    return FIND_SHADOW_METHOD_HANDLE.measure(
+        () -> {
+          MethodType actualType = isStatic ? methodType : methodType.dropParameterTypes(0, 1);
+          Class<?>[] paramTypes = actualType.parameterArray();
+
+          Method shadowMethod = pickShadowMethod(definingClass, name, paramTypes);
+
+          if (shadowMethod == CALL_REAL_CODE) {
+            ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
+            if (isNative && shadowInfo != null && shadowInfo.callNativeMethodsByDefault) {
+              try {
+                Method method =
+                    definingClass.getDeclaredMethod(
+                        ShadowConstants.ROBO_PREFIX + name + "$nativeBinding", paramTypes);
+                method.setAccessible(true);
+                return LOOKUP.unreflect(method);
+              } catch (NoSuchMethodException e) {
+                throw new LinkageError("Missing native binding method", e);
               }
+            }
+            return null;
+          } else if (shadowMethod == DO_NOTHING_METHOD) {
+            return DO_NOTHING;
+          }
 
-              shadowMethod.setAccessible(true);
-
-              MethodHandle mh;
-              if (name.equals(ShadowConstants.CONSTRUCTOR_METHOD_NAME)) {
-                if (Modifier.isStatic(shadowMethod.getModifiers())) {
-                  throw new UnsupportedOperationException(
-                      "static __constructor__ shadow methods are not supported");
-                }
-                // Use invokespecial to call constructor shadow methods. If invokevirtual is used,
-                // the wrong constructor may be called in situations where constructors with
-                // identical signatures are shadowed in object hierarchies.
-                mh =
-                    MethodHandles.privateLookupIn(shadowMethod.getDeclaringClass(), LOOKUP)
-                        .unreflectSpecial(shadowMethod, shadowMethod.getDeclaringClass());
-              } else {
-                mh = LOOKUP.unreflect(shadowMethod);
-              }
+          shadowMethod.setAccessible(true);
 
-              // Robolectric doesn't actually look for static, this for example happens
-              // in MessageQueue.nativeInit() which used to be void non-static in 4.2.
-              if (!isStatic && Modifier.isStatic(shadowMethod.getModifiers())) {
-                return dropArguments(mh, 0, Object.class);
-              } else {
-                return mh;
-              }
-            });
+          MethodHandle mh;
+          if (name.equals(ShadowConstants.CONSTRUCTOR_METHOD_NAME)) {
+            if (Modifier.isStatic(shadowMethod.getModifiers())) {
+              throw new UnsupportedOperationException(
+                  "static __constructor__ shadow methods are not supported");
+            }
+            // Use invokespecial to call constructor shadow methods. If invokevirtual is used,
+            // the wrong constructor may be called in situations where constructors with
+            // identical signatures are shadowed in object hierarchies.
+            mh =
+                MethodHandles.privateLookupIn(shadowMethod.getDeclaringClass(), LOOKUP)
+                    .unreflectSpecial(shadowMethod, shadowMethod.getDeclaringClass());
+          } else {
+            mh = LOOKUP.unreflect(shadowMethod);
+          }
+
+          // Robolectric doesn't actually look for static, this for example happens
+          // in MessageQueue.nativeInit() which used to be void non-static in 4.2.
+          if (!isStatic && Modifier.isStatic(shadowMethod.getModifiers())) {
+            return dropArguments(mh, 0, Object.class);
+          } else {
+            return mh;
+          }
+        });
   }
 
   /**
@@ -215,75 +249,36 @@ public class ShadowWrangler implements ClassHandler {
    * @return A method handle of the corresponding shadow class
    */
   protected Method pickShadowMethod(Class<?> definingClass, String name, Class<?>[] paramTypes) {
-    ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
-    if (shadowInfo == null) {
+    DispatchTable dispatchTable = getDispatchTable(definingClass);
+    if (dispatchTable.shadowInfo == null) {
       return CALL_REAL_CODE;
     } else {
-      ClassLoader classLoader = definingClass.getClassLoader();
-      Class<?> shadowClass;
-      try {
-        shadowClass = Class.forName(shadowInfo.shadowClassName, false, classLoader);
-      } catch (ClassNotFoundException e) {
-        throw new IllegalStateException(e);
-      }
-
-      Method method = findShadowMethod(definingClass, name, paramTypes, shadowInfo, shadowClass);
+      Method method = findShadowMethod(dispatchTable, name, paramTypes);
       if (method == null) {
-        return shadowInfo.callThroughByDefault ? CALL_REAL_CODE : DO_NOTHING_METHOD;
+        return dispatchTable.shadowInfo.callThroughByDefault ? CALL_REAL_CODE : DO_NOTHING_METHOD;
       } else {
         return method;
       }
     }
   }
 
-  /**
-   * Searches for an {@code @Implementation} method on a given shadow class.
-   *
-   * <p>If the shadow class allows loose signatures, search for them.
-   *
-   * <p>If the shadow class has function using @ClassName matches the requirement, return it
-   *
-   * <p>If the shadow class doesn't have such a method, but does have a superclass which implements
-   * the same class as it, call ourself recursively with the shadow superclass.
-   */
-  private Method findShadowMethod(
-      Class<?> definingClass,
-      String name,
-      Class<?>[] types,
-      ShadowInfo shadowInfo,
-      Class<?> shadowClass) {
-    Method method =
-        findShadowMethodDeclaredOnClass(shadowClass, name, types, shadowInfo.looseSignatures);
-
-    if (method != null) {
-      return method;
-    } else {
-      // if the shadow's superclass shadows the same class as this shadow, then recurse.
-      // Buffalo buffalo buffalo buffalo buffalo buffalo buffalo.
-      Class<?> shadowSuperclass = shadowClass.getSuperclass();
-      if (shadowSuperclass != null && !shadowSuperclass.equals(Object.class)) {
-        ShadowInfo shadowSuperclassInfo = ShadowMap.obtainShadowInfo(shadowSuperclass, true);
-        if (shadowSuperclassInfo != null
-            && shadowSuperclassInfo.isShadowOf(definingClass)
-            && shadowMatcher.matches(shadowSuperclassInfo)) {
-
-          method =
-              findShadowMethod(definingClass, name, types, shadowSuperclassInfo, shadowSuperclass);
-        }
+  private Method findShadowMethodDeclaredOnClass(
+      Class<?> shadowClass, String methodName, Class<?>[] paramClasses, boolean looseSignatures) {
+    ShadowMethodIndex methodIndex = shadowMap.getMethodIndex();
+    if (methodIndex.contains(shadowClass.getName())) {
+      try {
+        return findIndexedShadowMethod(
+            methodIndex, shadowClass, methodName, paramClasses, looseSignatures);
+      } catch (NoSuchMethodException e) {
+        // The index doesn't match the compiled shadow class, so fall back to scanning it.
       }
     }
 
-    return method;
-  }
-
-  private Method findShadowMethodDeclaredOnClass(
-      Class<?> shadowClass, String methodName, Class<?>[] paramClasses, boolean looseSignatures) {
+    ShadowMethods shadowMethods = cachedShadowMethods.get(shadowClass);
     Method foundMethod = null;
     // Try to find shadow method with exact method name and looseSignature.
-    Method[] methods = shadowClass.getDeclaredMethods();
-    for (Method method : methods) {
-      if (!method.getName().equals(methodName)
-          || method.getParameterCount() != paramClasses.length) {
+    for (Method method : shadowMethods.named(methodName)) {
+      if (method.getParameterCount() != paramClasses.length) {
         continue;
       }
 
@@ -325,16 +320,7 @@ public class ShadowWrangler implements ClassHandler {
 
     if (foundMethod == null) {
       // Try to find shadow method with Implementation#methodName's mapping name
-      for (Method method : methods) {
-        Implementation implementation = method.getAnnotation(Implementation.class);
-        if (implementation == null) {
-          continue;
-        }
-        String mappedMethodName = implementation.methodName();
-        mappedMethodName = mappedMethodName == null ? "" : mappedMethodName.trim();
-        if (mappedMethodName.isEmpty() || !mappedMethodName.equals(methodName)) {
-          continue;
-        }
+      for (Method method : shadowMethods.implementing(methodName)) {
         if (!shadowMatcher.matches(method)) {
           continue;
         }
@@ -354,6 +340,84 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
+  /**
+   * Like {@link #findShadowMethodDeclaredOnClass}, but only resolves the few candidate methods
+   * listed by the build-time {@link ShadowMethodIndex} instead of scanning every declared method of
+   * {@code shadowClass}.
+   *
+   * @throws NoSuchMethodException if an indexed method isn't declared by {@code shadowClass}
+   */
+  private Method findIndexedShadowMethod(
+      ShadowMethodIndex methodIndex,
+      Class<?> shadowClass,
+      String methodName,
+      Class<?>[] paramClasses,
+      boolean looseSignatures)
+      throws NoSuchMethodException {
+    String shadowClassName = shadowClass.getName();
+    Method foundMethod = null;
+    for (IndexedMethod indexedMethod : methodIndex.getMethods(shadowClassName, methodName)) {
+      if (indexedMethod.getParameterCount() != paramClasses.length) {
+        continue;
+      }
+      boolean exactMatch = indexedMethod.hasParameterTypes(paramClasses);
+      if (!exactMatch
+          && !(looseSignatures
+              ? indexedMethod.hasOnlyObjectParameters()
+              : indexedMethod.matchesClassNames(paramClasses))) {
+        continue;
+      }
+      Method method = resolveIndexedMethod(shadowClass, indexedMethod, paramClasses);
+      if (!isPublicOrProtected(method) || !shadowMatcher.matches(method)) {
+        continue;
+      }
+      foundMethod = method;
+      if (exactMatch) {
+        break;
+      }
+    }
+
+    if (foundMethod == null) {
+      for (IndexedMethod indexedMethod :
+          methodIndex.getMethodsImplementing(shadowClassName, methodName)) {
+        if (!indexedMethod.matchesClassNames(paramClasses)) {
+          continue;
+        }
+        Method method = resolveIndexedMethod(shadowClass, indexedMethod, paramClasses);
+        if (shadowMatcher.matches(method)) {
+          foundMethod = method;
+          break;
+        }
+      }
+    }
+
+    if (foundMethod != null) {
+      foundMethod.setAccessible(true);
+    }
+    return foundMethod;
+  }
+
+  /**
+   * Loads the declared method described by {@code indexedMethod}, which matches {@code
+   * paramClasses} either exactly or through {@code Object} parameters.
+   */
+  private static Method resolveIndexedMethod(
+      Class<?> shadowClass, IndexedMethod indexedMethod, Class<?>[] paramClasses)
+      throws NoSuchMethodException {
+    Class<?>[] parameterTypes = new Class<?>[paramClasses.length];
+    for (int i = 0; i < paramClasses.length; i++) {
+      parameterTypes[i] =
+          indexedMethod.getParameterTypeName(i).equals(paramClasses[i].getName())
+              ? paramClasses[i]
+              : Object.class;
+    }
+    return shadowClass.getDeclaredMethod(indexedMethod.getName(), parameterTypes);
+  }
+
+  private static boolean isPublicOrProtected(Method method) {
+    return Modifier.isPublic(method.getModifiers()) || Modifier.isProtected(method.getModifiers());
+  }
+
   /**
    * Check whether the parameters (which could be @ClassName annotated) of the {@code method}
    * matches {@code paramClasses}.
@@ -498,6 +562,163 @@ public class ShadowWrangler implements ClassHandler {
     return cachedShadowInfos.get(clazz);
   }
 
+  private DispatchTable getDispatchTable(Class<?> definingClass) {
+    AtomicReference<DispatchTable> reference = DISPATCH_TABLES.get(definingClass);
+    DispatchTable dispatchTable = reference.get();
+    if (dispatchTable == null || !dispatchTable.isBuiltWith(shadowMap, shadowMatcher)) {
+      dispatchTable = BUILD_DISPATCH_TABLE.measure(() -> newDispatchTable(definingClass));
+      reference.set(dispatchTable);
+    }
+    return dispatchTable;
+  }
+
+  @VisibleForTesting
+  static void clearDispatchTables() {
+    DISPATCH_TABLES.clear();
+  }
+
+  /**
+   * Resolves the shadows of one instrumented class in a single pass, the first time any of its
+   * methods is linked, normally from {@link #classInitializing}. All call sites of the class are
+   * then linked from the table, without loading the shadow class or reading the annotations of its
+   * superclasses again.
+   */
+  private DispatchTable newDispatchTable(Class<?> definingClass) {
+    ShadowInfo shadowInfo = getExactShadowInfo(definingClass);
+    if (shadowInfo == null) {
+      return new DispatchTable(
+          shadowMap, shadowMatcher, null, Collections.emptyList(), Collections.emptyList());
+    }
+
+    Class<?> shadowClass;
+    try {
+      shadowClass =
+          Class.forName(shadowInfo.shadowClassName, false, definingClass.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+
+    List<Class<?>> shadowClasses = new ArrayList<>();
+    List<Boolean> looseSignatures = new ArrayList<>();
+    ShadowInfo info = shadowInfo;
+    while (true) {
+      shadowClasses.add(shadowClass);
+      looseSignatures.add(info.looseSignatures);
+      // Group the methods of shadows missing from the index now, rather than when the first call
+      // site is linked.
+      if (!shadowMap.getMethodIndex().contains(shadowClass.getName())) {
+        cachedShadowMethods.get(shadowClass);
+      }
+
+      // if the shadow's superclass shadows the same class as this shadow, then add it too.
+      // Buffalo buffalo buffalo buffalo buffalo buffalo buffalo.
+      Class<?> shadowSuperclass = shadowClass.getSuperclass();
+      if (shadowSuperclass == null || shadowSuperclass.equals(Object.class)) {
+        break;
+      }
+      info = ShadowMap.obtainShadowInfo(shadowSuperclass, true);
+      if (info == null || !info.isShadowOf(definingClass) || !shadowMatcher.matches(info)) {
+        break;
+      }
+      shadowClass = shadowSuperclass;
+    }
+    return new DispatchTable(
+        shadowMap, shadowMatcher, shadowInfo, shadowClasses, looseSignatures);
+  }
+
+  /**
+   * Searches for an {@code @Implementation} method on the shadow class, and then on each shadow
+   * superclass which implements the same class as it.
+   */
+  private Method findShadowMethod(DispatchTable dispatchTable, String name, Class<?>[] types) {
+    List<Class<?>> shadowClasses = dispatchTable.shadowClasses;
+    for (int i = 0; i < shadowClasses.size(); i++) {
+      Method method =
+          findShadowMethodDeclaredOnClass(
+              shadowClasses.get(i), name, types, dispatchTable.looseSignatures.get(i));
+      if (method != null) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The shadows of one instrumented class, see {@link #newDispatchTable}.
+   *
+   * <p>Tables are stored with the instrumented class for as long as it is loaded, and a sandbox
+   * creates a new ShadowWrangler for every test, so they must not reference the ShadowWrangler
+   * that built them. They are reused by every ShadowWrangler with an equal shadow map and matcher.
+   */
+  private static final class DispatchTable {
+    private final ShadowMap shadowMap;
+    private final ShadowMatcher shadowMatcher;
+
+    /** The class's shadow, or null if it isn't shadowed. */
+    final ShadowInfo shadowInfo;
+
+    /** The shadow class and those of its superclasses that shadow the same class. */
+    final List<Class<?>> shadowClasses;
+
+    /** Whether each of {@link #shadowClasses} allows loose signatures. */
+    final List<Boolean> looseSignatures;
+
+    DispatchTable(
+        ShadowMap shadowMap,
+        ShadowMatcher shadowMatcher,
+        ShadowInfo shadowInfo,
+        List<Class<?>> shadowClasses,
+        List<Boolean> looseSignatures) {
+      this.shadowMap = shadowMap;
+      this.shadowMatcher = shadowMatcher;
+      this.shadowInfo = shadowInfo;
+      this.shadowClasses = shadowClasses;
+      this.looseSignatures = looseSignatures;
+    }
+
+    boolean isBuiltWith(ShadowMap shadowMap, ShadowMatcher shadowMatcher) {
+      return (this.shadowMap == shadowMap || this.shadowMap.equals(shadowMap))
+          && (this.shadowMatcher == shadowMatcher || this.shadowMatcher.equals(shadowMatcher));
+    }
+  }
+
+  /**
+   * The declared methods of a shadow class, grouped by name and by {@link
+   * Implementation#methodName()}, so that linking a call site doesn't scan all of them.
+   */
+  private static class ShadowMethods {
+    private final Map<String, List<Method>> byName = new HashMap<>();
+    private final Map<String, List<Method>> byImplementationName = new HashMap<>();
+
+    ShadowMethods(Class<?> shadowClass) {
+      for (Method method : shadowClass.getDeclaredMethods()) {
+        byName.computeIfAbsent(method.getName(), k -> new ArrayList<>()).add(method);
+
+        Implementation implementation = method.getAnnotation(Implementation.class);
+        if (implementation == null) {
+          continue;
+        }
+        String mappedMethodName = implementation.methodName();
+        mappedMethodName = mappedMethodName == null ? "" : mappedMethodName.trim();
+        if (!mappedMethodName.isEmpty()) {
+          byImplementationName
+              .computeIfAbsent(mappedMethodName, k -> new ArrayList<>())
+              .add(method);
+        }
+      }
+    }
+
+    /** Returns the methods named {@code name}, in declaration order. */
+    List<Method> named(String name) {
+      return byName.getOrDefault(name, Collections.emptyList());
+    }
+
+    /** Returns the methods whose {@code @Implementation} maps them to {@code name}. */
+    List<Method> implementing(String name) {
+      return byImplementationName.getOrDefault(name, Collections.emptyList());
+    }
+  }
+
   private static void setField(Object target, Object value, Field realObjectField) {
     try {
       realObjectField.set(target, value);
@@ -0,0 +1,54 @@
+package org.robolectric.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SandboxPoolScheduler} */
+@RunWith(JUnit4.class)
+public class SandboxPoolSchedulerTest {
+
+  @Test
+  public void schedule_runsStatementsConcurrently() throws Exception {
+    SandboxPoolScheduler scheduler = new SandboxPoolScheduler(2);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    AtomicBoolean overlapped = new AtomicBoolean(true);
+    Runnable statement =
+        () -> {
+          bothStarted.countDown();
+          try {
+            if (!bothStarted.await(10, SECONDS)) {
+              overlapped.set(false);
+            }
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        };
+
+    scheduler.schedule(statement);
+    scheduler.schedule(statement);
+    scheduler.finished();
+
+    assertThat(overlapped.get()).isTrue();
+  }
+
+  @Test
+  public void finished_rethrowsUnexpectedFailures() {
+    SandboxPoolScheduler scheduler = new SandboxPoolScheduler(1);
+    RuntimeException failure = new RuntimeException("boom");
+
+    scheduler.schedule(
+        () -> {
+          throw failure;
+        });
+
+    AssertionError error = assertThrows(AssertionError.class, scheduler::finished);
+    assertThat(error).hasCauseThat().isSameInstanceAs(failure);
+  }
+}
@@ -0,0 +1,98 @@
+package org.robolectric.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.JUnit4;
+import org.robolectric.TestMetadata;
+import org.robolectric.pluginapi.perf.Metric;
+import org.robolectric.pluginapi.perf.PerfStatsReporter;
+import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.inject.Injector;
+
+/** Tests for {@link SandboxTestRunner} running groups of tests concurrently. */
+@RunWith(JUnit4.class)
+public class SandboxTestRunnerParallelTest {
+
+  @Test
+  public void concurrentGroups_reportTheirOwnPerfStats() throws Exception {
+    Map<String, List<Metric>> metricsByTest = Collections.synchronizedMap(new HashMap<>());
+    PerfStatsReporter reporter =
+        (metadata, metrics) ->
+            metricsByTest.put(
+                metadata.get(TestMetadata.class).getTestMethodName(), new ArrayList<>(metrics));
+    Injector injector =
+        new Injector.Builder()
+            .bind(PerfStatsReporter[].class, new PerfStatsReporter[] {reporter})
+            .build();
+    // Every test gets its own sandbox, so each test is a group and both run at the same time.
+    SandboxTestRunner runner = new SandboxTestRunner(OverlappingTests.class, injector);
+    runner.setScheduler(new SandboxPoolScheduler(2));
+    List<Failure> failures = Collections.synchronizedList(new ArrayList<>());
+    RunNotifier notifier = new RunNotifier();
+    notifier.addListener(
+        new RunListener() {
+          @Override
+          public void testFailure(Failure failure) {
+            failures.add(failure);
+          }
+        });
+
+    runner.run(notifier);
+
+    assertThat(failures).isEmpty();
+    assertThat(metricsByTest.keySet()).containsExactly("first", "second");
+    for (String test : metricsByTest.keySet()) {
+      Metric metric = findMetric(metricsByTest.get(test), "test step");
+      assertThat(metric.getCount()).isEqualTo(2);
+      assertThat(findMetric(metricsByTest.get(test), "initialization")).isNotNull();
+    }
+  }
+
+  private static Metric findMetric(List<Metric> metrics, String name) {
+    for (Metric metric : metrics) {
+      if (metric.getName().equals(name)) {
+        return metric;
+      }
+    }
+    throw new AssertionError("no metric named " + name + " in " + metrics);
+  }
+
+  /**
+   * Tests that record metrics while the other is running. Classes in this package are never
+   * acquired by a sandbox, so both sandboxes share the latch.
+   */
+  @Ignore
+  public static class OverlappingTests {
+    private static final CountDownLatch bothRunning = new CountDownLatch(2);
+
+    @Test
+    public void first() throws Exception {
+      runAlongsideOtherTest();
+    }
+
+    @Test
+    public void second() throws Exception {
+      runAlongsideOtherTest();
+    }
+
+    private static void runAlongsideOtherTest() throws InterruptedException {
+      PerfStatsCollector.getInstance().incrementCount("test step");
+      bothRunning.countDown();
+      assertThat(bothRunning.await(10, SECONDS)).isTrue();
+      PerfStatsCollector.getInstance().incrementCount("test step");
+    }
+  }
+}
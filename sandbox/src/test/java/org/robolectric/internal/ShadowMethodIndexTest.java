@@ -0,0 +1,108 @@
+package org.robolectric.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.internal.ShadowMethodIndex.IndexedMethod;
+
+/** Tests for {@link ShadowMethodIndex} */
+@RunWith(JUnit4.class)
+public class ShadowMethodIndexTest {
+
+  private static final String SHADOW_CLASS_NAME = "com.example.ShadowFoo";
+
+  @Test
+  public void read_returnsWrittenMethods() throws Exception {
+    ShadowMethodIndex.Builder builder =
+        new ShadowMethodIndex.Builder()
+            .addClass("com.example.ShadowEmpty")
+            .addMethod(
+                SHADOW_CLASS_NAME,
+                new IndexedMethod(
+                    "setName",
+                    null,
+                    new String[] {"java.lang.String", "int"},
+                    new String[] {null, null}))
+            .addMethod(
+                SHADOW_CLASS_NAME,
+                new IndexedMethod(
+                    "setNameCompat",
+                    "setName",
+                    new String[] {"java.lang.Object", "[I"},
+                    new String[] {"java.lang.CharSequence", null}));
+
+    ShadowMethodIndex index = roundTrip(builder);
+
+    assertThat(index.contains(SHADOW_CLASS_NAME)).isTrue();
+    assertThat(index.contains("com.example.ShadowEmpty")).isTrue();
+    assertThat(index.contains("com.example.ShadowMissing")).isFalse();
+
+    List<IndexedMethod> methods = index.getMethods(SHADOW_CLASS_NAME, "setName");
+    assertThat(methods).hasSize(1);
+    assertThat(methods.get(0).hasParameterTypes(new Class<?>[] {String.class, int.class})).isTrue();
+    assertThat(methods.get(0).getImplementationMethodName()).isNull();
+
+    List<IndexedMethod> implementing = index.getMethodsImplementing(SHADOW_CLASS_NAME, "setName");
+    assertThat(implementing).hasSize(1);
+    assertThat(implementing.get(0).getName()).isEqualTo("setNameCompat");
+    assertThat(implementing.get(0).getParameterTypeName(1)).isEqualTo(int[].class.getName());
+    IndexedMethod compat = implementing.get(0);
+    assertThat(compat.matchesClassNames(new Class<?>[] {CharSequence.class, int[].class})).isTrue();
+    assertThat(compat.matchesClassNames(new Class<?>[] {String.class, int[].class})).isFalse();
+  }
+
+  @Test
+  public void hasOnlyObjectParameters() {
+    IndexedMethod allObjects = method(new String[] {"java.lang.Object", "java.lang.Object"});
+    assertThat(allObjects.hasOnlyObjectParameters()).isTrue();
+    assertThat(method(new String[] {"java.lang.Object", "int"}).hasOnlyObjectParameters())
+        .isFalse();
+  }
+
+  @Test
+  public void merge_prefersEarlierIndexes() {
+    ShadowMethodIndex first =
+        new ShadowMethodIndex.Builder()
+            .addMethod(SHADOW_CLASS_NAME, method(new String[] {"java.lang.String"}))
+            .build();
+    ShadowMethodIndex second =
+        new ShadowMethodIndex.Builder()
+            .addMethod(SHADOW_CLASS_NAME, method(new String[] {"int"}))
+            .addClass("com.example.ShadowBar")
+            .build();
+
+    ShadowMethodIndex merged = ShadowMethodIndex.merge(ImmutableList.of(first, second));
+
+    assertThat(merged.contains("com.example.ShadowBar")).isTrue();
+    List<IndexedMethod> methods = merged.getMethods(SHADOW_CLASS_NAME, "doIt");
+    assertThat(methods).hasSize(1);
+    assertThat(methods.get(0).getParameterTypeName(0)).isEqualTo("java.lang.String");
+  }
+
+  @Test
+  public void read_rejectsOtherFormats() {
+    ByteArrayInputStream in = new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+    IOException e = assertThrows(IOException.class, () -> ShadowMethodIndex.read(in));
+    assertThat(e).hasMessageThat().contains("not a shadow method index");
+  }
+
+  private static IndexedMethod method(String[] parameterTypeNames) {
+    String[] parameterClassNames = new String[parameterTypeNames.length];
+    return new IndexedMethod("doIt", null, parameterTypeNames, parameterClassNames);
+  }
+
+  private static ShadowMethodIndex roundTrip(ShadowMethodIndex.Builder builder) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    builder.write(out);
+    return ShadowMethodIndex.read(new ByteArrayInputStream(out.toByteArray()));
+  }
+}
@@ -0,0 +1,109 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ClassLoadingProfile} */
+@RunWith(JUnit4.class)
+public class ClassLoadingProfileTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path profileFile;
+
+  @Before
+  public void setUp() throws Exception {
+    profileFile = temporaryFolder.getRoot().toPath().resolve("profile.txt");
+  }
+
+  @Test
+  public void save_writesRecordedClassesInFirstLoadOrder() {
+    ClassLoadingProfile profile = new ClassLoadingProfile(profileFile, 1);
+    profile.recordClassLoad("com.example.B");
+    profile.recordClassLoad("com.example.A");
+    profile.recordClassLoad("com.example.B");
+
+    profile.save();
+
+    assertThat(new ClassLoadingProfile(profileFile, 1).getPreviousRunClasses())
+        .containsExactly("com.example.B", "com.example.A")
+        .inOrder();
+  }
+
+  @Test
+  public void save_withoutRecordedClasses_keepsPreviousProfile() throws Exception {
+    Files.write(profileFile, ImmutableList.of("com.example.A"), UTF_8);
+
+    new ClassLoadingProfile(profileFile, 1).save();
+
+    assertThat(Files.readAllLines(profileFile, UTF_8)).containsExactly("com.example.A");
+  }
+
+  @Test
+  public void save_mergesClassesRecordedByOtherProcesses() throws Exception {
+    ClassLoadingProfile profile = new ClassLoadingProfile(profileFile, 1);
+    ClassLoadingProfile otherProfile = new ClassLoadingProfile(profileFile, 1);
+    profile.recordClassLoad("com.example.A");
+    profile.recordClassLoad("com.example.B");
+    otherProfile.recordClassLoad("com.example.C");
+    otherProfile.recordClassLoad("com.example.A");
+
+    profile.save();
+    otherProfile.save();
+
+    assertThat(Files.readAllLines(profileFile, UTF_8))
+        .containsExactly("com.example.C", "com.example.A", "com.example.B")
+        .inOrder();
+  }
+
+  @Test
+  public void preload_preparesPreviousRunClassesOnBackgroundThreads() throws Exception {
+    Files.write(
+        profileFile, ImmutableList.of("com.example.A", "com.example.B", "com.example.C"), UTF_8);
+    ClassLoadingProfile profile = new ClassLoadingProfile(profileFile, 2);
+    RecordingClassLoader classLoader = new RecordingClassLoader(3);
+
+    try {
+      profile.preload(classLoader);
+
+      assertThat(classLoader.allPrepared.await(10, SECONDS)).isTrue();
+      assertThat(classLoader.preparedClasses)
+          .containsExactly("com.example.A", "com.example.B", "com.example.C");
+      assertThat(profile.getRecordedClasses()).isEmpty();
+    } finally {
+      classLoader.close();
+    }
+  }
+
+  /** Records the classes it is asked to prepare, and then fails to find them. */
+  private static class RecordingClassLoader extends SandboxClassLoader {
+    final Set<String> preparedClasses = ConcurrentHashMap.newKeySet();
+    final CountDownLatch allPrepared;
+
+    RecordingClassLoader(int expectedClasses) {
+      super(InstrumentationConfiguration.newBuilder().build());
+      allPrepared = new CountDownLatch(expectedClasses);
+    }
+
+    @Override
+    void prepareClass(String className) throws ClassNotFoundException {
+      assertThat(ClassLoadingProfile.isPreloadThread()).isTrue();
+      preparedClasses.add(className);
+      allPrepared.countDown();
+      throw new ClassNotFoundException(className);
+    }
+  }
+}
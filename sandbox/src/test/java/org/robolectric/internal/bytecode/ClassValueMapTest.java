@@ -2,6 +2,9 @@ package org.robolectric.internal.bytecode;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -49,4 +52,63 @@ public class ClassValueMapTest {
     executor.shutdown();
     assertThat(failures.get()).isEqualTo(0);
   }
+
+  @Test
+  public void usesClassValueOnTheJvm() {
+    assertThat(map.isClassValueBacked()).isTrue();
+  }
+
+  @Test
+  public void get_computesEachValueOnce() {
+    AtomicInteger computations = new AtomicInteger();
+    ClassValueMap<String> countingMap =
+        new ClassValueMap<String>() {
+          @Override
+          protected String computeValue(Class<?> type) {
+            computations.incrementAndGet();
+            return type.getSimpleName();
+          }
+        };
+
+    assertThat(countingMap.get(String.class)).isEqualTo("String");
+    assertThat(countingMap.get(String.class)).isEqualTo("String");
+    assertThat(computations.get()).isEqualTo(1);
+
+    countingMap.clear();
+    assertThat(countingMap.get(String.class)).isEqualTo("String");
+    assertThat(computations.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void unusedMaps_canBeGarbageCollectedWhileTheirClassesAreLoaded() throws Exception {
+    List<WeakReference<ClassValueMap<String>>> maps = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      ClassValueMap<String> unusedMap =
+          new ClassValueMap<String>() {
+            @Override
+            protected String computeValue(Class<?> type) {
+              return type.getName();
+            }
+          };
+      assertThat(unusedMap.get(String.class)).isEqualTo("java.lang.String");
+      maps.add(new WeakReference<>(unusedMap));
+    }
+
+    for (int attempt = 0; attempt < 50 && countReachable(maps) > 0; attempt++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertThat(countReachable(maps)).isEqualTo(0);
+  }
+
+  private static int countReachable(List<? extends WeakReference<?>> references) {
+    int count = 0;
+    for (WeakReference<?> reference : references) {
+      if (reference.get() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
 }
@@ -0,0 +1,147 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link InstrumentedClassDiskCache} */
+@RunWith(JUnit4.class)
+public class InstrumentedClassDiskCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = temporaryFolder.newFolder("cache").toPath();
+  }
+
+  @Test
+  public void get_returnsNullForMissingEntry() {
+    InstrumentedClassDiskCache cache = new InstrumentedClassDiskCache(cacheDir, 1024);
+
+    assertThat(cache.get(key("missing"))).isNull();
+  }
+
+  @Test
+  public void put_thenGet_returnsStoredBytes() {
+    InstrumentedClassDiskCache cache = new InstrumentedClassDiskCache(cacheDir, 1024);
+    String key = key("present");
+
+    cache.put(key, new byte[] {1, 2, 3});
+
+    assertThat(cache.get(key)).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void entriesAreVisibleToOtherCacheInstances() {
+    String key = key("shared");
+    new InstrumentedClassDiskCache(cacheDir, 1024).put(key, new byte[] {4, 5});
+
+    assertThat(new InstrumentedClassDiskCache(cacheDir, 1024).get(key))
+        .isEqualTo(new byte[] {4, 5});
+  }
+
+  @Test
+  public void computeKey_dependsOnClassBytesAndContext() {
+    String key = InstrumentedClassDiskCache.computeKey(new byte[] {1}, "context");
+
+    assertThat(InstrumentedClassDiskCache.computeKey(new byte[] {1}, "context")).isEqualTo(key);
+    assertThat(InstrumentedClassDiskCache.computeKey(new byte[] {2}, "context")).isNotEqualTo(key);
+    assertThat(InstrumentedClassDiskCache.computeKey(new byte[] {1}, "other")).isNotEqualTo(key);
+  }
+
+  @Test
+  public void computeContextFingerprint_dependsOnConfiguration() {
+    ClassInstrumentor classInstrumentor = new ClassInstrumentor();
+    InstrumentationConfiguration config =
+        InstrumentationConfiguration.newBuilder().addInstrumentedPackage("com.example").build();
+    InstrumentationConfiguration translatingConfig =
+        InstrumentationConfiguration.newBuilder()
+            .addInstrumentedPackage("com.example")
+            .addClassNameTranslation("com.example.From", "com.example.To")
+            .build();
+
+    assertThat(fingerprint(config, classInstrumentor, ImmutableList.of()))
+        .isEqualTo(fingerprint(config, classInstrumentor, ImmutableList.of()));
+    assertThat(fingerprint(config, classInstrumentor, ImmutableList.of()))
+        .isNotEqualTo(fingerprint(translatingConfig, classInstrumentor, ImmutableList.of()));
+  }
+
+  @Test
+  public void computeContextFingerprint_dependsOnClassPath() throws Exception {
+    ClassInstrumentor classInstrumentor = new ClassInstrumentor();
+    InstrumentationConfiguration config = InstrumentationConfiguration.newBuilder().build();
+    Path jar = temporaryFolder.newFile("android-all.jar").toPath();
+    Path otherJar = temporaryFolder.newFile("other.jar").toPath();
+    Path classesDir = temporaryFolder.newFolder("classes").toPath();
+    Files.write(jar, new byte[] {1});
+    Files.write(classesDir.resolve("Foo.class"), new byte[] {1});
+    List<URL> classPath = ImmutableList.of(toUrl(jar), toUrl(classesDir));
+    String fingerprint = fingerprint(config, classInstrumentor, classPath);
+
+    assertThat(fingerprint(config, classInstrumentor, classPath)).isEqualTo(fingerprint);
+    assertThat(fingerprint(config, classInstrumentor, ImmutableList.of(toUrl(otherJar))))
+        .isNotEqualTo(fingerprint);
+
+    Files.write(jar, new byte[] {1, 2});
+    assertThat(fingerprint(config, classInstrumentor, classPath)).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void computeContextFingerprint_ignoresChangesToClassDirectories() throws Exception {
+    ClassInstrumentor classInstrumentor = new ClassInstrumentor();
+    InstrumentationConfiguration config = InstrumentationConfiguration.newBuilder().build();
+    Path classesDir = temporaryFolder.newFolder("classes").toPath();
+    Files.write(classesDir.resolve("Foo.class"), new byte[] {1});
+    List<URL> classPath = ImmutableList.of(toUrl(classesDir));
+    String fingerprint = fingerprint(config, classInstrumentor, classPath);
+
+    Files.write(classesDir.resolve("Foo.class"), new byte[] {1, 2});
+    Files.write(classesDir.resolve("Bar.class"), new byte[] {1});
+
+    assertThat(fingerprint(config, classInstrumentor, classPath)).isEqualTo(fingerprint);
+  }
+
+  @Test
+  public void put_evictsLeastRecentlyUsedEntriesWhenOverLimit() throws Exception {
+    InstrumentedClassDiskCache cache = new InstrumentedClassDiskCache(cacheDir, 100);
+    String oldKey = key("old");
+    String newKey = key("new");
+    cache.put(oldKey, new byte[60]);
+    Files.setLastModifiedTime(cache.entryPath(oldKey), FileTime.fromMillis(0));
+
+    cache.put(newKey, new byte[60]);
+
+    assertThat(Files.exists(cache.entryPath(oldKey))).isFalse();
+    assertThat(cache.get(newKey)).hasLength(60);
+  }
+
+  private static String fingerprint(
+      InstrumentationConfiguration config,
+      ClassInstrumentor classInstrumentor,
+      List<URL> classPath) {
+    return InstrumentedClassDiskCache.computeContextFingerprint(
+        config, classInstrumentor, classPath);
+  }
+
+  private static URL toUrl(Path path) throws MalformedURLException {
+    return path.toUri().toURL();
+  }
+
+  private static String key(String name) {
+    return InstrumentedClassDiskCache.computeKey(name.getBytes(), "test");
+  }
+}
@@ -0,0 +1,43 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link InstrumentedClassMemoryCache} */
+@RunWith(JUnit4.class)
+public class InstrumentedClassMemoryCacheTest {
+  private static final byte[] ORIGINAL = {1, 2, 3};
+  private static final byte[] INSTRUMENTED = {4, 5, 6, 7};
+
+  private final InstrumentedClassMemoryCache cache = new InstrumentedClassMemoryCache();
+
+  @Test
+  public void get_returnsNullForMissingEntry() {
+    assertThat(cache.get("scope", "com.example.Foo", ORIGINAL)).isNull();
+  }
+
+  @Test
+  public void put_thenGet_returnsInstrumentedBytes() {
+    cache.put("scope", "com.example.Foo", ORIGINAL, INSTRUMENTED);
+
+    assertThat(cache.get("scope", "com.example.Foo", ORIGINAL.clone())).isEqualTo(INSTRUMENTED);
+  }
+
+  @Test
+  public void get_returnsNullForOtherScopeOrClassName() {
+    cache.put("scope", "com.example.Foo", ORIGINAL, INSTRUMENTED);
+
+    assertThat(cache.get("other scope", "com.example.Foo", ORIGINAL)).isNull();
+    assertThat(cache.get("scope", "com.example.Bar", ORIGINAL)).isNull();
+  }
+
+  @Test
+  public void get_returnsNullIfOriginalBytesDiffer() {
+    cache.put("scope", "com.example.Foo", ORIGINAL, INSTRUMENTED);
+
+    assertThat(cache.get("scope", "com.example.Foo", new byte[] {1, 2, 4})).isNull();
+  }
+}
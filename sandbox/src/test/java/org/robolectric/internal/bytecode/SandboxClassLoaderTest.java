@@ -28,6 +28,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -36,8 +37,11 @@ import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
@@ -71,6 +75,7 @@ import org.robolectric.util.Util;
 
 @RunWith(JUnit4.class)
 public class SandboxClassLoaderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   private ClassLoader classLoader;
   private final List<String> transcript = new ArrayList<>();
@@ -140,6 +145,36 @@ public class SandboxClassLoaderTest {
     }
   }
 
+  @Test
+  public void preparedClass_isNotLoadedUntilRequested() throws Exception {
+    setClassLoader(new SandboxClassLoader(configureBuilder().build()));
+    SandboxClassLoader sandboxClassLoader = (SandboxClassLoader) classLoader;
+
+    sandboxClassLoader.prepareClass(AnExampleClass.class.getName());
+
+    assertThat(sandboxClassLoader.mayHaveLoadedClass(AnExampleClass.class.getName())).isFalse();
+    Class<?> exampleClass = loadClass(AnExampleClass.class);
+    assertThat(sandboxClassLoader.mayHaveLoadedClass(AnExampleClass.class.getName())).isTrue();
+    assertEquals(
+        "response from methodInvoked: AnExampleClass.normalMethod(java.lang.String"
+            + " value1, int 123)",
+        exampleClass
+            .getMethod("normalMethod", String.class, int.class)
+            .invoke(exampleClass.getDeclaredConstructor().newInstance(), "value1", 123));
+  }
+
+  @Test
+  public void mayHaveLoadedClass_isTrueOnlyOnceAcquiredClassIsLoaded() throws Exception {
+    try (SandboxClassLoader classLoader = new SandboxClassLoader(configureBuilder().build())) {
+      assertThat(classLoader.mayHaveLoadedClass(AnUninstrumentedClass.class.getName())).isFalse();
+      assertThat(classLoader.mayHaveLoadedClass(String.class.getName())).isTrue();
+
+      classLoader.loadClass(AnUninstrumentedClass.class.getName());
+
+      assertThat(classLoader.mayHaveLoadedClass(AnUninstrumentedClass.class.getName())).isTrue();
+    }
+  }
+
   @Test
   public void shouldPerformClassLoadAndInstrumentLoadForInstrumentedClasses() throws Exception {
     ClassLoader classLoader = new SandboxClassLoader(configureBuilder().build());
@@ -697,7 +732,7 @@ public class SandboxClassLoaderTest {
         newInstance(classLoader.loadClass(ShadowImpl.class.getName())));
 
     ShadowInvalidator invalidator = Mockito.mock(ShadowInvalidator.class);
-    when(invalidator.getSwitchPoint(any(Class.class))).thenReturn(new SwitchPoint());
+    when(invalidator.getSwitchPoint(any(Class.class), anyString())).thenReturn(new SwitchPoint());
 
     String className = RobolectricInternals.class.getName();
     Class<?> robolectricInternalsClass = ReflectionHelpers.loadClass(classLoader, className);
@@ -707,6 +742,112 @@ public class SandboxClassLoaderTest {
     return classLoader.loadClass(clazz.getName());
   }
 
+  @Test
+  public void classesReadFromDiskCache_matchFreshlyInstrumentedClasses() throws Exception {
+    InstrumentedClassDiskCache diskCache =
+        new InstrumentedClassDiskCache(
+            temporaryFolder.newFolder("cache").toPath(),
+            InstrumentedClassDiskCache.DEFAULT_MAX_BYTES);
+    InstrumentationConfiguration config = configureBuilder().build();
+    String className = AnExampleClass.class.getName();
+    try (SandboxClassLoader writingClassLoader =
+            newSandboxClassLoader(config, new UrlResourceProvider(), diskCache, null);
+        SandboxClassLoader readingClassLoader =
+            newSandboxClassLoader(config, new UrlResourceProvider(), diskCache, null)) {
+      writingClassLoader.loadClass(className);
+      byte[] originalBytes = writingClassLoader.getByteCode(className);
+      byte[] cachedBytes =
+          diskCache.get(
+              InstrumentedClassDiskCache.computeKey(
+                  originalBytes, readingClassLoader.getContextFingerprint()));
+      byte[] freshBytes =
+          new ClassInstrumentor(new ShadowDecorator())
+              .instrument(
+                  new ClassDetails(originalBytes),
+                  config,
+                  new ClassNodeProvider() {
+                    @Override
+                    protected byte[] getClassBytes(String internalClassName)
+                        throws ClassNotFoundException {
+                      return writingClassLoader.getByteCode(internalClassName);
+                    }
+                  });
+      assertArrayEquals(freshBytes, cachedBytes);
+
+      // Defining and running the cached class makes the JVM verify its bytecode.
+      setClassLoader(readingClassLoader);
+      Class<?> exampleClass = loadClass(AnExampleClass.class);
+      Object exampleInstance = exampleClass.getDeclaredConstructor().newInstance();
+      exampleClass
+          .getMethod("normalMethod", String.class, int.class)
+          .invoke(exampleInstance, "value1", 123);
+      assertThat(transcript)
+          .containsExactly(
+              "methodInvoked: AnExampleClass.__constructor__()",
+              "methodInvoked: AnExampleClass.normalMethod(java.lang.String value1, int 123)");
+    }
+  }
+
+  @Test
+  public void classLoadersSharingMemoryCache_reuseInstrumentedClasses() throws Exception {
+    InstrumentedClassMemoryCache memoryCache = new InstrumentedClassMemoryCache();
+    InstrumentationConfiguration config = configureBuilder().build();
+    String className = AnExampleClass.class.getName();
+    try (SandboxClassLoader firstClassLoader =
+            newSandboxClassLoader(config, new UrlResourceProvider(), null, memoryCache);
+        SandboxClassLoader secondClassLoader =
+            newSandboxClassLoader(config, new UrlResourceProvider(), null, memoryCache)) {
+      Class<?> firstClass = firstClassLoader.loadClass(className);
+      assertThat(memoryCache.size()).isEqualTo(1);
+
+      setClassLoader(secondClassLoader);
+      Class<?> secondClass = loadClass(AnExampleClass.class);
+      assertThat(memoryCache.size()).isEqualTo(1);
+      assertThat(secondClass).isNotSameInstanceAs(firstClass);
+      Object exampleInstance = secondClass.getDeclaredConstructor().newInstance();
+      assertEquals(
+          "response from methodInvoked: AnExampleClass.normalMethod(java.lang.String"
+              + " value1, int 123)",
+          secondClass
+              .getMethod("normalMethod", String.class, int.class)
+              .invoke(exampleInstance, "value1", 123));
+    }
+  }
+
+  @Test
+  public void classLoadersWithDifferentClassPaths_doNotShareMemoryCacheEntries() throws Exception {
+    InstrumentedClassMemoryCache memoryCache = new InstrumentedClassMemoryCache();
+    InstrumentationConfiguration config = configureBuilder().build();
+    URL otherJar = temporaryFolder.newFile("other.jar").toURI().toURL();
+    String className = AnExampleClass.class.getName();
+    try (SandboxClassLoader firstClassLoader =
+            newSandboxClassLoader(config, new UrlResourceProvider(), null, memoryCache);
+        SandboxClassLoader otherClassLoader =
+            newSandboxClassLoader(config, new UrlResourceProvider(otherJar), null, memoryCache)) {
+      firstClassLoader.loadClass(className);
+      byte[] originalBytes = firstClassLoader.getByteCode(className);
+
+      assertThat(otherClassLoader.getMemoryCacheScope())
+          .isNotEqualTo(firstClassLoader.getMemoryCacheScope());
+      String otherScope = otherClassLoader.getMemoryCacheScope();
+      assertThat(memoryCache.get(otherScope, className, originalBytes)).isNull();
+    }
+  }
+
+  private static SandboxClassLoader newSandboxClassLoader(
+      InstrumentationConfiguration config,
+      ResourceProvider resourceProvider,
+      @Nullable InstrumentedClassDiskCache diskCache,
+      @Nullable InstrumentedClassMemoryCache memoryCache) {
+    return new SandboxClassLoader(
+        Thread.currentThread().getContextClassLoader(),
+        config,
+        resourceProvider,
+        new ClassInstrumentor(new ShadowDecorator()),
+        diskCache,
+        memoryCache);
+  }
+
   @Test
   public void shouldDumpClassesWhenConfigured() throws Exception {
     Path tempDir = Files.createTempDirectory("SandboxClassLoaderTest");
@@ -0,0 +1,50 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.lang.invoke.SwitchPoint;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ShadowInvalidator} */
+@RunWith(JUnit4.class)
+public class ShadowInvalidatorTest {
+  private final ShadowInvalidator invalidator = new ShadowInvalidator();
+
+  @Test
+  public void getSwitchPoint_isSharedByCallSitesOfTheSameMethod() {
+    assertThat(invalidator.getSwitchPoint("a.Foo", "bar"))
+        .isSameInstanceAs(invalidator.getSwitchPoint("a.Foo", "bar"));
+    assertThat(invalidator.getSwitchPoint("a.Foo", "bar"))
+        .isNotSameInstanceAs(invalidator.getSwitchPoint("a.Foo", "baz"));
+  }
+
+  @Test
+  public void invalidateMethods_onlyInvalidatesNamedMethods() {
+    SwitchPoint bar = invalidator.getSwitchPoint("a.Foo", "bar");
+    SwitchPoint baz = invalidator.getSwitchPoint("a.Foo", "baz");
+
+    invalidator.invalidateMethods("a.Foo", ImmutableList.of("bar"));
+
+    assertThat(bar.hasBeenInvalidated()).isTrue();
+    assertThat(baz.hasBeenInvalidated()).isFalse();
+    assertThat(invalidator.getSwitchPoint("a.Foo", "bar").hasBeenInvalidated()).isFalse();
+    assertThat(invalidator.getSwitchPoint("a.Foo", "baz")).isSameInstanceAs(baz);
+  }
+
+  @Test
+  public void invalidateClasses_invalidatesEveryMethodOfTheClass() {
+    SwitchPoint bar = invalidator.getSwitchPoint("a.Foo", "bar");
+    SwitchPoint shadowCreator =
+        invalidator.getSwitchPoint("a.Foo", ShadowInvalidator.SHADOW_CREATOR);
+    SwitchPoint other = invalidator.getSwitchPoint("a.Other", "bar");
+
+    invalidator.invalidateClasses(ImmutableList.of("a.Foo"));
+
+    assertThat(bar.hasBeenInvalidated()).isTrue();
+    assertThat(shadowCreator.hasBeenInvalidated()).isTrue();
+    assertThat(other.hasBeenInvalidated()).isFalse();
+  }
+}
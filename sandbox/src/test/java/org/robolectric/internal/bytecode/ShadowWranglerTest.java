@@ -0,0 +1,77 @@
+package org.robolectric.internal.bytecode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.sandbox.ShadowMatcher;
+
+/** Tests for {@link ShadowWrangler} */
+@RunWith(JUnit4.class)
+public class ShadowWranglerTest {
+  private final ShadowMap shadowMap =
+      ShadowMap.EMPTY.newBuilder().addShadowClasses(ShadowGreeter.class).build();
+
+  @Test
+  public void pickShadowMethod_returnsImplementation() throws Exception {
+    ShadowWrangler shadowWrangler =
+        new ShadowWrangler(shadowMap, ShadowMatcher.MATCH_ALL, new Interceptors());
+
+    Method method = shadowWrangler.pickShadowMethod(Greeter.class, "greet", new Class<?>[0]);
+
+    assertThat(method).isEqualTo(ShadowGreeter.class.getDeclaredMethod("greet"));
+  }
+
+  @Test
+  public void wranglersOfFinishedTests_canBeGarbageCollected() throws Exception {
+    // A sandbox creates a ShadowWrangler for every test, while the classes it shadows stay loaded.
+    List<WeakReference<ShadowWrangler>> wranglers = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      ShadowWrangler shadowWrangler =
+          new ShadowWrangler(shadowMap, ShadowMatcher.MATCH_ALL, new Interceptors());
+      assertThat(shadowWrangler.pickShadowMethod(Greeter.class, "greet", new Class<?>[0]))
+          .isNotNull();
+      wranglers.add(new WeakReference<>(shadowWrangler));
+    }
+
+    for (int attempt = 0; attempt < 50 && countReachable(wranglers) > 0; attempt++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertThat(countReachable(wranglers)).isEqualTo(0);
+  }
+
+  private static int countReachable(List<WeakReference<ShadowWrangler>> references) {
+    int count = 0;
+    for (WeakReference<ShadowWrangler> reference : references) {
+      if (reference.get() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** A class shadowed by {@link ShadowGreeter}. */
+  public static class Greeter {
+    public String greet() {
+      return "hello";
+    }
+  }
+
+  /** Shadow for {@link Greeter}. */
+  @Implements(Greeter.class)
+  public static class ShadowGreeter {
+    @Implementation
+    protected String greet() {
+      return "shadowed hello";
+    }
+  }
+}
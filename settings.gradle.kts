@@ -19,6 +19,7 @@ rootProject.name = "robolectric"
 
 include(
   ":annotations",
+  ":benchmarks",
   ":errorprone",
   ":integration_tests:androidx",
   ":integration_tests:androidx_test",
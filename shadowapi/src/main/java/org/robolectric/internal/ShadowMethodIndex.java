@@ -0,0 +1,348 @@
+package org.robolectric.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the public and protected methods declared by shadow classes, generated at build time
+ * by the Robolectric annotation processor.
+ *
+ * <p>The index lets shadow method lookup find candidate methods by name without reflectively
+ * scanning every declared method of a shadow class. It is stored as a compact binary resource
+ * named {@link #RESOURCE_NAME} next to the generated {@link ShadowProvider}.
+ *
+ * <p>Parameter types are recorded in {@link Class#getName()} format, so they can be compared with
+ * runtime classes without loading anything.
+ */
+public class ShadowMethodIndex {
+
+  /** The name of the index resource, relative to the package of the generated shadow provider. */
+  public static final String RESOURCE_NAME = "ShadowMethodIndex.bin";
+
+  public static final ShadowMethodIndex EMPTY = new ShadowMethodIndex(Collections.emptyMap());
+
+  private static final int MAGIC = 0x524f5349; // "ROSI"
+  private static final int VERSION = 1;
+
+  private final Map<String, ClassEntry> classes;
+
+  private ShadowMethodIndex(Map<String, ClassEntry> classes) {
+    this.classes = classes;
+  }
+
+  /**
+   * Loads the index generated alongside {@code provider}, or returns {@link #EMPTY} if the provider
+   * was generated without one.
+   */
+  public static ShadowMethodIndex forProvider(ShadowProvider provider) {
+    try (InputStream in = provider.getClass().getResourceAsStream(RESOURCE_NAME)) {
+      return in == null ? EMPTY : read(in);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "failed to read shadow method index for " + provider.getClass().getName(), e);
+    }
+  }
+
+  /**
+   * Merges several indexes. If a shadow class appears in more than one, the earliest index wins.
+   */
+  public static ShadowMethodIndex merge(List<ShadowMethodIndex> indexes) {
+    if (indexes.isEmpty()) {
+      return EMPTY;
+    } else if (indexes.size() == 1) {
+      return indexes.get(0);
+    }
+    Map<String, ClassEntry> classes = new HashMap<>();
+    for (ShadowMethodIndex index : indexes) {
+      index.classes.forEach(classes::putIfAbsent);
+    }
+    return new ShadowMethodIndex(classes);
+  }
+
+  /** Reads an index written by {@link Builder#write(OutputStream)}. */
+  public static ShadowMethodIndex read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(inputStream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("not a shadow method index");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported shadow method index version " + version);
+    }
+
+    String[] strings = new String[readVarInt(in)];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = in.readUTF();
+    }
+
+    int classCount = readVarInt(in);
+    Map<String, ClassEntry> classes = new HashMap<>(classCount * 2);
+    for (int i = 0; i < classCount; i++) {
+      String shadowClassName = strings[readVarInt(in)];
+      ClassEntry classEntry = new ClassEntry();
+      int methodCount = readVarInt(in);
+      for (int j = 0; j < methodCount; j++) {
+        String name = strings[readVarInt(in)];
+        String implementationMethodName = readOptionalString(in, strings);
+        String[] parameterTypeNames = new String[readVarInt(in)];
+        String[] parameterClassNames = new String[parameterTypeNames.length];
+        for (int k = 0; k < parameterTypeNames.length; k++) {
+          parameterTypeNames[k] = strings[readVarInt(in)];
+          parameterClassNames[k] = readOptionalString(in, strings);
+        }
+        classEntry.add(
+            new IndexedMethod(
+                name, implementationMethodName, parameterTypeNames, parameterClassNames));
+      }
+      classes.put(shadowClassName, classEntry);
+    }
+    return new ShadowMethodIndex(classes);
+  }
+
+  /** Returns true if the methods of {@code shadowClassName} are indexed. */
+  public boolean contains(String shadowClassName) {
+    return classes.containsKey(shadowClassName);
+  }
+
+  /** Returns the indexed methods of {@code shadowClassName} named {@code methodName}. */
+  public List<IndexedMethod> getMethods(String shadowClassName, String methodName) {
+    ClassEntry classEntry = classes.get(shadowClassName);
+    return classEntry == null ? Collections.emptyList() : classEntry.byName(methodName);
+  }
+
+  /**
+   * Returns the indexed methods of {@code shadowClassName} that implement {@code methodName}
+   * through {@code @Implementation(methodName = ...)}.
+   */
+  public List<IndexedMethod> getMethodsImplementing(String shadowClassName, String methodName) {
+    ClassEntry classEntry = classes.get(shadowClassName);
+    return classEntry == null
+        ? Collections.emptyList()
+        : classEntry.byImplementationMethodName(methodName);
+  }
+
+  private static String readOptionalString(DataInputStream in, String[] strings)
+      throws IOException {
+    int index = readVarInt(in);
+    return index == 0 ? null : strings[index - 1];
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed varint");
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /** The indexed methods of one shadow class. */
+  private static class ClassEntry {
+    private final Map<String, List<IndexedMethod>> methodsByName = new HashMap<>();
+    private final Map<String, List<IndexedMethod>> methodsByImplementationName = new HashMap<>();
+
+    void add(IndexedMethod method) {
+      methodsByName.computeIfAbsent(method.name, k -> new ArrayList<>(1)).add(method);
+      if (method.implementationMethodName != null) {
+        methodsByImplementationName
+            .computeIfAbsent(method.implementationMethodName, k -> new ArrayList<>(1))
+            .add(method);
+      }
+    }
+
+    List<IndexedMethod> byName(String name) {
+      return methodsByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    List<IndexedMethod> byImplementationMethodName(String name) {
+      return methodsByImplementationName.getOrDefault(name, Collections.emptyList());
+    }
+  }
+
+  /** A public or protected method declared by a shadow class. */
+  public static class IndexedMethod {
+    private final String name;
+    private final String implementationMethodName;
+    private final String[] parameterTypeNames;
+    private final String[] parameterClassNames;
+
+    /**
+     * @param implementationMethodName the trimmed {@code @Implementation(methodName = ...)} value,
+     *     or null if there is none
+     * @param parameterTypeNames the erased parameter types, in {@link Class#getName()} format
+     * @param parameterClassNames the {@code @ClassName} value of each parameter, or null for
+     *     parameters without one
+     */
+    public IndexedMethod(
+        String name,
+        String implementationMethodName,
+        String[] parameterTypeNames,
+        String[] parameterClassNames) {
+      if (parameterTypeNames.length != parameterClassNames.length) {
+        throw new IllegalArgumentException("parameter types and class names differ in length");
+      }
+      this.name = name;
+      this.implementationMethodName = implementationMethodName;
+      this.parameterTypeNames = parameterTypeNames;
+      this.parameterClassNames = parameterClassNames;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getImplementationMethodName() {
+      return implementationMethodName;
+    }
+
+    public int getParameterCount() {
+      return parameterTypeNames.length;
+    }
+
+    public String getParameterTypeName(int index) {
+      return parameterTypeNames[index];
+    }
+
+    /** Returns true if this method's parameter types are exactly {@code paramClasses}. */
+    public boolean hasParameterTypes(Class<?>[] paramClasses) {
+      if (paramClasses.length != parameterTypeNames.length) {
+        return false;
+      }
+      for (int i = 0; i < paramClasses.length; i++) {
+        if (!parameterTypeNames[i].equals(paramClasses[i].getName())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Returns true if every parameter of this method is an {@link Object}. */
+    public boolean hasOnlyObjectParameters() {
+      for (String parameterTypeName : parameterTypeNames) {
+        if (!parameterTypeName.equals(Object.class.getName())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns true if each parameter either has the type of the matching entry in {@code
+     * paramClasses}, or is an {@link Object} annotated with {@code @ClassName} naming it.
+     */
+    public boolean matchesClassNames(Class<?>[] paramClasses) {
+      if (paramClasses.length != parameterTypeNames.length) {
+        return false;
+      }
+      for (int i = 0; i < paramClasses.length; i++) {
+        String paramClassName = paramClasses[i].getName();
+        if (parameterTypeNames[i].equals(paramClassName)) {
+          continue;
+        }
+        if (!parameterTypeNames[i].equals(Object.class.getName())
+            || !paramClassName.equals(parameterClassNames[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Accumulates shadow methods and writes them in the index format. */
+  public static class Builder {
+    private final Map<String, List<IndexedMethod>> classes = new LinkedHashMap<>();
+
+    /** Adds {@code shadowClassName} to the index, even if it declares no indexed methods. */
+    public Builder addClass(String shadowClassName) {
+      classes.computeIfAbsent(shadowClassName, k -> new ArrayList<>());
+      return this;
+    }
+
+    public Builder addMethod(String shadowClassName, IndexedMethod method) {
+      classes.computeIfAbsent(shadowClassName, k -> new ArrayList<>()).add(method);
+      return this;
+    }
+
+    public ShadowMethodIndex build() {
+      Map<String, ClassEntry> entries = new HashMap<>();
+      classes.forEach(
+          (shadowClassName, methods) -> {
+            ClassEntry classEntry = new ClassEntry();
+            methods.forEach(classEntry::add);
+            entries.put(shadowClassName, classEntry);
+          });
+      return new ShadowMethodIndex(entries);
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+      Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+      classes.forEach(
+          (shadowClassName, methods) -> {
+            intern(stringIndexes, shadowClassName);
+            for (IndexedMethod method : methods) {
+              intern(stringIndexes, method.name);
+              intern(stringIndexes, method.implementationMethodName);
+              for (int i = 0; i < method.parameterTypeNames.length; i++) {
+                intern(stringIndexes, method.parameterTypeNames[i]);
+                intern(stringIndexes, method.parameterClassNames[i]);
+              }
+            }
+          });
+
+      DataOutputStream out = new DataOutputStream(outputStream);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeVarInt(out, stringIndexes.size());
+      for (String string : stringIndexes.keySet()) {
+        out.writeUTF(string);
+      }
+      writeVarInt(out, classes.size());
+      for (Map.Entry<String, List<IndexedMethod>> entry : classes.entrySet()) {
+        writeVarInt(out, stringIndexes.get(entry.getKey()));
+        writeVarInt(out, entry.getValue().size());
+        for (IndexedMethod method : entry.getValue()) {
+          writeVarInt(out, stringIndexes.get(method.name));
+          writeOptionalString(out, stringIndexes, method.implementationMethodName);
+          writeVarInt(out, method.parameterTypeNames.length);
+          for (int i = 0; i < method.parameterTypeNames.length; i++) {
+            writeVarInt(out, stringIndexes.get(method.parameterTypeNames[i]));
+            writeOptionalString(out, stringIndexes, method.parameterClassNames[i]);
+          }
+        }
+      }
+      out.flush();
+    }
+
+    private static void intern(Map<String, Integer> stringIndexes, String string) {
+      if (string != null) {
+        stringIndexes.putIfAbsent(string, stringIndexes.size());
+      }
+    }
+
+    private static void writeOptionalString(
+        DataOutputStream out, Map<String, Integer> stringIndexes, String string)
+        throws IOException {
+      writeVarInt(out, string == null ? 0 : stringIndexes.get(string) + 1);
+    }
+  }
+}
@@ -12,6 +12,17 @@ public interface ShadowProvider {
   /** Reset the static state of all shadows provided by this package. */
   void reset();
 
+  /**
+   * Reset the static state of the shadows provided by this package, letting {@code resetter} skip
+   * shadows that can't have any state to reset and measure the ones it runs.
+   *
+   * <p>Providers generated by the Robolectric annotation processor pass each resetter to {@code
+   * resetter} along with the name of its shadow class. Other providers reset everything.
+   */
+  default void reset(Resetter resetter) {
+    reset();
+  }
+
   /**
    * Array of Java package names that are shadowed by this package.
    *
@@ -42,4 +53,16 @@ public interface ShadowProvider {
   default Map<String, String> getShadowPickerMap() {
     return Collections.emptyMap();
   }
+
+  /** Decides which shadow resetters {@link #reset(Resetter)} runs, and runs them. */
+  interface Resetter {
+    /**
+     * Returns true if the resetter of {@code shadowClassName} should run. This must not load the
+     * shadow class.
+     */
+    boolean shouldReset(String shadowClassName);
+
+    /** Runs {@code resetter}, which resets the static state of {@code shadowClassName}. */
+    void reset(String shadowClassName, Runnable resetter);
+  }
 }
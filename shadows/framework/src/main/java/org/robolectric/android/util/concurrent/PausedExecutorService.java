@@ -13,10 +13,12 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.util.Logger;
+import org.robolectric.util.VirtualThreads;
 
 /**
  * Executor service that queues any posted tasks.
@@ -75,10 +77,14 @@ public class PausedExecutorService extends AbstractExecutorService {
   }
 
   public PausedExecutorService() {
+    // Uses a virtual thread if they're enabled, see VirtualThreads.
+    ThreadFactory virtualThreadFactory =
+        VirtualThreads.newThreadFactory("PausedExecutorService #");
     this.realService =
         Executors.newSingleThreadExecutor(
             r -> {
-              executorThread = new Thread(r);
+              executorThread =
+                  virtualThreadFactory == null ? new Thread(r) : virtualThreadFactory.newThread(r);
               return executorThread;
             });
   }
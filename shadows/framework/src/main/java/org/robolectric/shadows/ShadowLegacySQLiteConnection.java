@@ -35,9 +35,10 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -52,6 +53,7 @@ import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.shadows.util.SQLiteLibraryLoader;
 import org.robolectric.util.PerfStatsCollector;
+import org.robolectric.util.PerfStatsCollector.MetricHandle;
 import org.robolectric.versioning.AndroidVersions.Baklava;
 import org.robolectric.versioning.AndroidVersions.V;
 
@@ -66,6 +68,8 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
 
   // indicates an ignored statement
   private static final int IGNORED_REINDEX_STMT = -2;
+  // How long a connection waits for another connection's lock on the same database, like Android.
+  private static final int BUSY_TIMEOUT_MS = 2500;
 
   @Implementation(maxSdk = O)
   protected static long nativeOpen(
@@ -258,13 +262,24 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
   // VisibleForTesting
   static class Connections {
 
-    private final Object lock = new Object();
+    private static final MetricHandle OPEN = getHandle("sqlite open");
+    private static final MetricHandle PREPARE = getHandle("sqlite prepare");
+    private static final MetricHandle STATEMENT_INFO = getHandle("sqlite statement info");
+    private static final MetricHandle BIND = getHandle("sqlite bind");
+    private static final MetricHandle EXECUTE = getHandle("sqlite execute");
+    private static final MetricHandle FILL_WINDOW = getHandle("sqlite fill window");
+    private static final MetricHandle RESET_STATEMENT = getHandle("sqlite reset statement");
+    private static final MetricHandle FINALIZE = getHandle("sqlite finalize");
+    private static final MetricHandle CANCEL = getHandle("sqlite cancel");
+    private static final MetricHandle CLOSE = getHandle("sqlite close");
+
     private final AtomicLong pointerCounter = new AtomicLong(0);
-    private final Map<Long, SQLiteStatement> statementsMap = new HashMap<>();
-    private final Map<Long, SQLiteConnection> connectionsMap = new HashMap<>();
-    private final Map<Long, List<Long>> statementPtrsForConnection = new HashMap<>();
+    private final Map<Long, SQLiteStatement> statementsMap = new ConcurrentHashMap<>();
+    private final Map<Long, OpenConnection> connectionsMap = new ConcurrentHashMap<>();
 
-    private ExecutorService dbExecutor = Executors.newSingleThreadExecutor(threadFactory());
+    private static MetricHandle getHandle(String name) {
+      return PerfStatsCollector.getInstance().getHandle(name);
+    }
 
     static ThreadFactory threadFactory() {
       ThreadFactory delegate = Executors.defaultThreadFactory();
@@ -275,47 +290,67 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       };
     }
 
-    SQLiteConnection getConnection(final long connectionPtr) {
-      synchronized (lock) {
-        final SQLiteConnection connection = connectionsMap.get(connectionPtr);
-        if (connection == null) {
-          throw new IllegalStateException(
-              "Illegal connection pointer "
-                  + connectionPtr
-                  + ". Current pointers for thread "
-                  + Thread.currentThread()
-                  + " "
-                  + connectionsMap.keySet());
-        }
-        return connection;
+    /**
+     * A sqlite4java connection with the executor that confines it to one thread, as sqlite4java
+     * requires. Each connection has its own executor, so operations on different connections, such
+     * as the readers and the writer of a WAL database, run concurrently.
+     */
+    private static final class OpenConnection {
+      final SQLiteConnection connection;
+      final ExecutorService executor;
+      final Set<Long> statementPtrs = ConcurrentHashMap.newKeySet();
+
+      OpenConnection(SQLiteConnection connection, ExecutorService executor) {
+        this.connection = connection;
+        this.executor = executor;
       }
     }
 
-    SQLiteStatement getStatement(final long connectionPtr, final long statementPtr) {
-      synchronized (lock) {
-        // ensure connection is ok
-        getConnection(connectionPtr);
+    private OpenConnection getOpenConnection(final long connectionPtr) {
+      final OpenConnection openConnection = connectionsMap.get(connectionPtr);
+      if (openConnection == null) {
+        throw new IllegalStateException(
+            "Illegal connection pointer "
+                + connectionPtr
+                + ". Current pointers for thread "
+                + Thread.currentThread()
+                + " "
+                + connectionsMap.keySet());
+      }
+      return openConnection;
+    }
 
-        final SQLiteStatement statement = statementsMap.get(statementPtr);
-        if (statement == null) {
-          throw new IllegalArgumentException(
-              "Invalid prepared statement pointer: "
-                  + statementPtr
-                  + ". Current pointers: "
-                  + statementsMap.keySet());
-        }
-        if (statement.isDisposed()) {
-          throw new IllegalStateException(
-              "Statement " + statementPtr + " " + statement + " is disposed");
-        }
-        return statement;
+    SQLiteConnection getConnection(final long connectionPtr) {
+      return getOpenConnection(connectionPtr).connection;
+    }
+
+    SQLiteStatement getStatement(final long connectionPtr, final long statementPtr) {
+      // ensure connection is ok
+      getConnection(connectionPtr);
+
+      final SQLiteStatement statement = statementsMap.get(statementPtr);
+      if (statement == null) {
+        throw new IllegalArgumentException(
+            "Invalid prepared statement pointer: "
+                + statementPtr
+                + ". Current pointers: "
+                + statementsMap.keySet());
+      }
+      if (statement.isDisposed()) {
+        throw new IllegalStateException(
+            "Statement " + statementPtr + " " + statement + " is disposed");
       }
+      return statement;
     }
 
     long open(final String path) {
-      synchronized (lock) {
-        final SQLiteConnection dbConnection =
+      ExecutorService executor = Executors.newSingleThreadExecutor(threadFactory());
+      final SQLiteConnection dbConnection;
+      try {
+        dbConnection =
             execute(
+                executor,
+                OPEN,
                 () -> {
                   SQLiteConnection connection =
                       useInMemoryDatabase.get() || IN_MEMORY_PATH.equals(path)
@@ -323,14 +358,19 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
                           : new SQLiteConnection(new File(path));
 
                   connection.open();
+                  // Connections run on their own threads, so they may find the database locked
+                  // by another connection to the same file; wait for it instead of failing.
+                  connection.setBusyTimeout(BUSY_TIMEOUT_MS);
                   return connection;
                 });
-
-        final long connectionPtr = pointerCounter.incrementAndGet();
-        connectionsMap.put(connectionPtr, dbConnection);
-        statementPtrsForConnection.put(connectionPtr, new ArrayList<>());
-        return connectionPtr;
+      } catch (RuntimeException e) {
+        executor.shutdown();
+        throw e;
       }
+
+      final long connectionPtr = pointerCounter.incrementAndGet();
+      connectionsMap.put(connectionPtr, new OpenConnection(dbConnection, executor));
+      return connectionPtr;
     }
 
     long prepareStatement(final long connectionPtr, final String sql) {
@@ -339,57 +379,52 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
         return IGNORED_REINDEX_STMT;
       }
 
-      synchronized (lock) {
-        final SQLiteConnection connection = getConnection(connectionPtr);
-        final SQLiteStatement statement = execute(() -> connection.prepare(sql));
+      final OpenConnection openConnection = getOpenConnection(connectionPtr);
+      // prepare(String) already goes through sqlite4java's per-connection statement cache keyed by
+      // SQL, so preparing the same SQL again reuses the compiled statement.
+      final SQLiteStatement statement =
+          execute(openConnection.executor, PREPARE, () -> openConnection.connection.prepare(sql));
 
-        final long statementPtr = pointerCounter.incrementAndGet();
-        statementsMap.put(statementPtr, statement);
-        statementPtrsForConnection.get(connectionPtr).add(statementPtr);
-        return statementPtr;
-      }
+      final long statementPtr = pointerCounter.incrementAndGet();
+      statementsMap.put(statementPtr, statement);
+      openConnection.statementPtrs.add(statementPtr);
+      return statementPtr;
     }
 
     void close(final long connectionPtr) {
-      synchronized (lock) {
-        final SQLiteConnection connection = getConnection(connectionPtr);
-        execute(
-            () -> {
-              connection.dispose();
-              return null;
-            });
-        connectionsMap.remove(connectionPtr);
-        statementPtrsForConnection.remove(connectionPtr);
+      final OpenConnection openConnection = getOpenConnection(connectionPtr);
+      execute(
+          openConnection.executor,
+          CLOSE,
+          () -> {
+            openConnection.connection.dispose();
+            return null;
+          });
+      connectionsMap.remove(connectionPtr);
+      for (Long statementPtr : openConnection.statementPtrs) {
+        statementsMap.remove(statementPtr);
       }
+      openConnection.executor.shutdown();
     }
 
     void reset() {
-      ExecutorService oldDbExecutor;
-      Collection<SQLiteConnection> openConnections;
-
-      synchronized (lock) {
-        oldDbExecutor = dbExecutor;
-        openConnections = new ArrayList<>(connectionsMap.values());
+      Collection<OpenConnection> openConnections = new ArrayList<>(connectionsMap.values());
+      connectionsMap.clear();
+      statementsMap.clear();
 
-        dbExecutor = Executors.newSingleThreadExecutor(threadFactory());
-        connectionsMap.clear();
-        statementsMap.clear();
-        statementPtrsForConnection.clear();
+      for (OpenConnection openConnection : openConnections) {
+        shutdownDbExecutor(openConnection.executor, openConnection.connection);
       }
-
-      shutdownDbExecutor(oldDbExecutor, openConnections);
     }
 
     private static void shutdownDbExecutor(
-        ExecutorService executorService, Collection<SQLiteConnection> connections) {
-      for (final SQLiteConnection connection : connections) {
-        getFuture(
-            executorService.submit(
-                () -> {
-                  connection.dispose();
-                  return null;
-                }));
-      }
+        ExecutorService executorService, SQLiteConnection connection) {
+      getFuture(
+          executorService.submit(
+              () -> {
+                connection.dispose();
+                return null;
+              }));
 
       executorService.shutdown();
       try {
@@ -404,32 +439,34 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
         return;
       }
 
-      synchronized (lock) {
-        final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-        statementsMap.remove(statementPtr);
-
-        execute(
-            () -> {
-              statement.dispose();
-              return null;
-            });
-      }
+      final OpenConnection openConnection = getOpenConnection(connectionPtr);
+      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
+      statementsMap.remove(statementPtr);
+      openConnection.statementPtrs.remove(statementPtr);
+
+      execute(
+          openConnection.executor,
+          FINALIZE,
+          () -> {
+            statement.dispose();
+            return null;
+          });
     }
 
     void cancel(final long connectionPtr) {
-      synchronized (lock) {
-        getConnection(connectionPtr); // check connection
+      final OpenConnection openConnection = getOpenConnection(connectionPtr);
 
-        for (Long statementPtr : statementPtrsForConnection.get(connectionPtr)) {
-          final SQLiteStatement statement = statementsMap.get(statementPtr);
-          if (statement != null) {
-            execute(
-                (Callable<Void>)
-                    () -> {
-                      statement.cancel();
-                      return null;
-                    });
-          }
+      for (Long statementPtr : openConnection.statementPtrs) {
+        final SQLiteStatement statement = statementsMap.get(statementPtr);
+        if (statement != null) {
+          execute(
+              openConnection.executor,
+              CANCEL,
+              (Callable<Void>)
+                  () -> {
+                    statement.cancel();
+                    return null;
+                  });
         }
       }
     }
@@ -440,7 +477,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       }
 
       return executeStatementOperation(
-          connectionPtr, statementPtr, SQLiteStatement::getBindParameterCount);
+          connectionPtr, statementPtr, STATEMENT_INFO, SQLiteStatement::getBindParameterCount);
     }
 
     boolean isReadOnly(final long connectionPtr, final long statementPtr) {
@@ -448,13 +485,15 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
         return true;
       }
 
-      return executeStatementOperation(connectionPtr, statementPtr, SQLiteStatement::isReadOnly);
+      return executeStatementOperation(
+          connectionPtr, statementPtr, STATEMENT_INFO, SQLiteStatement::isReadOnly);
     }
 
     long executeForLong(final long connectionPtr, final long statementPtr) {
       return executeStatementOperation(
           connectionPtr,
           statementPtr,
+          EXECUTE,
           statement -> {
             if (!statement.step()) {
               throw new SQLiteException(SQLiteConstants.SQLITE_DONE, "No rows returned from query");
@@ -471,6 +510,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       executeStatementOperation(
           connectionPtr,
           statementPtr,
+          EXECUTE,
           (StatementOperation<Void>)
               statement -> {
                 statement.stepThrough();
@@ -482,6 +522,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       return executeStatementOperation(
           connectionPtr,
           statementPtr,
+          EXECUTE,
           statement -> {
             if (!statement.step()) {
               throw new SQLiteException(SQLiteConstants.SQLITE_DONE, "No rows returned from query");
@@ -491,18 +532,20 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
     }
 
     int getColumnCount(final long connectionPtr, final long statementPtr) {
-      return executeStatementOperation(connectionPtr, statementPtr, SQLiteStatement::columnCount);
+      return executeStatementOperation(
+          connectionPtr, statementPtr, STATEMENT_INFO, SQLiteStatement::columnCount);
     }
 
     String getColumnName(final long connectionPtr, final long statementPtr, final int index) {
       return executeStatementOperation(
-          connectionPtr, statementPtr, statement -> statement.getColumnName(index));
+          connectionPtr, statementPtr, STATEMENT_INFO, statement -> statement.getColumnName(index));
     }
 
     void bindNull(final long connectionPtr, final long statementPtr, final int index) {
       executeStatementOperation(
           connectionPtr,
           statementPtr,
+          BIND,
           (StatementOperation<Void>)
               statement -> {
                 statement.bindNull(index);
@@ -515,6 +558,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       executeStatementOperation(
           connectionPtr,
           statementPtr,
+          BIND,
           (StatementOperation<Void>)
               statement -> {
                 statement.bind(index, value);
@@ -527,6 +571,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       executeStatementOperation(
           connectionPtr,
           statementPtr,
+          BIND,
           (StatementOperation<Void>)
               statement -> {
                 statement.bind(index, value);
@@ -539,6 +584,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       executeStatementOperation(
           connectionPtr,
           statementPtr,
+          BIND,
           (StatementOperation<Void>)
               statement -> {
                 statement.bind(index, value);
@@ -551,6 +597,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       executeStatementOperation(
           connectionPtr,
           statementPtr,
+          BIND,
           (StatementOperation<Void>)
               statement -> {
                 statement.bind(index, value);
@@ -559,33 +606,34 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
     }
 
     int executeForChangedRowCount(final long connectionPtr, final long statementPtr) {
-      synchronized (lock) {
-        final SQLiteConnection connection = getConnection(connectionPtr);
-        final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-
-        return execute(
-            () -> {
-              if (statement.step()) {
-                throw new android.database.sqlite.SQLiteException(
-                    "Queries can be performed using SQLiteDatabase query or rawQuery methods"
-                        + " only.");
-              }
-              return connection.getChanges();
-            });
-      }
+      final OpenConnection openConnection = getOpenConnection(connectionPtr);
+      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
+
+      return execute(
+          openConnection.executor,
+          EXECUTE,
+          () -> {
+            if (statement.step()) {
+              throw new android.database.sqlite.SQLiteException(
+                  "Queries can be performed using SQLiteDatabase query or rawQuery methods"
+                      + " only.");
+            }
+            return openConnection.connection.getChanges();
+          });
     }
 
     long executeForLastInsertedRowId(final long connectionPtr, final long statementPtr) {
-      synchronized (lock) {
-        final SQLiteConnection connection = getConnection(connectionPtr);
-        final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-
-        return execute(
-            () -> {
-              statement.stepThrough();
-              return connection.getChanges() > 0 ? connection.getLastInsertId() : -1L;
-            });
-      }
+      final OpenConnection openConnection = getOpenConnection(connectionPtr);
+      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
+
+      return execute(
+          openConnection.executor,
+          EXECUTE,
+          () -> {
+            statement.stepThrough();
+            SQLiteConnection connection = openConnection.connection;
+            return connection.getChanges() > 0 ? connection.getLastInsertId() : -1L;
+          });
     }
 
     long executeForCursorWindow(
@@ -593,6 +641,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       return executeStatementOperation(
           connectionPtr,
           statementPtr,
+          FILL_WINDOW,
           (StatementOperation<Integer>)
               statement -> ShadowLegacyCursorWindow.setData(windowPtr, statement));
     }
@@ -601,6 +650,7 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
       executeStatementOperation(
           connectionPtr,
           statementPtr,
+          RESET_STATEMENT,
           (StatementOperation<Void>)
               statement -> {
                 statement.reset(true);
@@ -615,22 +665,20 @@ public class ShadowLegacySQLiteConnection extends ShadowSQLiteConnection {
     private <T> T executeStatementOperation(
         final long connectionPtr,
         final long statementPtr,
+        final MetricHandle metric,
         final StatementOperation<T> statementOperation) {
-      synchronized (lock) {
-        final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
-        return execute(() -> statementOperation.call(statement));
-      }
+      final OpenConnection openConnection = getOpenConnection(connectionPtr);
+      final SQLiteStatement statement = getStatement(connectionPtr, statementPtr);
+      return execute(openConnection.executor, metric, () -> statementOperation.call(statement));
     }
 
     /**
-     * Any Callable passed in to execute must not synchronize on lock, as this will result in a
-     * deadlock
+     * Runs {@code work} on {@code executor}, the thread of one connection, and measures it as
+     * {@code metric}.
      */
-    private <T> T execute(final Callable<T> work) {
-      synchronized (lock) {
-        return PerfStatsCollector.getInstance()
-            .measure("sqlite", () -> getFuture(dbExecutor.submit(work)));
-      }
+    private static <T> T execute(
+        final ExecutorService executor, final MetricHandle metric, final Callable<T> work) {
+      return metric.measure(() -> getFuture(executor.submit(work)));
     }
 
     private static <T> T getFuture(final Future<T> future) {
@@ -5,12 +5,15 @@ import static org.robolectric.util.reflector.Reflector.reflector;
 import android.os.AsyncTask;
 import com.google.common.annotations.Beta;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.util.ReflectionHelpers.ClassParameter;
+import org.robolectric.util.VirtualThreads;
 import org.robolectric.util.reflector.Direct;
 import org.robolectric.util.reflector.ForType;
 
@@ -31,6 +34,10 @@ public class ShadowPausedAsyncTask<Params, Progress, Result>
 
   private static Executor executorOverride = null;
 
+  // AsyncTask's thread pool lives as long as the sandbox, so this is deliberately never reset.
+  @SuppressWarnings("NonFinalStaticField")
+  private static boolean threadPoolChecked = false;
+
   @RealObject private AsyncTask<Params, Progress, Result> realObject;
 
   @Resetter
@@ -41,9 +48,27 @@ public class ShadowPausedAsyncTask<Params, Progress, Result>
   @Implementation
   protected AsyncTask<Params, Progress, Result> executeOnExecutor(Executor exec, Params... params) {
     Executor executorToUse = executorOverride == null ? exec : executorOverride;
+    useVirtualThreadsForThreadPool();
     return reflector(AsyncTaskReflector.class, realObject).executeOnExecutor(executorToUse, params);
   }
 
+  /**
+   * If virtual threads are enabled, makes {@link AsyncTask#THREAD_POOL_EXECUTOR}, which also runs
+   * the tasks of {@link AsyncTask#SERIAL_EXECUTOR}, start virtual threads instead of platform ones.
+   *
+   * @see VirtualThreads
+   */
+  private static synchronized void useVirtualThreadsForThreadPool() {
+    if (threadPoolChecked) {
+      return;
+    }
+    threadPoolChecked = true;
+    ThreadFactory threadFactory = VirtualThreads.newThreadFactory("AsyncTask #");
+    if (threadFactory != null && AsyncTask.THREAD_POOL_EXECUTOR instanceof ThreadPoolExecutor) {
+      ((ThreadPoolExecutor) AsyncTask.THREAD_POOL_EXECUTOR).setThreadFactory(threadFactory);
+    }
+  }
+
   private ClassParameter[] buildClassParams(Params... params) {
     ClassParameter[] classParameters = new ClassParameter[params.length];
     for (int i = 0; i < params.length; i++) {
@@ -36,6 +36,7 @@ import org.robolectric.annotation.RealObject;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.config.ConfigurationRegistry;
 import org.robolectric.shadow.api.Shadow;
+import org.robolectric.util.PerfStatsCollector;
 import org.robolectric.util.Scheduler;
 import org.robolectric.util.reflector.Accessor;
 import org.robolectric.util.reflector.Direct;
@@ -74,10 +75,19 @@ public final class ShadowPausedLooper extends ShadowLooper {
 
   private static boolean ignoreUncaughtExceptions = false;
 
+  private static final PerfStatsCollector.MetricHandle IDLE_MESSAGE =
+      PerfStatsCollector.getInstance().getHandle("looper idle message");
+  private static final PerfStatsCollector.MetricHandle IDLE_HANDLER =
+      PerfStatsCollector.getInstance().getHandle("looper idle handler");
+  private static final PerfStatsCollector.MetricHandle IDLE_CLOCK_ADVANCE =
+      PerfStatsCollector.getInstance().getHandle("looper idle clock advance");
+
   @RealObject private Looper realLooper;
   private boolean isPaused = false;
   // the Executor that executes looper messages. Must be written to on looper thread
   private Executor looperExecutor;
+  // written on the looper thread, at the end of each idle
+  private volatile IdleStats lastIdleStats = new IdleStats(0, 0, 0);
 
   @Implementation
   protected void __constructor__(boolean quitAllowed) {
@@ -106,12 +116,14 @@ public final class ShadowPausedLooper extends ShadowLooper {
 
   @Override
   public void idle() {
-    executeOnLooper(new IdlingRunnable());
+    PerfStatsCollector.getInstance()
+        .measure("looper idle", () -> executeOnLooper(new IdlingRunnable()));
   }
 
   @Override
   public void idleFor(Duration idleForDuration) {
-    executeOnLooper(new IdleForRunnable(idleForDuration));
+    PerfStatsCollector.getInstance()
+        .measure("looper idle", () -> executeOnLooper(new IdleForRunnable(idleForDuration)));
   }
 
   @Override
@@ -207,7 +219,8 @@ public final class ShadowPausedLooper extends ShadowLooper {
 
   @Override
   public void runUntilEmpty() {
-    executeOnLooper(new RunToEmptyRunnable());
+    PerfStatsCollector.getInstance()
+        .measure("looper idle", () -> executeOnLooper(new RunToEmptyRunnable()));
   }
 
   @Override
@@ -217,7 +230,8 @@ public final class ShadowPausedLooper extends ShadowLooper {
 
   @Override
   public void runOneTask() {
-    executeOnLooper(new RunOneRunnable());
+    PerfStatsCollector.getInstance()
+        .measure("looper idle", () -> executeOnLooper(new RunOneRunnable()));
   }
 
   @Override
@@ -323,6 +337,14 @@ public final class ShadowPausedLooper extends ShadowLooper {
     return shadowQueue().getLastScheduledTaskTime();
   }
 
+  /**
+   * Returns what the most recent {@link #idle()}, {@link #idleFor(Duration)}, {@link
+   * #runToEndOfTasks()} or {@link #runUntilEmpty()} call on this looper did.
+   */
+  public IdleStats getLastIdleStats() {
+    return lastIdleStats;
+  }
+
   @Resetter
   @SuppressWarnings("deprecation") // This is Robolectric library code
   public static synchronized void resetLoopers() {
@@ -476,14 +498,51 @@ public final class ShadowPausedLooper extends ShadowLooper {
         Thread.currentThread() == realLooper.getThread(),
         "getNextExecutableMessage is only supported from looper thread");
     try (TestLooperManagerCompat looperManager = TestLooperManagerCompat.acquire(realLooper)) {
-      Long when = looperManager.peekWhen();
-      if (when != null && when <= SystemClock.uptimeMillis()) {
-        return looperManager.poll();
+      return looperManager.pollIfDue(SystemClock.uptimeMillis());
+    }
+  }
+
+  /**
+   * Dispatches messages until none is due, including those posted or made due while dispatching,
+   * and runs the idle handlers each time the queue becomes idle.
+   */
+  private void dispatchDueMessages(IdleCounts counts) {
+    if (!TestLooperManagerCompat.canDispatchWhileAcquired()) {
+      Message msg;
+      while ((msg = getNextExecutableMessage()) != null) {
+        dispatchDueMessage(msg, counts);
+      }
+      return;
+    }
+
+    // Drain the whole queue with a single looper manager, which only locks the queue while polling.
+    checkState(
+        Thread.currentThread() == realLooper.getThread(),
+        "dispatchDueMessages is only supported from looper thread");
+    try (TestLooperManagerCompat looperManager = TestLooperManagerCompat.acquire(realLooper)) {
+      Message msg;
+      while ((msg = looperManager.pollIfDue(SystemClock.uptimeMillis())) != null) {
+        dispatchDueMessage(msg, counts);
       }
-      return null;
     }
   }
 
+  private void dispatchDueMessage(Message msg, IdleCounts counts) {
+    msg.getTarget().dispatchMessage(msg);
+    shadowMsg(msg).recycleUnchecked();
+    counts.messagesRun++;
+    IDLE_MESSAGE.incrementCount();
+    counts.idleHandlersRun += triggerIdleHandlersIfNeeded(msg);
+  }
+
+  private static void advanceClock(long millis, IdleCounts counts) {
+    if (millis > 0) {
+      counts.clockAdvances++;
+      IDLE_CLOCK_ADVANCE.incrementCount();
+    }
+    ShadowSystemClock.advanceBy(Duration.ofMillis(millis));
+  }
+
   /**
    * By default Robolectric will put Loopers that throw uncaught exceptions in their loop method
    * into an error state, where any future posting to the looper's queue will throw an error.
@@ -543,8 +602,10 @@ public final class ShadowPausedLooper extends ShadowLooper {
    * If the given {@code lastMessageRead} is not null and the queue is now idle, get the idle
    * handlers and run them. This synchronization mirrors what happens in the real message queue
    * next() method, but does not block after running the idle handlers.
+   *
+   * @return the number of idle handlers that were run
    */
-  private void triggerIdleHandlersIfNeeded(Message lastMessageRead) {
+  private int triggerIdleHandlersIfNeeded(Message lastMessageRead) {
     List<IdleHandler> idleHandlers;
     // Mirror the synchronization of MessageQueue.next(). If a message was read on the last call
     // to next() and the queue is now idle, make a copy of the idle handlers and release the lock.
@@ -552,16 +613,18 @@ public final class ShadowPausedLooper extends ShadowLooper {
     // queueIdle() method.
     synchronized (realLooper.getQueue()) {
       if (lastMessageRead == null || !realLooper.getQueue().isIdle()) {
-        return;
+        return 0;
       }
       idleHandlers = shadowQueue().getIdleHandlersCopy();
     }
     for (IdleHandler idleHandler : idleHandlers) {
+      IDLE_HANDLER.incrementCount();
       if (!idleHandler.queueIdle()) {
         // This method already has synchronization internally.
         realLooper.getQueue().removeIdleHandler(idleHandler);
       }
     }
+    return idleHandlers.size();
   }
 
   /**
@@ -625,23 +688,25 @@ public final class ShadowPausedLooper extends ShadowLooper {
   }
 
   private class RunToEmptyRunnable extends ControlRunnable {
-    private final IdlingRunnable idleRunnable = new IdlingRunnable();
+    private final IdleCounts counts = new IdleCounts();
+    private final IdlingRunnable idleRunnable = new IdlingRunnable(counts);
 
     @Override
     public void doRun() {
       long nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
       while (nextScheduledTimeMs != 0) {
-        ShadowSystemClock.advanceBy(
-            Duration.ofMillis(nextScheduledTimeMs - SystemClock.uptimeMillis()));
+        advanceClock(nextScheduledTimeMs - SystemClock.uptimeMillis(), counts);
         idleRunnable.doRun();
         nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
       }
+      lastIdleStats = counts.toIdleStats();
     }
   }
 
   private class IdleForRunnable extends ControlRunnable {
     private final Duration idleForDuration;
-    private final IdlingRunnable idleRunnable = new IdlingRunnable();
+    private final IdleCounts counts = new IdleCounts();
+    private final IdlingRunnable idleRunnable = new IdlingRunnable(counts);
 
     IdleForRunnable(Duration duration) {
       super();
@@ -653,12 +718,11 @@ public final class ShadowPausedLooper extends ShadowLooper {
       long endingTimeMs = SystemClock.uptimeMillis() + idleForDuration.toMillis();
       long nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
       while (nextScheduledTimeMs != 0 && nextScheduledTimeMs <= endingTimeMs) {
-        ShadowSystemClock.advanceBy(
-            Duration.ofMillis(nextScheduledTimeMs - SystemClock.uptimeMillis()));
+        advanceClock(nextScheduledTimeMs - SystemClock.uptimeMillis(), counts);
         idleRunnable.doRun();
         nextScheduledTimeMs = getNextScheduledTaskTime().toMillis();
       }
-      ShadowSystemClock.advanceBy(Duration.ofMillis(endingTimeMs - SystemClock.uptimeMillis()));
+      advanceClock(endingTimeMs - SystemClock.uptimeMillis(), counts);
       // the last SystemClock update might have added new tasks to the main looper via Choreographer
       // so idle once more.
       idleRunnable.doRun();
@@ -666,18 +730,70 @@ public final class ShadowPausedLooper extends ShadowLooper {
   }
 
   private class IdlingRunnable extends ControlRunnable {
+    private final IdleCounts counts;
+
+    IdlingRunnable() {
+      this(new IdleCounts());
+    }
+
+    IdlingRunnable(IdleCounts counts) {
+      this.counts = counts;
+    }
 
     @Override
     public void doRun() {
-      while (true) {
-        Message msg = getNextExecutableMessage();
-        if (msg == null) {
-          break;
-        }
-        msg.getTarget().dispatchMessage(msg);
-        shadowMsg(msg).recycleUnchecked();
-        triggerIdleHandlersIfNeeded(msg);
-      }
+      dispatchDueMessages(counts);
+      lastIdleStats = counts.toIdleStats();
+    }
+  }
+
+  /** The work done so far by an idle, updated on the looper thread. */
+  private static final class IdleCounts {
+    int messagesRun;
+    int idleHandlersRun;
+    int clockAdvances;
+
+    IdleStats toIdleStats() {
+      return new IdleStats(messagesRun, idleHandlersRun, clockAdvances);
+    }
+  }
+
+  /** What one idle of a looper did. */
+  public static final class IdleStats {
+    private final int messagesRun;
+    private final int idleHandlersRun;
+    private final int clockAdvances;
+
+    IdleStats(int messagesRun, int idleHandlersRun, int clockAdvances) {
+      this.messagesRun = messagesRun;
+      this.idleHandlersRun = idleHandlersRun;
+      this.clockAdvances = clockAdvances;
+    }
+
+    /** Returns the number of messages that were dispatched. */
+    public int getMessagesRun() {
+      return messagesRun;
+    }
+
+    /** Returns the number of times an {@link IdleHandler} was run. */
+    public int getIdleHandlersRun() {
+      return idleHandlersRun;
+    }
+
+    /** Returns the number of times the clock was moved forward. */
+    public int getClockAdvances() {
+      return clockAdvances;
+    }
+
+    @Override
+    public String toString() {
+      return "IdleStats{messagesRun="
+          + messagesRun
+          + ", idleHandlersRun="
+          + idleHandlersRun
+          + ", clockAdvances="
+          + clockAdvances
+          + "}";
     }
   }
 
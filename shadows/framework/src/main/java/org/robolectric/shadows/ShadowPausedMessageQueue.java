@@ -50,6 +50,9 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
   @GuardedBy("realQueue")
   private boolean pendingWake;
 
+  // created on first use, since realQueue is only set once the shadow has been constructed
+  private MessageQueueReflector cachedQueueReflector;
+
   // shadow constructor instead of nativeInit because nativeInit signature has changed across SDK
   // versions
   @Implementation
@@ -120,14 +123,14 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
     // return the next message. To simulate this behavior check if the queue is idle and if it is
     // mark the queue as blocked and wait on a new message.
     synchronized (realQueue) {
-      reflector(MessageQueueReflector.class, realQueue).setBlocked(true);
+      queueReflector().setBlocked(true);
       try {
         pendingWake = false;
         realQueue.wait(timeout);
       } catch (InterruptedException ignored) {
         // Fall through and unblock with no messages.
       } finally {
-        reflector(MessageQueueReflector.class, realQueue).setBlocked(false);
+        queueReflector().setBlocked(false);
       }
     }
   }
@@ -150,11 +153,11 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
   /** Exposes the API23+_isIdle method to older platforms */
   @Implementation
   public boolean isIdle() {
-    return reflector(MessageQueueReflector.class, realQueue).isIdle();
+    return queueReflector().isIdle();
   }
 
   Message peekNextExecutableMessage() {
-    MessageQueueReflector internalQueue = reflector(MessageQueueReflector.class, realQueue);
+    MessageQueueReflector internalQueue = queueReflector();
     Message msg = internalQueue.getMessages();
 
     if (msg != null && shadowOfMsg(msg).getTarget() == null) {
@@ -168,11 +171,11 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
   }
 
   Message getNext() {
-    return reflector(MessageQueueReflector.class, realQueue).next();
+    return queueReflector().next();
   }
 
   boolean isQuitAllowed() {
-    return reflector(MessageQueueReflector.class, realQueue).getQuitAllowed();
+    return queueReflector().getQuitAllowed();
   }
 
   @VisibleForTesting
@@ -195,12 +198,12 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
         msg.recycle();
         throw e;
       }
-      return reflector(MessageQueueReflector.class, realQueue).enqueueMessage(msg, when);
+      return queueReflector().enqueueMessage(msg, when);
     }
   }
 
   Message getMessages() {
-    return reflector(MessageQueueReflector.class, realQueue).getMessages();
+    return queueReflector().getMessages();
   }
 
   @Implementation
@@ -216,12 +219,12 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
 
   @Implementation
   protected void quit(boolean allowed) {
-    reflector(MessageQueueReflector.class, realQueue).quit(allowed);
+    queueReflector().quit(allowed);
     ShadowPausedSystemClock.removeListener(clockListener);
   }
 
   boolean isQuitting() {
-    return reflector(MessageQueueReflector.class, realQueue).getQuitting();
+    return queueReflector().getQuitting();
   }
 
   Duration getLastScheduledTaskTime() {
@@ -284,7 +287,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
    * omitted.
    */
   Message getNextIgnoringWhen() {
-    MessageQueueReflector queueReflector = reflector(MessageQueueReflector.class, realQueue);
+    MessageQueueReflector queueReflector = queueReflector();
     synchronized (realQueue) {
       Message prevMsg = null;
       Message msg = getMessages();
@@ -321,7 +324,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
   // so it should be package private
   @Override
   public void reset() {
-    MessageQueueReflector msgQueue = reflector(MessageQueueReflector.class, realQueue);
+    MessageQueueReflector msgQueue = queueReflector();
     synchronized (realQueue) {
       msgQueue.setMessages(null);
       msgQueue.setIdleHandlers(new ArrayList<>());
@@ -335,6 +338,14 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
     setUncaughtException(null);
   }
 
+  /** Returns a reflector over the real queue, which is shared by all calls in the hot path. */
+  private MessageQueueReflector queueReflector() {
+    if (cachedQueueReflector == null) {
+      cachedQueueReflector = reflector(MessageQueueReflector.class, realQueue);
+    }
+    return cachedQueueReflector;
+  }
+
   private static ShadowPausedMessage shadowOfMsg(Message head) {
     return Shadow.extract(head);
   }
@@ -367,7 +378,7 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
    */
   ArrayList<IdleHandler> getIdleHandlersCopy() {
     synchronized (realQueue) {
-      return new ArrayList<>(reflector(MessageQueueReflector.class, realQueue).getIdleHandlers());
+      return new ArrayList<>(queueReflector().getIdleHandlers());
     }
   }
 
@@ -414,10 +425,10 @@ public class ShadowPausedMessageQueue extends ShadowMessageQueue {
         shadowOfMsg(msg).recycleUnchecked();
         msg = next;
       }
-      reflector(MessageQueueReflector.class, realQueue).setMessages(null);
+      queueReflector().setMessages(null);
       if (getApiLevel() >= V.SDK_INT) {
-        reflector(MessageQueueReflector.class, realQueue).setLast(null);
-        reflector(MessageQueueReflector.class, realQueue).setAsyncMessageCount(0);
+        queueReflector().setLast(null);
+        queueReflector().setAsyncMessageCount(0);
       }
     }
   }
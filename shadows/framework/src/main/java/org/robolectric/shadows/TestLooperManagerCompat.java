@@ -29,14 +29,28 @@ final class TestLooperManagerCompat implements AutoCloseable {
   // on an Android API level that supports it
   private final TestLooperManager delegate;
 
+  // reflector over the legacy queue, shared by every call. Null when delegating.
+  private final LegacyMessageQueueReflector queueReflector;
+
   TestLooperManagerCompat(MessageQueue queue) {
     this.queue = queue;
     this.delegate = null;
+    this.queueReflector = reflector(LegacyMessageQueueReflector.class, queue);
   }
 
   private TestLooperManagerCompat(TestLooperManager testLooperManager) {
     this.queue = null;
     this.delegate = testLooperManager;
+    this.queueReflector = null;
+  }
+
+  /**
+   * Returns whether a {@link TestLooperManagerCompat} may stay acquired while the looper thread
+   * dispatches messages. The legacy implementation only locks the queue for the duration of each
+   * call, whereas a {@link TestLooperManager} has to be released first.
+   */
+  static boolean canDispatchWhileAcquired() {
+    return getApiLevel() < Baklava.SDK_INT;
   }
 
   static TestLooperManagerCompat acquire(Looper looper) {
@@ -65,12 +79,35 @@ final class TestLooperManagerCompat implements AutoCloseable {
     }
   }
 
+  /**
+   * Removes and returns the next executable message if it is due by {@code now}, or returns null.
+   *
+   * <p>This is equivalent to {@link #peekWhen()} followed by {@link #poll()}, but only takes the
+   * legacy queue's lock once.
+   */
+  @Nullable
+  Message pollIfDue(long now) {
+    if (delegate != null) {
+      Long when = delegate.peekWhen();
+      return when != null && when <= now ? delegate.poll() : null;
+    }
+    try {
+      synchronized (Objects.requireNonNull(queue)) {
+        Message msg = legacyPeek();
+        if (msg == null || msg.getTarget() == null || msg.getWhen() > now) {
+          return null;
+        }
+        return legacyPoll(queue);
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Nullable
   private Message legacyPeek() throws IllegalAccessException {
     // the legacy MessageQueue implementation synchronizes on itself,
     // so this uses the same lock
-    LegacyMessageQueueReflector queueReflector =
-        reflector(LegacyMessageQueueReflector.class, queue);
     synchronized (Objects.requireNonNull(queue)) {
       Message msg = queueReflector.getMessages();
       // Head is blocked on synchronization barrier, find next asynchronous message.
@@ -93,8 +130,6 @@ final class TestLooperManagerCompat implements AutoCloseable {
 
   private Message legacyPoll(MessageQueue realQueue) {
     // fork of implementation from Baklava's MessageQueue#legacyPeekOrPoll
-    LegacyMessageQueueReflector queueReflector =
-        reflector(LegacyMessageQueueReflector.class, realQueue);
     synchronized (realQueue) {
       Message prevMsg = null;
       Message msg = queueReflector.getMessages();
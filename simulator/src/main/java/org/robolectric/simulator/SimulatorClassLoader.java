@@ -9,6 +9,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
@@ -51,6 +52,13 @@ public class SimulatorClassLoader extends AndroidSandbox.SdkSandboxClassLoader {
     }
   }
 
+  @Override
+  protected List<URL> getClassPath() {
+    List<URL> classPath = new ArrayList<>(Arrays.asList(extraClassLoader.getURLs()));
+    classPath.addAll(super.getClassPath());
+    return classPath;
+  }
+
   /**
    * This override is required to support ServiceLoader plugins in the extra jars passed into the
    * simulator. It looks for all service-related metadata in META-INF/services/... in the extra jars
@@ -0,0 +1,71 @@
+package org.robolectric;
+
+/** Data about the sandbox a test ran in, and about the sandbox cache as a whole. */
+public class SandboxMetadata {
+
+  private final long creationTimeNs;
+  private final long estimatedRetainedBytes;
+  private final int cachedSandboxCount;
+  private final long cachedSandboxesEstimatedRetainedBytes;
+  private final int cachedApkAssetsCount;
+  private final long cachedApkAssetsEstimatedRetainedBytes;
+
+  public SandboxMetadata(
+      long creationTimeNs,
+      long estimatedRetainedBytes,
+      int cachedSandboxCount,
+      long cachedSandboxesEstimatedRetainedBytes) {
+    this(
+        creationTimeNs,
+        estimatedRetainedBytes,
+        cachedSandboxCount,
+        cachedSandboxesEstimatedRetainedBytes,
+        0,
+        0);
+  }
+
+  public SandboxMetadata(
+      long creationTimeNs,
+      long estimatedRetainedBytes,
+      int cachedSandboxCount,
+      long cachedSandboxesEstimatedRetainedBytes,
+      int cachedApkAssetsCount,
+      long cachedApkAssetsEstimatedRetainedBytes) {
+    this.creationTimeNs = creationTimeNs;
+    this.estimatedRetainedBytes = estimatedRetainedBytes;
+    this.cachedSandboxCount = cachedSandboxCount;
+    this.cachedSandboxesEstimatedRetainedBytes = cachedSandboxesEstimatedRetainedBytes;
+    this.cachedApkAssetsCount = cachedApkAssetsCount;
+    this.cachedApkAssetsEstimatedRetainedBytes = cachedApkAssetsEstimatedRetainedBytes;
+  }
+
+  /** Returns the time it took to create the sandbox, in nanoseconds. */
+  public long getCreationTimeNs() {
+    return creationTimeNs;
+  }
+
+  /** Returns a rough estimate of the memory retained by the sandbox, in bytes. */
+  public long getEstimatedRetainedBytes() {
+    return estimatedRetainedBytes;
+  }
+
+  /** Returns the number of sandboxes currently cached, including this one. */
+  public int getCachedSandboxCount() {
+    return cachedSandboxCount;
+  }
+
+  /** Returns a rough estimate of the memory retained by all cached sandboxes, in bytes. */
+  public long getCachedSandboxesEstimatedRetainedBytes() {
+    return cachedSandboxesEstimatedRetainedBytes;
+  }
+
+  /** Returns the number of ApkAssets currently cached across sandboxes. */
+  public int getCachedApkAssetsCount() {
+    return cachedApkAssetsCount;
+  }
+
+  /** Returns a rough estimate of the memory retained by the ApkAssets cached across sandboxes. */
+  public long getCachedApkAssetsEstimatedRetainedBytes() {
+    return cachedApkAssetsEstimatedRetainedBytes;
+  }
+}
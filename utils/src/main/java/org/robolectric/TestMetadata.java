@@ -0,0 +1,21 @@
+package org.robolectric;
+
+/** Identifies the test a set of perf stats was collected for. */
+public class TestMetadata {
+
+  private final String testClassName;
+  private final String testMethodName;
+
+  public TestMetadata(String testClassName, String testMethodName) {
+    this.testClassName = testClassName;
+    this.testMethodName = testMethodName;
+  }
+
+  public String getTestClassName() {
+    return testClassName;
+  }
+
+  public String getTestMethodName() {
+    return testMethodName;
+  }
+}
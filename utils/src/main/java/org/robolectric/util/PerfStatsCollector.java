@@ -2,9 +2,15 @@ package org.robolectric.util;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.robolectric.pluginapi.perf.Histogram;
 import org.robolectric.pluginapi.perf.Metadata;
 import org.robolectric.pluginapi.perf.Metric;
 import org.robolectric.pluginapi.perf.PerfStatsReporter;
@@ -12,6 +18,14 @@ import org.robolectric.pluginapi.perf.PerfStatsReporter;
 /**
  * Collects performance statistics for later reporting via {@link PerfStatsReporter}.
  *
+ * <p>Recording is lock-free, so it's safe and cheap to measure hot paths from many threads. Each
+ * metric name is registered once as a {@link MetricHandle}; hot paths should keep the handle from
+ * {@link #getHandle(String)} in a static field rather than looking it up by name on every call.
+ *
+ * <p>When several tests run at once, each should record into its own {@link Recording}, bound to
+ * the threads running the test with {@link #setCurrentRecording(Recording)}. Metrics, metadata and
+ * {@link #reset()} then only affect the current thread's recording.
+ *
  * @since 3.6
  */
 public class PerfStatsCollector {
@@ -19,9 +33,13 @@ public class PerfStatsCollector {
   private static final PerfStatsCollector INSTANCE = new PerfStatsCollector();
 
   private final Clock clock;
-  private final Map<Class<?>, Object> metadata = new HashMap<>();
-  private final Map<MetricKey, Metric> metricMap = new HashMap<>();
-  private boolean enabled = true;
+  private final Map<Class<?>, Object> metadata = new ConcurrentHashMap<>();
+  private final Map<String, MetricHandle> handles = new ConcurrentHashMap<>();
+  private final Event disabledEvent = new Event();
+  private final ThreadLocal<Recording> currentRecording = new ThreadLocal<>();
+  // Lets recording skip the thread-local lookup while no thread has a recording bound.
+  private final AtomicInteger boundRecordings = new AtomicInteger();
+  private volatile boolean enabled = true;
 
   public PerfStatsCollector() {
     this(System::nanoTime);
@@ -40,33 +58,71 @@ public class PerfStatsCollector {
     this.enabled = isEnabled;
   }
 
+  /**
+   * Returns the handle for the metric named {@code name}, registering it if needed. Handles stay
+   * valid across {@link #reset()}.
+   */
+  public MetricHandle getHandle(String name) {
+    MetricHandle handle = handles.get(name);
+    if (handle == null) {
+      handle = handles.computeIfAbsent(name, MetricHandle::new);
+    }
+    return handle;
+  }
+
+  /** Creates a recording that keeps its metrics and metadata apart from other tests. */
+  public Recording newRecording() {
+    return new Recording();
+  }
+
+  /**
+   * Makes the calling thread record into {@code recording}, or into the shared totals if it is
+   * null. Values recorded by other threads, e.g. background executors, still go to their own
+   * recordings.
+   *
+   * @return the recording previously bound to this thread, for restoring afterwards
+   */
+  @Nullable
+  public Recording setCurrentRecording(@Nullable Recording recording) {
+    Recording previous = currentRecording.get();
+    if (previous == null && recording != null) {
+      boundRecordings.incrementAndGet();
+    } else if (previous != null && recording == null) {
+      boundRecordings.decrementAndGet();
+    }
+    if (recording == null) {
+      currentRecording.remove();
+    } else {
+      currentRecording.set(recording);
+    }
+    return previous;
+  }
+
+  @Nullable
+  private Recording currentRecording() {
+    return boundRecordings.get() == 0 ? null : currentRecording.get();
+  }
+
   public Event startEvent(String eventName) {
-    return new Event(eventName);
+    if (!enabled) {
+      return disabledEvent;
+    }
+    return getHandle(eventName).startEvent();
   }
 
   public <T, E extends Exception> T measure(String eventName, ThrowingSupplier<T, E> supplier)
       throws E {
-    boolean success = true;
-    Event event = startEvent(eventName);
-    try {
+    if (!enabled) {
       return supplier.get();
-    } catch (Exception e) {
-      success = false;
-      throw e;
-    } finally {
-      event.finished(success);
     }
+    return getHandle(eventName).measure(supplier);
   }
 
   public void incrementCount(String eventName) {
-    synchronized (PerfStatsCollector.this) {
-      MetricKey key = new MetricKey(eventName, true);
-      Metric metric = metricMap.get(key);
-      if (metric == null) {
-        metricMap.put(key, metric = new Metric(key.name, key.success));
-      }
-      metric.incrementCount();
+    if (!enabled) {
+      return;
     }
+    getHandle(eventName).incrementCount();
   }
 
   /** Supplier that throws an exception. */
@@ -77,16 +133,11 @@ public class PerfStatsCollector {
 
   public <E extends Exception> void measure(String eventName, ThrowingRunnable<E> runnable)
       throws E {
-    boolean success = true;
-    Event event = startEvent(eventName);
-    try {
+    if (!enabled) {
       runnable.run();
-    } catch (Exception e) {
-      success = false;
-      throw e;
-    } finally {
-      event.finished(success);
+      return;
     }
+    getHandle(eventName).measure(runnable);
   }
 
   /** Runnable that throws an exception. */
@@ -95,89 +146,303 @@ public class PerfStatsCollector {
     void run() throws F;
   }
 
-  public synchronized Collection<Metric> getMetrics() {
-    return new ArrayList<>(metricMap.values());
+  /**
+   * Returns a snapshot of all metrics recorded since the last {@link #reset()}, from the current
+   * thread's recording if it has one. Values recorded concurrently with this call may be partially
+   * included.
+   */
+  public Collection<Metric> getMetrics() {
+    Recording recording = currentRecording();
+    List<Metric> metrics = new ArrayList<>();
+    for (MetricHandle handle : handles.values()) {
+      if (recording == null) {
+        handle.addMetrics(metrics);
+      } else {
+        recording.addMetrics(handle, metrics);
+      }
+    }
+    return metrics;
   }
 
-  public synchronized <T> void putMetadata(Class<T> metadataClass, T metadata) {
+  public <T> void putMetadata(Class<T> metadataClass, T metadata) {
     if (!enabled) {
       return;
     }
 
-    this.metadata.put(metadataClass, metadata);
+    Map<Class<?>, Object> target = metadata();
+    if (metadata == null) {
+      target.remove(metadataClass);
+    } else {
+      target.put(metadataClass, metadata);
+    }
   }
 
-  public synchronized Metadata getMetadata() {
-    return new Metadata(metadata);
+  public Metadata getMetadata() {
+    return new Metadata(metadata());
   }
 
+  /**
+   * Clears all metadata and recorded values, or only those of the current thread's recording if it
+   * has one. Registered handles remain usable.
+   */
   public void reset() {
+    Recording recording = currentRecording();
+    if (recording != null) {
+      recording.reset();
+      return;
+    }
     metadata.clear();
-    metricMap.clear();
+    for (MetricHandle handle : handles.values()) {
+      handle.reset();
+    }
   }
 
-  /** Event for perf stats collection. */
-  public class Event {
+  private Map<Class<?>, Object> metadata() {
+    Recording recording = currentRecording();
+    return recording == null ? metadata : recording.metadata;
+  }
+
+  /** Metrics and metadata recorded apart from the shared totals, e.g. for one test. */
+  public static final class Recording {
+    private final Map<Class<?>, Object> metadata = new ConcurrentHashMap<>();
+    private final Map<MetricHandle, Recorder> successRecorders = new ConcurrentHashMap<>();
+    private final Map<MetricHandle, Recorder> failureRecorders = new ConcurrentHashMap<>();
+
+    private Recording() {}
+
+    private Recorder recorder(MetricHandle handle, boolean success) {
+      Map<MetricHandle, Recorder> recorders = success ? successRecorders : failureRecorders;
+      Recorder recorder = recorders.get(handle);
+      if (recorder == null) {
+        recorder = recorders.computeIfAbsent(handle, h -> new Recorder());
+      }
+      return recorder;
+    }
+
+    private void addMetrics(MetricHandle handle, List<Metric> metrics) {
+      Recorder success = successRecorders.get(handle);
+      if (success != null && success.count.sum() > 0) {
+        metrics.add(success.toMetric(handle.name, true));
+      }
+      Recorder failure = failureRecorders.get(handle);
+      if (failure != null && failure.count.sum() > 0) {
+        metrics.add(failure.toMetric(handle.name, false));
+      }
+    }
+
+    private void reset() {
+      metadata.clear();
+      successRecorders.clear();
+      failureRecorders.clear();
+    }
+  }
+
+  /** A registered metric, which records values without looking up its name. */
+  public class MetricHandle {
     private final String name;
-    private final long startTimeNs;
+    private volatile Recorder successRecorder;
+    private volatile Recorder failureRecorder;
 
-    Event(String name) {
+    MetricHandle(String name) {
       this.name = name;
-      this.startTimeNs = clock.nanoTime();
     }
 
-    public void finished() {
-      finished(true);
+    public String getName() {
+      return name;
     }
 
-    public void finished(boolean success) {
+    public Event startEvent() {
+      if (!enabled) {
+        return disabledEvent;
+      }
+      return new Event(this, clock.nanoTime());
+    }
+
+    public <T, E extends Exception> T measure(ThrowingSupplier<T, E> supplier) throws E {
+      if (!enabled) {
+        return supplier.get();
+      }
+      boolean success = true;
+      long startTimeNs = clock.nanoTime();
+      try {
+        return supplier.get();
+      } catch (Exception e) {
+        success = false;
+        throw e;
+      } finally {
+        record(clock.nanoTime() - startTimeNs, success);
+      }
+    }
+
+    public <E extends Exception> void measure(ThrowingRunnable<E> runnable) throws E {
+      if (!enabled) {
+        runnable.run();
+        return;
+      }
+      boolean success = true;
+      long startTimeNs = clock.nanoTime();
+      try {
+        runnable.run();
+      } catch (Exception e) {
+        success = false;
+        throw e;
+      } finally {
+        record(clock.nanoTime() - startTimeNs, success);
+      }
+    }
+
+    /** Counts an occurrence without a duration. */
+    public void incrementCount() {
+      if (!enabled) {
+        return;
+      }
+      recorder(true).count.increment();
+    }
+
+    void record(long elapsedNs, boolean success) {
       if (!enabled) {
         return;
       }
+      recorder(success).record(elapsedNs);
+    }
 
-      synchronized (PerfStatsCollector.this) {
-        MetricKey key = new MetricKey(name, success);
-        Metric metric = metricMap.get(key);
-        if (metric == null) {
-          metricMap.put(key, metric = new Metric(key.name, key.success));
+    private Recorder recorder(boolean success) {
+      Recording recording = currentRecording();
+      if (recording != null) {
+        return recording.recorder(this, success);
+      }
+      Recorder recorder = success ? successRecorder : failureRecorder;
+      if (recorder == null) {
+        synchronized (this) {
+          recorder = success ? successRecorder : failureRecorder;
+          if (recorder == null) {
+            recorder = new Recorder();
+            if (success) {
+              successRecorder = recorder;
+            } else {
+              failureRecorder = recorder;
+            }
+          }
         }
-        metric.record(clock.nanoTime() - startTimeNs);
+      }
+      return recorder;
+    }
+
+    private void addMetrics(List<Metric> metrics) {
+      Recorder success = successRecorder;
+      if (success != null && success.count.sum() > 0) {
+        metrics.add(success.toMetric(name, true));
+      }
+      Recorder failure = failureRecorder;
+      if (failure != null && failure.count.sum() > 0) {
+        metrics.add(failure.toMetric(name, false));
+      }
+    }
+
+    private void reset() {
+      Recorder success = successRecorder;
+      if (success != null) {
+        success.reset();
+      }
+      Recorder failure = failureRecorder;
+      if (failure != null) {
+        failure.reset();
       }
     }
   }
 
-  /** Metric key for perf stats collection. */
-  private static class MetricKey {
-    private final String name;
-    private final boolean success;
+  /** Event for perf stats collection. */
+  public class Event {
+    private final MetricHandle handle;
+    private final long startTimeNs;
 
-    MetricKey(String name, boolean success) {
-      this.name = name;
-      this.success = success;
+    Event(MetricHandle handle, long startTimeNs) {
+      this.handle = handle;
+      this.startTimeNs = startTimeNs;
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (!(o instanceof MetricKey)) {
-        return false;
+    /** Creates an event that records nothing, for when collection is disabled. */
+    private Event() {
+      this(null, 0);
+    }
+
+    public void finished() {
+      finished(true);
+    }
+
+    public void finished(boolean success) {
+      if (handle == null) {
+        return;
       }
+      handle.record(clock.nanoTime() - startTimeNs, success);
+    }
+  }
+
+  /** Lock-free accumulator of the values recorded for one metric and outcome. */
+  private static class Recorder {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder elapsedNs = new LongAdder();
+    private final LongAccumulator minNs = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxNs = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    // Allocated on the first recorded duration, as most counted-only metrics never need it.
+    private volatile AtomicLongArray bucketCounts;
 
-      MetricKey metricKey = (MetricKey) o;
+    void record(long elapsedNs) {
+      count.increment();
+      this.elapsedNs.add(elapsedNs);
+      minNs.accumulate(elapsedNs);
+      maxNs.accumulate(elapsedNs);
+      bucketCounts().incrementAndGet(Histogram.bucketIndex(elapsedNs));
+    }
 
-      if (success != metricKey.success) {
-        return false;
+    private AtomicLongArray bucketCounts() {
+      AtomicLongArray buckets = bucketCounts;
+      if (buckets == null) {
+        synchronized (this) {
+          buckets = bucketCounts;
+          if (buckets == null) {
+            bucketCounts = buckets = new AtomicLongArray(Histogram.BUCKET_COUNT);
+          }
+        }
       }
-      return Objects.equals(name, metricKey.name);
+      return buckets;
     }
 
-    @Override
-    public int hashCode() {
-      int result = name != null ? name.hashCode() : 0;
-      result = 31 * result + (success ? 1 : 0);
-      return result;
+    Metric toMetric(String name, boolean success) {
+      AtomicLongArray buckets = bucketCounts;
+      Histogram histogram = null;
+      long min = 0;
+      long max = 0;
+      if (buckets != null) {
+        long[] counts = new long[Histogram.BUCKET_COUNT];
+        for (int i = 0; i < counts.length; i++) {
+          counts[i] = buckets.get(i);
+        }
+        histogram = new Histogram(counts);
+        if (histogram.getTotalCount() > 0) {
+          min = minNs.get();
+          max = maxNs.get();
+        }
+      }
+      return new Metric(name, (int) count.sum(), elapsedNs.sum(), min, max, histogram, success);
+    }
+
+    void reset() {
+      if (count.sum() == 0) {
+        return;
+      }
+      count.reset();
+      elapsedNs.reset();
+      minNs.reset();
+      maxNs.reset();
+      AtomicLongArray buckets = bucketCounts;
+      if (buckets != null) {
+        for (int i = 0; i < buckets.length(); i++) {
+          if (buckets.get(i) != 0) {
+            buckets.set(i, 0);
+          }
+        }
+      }
     }
   }
 }
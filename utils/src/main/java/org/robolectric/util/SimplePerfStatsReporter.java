@@ -10,11 +10,18 @@ import java.util.Objects;
 import java.util.TreeMap;
 import javax.annotation.Nonnull;
 import org.robolectric.AndroidMetadata;
+import org.robolectric.pluginapi.perf.Histogram;
 import org.robolectric.pluginapi.perf.Metadata;
 import org.robolectric.pluginapi.perf.Metric;
 import org.robolectric.pluginapi.perf.PerfStatsReporter;
 
-/** Simple implementation of PerfStatsReporter that writes stats to stdout. */
+/**
+ * Simple implementation of PerfStatsReporter that writes stats to stdout.
+ *
+ * <p>The report is a tab-separated table with one row per metric name, SDK level and outcome. Its
+ * columns are Name, SDK, Success, Count, Min ms, Max ms, Avg ms, P50 ms, P99 ms and Total ms. The
+ * percentiles are estimated from the metrics' latency histograms.
+ */
 public class SimplePerfStatsReporter implements PerfStatsReporter {
 
   private final List<Data> perfStatsData = new ArrayList<>();
@@ -47,14 +54,15 @@ public class SimplePerfStatsReporter implements PerfStatsReporter {
       }
     }
 
-    System.out.println("Name\tSDK\tResources\tSuccess\tCount\tMin ms\tMax ms\tAvg ms\tTotal ms");
+    System.out.println(
+        "Name\tSDK\tSuccess\tCount\tMin ms\tMax ms\tAvg ms\tP50 ms\tP99 ms\tTotal ms");
     for (Entry<MetricKey, MetricValue> entry : mergedMetrics.entrySet()) {
       MetricKey key = entry.getKey();
       MetricValue value = entry.getValue();
 
       System.out.println(
           MessageFormat.format(
-              "{0}\t{1}\t{2}\t{3}\t{4}\t{5}\t{6}\t{7}",
+              "{0}\t{1}\t{2}\t{3}\t{4}\t{5}\t{6}\t{7}\t{8}\t{9}",
               key.name,
               key.sdkLevel,
               key.success,
@@ -62,6 +70,8 @@ public class SimplePerfStatsReporter implements PerfStatsReporter {
               (int) (value.minNs / 1000000),
               (int) (value.maxNs / 1000000),
               (int) (value.elapsedNs / 1000000 / value.count),
+              (int) (value.getPercentileNs(50) / 1000000),
+              (int) (value.getPercentileNs(99) / 1000000),
               (int) (value.elapsedNs / 1000000)));
     }
   }
@@ -139,8 +149,10 @@ public class SimplePerfStatsReporter implements PerfStatsReporter {
     private long minNs;
     private long maxNs;
     private long elapsedNs;
+    private final Histogram histogram = new Histogram();
 
     public void report(Metric metric) {
+      histogram.add(metric.getHistogram());
       if (count == 0) {
         count = metric.getCount();
         minNs = metric.getMinNs();
@@ -153,5 +165,12 @@ public class SimplePerfStatsReporter implements PerfStatsReporter {
         elapsedNs += metric.getElapsedNs();
       }
     }
+
+    long getPercentileNs(double percentile) {
+      if (histogram.getTotalCount() == 0) {
+        return 0;
+      }
+      return Math.max(minNs, Math.min(maxNs, histogram.getValueAtPercentileNs(percentile)));
+    }
   }
 }
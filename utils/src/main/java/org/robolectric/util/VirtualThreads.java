@@ -0,0 +1,41 @@
+package org.robolectric.util;
+
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+
+/**
+ * Creates JDK virtual threads for Robolectric's background work, when they are enabled and the
+ * runtime supports them.
+ *
+ * <p>Virtual threads are opt-in, with {@code -Drobolectric.virtualThreads=true}, and need JDK 21 or
+ * later; otherwise callers fall back to platform threads. Since Robolectric targets Java 11, the
+ * virtual thread API is called reflectively.
+ */
+public final class VirtualThreads {
+  static final String ENABLED_PROPERTY = "robolectric.virtualThreads";
+
+  private VirtualThreads() {}
+
+  /**
+   * Returns a factory of virtual threads named {@code namePrefix} followed by a counter, or null if
+   * virtual threads are disabled or unsupported.
+   */
+  @Nullable
+  public static ThreadFactory newThreadFactory(String namePrefix) {
+    if (!Boolean.getBoolean(ENABLED_PROPERTY)) {
+      return null;
+    }
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder =
+          builderClass
+              .getMethod("name", String.class, long.class)
+              .invoke(builder, namePrefix, 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Virtual threads are missing, or a preview feature that isn't enabled.
+      return null;
+    }
+  }
+}
@@ -2,11 +2,13 @@ package org.robolectric.util
 
 import com.google.common.truth.Truth.assertThat
 import java.io.IOException
+import java.util.concurrent.CyclicBarrier
 import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.junit.runners.JUnit4
+import org.robolectric.pluginapi.perf.Histogram
 import org.robolectric.pluginapi.perf.Metric
 
 @RunWith(JUnit4::class)
@@ -107,6 +109,121 @@ class PerfStatsCollectorTest {
     assertThat(collector.metrics).isEmpty()
   }
 
+  @Test
+  fun shouldRecordLatencyDistribution() {
+    for (i in 1..100) {
+      val event = collector.startEvent("event")
+      fakeClock.delay(i)
+      event.finished()
+    }
+    val metric = collector.metrics.single()
+    assertThat(metric.minNs).isEqualTo(1)
+    assertThat(metric.maxNs).isEqualTo(100)
+    assertThat(metric.histogram.totalCount).isEqualTo(100)
+    // Buckets are at most 12.5% wide.
+    assertThat(metric.p50Ns).isAtLeast(50)
+    assertThat(metric.p50Ns).isAtMost(57)
+    assertThat(metric.p99Ns).isAtLeast(99)
+    assertThat(metric.p99Ns).isAtMost(100)
+  }
+
+  @Test
+  fun incrementCount_shouldNotRecordDurations() {
+    collector.incrementCount("counter")
+    collector.incrementCount("counter")
+    val metric = collector.metrics.single()
+    assertThat(metric.count).isEqualTo(2)
+    assertThat(metric.histogram.totalCount).isEqualTo(0)
+    assertThat(metric.p99Ns).isEqualTo(0)
+  }
+
+  @Test
+  fun handle_shouldRemainUsableAfterReset() {
+    val handle = collector.getHandle("event")
+    handle.measure<RuntimeException> { fakeClock.delay(10) }
+    collector.reset()
+    assertThat(collector.metrics).isEmpty()
+    handle.measure<RuntimeException> { fakeClock.delay(20) }
+    assertThat(collector.metrics).containsExactly(Metric("event", 1, 20, true))
+    assertThat(collector.metrics.single().elapsedNs).isEqualTo(20)
+    assertThat(collector.getHandle("event")).isSameInstanceAs(handle)
+  }
+
+  @Test
+  fun disabled_shouldNotRecordAnything() {
+    collector.setEnabled(false)
+    collector.startEvent("event").finished()
+    collector.incrementCount("counter")
+    assertThat(collector.measure<String, RuntimeException>("measured") { "value" })
+      .isEqualTo("value")
+    collector.putMetadata(String::class.java, "metadata")
+    assertThat(collector.metrics).isEmpty()
+    assertThat(collector.metadata.get(String::class.java)).isNull()
+  }
+
+  @Test
+  fun shouldCountConcurrentEventsExactly() {
+    val collector = PerfStatsCollector()
+    val handle = collector.getHandle("event")
+    val threads =
+      List(4) {
+        Thread {
+          repeat(10_000) {
+            handle.measure<RuntimeException> {}
+            collector.incrementCount("counter")
+          }
+        }
+      }
+    threads.forEach(Thread::start)
+    threads.forEach(Thread::join)
+    val metrics = collector.metrics.associateBy { it.name }
+    assertThat(metrics.getValue("event").count).isEqualTo(40_000)
+    assertThat(metrics.getValue("event").histogram.totalCount).isEqualTo(40_000)
+    assertThat(metrics.getValue("counter").count).isEqualTo(40_000)
+  }
+
+  @Test
+  fun recordings_shouldKeepConcurrentTestsApart() {
+    val barrier = CyclicBarrier(2)
+    val metadata = arrayOfNulls<String>(2)
+    val metrics = arrayOfNulls<Collection<Metric>>(2)
+    collector.incrementCount("shared")
+    val threads =
+      List(2) { i ->
+        Thread {
+          val previous = collector.setCurrentRecording(collector.newRecording())
+          collector.putMetadata(String::class.java, "test $i")
+          collector.incrementCount("event $i")
+          barrier.await()
+          if (i == 1) {
+            collector.reset()
+          }
+          barrier.await()
+          metadata[i] = collector.metadata.get(String::class.java)
+          metrics[i] = collector.metrics
+          collector.setCurrentRecording(previous)
+        }
+      }
+    threads.forEach(Thread::start)
+    threads.forEach(Thread::join)
+
+    assertThat(metadata[0]).isEqualTo("test 0")
+    assertThat(metrics[0]).containsExactly(Metric("event 0", 1, 0, true))
+    assertThat(metadata[1]).isNull()
+    assertThat(metrics[1]).isEmpty()
+    assertThat(collector.metrics).containsExactly(Metric("shared", 1, 0, true))
+  }
+
+  @Test
+  fun histogram_bucketBoundsShouldContainValues() {
+    for (value in listOf(0L, 7L, 8L, 15L, 16L, 1_000L, 123_456_789L, Long.MAX_VALUE)) {
+      val index = Histogram.bucketIndex(value)
+      assertThat(Histogram.bucketLowerBoundNs(index)).isAtMost(value)
+      assertThat(Histogram.bucketUpperBoundNs(index)).isAtLeast(value)
+    }
+    assertThat(Histogram.bucketIndex(Long.MAX_VALUE)).isEqualTo(Histogram.BUCKET_COUNT - 1)
+  }
+
   private class FakeClock : Clock {
     private var timeNs = 0
 
@@ -0,0 +1,32 @@
+package org.robolectric.util
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class VirtualThreadsTest {
+  @After
+  fun tearDown() {
+    System.clearProperty(VirtualThreads.ENABLED_PROPERTY)
+  }
+
+  @Test
+  fun newThreadFactory_isNullByDefault() {
+    assertThat(VirtualThreads.newThreadFactory("worker-")).isNull()
+  }
+
+  @Test
+  fun newThreadFactory_createsVirtualThreadsWhenEnabled() {
+    assumeTrue(Runtime.version().feature() >= 21)
+    System.setProperty(VirtualThreads.ENABLED_PROPERTY, "true")
+
+    val thread = VirtualThreads.newThreadFactory("worker-")!!.newThread {}
+
+    assertThat(Thread::class.java.getMethod("isVirtual").invoke(thread)).isEqualTo(true)
+    assertThat(thread.name).isEqualTo("worker-0")
+  }
+}